@@ -1,11 +1,33 @@
 package com.musicplayer;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
 
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.musicplayer.audio.AudioOutput;
+import com.musicplayer.audio.AudioOutputs;
+import com.musicplayer.audio.AudioProcessor;
+import com.musicplayer.audio.ConvolutionReverb;
+import com.musicplayer.audio.DspBenchmark;
+import com.musicplayer.audio.DspKernels;
+import com.musicplayer.audio.ImpulseResponse;
+import com.musicplayer.audio.LoudnessNormalizer;
+import com.musicplayer.audio.NullAudioOutput;
+import com.musicplayer.audio.OfflineRenderer;
+import com.musicplayer.audio.PlaybackEngine;
+import com.musicplayer.audio.PlaybackPipeline;
+import com.musicplayer.audio.RenderReport;
+import com.musicplayer.audio.SourceDataLineOutput;
+import com.musicplayer.audio.WavFileOutput;
 import com.musicplayer.model.Playlist;
 import com.musicplayer.model.Song;
 import com.musicplayer.service.AudioEffects;
+import com.musicplayer.service.LoudnessAnalyzer;
 import com.musicplayer.service.MusicLibrary;
 import com.musicplayer.service.MusicPlayer;
 import com.musicplayer.service.MusicStatistics;
@@ -13,6 +35,10 @@ import com.musicplayer.service.MusicVisualizer;
 import com.musicplayer.service.PlaylistManager;
 import com.musicplayer.service.SleepTimer;
 import com.musicplayer.service.SmartPlaylistGenerator;
+import com.musicplayer.service.WaveformCache;
+import com.musicplayer.stats.HistoryQuery;
+import com.musicplayer.stats.QueryBenchmark;
+import com.musicplayer.stats.RankingBenchmark;
 
 public class MusicPlayerApp {
     private final MusicLibrary musicLibrary;
@@ -23,16 +49,23 @@ public class MusicPlayerApp {
     private final SleepTimer sleepTimer;
     private final MusicStatistics statistics;
     private final SmartPlaylistGenerator smartPlaylistGenerator;
+    private final LoudnessAnalyzer loudnessAnalyzer;
+    private final WaveformCache waveformCache;
     
     public MusicPlayerApp() {
         this.musicLibrary = new MusicLibrary();
         this.statistics = new MusicStatistics();
-        this.musicPlayer = new MusicPlayer();
-        this.playlistManager = new PlaylistManager(musicLibrary);
         this.audioEffects = new AudioEffects();
-        this.visualizer = new MusicVisualizer();
+        this.musicPlayer = new MusicPlayer(audioEffects);
+        this.playlistManager = new PlaylistManager(musicLibrary);
+        this.waveformCache = new WaveformCache();
+        this.visualizer = new MusicVisualizer(musicPlayer, waveformCache);
         this.sleepTimer = new SleepTimer(musicPlayer);
         this.smartPlaylistGenerator = new SmartPlaylistGenerator(musicLibrary, statistics);
+        this.loudnessAnalyzer = new LoudnessAnalyzer();
+        musicPlayer.setLoudnessAnalyzer(loudnessAnalyzer);
+        // Plays, partial plays and skips are recorded when a track stops, with the time actually heard
+        musicPlayer.setListenListener(statistics::recordListen);
         
         // Start statistics session
         statistics.startListeningSession();
@@ -78,6 +111,9 @@ public class MusicPlayerApp {
                 } else if (choice.equals("vol-") || choice.equalsIgnoreCase("vol-")) {
                     audioEffects.adjustMasterVolume(-0.1f);
                     continue;
+                } else if (choice.equalsIgnoreCase("mute")) {
+                    audioEffects.toggleMute();
+                    continue;
                 }
                 
                 switch (choice.toLowerCase()) {
@@ -163,11 +199,14 @@ public class MusicPlayerApp {
         
         System.out.println("Thanks for using Enhanced Java Music Player!");
         
-        // Cleanup resources
+        // Cleanup resources; the player first, so the track still playing is recorded
+        musicPlayer.cleanup();
         statistics.endListeningSession();
+        statistics.close();
         visualizer.stop();
         sleepTimer.shutdown();
-        musicPlayer.cleanup();
+        loudnessAnalyzer.shutdown();
+        waveformCache.shutdown();
     }
     
     private void displayMenu() {
@@ -192,17 +231,13 @@ public class MusicPlayerApp {
         System.out.println("12. Audio Effects    13. Visualizer   14. Sleep Timer");
         System.out.println("15. Statistics       16. Smart Playlists");
         System.out.println();
-        System.out.println("⚡ QUICK: vol+/vol- | help | 0. Quit");
+        System.out.println("⚡ QUICK: vol+/vol- | mute | help | 0. Quit");
         System.out.print("\nEnter your choice: ");
     }
     
     private void handlePlay() {
         if (musicPlayer.play()) {
             System.out.println(">> Playing: " + musicPlayer.getCurrentSong());
-            // Record play in statistics
-            if (musicPlayer.getCurrentSong() != null) {
-                statistics.recordSongPlay(musicPlayer.getCurrentSong());
-            }
         } else {
             System.out.println("X No song to play. Please select a playlist first.");
         }
@@ -554,6 +589,11 @@ public class MusicPlayerApp {
             // Refresh the "All Songs" playlist
             playlistManager.refreshAllSongsPlaylist();
             
+            // Measure loudness of new tracks at low priority while the user carries on
+            loudnessAnalyzer.analyzeInBackground(musicLibrary.getAllSongs());
+            // Same for the waveform overviews shown by the WAVE visualizer
+            waveformCache.extractInBackground(musicLibrary.getAllSongs());
+            
             // Auto-load the playlist if it's the first time loading music
             if (musicPlayer.getCurrentPlaylist() == null) {
                 Playlist allSongs = playlistManager.getPlaylist("All Songs");
@@ -592,6 +632,8 @@ public class MusicPlayerApp {
             System.out.println("1. Toggle Equalizer      2. EQ Presets        3. Manual EQ");
             System.out.println("4. Toggle Bass Boost     5. Toggle Reverb     6. Virtual Surround");
             System.out.println("7. Master Volume         8. View Settings     9. Reset All");
+            System.out.println("10. Output Device        11. Loudness Normalization");
+            System.out.println("12. Convolution Reverb");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter choice: ");
             
@@ -627,6 +669,15 @@ public class MusicPlayerApp {
                     audioEffects.setMasterVolume(1.0f);
                     System.out.println("[EQ] All audio effects reset");
                     break;
+                case "10":
+                    handleOutputDeviceMenu(scanner);
+                    break;
+                case "11":
+                    handleLoudnessMenu(scanner);
+                    break;
+                case "12":
+                    handleConvolutionMenu(scanner);
+                    break;
                 case "0":
                     inEffectsMenu = false;
                     break;
@@ -683,6 +734,138 @@ public class MusicPlayerApp {
         }
     }
     
+    private void handleConvolutionMenu(Scanner scanner) {
+        System.out.println("\n[REVERB] Convolution Reverb (impulse response WAV files)");
+        System.out.println("1. Load Impulse Response 2. Toggle On/Off     3. Wet Mix");
+        System.out.println("0. Back");
+        System.out.print("Enter choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        switch (choice) {
+            case "1":
+                System.out.print("Enter impulse response file path: ");
+                audioEffects.loadImpulseResponse(scanner.nextLine().trim());
+                break;
+            case "2":
+                audioEffects.toggleConvolutionReverb();
+                break;
+            case "3":
+                System.out.print("Enter wet mix (0-10): ");
+                try {
+                    audioEffects.setConvolutionMix(Integer.parseInt(scanner.nextLine().trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Please enter a valid number.");
+                }
+                break;
+            case "0":
+                break;
+            default:
+                System.out.println("Invalid option.");
+        }
+    }
+    
+    private void handleLoudnessMenu(Scanner scanner) {
+        loudnessAnalyzer.displayStatus(musicPlayer.getCurrentSong());
+        System.out.println();
+        System.out.println("1. Off                   2. Track Gain        3. Album Gain");
+        System.out.println("4. Analyze Library       0. Back");
+        System.out.print("Enter choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        switch (choice) {
+            case "1":
+                loudnessAnalyzer.setMode(LoudnessAnalyzer.Mode.OFF);
+                break;
+            case "2":
+                loudnessAnalyzer.setMode(LoudnessAnalyzer.Mode.TRACK);
+                break;
+            case "3":
+                loudnessAnalyzer.setMode(LoudnessAnalyzer.Mode.ALBUM);
+                break;
+            case "4":
+                loudnessAnalyzer.analyzeInBackground(musicLibrary.getAllSongs());
+                break;
+            case "0":
+                return;
+            default:
+                System.out.println("Invalid option.");
+                return;
+        }
+        musicPlayer.applyLoudnessGain();
+    }
+    
+    private void handleOutputDeviceMenu(Scanner scanner) {
+        AudioOutput output = musicPlayer.getAudioOutput();
+        System.out.println("\n[OUTPUT] === Audio Output ===");
+        System.out.println("Current: " + output.getName());
+        System.out.printf("Measured latency: %.1f ms | Underruns: %d\n",
+                         output.getLatencyMillis(), output.getUnderrunCount());
+        System.out.println();
+        System.out.println("1. Sound Device (choose mixer and buffer)");
+        System.out.println("2. Null Output (headless, no sound)");
+        System.out.println("3. WAV File");
+        System.out.println("0. Back");
+        System.out.print("Enter choice: ");
+        
+        String choice = scanner.nextLine().trim();
+        switch (choice) {
+            case "1":
+                handleSoundDeviceSelection(scanner);
+                break;
+            case "2":
+                musicPlayer.setAudioOutput(new NullAudioOutput());
+                System.out.println("[OUTPUT] Using null output");
+                break;
+            case "3":
+                System.out.print("Enter WAV file path: ");
+                String path = scanner.nextLine().trim();
+                if (!path.isEmpty()) {
+                    musicPlayer.setAudioOutput(new WavFileOutput(new File(path)));
+                    System.out.println("[OUTPUT] Recording playback to " + path);
+                }
+                break;
+            case "0":
+                break;
+            default:
+                System.out.println("Invalid option.");
+        }
+    }
+    
+    private void handleSoundDeviceSelection(Scanner scanner) {
+        List<String> mixers = AudioOutputs.listMixers();
+        System.out.println("\n[OUTPUT] Available devices:");
+        System.out.println("0. System default");
+        for (int i = 0; i < mixers.size(); i++) {
+            System.out.printf("%d. %s\n", i + 1, mixers.get(i));
+        }
+        System.out.print("Select device (default 0): ");
+        
+        try {
+            String input = scanner.nextLine().trim();
+            int choice = input.isEmpty() ? 0 : Integer.parseInt(input);
+            if (choice < 0 || choice > mixers.size()) {
+                System.out.println("Invalid device number.");
+                return;
+            }
+            String mixer = choice == 0 ? null : mixers.get(choice - 1);
+            
+            System.out.printf("Buffer size in frames (default %d, smaller = lower latency): ",
+                             SourceDataLineOutput.DEFAULT_BUFFER_FRAMES);
+            input = scanner.nextLine().trim();
+            int bufferFrames = input.isEmpty() ? SourceDataLineOutput.DEFAULT_BUFFER_FRAMES : Integer.parseInt(input);
+            
+            System.out.printf("Period size in frames (default %d): ", SourceDataLineOutput.DEFAULT_PERIOD_FRAMES);
+            input = scanner.nextLine().trim();
+            int periodFrames = input.isEmpty() ? SourceDataLineOutput.DEFAULT_PERIOD_FRAMES : Integer.parseInt(input);
+            
+            SourceDataLineOutput output = new SourceDataLineOutput(mixer, bufferFrames, periodFrames);
+            musicPlayer.setAudioOutput(output);
+            System.out.println("[OUTPUT] Using " + output.getName());
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter a valid number.");
+        }
+    }
+    
     private void handleVisualizerMenu(Scanner scanner) {
         boolean inVisualizerMenu = true;
         
@@ -692,7 +875,7 @@ public class MusicPlayerApp {
             System.out.println("Mode: " + visualizer.getCurrentMode());
             System.out.println();
             System.out.println("1. Toggle On/Off         2. Change Mode       3. Next Mode");
-            System.out.println("4. View Modes Help       0. Back to Main Menu");
+            System.out.println("4. View Modes Help       5. Frame Stats       0. Back to Main Menu");
             System.out.print("Enter choice: ");
             
             String choice = scanner.nextLine().trim();
@@ -710,6 +893,9 @@ public class MusicPlayerApp {
                 case "4":
                     visualizer.displayModeHelp();
                     break;
+                case "5":
+                    visualizer.displayFrameStats();
+                    break;
                 case "0":
                     inVisualizerMenu = false;
                     break;
@@ -834,7 +1020,8 @@ public class MusicPlayerApp {
             System.out.println("\n📊 === Music Statistics Menu ===");
             System.out.println("1. Overall Stats         2. Top Songs         3. Top Artists");
             System.out.println("4. Listening History     5. Recent Sessions   6. Insights");
-            System.out.println("7. Today's Stats         8. Reset Stats       0. Back to Main Menu");
+            System.out.println("7. Today's Stats         8. Reset Stats       9. Query History");
+            System.out.println("10. Export History       11. Import History   0. Back to Main Menu");
             System.out.print("Enter choice: ");
             
             String choice = scanner.nextLine().trim();
@@ -895,6 +1082,15 @@ public class MusicPlayerApp {
                         statistics.resetStatistics();
                     }
                     break;
+                case "9":
+                    handleHistoryQuery(scanner);
+                    break;
+                case "10":
+                    handleHistoryExport(scanner);
+                    break;
+                case "11":
+                    handleHistoryImport(scanner);
+                    break;
                 case "0":
                     inStatsMenu = false;
                     break;
@@ -904,6 +1100,90 @@ public class MusicPlayerApp {
         }
     }
     
+    private void handleHistoryQuery(Scanner scanner) {
+        System.out.println("\n[QUERY] === Query History ===");
+        System.out.println("1. Plays by artist and weekday   2. Album completion rates");
+        System.out.println("3. Plays per folder              4. Custom query");
+        System.out.print("Enter choice: ");
+        
+        HistoryQuery query = new HistoryQuery();
+        switch (scanner.nextLine().trim()) {
+            case "1":
+                query.groupBy(HistoryQuery.Dimension.ARTIST, HistoryQuery.Dimension.WEEKDAY);
+                break;
+            case "2":
+                query.groupBy(HistoryQuery.Dimension.ALBUM).measure(HistoryQuery.Measure.COMPLETION);
+                break;
+            case "3":
+                query.groupBy(HistoryQuery.Dimension.FOLDER);
+                break;
+            case "4":
+                try {
+                    System.out.print("Group by (song, artist, album, folder, weekday, hour, month, year; up to 2, comma separated): ");
+                    for (String name : scanner.nextLine().trim().split("\\s*,\\s*")) {
+                        if (!name.isEmpty()) query.groupBy(HistoryQuery.Dimension.valueOf(name.toUpperCase()));
+                    }
+                    System.out.print("Measure (listens, plays, skips, minutes, completion; default plays): ");
+                    String measure = scanner.nextLine().trim();
+                    if (!measure.isEmpty()) query.measure(HistoryQuery.Measure.valueOf(measure.toUpperCase()));
+                    System.out.print("Only this artist (blank for all): ");
+                    String artist = scanner.nextLine().trim();
+                    if (!artist.isEmpty()) query.whereArtist(artist);
+                    System.out.print("Only the last how many days (blank for all): ");
+                    String days = scanner.nextLine().trim();
+                    if (!days.isEmpty()) {
+                        query.between(LocalDate.now().minusDays(Integer.parseInt(days) - 1), null);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("X Invalid query: " + e.getMessage());
+                    return;
+                }
+                break;
+            default:
+                System.out.println("Invalid option.");
+                return;
+        }
+        statistics.displayQueryResult(statistics.query(query), 25);
+    }
+    
+    private void handleHistoryExport(Scanner scanner) {
+        System.out.println("\n[STATS] === Export History ===");
+        System.out.println("1. Every play as CSV   2. Every play, compact columnar file   3. Song totals as CSV");
+        System.out.print("Enter choice: ");
+        String choice = scanner.nextLine().trim();
+        if (!choice.equals("1") && !choice.equals("2") && !choice.equals("3")) {
+            System.out.println("Invalid option.");
+            return;
+        }
+        
+        String suggested = choice.equals("2") ? "listening-history.mphx"
+                : choice.equals("3") ? "song-totals.csv" : "listening-history.csv";
+        System.out.print("Export to file (default " + suggested + "): ");
+        String path = scanner.nextLine().trim();
+        File file = new File(path.isEmpty() ? suggested : path);
+        try {
+            if (choice.equals("3")) {
+                statistics.exportSongTotals(file);
+            } else {
+                statistics.exportHistory(file, choice.equals("2"));
+            }
+        } catch (IOException e) {
+            System.out.println("X Export failed: " + e.getMessage());
+        }
+    }
+    
+    private void handleHistoryImport(Scanner scanner) {
+        System.out.print("\nHistory files exported on other machines (CSV or columnar, comma separated): ");
+        for (String path : scanner.nextLine().trim().split("\\s*,\\s*")) {
+            if (path.isEmpty()) continue;
+            try {
+                statistics.importHistory(new File(path));
+            } catch (IOException e) {
+                System.out.println("X Could not import " + path + ": " + e.getMessage());
+            }
+        }
+    }
+    
     private void handleSmartPlaylistMenu(Scanner scanner) {
         boolean inSmartMenu = true;
         
@@ -971,7 +1251,7 @@ public class MusicPlayerApp {
                     musicPlayer.loadPlaylist(smartPlaylist);
                     System.out.println("✅ Smart playlist loaded and ready to play!");
                 }
-                
+            
             } catch (IllegalArgumentException e) {
                 System.out.println("[ERROR] Invalid playlist type. Use 'Available Types' to see options.");
             }
@@ -1028,10 +1308,11 @@ public class MusicPlayerApp {
         System.out.println("[EQ] AUDIO EFFECTS:");
         System.out.println("effects - Access equalizer, bass boost, reverb, volume");
         System.out.println("vol+/vol- - Quick volume adjustment");
+        System.out.println("mute - Toggle mute");
         System.out.println();
         System.out.println("🎨 VISUALIZER:");
         System.out.println("viz - Toggle and configure music visualizer");
-        System.out.println("Modes: BARS, WAVE, SPECTRUM, PULSE, MATRIX");
+        System.out.println("Modes: BARS, WAVE, SPECTRUM, PULSE, MATRIX, SPECTROGRAM");
         System.out.println();
         System.out.println("[TIMER] SLEEP TIMER:");
         System.out.println("timer - Set automatic stop/pause/fade-out");
@@ -1050,7 +1331,215 @@ public class MusicPlayerApp {
         System.out.println("Type any menu number or command name to access features!");
     }
     
+    /**
+     * Headless mode: renders files/folders through the playback pipeline as fast
+     * as possible and reports the realtime factor and per-stage cost. The chain is
+     * the one playback uses; effects are bypassed unless --effects turns them on.
+     * Usage: --render <output.wav|null> [--rate <hz>] [--effects] [--ir <file>] <file-or-folder>...
+     */
+    private static int runOfflineRender(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: --render <output.wav|null> [--rate <hz>] [--effects] [--ir <file>] <file-or-folder>...");
+            return 1;
+        }
+        
+        String target = args[1];
+        AudioOutput output = target.equals("null") || target.equals("/dev/null")
+                ? new NullAudioOutput()
+                : new WavFileOutput(new File(target));
+        
+        int sampleRate = 0;
+        boolean effectsOn = false;
+        File impulseFile = null;
+        int first = 2;
+        while (first < args.length - 1 && args[first].startsWith("--")) {
+            if (args[first].equals("--effects")) {
+                effectsOn = true;
+                first++;
+            } else if (args[first].equals("--rate") && first + 2 < args.length) {
+                try {
+                    sampleRate = Integer.parseInt(args[first + 1]);
+                } catch (NumberFormatException e) {
+                    System.out.println("X Invalid sample rate: " + args[first + 1]);
+                    return 1;
+                }
+                first += 2;
+            } else if (args[first].equals("--ir") && first + 2 < args.length) {
+                impulseFile = new File(args[first + 1]);
+                first += 2;
+            } else {
+                System.out.println("X Unknown option: " + args[first]);
+                return 1;
+            }
+        }
+        
+        MusicLibrary library = new MusicLibrary();
+        for (int i = first; i < args.length; i++) {
+            File source = new File(args[i]);
+            if (source.isDirectory()) {
+                library.loadMusicFromFolder(source.getAbsolutePath());
+            } else if (source.isFile()) {
+                library.addSong(new Song(source.getName(), "Unknown Artist", "Unknown Album", 0, source.getAbsolutePath()));
+            } else {
+                System.out.println("X Not found: " + args[i]);
+            }
+        }
+        
+        if (library.size() == 0) {
+            System.out.println("X Nothing to render.");
+            return 1;
+        }
+        
+        // The processors playback runs, in its order; only the visualizer tap is left out
+        AudioEffects effects = new AudioEffects();
+        LoudnessNormalizer normalizer = new LoudnessNormalizer();
+        if (effectsOn) {
+            enableEffects(effects);
+            normalizer.setEnabled(true);
+        }
+        if (impulseFile != null) {
+            try {
+                // Loaded from the file, so it is reloaded at the rate of the stream
+                effects.getConvolution().loadImpulseResponse(impulseFile);
+                effects.getConvolution().setEnabled(true);
+            } catch (IOException | UnsupportedAudioFileException e) {
+                System.out.println("X Could not load impulse response: " + e.getMessage());
+                return 1;
+            }
+        }
+        PlaybackPipeline pipeline = new PlaybackPipeline();
+        for (AudioProcessor processor : effects.getProcessors()) {
+            pipeline.addProcessor(processor);
+        }
+        pipeline.addProcessor(normalizer);
+        pipeline.addProcessor(effects.getGainStage());
+        
+        try {
+            OfflineRenderer renderer = new OfflineRenderer(pipeline, output);
+            if (sampleRate > 0) {
+                renderer.setOutputFormat(sampleRate, 2);
+            }
+            RenderReport report = renderer.render(library.getAllSongs());
+            report.display();
+            return report.getTracksRendered() > 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.out.println("X Render failed: " + e.getMessage());
+            return 1;
+        }
+    }
+    
+    /**
+     * Turns on the equalizer, bass boost, reverb and surround at typical settings,
+     * configuring the processors directly so benchmark output stays clean.
+     */
+    private static void enableEffects(AudioEffects effects) {
+        effects.getEqualizer().setGains(new float[]{5, 3, -2, -1, 2, 4, 3, 2, 0, 0});
+        effects.getEqualizer().setEnabled(true);
+        effects.getBassBoost().setLevel(6);
+        effects.getBassBoost().setEnabled(true);
+        effects.getReverb().setLevel(4);
+        effects.getReverb().setEnabled(true);
+        effects.getSurround().setLevel(5);
+        effects.getSurround().setEnabled(true);
+    }
+    
+    /**
+     * Benchmarks every effect processor at 48 kHz stereo with all effects on.
+     * Usage: --bench-dsp [seconds]
+     */
+    private static int runDspBenchmark(String[] args) {
+        double seconds = 30.0;
+        if (args.length > 1) {
+            try {
+                seconds = Double.parseDouble(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("X Invalid duration: " + args[1]);
+                return 1;
+            }
+        }
+        
+        AudioEffects effects = new AudioEffects();
+        enableEffects(effects);
+        effects.getConvolution().setImpulseResponse(syntheticImpulseResponse(DspBenchmark.SAMPLE_RATE, 3.0));
+        effects.getConvolution().setEnabled(true);
+        
+        // Measure with the kernels playback would settle on, not the warm-up fallback
+        DspKernels active = DspKernels.awaitSelection();
+        DspBenchmark benchmark = new DspBenchmark(PlaybackEngine.BLOCK_FRAMES);
+        benchmark.display(benchmark.run(effects.getProcessors(), seconds), seconds);
+        
+        DspKernels scalar = DspKernels.scalar();
+        long nanosPerKernel = 200_000_000L;
+        double[] scalarRates = benchmark.measureKernels(scalar, nanosPerKernel);
+        double[] activeRates = active != scalar ? benchmark.measureKernels(active, nanosPerKernel) : scalarRates;
+        benchmark.displayKernels(scalar, scalarRates, active, activeRates);
+        return 0;
+    }
+    
+    /**
+     * Benchmarks maintained top-k rankings against sorting on every query.
+     * Usage: --bench-stats [songs]
+     */
+    private static int runStatsBenchmark(String[] args) {
+        int songs = 1_000_000;
+        if (args.length > 1) {
+            try {
+                songs = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("X Invalid song count: " + args[1]);
+                return 1;
+            }
+        }
+        new RankingBenchmark(songs, songs * 2).run(5);
+        return 0;
+    }
+    
+    /**
+     * Usage: --bench-query [events]
+     */
+    private static int runQueryBenchmark(String[] args) {
+        int events = 20_000_000;
+        if (args.length > 1) {
+            try {
+                events = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("X Invalid event count: " + args[1]);
+                return 1;
+            }
+        }
+        new QueryBenchmark(events).run(5);
+        return 0;
+    }
+    
+    /**
+     * Exponentially decaying stereo noise, a stand-in for a measured hall IR.
+     */
+    private static ImpulseResponse syntheticImpulseResponse(int sampleRate, double seconds) {
+        int length = (int) (sampleRate * seconds);
+        float[][] samples = new float[2][length];
+        Random random = new Random(42);
+        for (int ch = 0; ch < 2; ch++) {
+            for (int i = 0; i < length; i++) {
+                samples[ch][i] = (float) (random.nextGaussian() * Math.exp(-6.9 * i / length));
+            }
+        }
+        return ImpulseResponse.fromSamples("synthetic-" + seconds + "s", sampleRate,
+                                           ConvolutionReverb.PARTITION_SIZE, samples);
+    }
+    
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--render")) {
+            System.exit(runOfflineRender(args));
+        }
+        if (args.length > 0 && args[0].equals("--bench-dsp")) {
+            System.exit(runDspBenchmark(args));
+        }
+        if (args.length > 0 && args[0].equals("--bench-stats")) {
+            System.exit(runStatsBenchmark(args));
+        }
+        if (args.length > 0 && args[0].equals("--bench-query")) {
+            System.exit(runQueryBenchmark(args));
+        }
         new MusicPlayerApp().start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.musicplayer.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streaming decoder that turns an audio file into blocks of float PCM
+ */
+public interface AudioDecoder extends Closeable {
+    
+    int getSampleRate();
+    
+    int getChannels();
+    
+    /**
+     * @return total length in frames, or -1 when the container does not say
+     */
+    long getFrameLength();
+    
+    /**
+     * Fills the block up to its capacity.
+     *
+     * @return number of frames decoded, or -1 at end of stream
+     */
+    int read(PcmBlock block) throws IOException;
+    
+    @Override
+    void close() throws IOException;
+}
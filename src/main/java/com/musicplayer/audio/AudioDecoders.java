@@ -0,0 +1,32 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Picks the right decoder for a file based on its extension
+ */
+public final class AudioDecoders {
+    
+    private AudioDecoders() {
+    }
+    
+    public static boolean canDecode(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".mp3") || name.endsWith(".wav")
+                || name.endsWith(".aiff") || name.endsWith(".au");
+    }
+    
+    public static AudioDecoder open(File file) throws IOException, UnsupportedAudioFileException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".mp3")) {
+            return new Mp3AudioDecoder(file);
+        }
+        if (canDecode(name)) {
+            return new SampledAudioDecoder(file);
+        }
+        throw new UnsupportedAudioFileException("No decoder for " + file.getName());
+    }
+}
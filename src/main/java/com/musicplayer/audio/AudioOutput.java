@@ -0,0 +1,58 @@
+package com.musicplayer.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Final sink of the playback pipeline: a sound device, a file or nothing at all
+ */
+public interface AudioOutput extends Closeable {
+    
+    void open(int sampleRate, int channels) throws LineUnavailableException, IOException;
+    
+    void write(PcmBlock block) throws IOException;
+    
+    /**
+     * Blocks until everything written so far has been played or persisted.
+     */
+    void drain() throws IOException;
+    
+    /**
+     * Stops consuming audio without discarding what is queued.
+     */
+    default void pause() {
+    }
+    
+    default void resume() {
+    }
+    
+    /**
+     * Discards queued audio, e.g. on stop or seek.
+     */
+    default void flush() {
+    }
+    
+    @Override
+    void close() throws IOException;
+    
+    /**
+     * @return measured delay between write() and the sound leaving the device, in milliseconds
+     */
+    double getLatencyMillis();
+    
+    /**
+     * @return number of times the device ran dry while playing
+     */
+    long getUnderrunCount();
+    
+    boolean isOpen();
+    
+    /**
+     * @return true when write() paces itself to the audio clock
+     */
+    boolean isRealtime();
+    
+    String getName();
+}
@@ -0,0 +1,42 @@
+package com.musicplayer.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Discovery of the mixers that can host a SourceDataLineOutput
+ */
+public final class AudioOutputs {
+    
+    private AudioOutputs() {
+    }
+    
+    public static List<String> listMixers() {
+        List<String> names = new ArrayList<>();
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            if (supportsPlayback(info)) {
+                names.add(info.getName());
+            }
+        }
+        return names;
+    }
+    
+    public static Mixer.Info findMixer(String name) {
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            if (info.getName().equals(name) && supportsPlayback(info)) {
+                return info;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean supportsPlayback(Mixer.Info info) {
+        Mixer mixer = AudioSystem.getMixer(info);
+        return mixer.isLineSupported(new Line.Info(SourceDataLine.class));
+    }
+}
@@ -0,0 +1,32 @@
+package com.musicplayer.audio;
+
+/**
+ * A DSP stage in the playback pipeline
+ * Implementations process blocks in place and must not allocate in process()
+ */
+public interface AudioProcessor {
+    
+    /**
+     * Called before the first block and whenever the stream format changes.
+     */
+    void prepare(int sampleRate, int channels);
+    
+    void process(PcmBlock block);
+    
+    /**
+     * Clears any internal state (filter history, delay lines) between tracks.
+     */
+    default void reset() {
+    }
+    
+    /**
+     * CPU time spent on helper threads owned by this stage, for benchmarks.
+     */
+    default long getBackgroundCpuNanos() {
+        return 0;
+    }
+    
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
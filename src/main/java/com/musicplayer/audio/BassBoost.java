@@ -0,0 +1,101 @@
+package com.musicplayer.audio;
+
+/**
+ * Bass boost: low shelf at 100 Hz with a soft-saturated boost
+ * Only what the shelf adds to the signal goes through the saturator, so the boost
+ * rounds off on loud bass while mids and highs pass untouched. The saturator is
+ * unity gain for quiet input, leaving the exact shelf response, and bounds the
+ * added bass by 1/drive.
+ */
+public class BassBoost implements AudioProcessor {
+    private static final double SHELF_FREQUENCY = 100.0;
+    private static final double DB_PER_LEVEL = 1.2;
+    
+    private volatile float[] coefficients;
+    private volatile float drive;
+    private volatile boolean enabled;
+    private volatile int level;
+    private int sampleRate;
+    private float[][] state;
+    // Input of the block, to take the shelf's added component from; allocated in
+    // prepare() for a pipeline block, larger blocks are taken a piece at a time
+    private float[] dry;
+    
+    public BassBoost() {
+        this.sampleRate = 44100;
+        this.state = new float[2][2];
+        setLevel(0);
+    }
+    
+    @Override
+    public synchronized void prepare(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        if (state.length < channels) {
+            state = new float[channels][2];
+        }
+        if (dry == null) {
+            dry = new float[PlaybackEngine.BLOCK_FRAMES];
+        }
+        setLevel(level);
+    }
+    
+    @Override
+    public void reset() {
+        for (float[] channelState : state) {
+            channelState[0] = 0.0f;
+            channelState[1] = 0.0f;
+        }
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        if (!enabled || level == 0 || dry == null) return;
+        
+        float[] c = coefficients;
+        float k = drive;
+        float makeup = 1.0f / k;
+        float[] input = dry;
+        int frames = block.getFrames();
+        
+        for (int ch = 0; ch < block.getChannels(); ch++) {
+            float[] samples = block.getChannel(ch);
+            for (int start = 0; start < frames; start += input.length) {
+                int count = Math.min(input.length, frames - start);
+                System.arraycopy(samples, start, input, 0, count);
+                BiquadDesign.process(c, 0, state[ch], 0, samples, start, count);
+                for (int i = 0; i < count; i++) {
+                    float boost = samples[start + i] - input[i];
+                    samples[start + i] = input[i] + saturate(boost * k) * makeup;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Rational tanh approximation; smooth, odd and cheap.
+     */
+    private static float saturate(float x) {
+        if (x > 3.0f) return 1.0f;
+        if (x < -3.0f) return -1.0f;
+        float x2 = x * x;
+        return x * (27.0f + x2) / (27.0f + 9.0f * x2);
+    }
+    
+    public synchronized void setLevel(int level) {
+        this.level = Math.max(0, Math.min(10, level));
+        float[] designed = new float[BiquadDesign.STRIDE];
+        BiquadDesign.lowShelf(sampleRate, SHELF_FREQUENCY, this.level * DB_PER_LEVEL, designed, 0);
+        coefficients = designed;
+        // Drive grows with the boost so the saturator engages sooner on bigger boosts
+        drive = 1.0f + this.level * 0.1f;
+    }
+    
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    public int getLevel() { return level; }
+    
+    @Override
+    public String getName() {
+        return "bass-boost";
+    }
+}
@@ -0,0 +1,123 @@
+package com.musicplayer.audio;
+
+/**
+ * RBJ cookbook biquad designs
+ * Each method writes normalised coefficients b0, b1, b2, a1, a2 into out[offset..offset+4].
+ */
+public final class BiquadDesign {
+    public static final int STRIDE = 5;
+    
+    private BiquadDesign() {
+    }
+    
+    public static void peaking(double sampleRate, double frequency, double q, double gainDb, float[] out, int offset) {
+        double a = Math.pow(10.0, gainDb / 40.0);
+        double w0 = omega(sampleRate, frequency);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * q);
+        
+        double a0 = 1.0 + alpha / a;
+        store(out, offset, a0,
+                1.0 + alpha * a, -2.0 * cos, 1.0 - alpha * a,
+                -2.0 * cos, 1.0 - alpha / a);
+    }
+    
+    public static void lowShelf(double sampleRate, double frequency, double gainDb, float[] out, int offset) {
+        double a = Math.pow(10.0, gainDb / 40.0);
+        double w0 = omega(sampleRate, frequency);
+        double cos = Math.cos(w0);
+        double beta = 2.0 * Math.sqrt(a) * Math.sin(w0) / 2.0 * Math.sqrt(2.0);
+        
+        double a0 = (a + 1) + (a - 1) * cos + beta;
+        store(out, offset, a0,
+                a * ((a + 1) - (a - 1) * cos + beta),
+                2.0 * a * ((a - 1) - (a + 1) * cos),
+                a * ((a + 1) - (a - 1) * cos - beta),
+                -2.0 * ((a - 1) + (a + 1) * cos),
+                (a + 1) + (a - 1) * cos - beta);
+    }
+    
+    public static void highShelf(double sampleRate, double frequency, double gainDb, float[] out, int offset) {
+        double a = Math.pow(10.0, gainDb / 40.0);
+        double w0 = omega(sampleRate, frequency);
+        double cos = Math.cos(w0);
+        double beta = 2.0 * Math.sqrt(a) * Math.sin(w0) / 2.0 * Math.sqrt(2.0);
+        
+        double a0 = (a + 1) - (a - 1) * cos + beta;
+        store(out, offset, a0,
+                a * ((a + 1) + (a - 1) * cos + beta),
+                -2.0 * a * ((a - 1) + (a + 1) * cos),
+                a * ((a + 1) + (a - 1) * cos - beta),
+                2.0 * ((a - 1) - (a + 1) * cos),
+                (a + 1) - (a - 1) * cos - beta);
+    }
+    
+    public static void lowPass(double sampleRate, double frequency, double q, float[] out, int offset) {
+        double w0 = omega(sampleRate, frequency);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * q);
+        
+        store(out, offset, 1.0 + alpha,
+                (1.0 - cos) / 2.0, 1.0 - cos, (1.0 - cos) / 2.0,
+                -2.0 * cos, 1.0 - alpha);
+    }
+    
+    public static void highPass(double sampleRate, double frequency, double q, float[] out, int offset) {
+        double w0 = omega(sampleRate, frequency);
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * q);
+        
+        store(out, offset, 1.0 + alpha,
+                (1.0 + cos) / 2.0, -(1.0 + cos), (1.0 + cos) / 2.0,
+                -2.0 * cos, 1.0 - alpha);
+    }
+    
+    /**
+     * Runs one biquad (transposed direct form II) over a buffer in place.
+     * state holds z1, z2 at stateOffset and is updated.
+     */
+    public static void process(float[] coefficients, int offset, float[] state, int stateOffset,
+                               float[] samples, int frames) {
+        process(coefficients, offset, state, stateOffset, samples, 0, frames);
+    }
+    
+    /**
+     * Same, over samples[start, start + frames).
+     */
+    public static void process(float[] coefficients, int offset, float[] state, int stateOffset,
+                               float[] samples, int start, int frames) {
+        float b0 = coefficients[offset];
+        float b1 = coefficients[offset + 1];
+        float b2 = coefficients[offset + 2];
+        float a1 = coefficients[offset + 3];
+        float a2 = coefficients[offset + 4];
+        float z1 = state[stateOffset];
+        float z2 = state[stateOffset + 1];
+        
+        for (int i = start, end = start + frames; i < end; i++) {
+            float x = samples[i];
+            float y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            samples[i] = y;
+        }
+        
+        // Flush denormals so a silent tail doesn't slow the filter down
+        state[stateOffset] = Math.abs(z1) < 1e-20f ? 0.0f : z1;
+        state[stateOffset + 1] = Math.abs(z2) < 1e-20f ? 0.0f : z2;
+    }
+    
+    private static double omega(double sampleRate, double frequency) {
+        // Keep the centre below Nyquist for low sample rates (16 kHz band at 22.05 kHz)
+        return 2.0 * Math.PI * Math.min(frequency, sampleRate * 0.45) / sampleRate;
+    }
+    
+    private static void store(float[] out, int offset, double a0,
+                              double b0, double b1, double b2, double a1, double a2) {
+        out[offset] = (float) (b0 / a0);
+        out[offset + 1] = (float) (b1 / a0);
+        out[offset + 2] = (float) (b2 / a0);
+        out[offset + 3] = (float) (a1 / a0);
+        out[offset + 4] = (float) (a2 / a0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.musicplayer.audio;
+
+import java.io.IOException;
+
+/**
+ * Decoder wrapper that delivers a fixed sample rate and channel count
+ * Sits between a track's native decoder and the pipeline so one output line
+ * can play a mixed-format playlist without being reopened. Bit depth is already
+ * normalised to float by the decoders.
+ */
+public class ConvertingDecoder implements AudioDecoder {
+    private final AudioDecoder source;
+    private final int targetRate;
+    private final int targetChannels;
+    private final PcmBlock sourceBlock;
+    private final float[][] mapped;
+    private final PolyphaseResampler resampler;
+    private final float[][] outChannels;
+    private boolean sourceDrained;
+    
+    public ConvertingDecoder(AudioDecoder source, int targetRate, int targetChannels, int blockFrames) {
+        this.source = source;
+        this.targetRate = targetRate;
+        this.targetChannels = targetChannels;
+        this.sourceBlock = new PcmBlock(source.getChannels(), blockFrames);
+        this.mapped = new float[targetChannels][blockFrames];
+        this.outChannels = new float[targetChannels][];
+        this.resampler = source.getSampleRate() != targetRate
+                ? new PolyphaseResampler(source.getSampleRate(), targetRate, targetChannels)
+                : null;
+    }
+    
+    /**
+     * @return the source itself when no conversion is needed, otherwise a converting wrapper
+     */
+    public static AudioDecoder wrap(AudioDecoder source, int targetRate, int targetChannels, int blockFrames) {
+        if (source.getSampleRate() == targetRate && source.getChannels() == targetChannels) {
+            return source;
+        }
+        return new ConvertingDecoder(source, targetRate, targetChannels, blockFrames);
+    }
+    
+    @Override
+    public int getSampleRate() {
+        return targetRate;
+    }
+    
+    @Override
+    public int getChannels() {
+        return targetChannels;
+    }
+    
+    @Override
+    public long getFrameLength() {
+        long length = source.getFrameLength();
+        return length < 0 ? -1 : length * targetRate / source.getSampleRate();
+    }
+    
+    @Override
+    public int read(PcmBlock block) throws IOException {
+        block.configure(targetChannels, targetRate);
+        
+        if (resampler == null) {
+            int frames = source.read(sourceBlock);
+            if (frames < 0) {
+                block.setFrames(0);
+                return -1;
+            }
+            mapChannels(sourceBlock, block, frames);
+            block.setFrames(frames);
+            return frames;
+        }
+        
+        int produced = 0;
+        int capacity = block.getCapacity();
+        while (produced < capacity) {
+            produced += readResampled(block, produced, capacity - produced);
+            if (produced >= capacity) break;
+            
+            if (sourceDrained) break;
+            
+            int frames = source.read(sourceBlock);
+            if (frames < 0) {
+                sourceDrained = true;
+                resampler.flush();
+            } else {
+                mapChannels(sourceBlock, mapped, frames);
+                resampler.write(mapped, 0, frames);
+            }
+        }
+        
+        block.setFrames(produced);
+        return produced == 0 ? -1 : produced;
+    }
+    
+    private int readResampled(PcmBlock block, int offset, int maxFrames) {
+        return resampler.read(blockChannels(block), offset, maxFrames);
+    }
+    
+    private float[][] blockChannels(PcmBlock block) {
+        for (int ch = 0; ch < targetChannels; ch++) {
+            outChannels[ch] = block.getChannel(ch);
+        }
+        return outChannels;
+    }
+    
+    private void mapChannels(PcmBlock from, PcmBlock to, int frames) {
+        mapChannels(from, blockChannels(to), frames);
+    }
+    
+    /**
+     * Mono is duplicated, everything else folds channel i onto output i mod n and averages.
+     */
+    private void mapChannels(PcmBlock from, float[][] to, int frames) {
+        int inChannels = from.getChannels();
+        
+        if (inChannels == targetChannels) {
+            for (int ch = 0; ch < targetChannels; ch++) {
+                System.arraycopy(from.getChannel(ch), 0, to[ch], 0, frames);
+            }
+            return;
+        }
+        
+        if (inChannels == 1) {
+            float[] mono = from.getChannel(0);
+            for (int ch = 0; ch < targetChannels; ch++) {
+                System.arraycopy(mono, 0, to[ch], 0, frames);
+            }
+            return;
+        }
+        
+        DspKernels kernels = DspKernels.get();
+        for (int out = 0; out < targetChannels; out++) {
+            float[] dst = to[out];
+            java.util.Arrays.fill(dst, 0, frames, 0.0f);
+            int folded = 0;
+            for (int in = out; in < inChannels; in += targetChannels) {
+                kernels.mix(dst, 0, from.getChannel(in), 0, frames, 1.0f);
+                folded++;
+            }
+            if (folded == 0) {
+                // More outputs than inputs: reuse the nearest input channel
+                System.arraycopy(from.getChannel(out % inChannels), 0, dst, 0, frames);
+            } else if (folded > 1) {
+                kernels.scale(dst, 0, frames, 1.0f / folded);
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
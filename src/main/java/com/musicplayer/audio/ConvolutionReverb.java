@@ -0,0 +1,362 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Convolution reverb using uniformly partitioned overlap-save FFT convolution
+ * The input is cut into PARTITION_SIZE blocks whose spectra go into a frequency-
+ * domain delay line. The newest partition is multiplied in on the playback thread;
+ * the sum over all older partitions (the IR tail) for the next block is computed
+ * by a background worker while the current block plays. Latency is one partition.
+ */
+public class ConvolutionReverb implements AudioProcessor {
+    public static final int PARTITION_SIZE = 512;
+    // Short IRs are cheaper to convolve inline than to hand off to a thread
+    private static final int INLINE_PARTITIONS = 8;
+    
+    private volatile File impulseFile;
+    private volatile Convolver pending;
+    private volatile boolean enabled;
+    private volatile float mix;
+    private int sampleRate;
+    private int channels;
+    
+    // Playback thread only
+    private Convolver active;
+    private boolean wasEnabled;
+    
+    public ConvolutionReverb() {
+        this.sampleRate = 44100;
+        this.channels = 2;
+        this.mix = 0.3f;
+    }
+    
+    @Override
+    public synchronized void prepare(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        
+        Convolver current = pending;
+        if (current == null || (current.sampleRate == sampleRate && current.channels == channels)) {
+            return;
+        }
+        File file = impulseFile;
+        try {
+            ImpulseResponse response = file != null
+                    ? ImpulseResponse.load(file, sampleRate, PARTITION_SIZE)
+                    : null;
+            pending = response != null ? new Convolver(response, sampleRate, channels) : null;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            System.out.println("[REVERB] X Could not reload impulse response: " + e.getMessage());
+            pending = null;
+        }
+    }
+    
+    /**
+     * Loads an IR file for the current stream format. Safe to call while audio
+     * is playing: the new convolver is swapped in at the next block.
+     */
+    public synchronized ImpulseResponse loadImpulseResponse(File file)
+            throws IOException, UnsupportedAudioFileException {
+        ImpulseResponse response = ImpulseResponse.load(file, sampleRate, PARTITION_SIZE);
+        impulseFile = file;
+        pending = new Convolver(response, sampleRate, channels);
+        return response;
+    }
+    
+    /**
+     * Uses an in-memory IR (already at the stream rate), bypassing the file cache.
+     */
+    public synchronized void setImpulseResponse(ImpulseResponse response) {
+        impulseFile = null;
+        pending = new Convolver(response, response.getSampleRate(), channels);
+    }
+    
+    public synchronized void clearImpulseResponse() {
+        impulseFile = null;
+        pending = null;
+    }
+    
+    @Override
+    public void reset() {
+        if (active != null) {
+            active.clear();
+        }
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        Convolver current = pending;
+        if (current != active) {
+            if (active != null) {
+                active.retire();
+            }
+            active = current;
+            if (current != null) {
+                current.activate();
+            }
+        }
+        
+        boolean on = enabled && current != null;
+        if (on && !wasEnabled) {
+            current.clear();
+        }
+        wasEnabled = on;
+        if (on) {
+            current.process(block, mix);
+        }
+    }
+    
+    @Override
+    public long getBackgroundCpuNanos() {
+        Convolver current = pending;
+        return current != null ? current.workerCpuNanos : 0;
+    }
+    
+    public void setMix(float mix) { this.mix = Math.max(0.0f, Math.min(1.0f, mix)); }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    public float getMix() { return mix; }
+    public boolean hasImpulseResponse() { return pending != null; }
+    
+    public ImpulseResponse getImpulseResponse() {
+        Convolver current = pending;
+        return current != null ? current.response : null;
+    }
+    
+    @Override
+    public String getName() {
+        return "convolution";
+    }
+    
+    /**
+     * All convolution state for one IR and channel count. Buffers are allocated
+     * here, never in process().
+     */
+    private static final class Convolver implements Runnable {
+        final ImpulseResponse response;
+        final int sampleRate;
+        final int channels;
+        private final int partitionSize;
+        private final int partitions;
+        private final int bins;
+        private final RealFft fft;
+        
+        private final float[][] inputFifo;   // [channel][partitionSize]
+        private final float[][] outputFifo;
+        private final float[][] window;      // [channel][2 * partitionSize]
+        private final float[][][] delayRe;   // [channel][partition][bin]
+        private final float[][][] delayIm;
+        private final float[][] accRe;       // [channel][bin]
+        private final float[][] accIm;
+        private final float[][] tailRe;
+        private final float[][] tailIm;
+        private final float[] timeBuffer;
+        private int fifoPos;
+        private int head;
+        
+        // Hand-off with the tail worker: sequence numbers plus park/unpark, which
+        // (unlike a Semaphore's wait queue) allocates nothing per block
+        private volatile int tailRequested;
+        private volatile int tailCompleted;
+        private Thread worker;
+        private int requestedSlot;
+        private volatile boolean retired;
+        volatile long workerCpuNanos;
+        
+        Convolver(ImpulseResponse response, int sampleRate, int channels) {
+            this.response = response;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.partitionSize = response.getPartitionSize();
+            this.partitions = response.getPartitions();
+            this.fft = new RealFft(partitionSize * 2);
+            this.bins = fft.getBinCount();
+            
+            this.inputFifo = new float[channels][partitionSize];
+            this.outputFifo = new float[channels][partitionSize];
+            this.window = new float[channels][partitionSize * 2];
+            this.delayRe = new float[channels][partitions][bins];
+            this.delayIm = new float[channels][partitions][bins];
+            this.accRe = new float[channels][bins];
+            this.accIm = new float[channels][bins];
+            this.tailRe = new float[channels][bins];
+            this.tailIm = new float[channels][bins];
+            this.timeBuffer = new float[partitionSize * 2];
+        }
+        
+        /**
+         * Starts the tail worker once this convolver is swapped in, so one that is
+         * replaced before it ever plays leaves no thread behind.
+         */
+        void activate() {
+            if (partitions > INLINE_PARTITIONS && worker == null) {
+                worker = new Thread(this, "ConvolutionTail");
+                worker.setDaemon(true);
+                worker.setPriority(Thread.MAX_PRIORITY - 1);
+                worker.start();
+            }
+        }
+        
+        void process(PcmBlock block, float mix) {
+            int frames = block.getFrames();
+            int blockChannels = Math.min(block.getChannels(), channels);
+            float dry = 1.0f - 0.5f * mix;
+            DspKernels kernels = DspKernels.get();
+            int done = 0;
+            
+            while (done < frames) {
+                int count = Math.min(partitionSize - fifoPos, frames - done);
+                for (int ch = 0; ch < blockChannels; ch++) {
+                    float[] samples = block.getChannel(ch);
+                    System.arraycopy(samples, done, inputFifo[ch], fifoPos, count);
+                    kernels.scale(samples, done, count, dry);
+                    kernels.mix(samples, done, outputFifo[ch], fifoPos, count, mix);
+                }
+                fifoPos += count;
+                done += count;
+                
+                if (fifoPos == partitionSize) {
+                    processPartition();
+                    fifoPos = 0;
+                }
+            }
+        }
+        
+        private void processPartition() {
+            head = head + 1 == partitions ? 0 : head + 1;
+            for (int ch = 0; ch < channels; ch++) {
+                float[] w = window[ch];
+                System.arraycopy(w, partitionSize, w, 0, partitionSize);
+                System.arraycopy(inputFifo[ch], 0, w, partitionSize, partitionSize);
+                fft.forward(w, delayRe[ch][head], delayIm[ch][head]);
+            }
+            
+            if (worker != null) {
+                // Tail for this block was computed while the previous block played
+                awaitTail();
+                for (int ch = 0; ch < channels; ch++) {
+                    System.arraycopy(tailRe[ch], 0, accRe[ch], 0, bins);
+                    System.arraycopy(tailIm[ch], 0, accIm[ch], 0, bins);
+                }
+            } else {
+                for (int ch = 0; ch < channels; ch++) {
+                    Arrays.fill(accRe[ch], 0.0f);
+                    Arrays.fill(accIm[ch], 0.0f);
+                    for (int p = 1; p < partitions; p++) {
+                        multiplyAccumulate(ch, slot(head, p), p, accRe[ch], accIm[ch]);
+                    }
+                }
+            }
+            
+            for (int ch = 0; ch < channels; ch++) {
+                multiplyAccumulate(ch, head, 0, accRe[ch], accIm[ch]);
+            }
+            
+            if (worker != null) {
+                // The worker only reads slots up to partitions-1 behind head, so the
+                // slot overwritten by the next block is never one it is using
+                requestedSlot = head;
+                tailRequested = tailRequested + 1;
+                LockSupport.unpark(worker);
+            }
+            
+            for (int ch = 0; ch < channels; ch++) {
+                fft.inverse(accRe[ch], accIm[ch], timeBuffer);
+                System.arraycopy(timeBuffer, partitionSize, outputFifo[ch], 0, partitionSize);
+            }
+        }
+        
+        /**
+         * Tail worker: sums partitions 1..P-1 for the block after requestedSlot.
+         */
+        @Override
+        public void run() {
+            int done = tailCompleted;
+            while (!retired) {
+                int target = tailRequested;
+                if (target == done) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                long start = ThreadMetrics.cpuTimeNanos();
+                int next = requestedSlot + 1 == partitions ? 0 : requestedSlot + 1;
+                for (int ch = 0; ch < channels; ch++) {
+                    Arrays.fill(tailRe[ch], 0.0f);
+                    Arrays.fill(tailIm[ch], 0.0f);
+                    for (int p = 1; p < partitions; p++) {
+                        multiplyAccumulate(ch, slot(next, p), p, tailRe[ch], tailIm[ch]);
+                    }
+                }
+                workerCpuNanos += ThreadMetrics.cpuTimeNanos() - start;
+                done = target;
+                tailCompleted = target;
+            }
+        }
+        
+        /**
+         * Spins briefly, then naps; in realtime playback the tail is normally
+         * finished long before the next partition is due.
+         */
+        private void awaitTail() {
+            int spins = 0;
+            while (tailCompleted != tailRequested) {
+                if (++spins < 1000) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(20_000L);
+                }
+            }
+        }
+        
+        private int slot(int from, int age) {
+            int s = from - age;
+            return s < 0 ? s + partitions : s;
+        }
+        
+        private void multiplyAccumulate(int ch, int slot, int partition, float[] outRe, float[] outIm) {
+            float[] xr = delayRe[ch][slot];
+            float[] xi = delayIm[ch][slot];
+            float[] hr = response.getPartitionRe(ch)[partition];
+            float[] hi = response.getPartitionIm(ch)[partition];
+            for (int k = 0; k < bins; k++) {
+                outRe[k] += xr[k] * hr[k] - xi[k] * hi[k];
+                outIm[k] += xr[k] * hi[k] + xi[k] * hr[k];
+            }
+        }
+        
+        /**
+         * Clears history; waits for an in-flight tail so the worker never sees
+         * half-cleared buffers.
+         */
+        void clear() {
+            if (worker != null) {
+                awaitTail();
+            }
+            for (int ch = 0; ch < channels; ch++) {
+                Arrays.fill(inputFifo[ch], 0.0f);
+                Arrays.fill(outputFifo[ch], 0.0f);
+                Arrays.fill(window[ch], 0.0f);
+                Arrays.fill(tailRe[ch], 0.0f);
+                Arrays.fill(tailIm[ch], 0.0f);
+                for (int p = 0; p < partitions; p++) {
+                    Arrays.fill(delayRe[ch][p], 0.0f);
+                    Arrays.fill(delayIm[ch][p], 0.0f);
+                }
+            }
+            fifoPos = 0;
+        }
+        
+        void retire() {
+            retired = true;
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.musicplayer.audio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the CPU cost of each DSP processor in isolation at 48 kHz stereo
+ * Every processor runs over the same noise signal; the block is refilled between
+ * calls outside the measured region so feedback effects see steady input.
+ */
+public class DspBenchmark {
+    public static final int SAMPLE_RATE = 48000;
+    public static final int CHANNELS = 2;
+    private static final double WARMUP_SECONDS = 2.0;
+    
+    private final int blockFrames;
+    private final PcmBlock source;
+    private final PcmBlock block;
+    private final Map<String, Long> backgroundCpu;
+    
+    public DspBenchmark(int blockFrames) {
+        this.blockFrames = blockFrames;
+        this.source = new PcmBlock(CHANNELS, blockFrames);
+        this.block = new PcmBlock(CHANNELS, blockFrames);
+        this.backgroundCpu = new HashMap<>();
+        source.configure(CHANNELS, SAMPLE_RATE);
+        block.configure(CHANNELS, SAMPLE_RATE);
+        
+        Random random = new Random(1234);
+        for (int ch = 0; ch < CHANNELS; ch++) {
+            float[] samples = source.getChannel(ch);
+            for (int i = 0; i < blockFrames; i++) {
+                samples[i] = (float) (random.nextGaussian() * 0.2);
+            }
+        }
+        source.setFrames(blockFrames);
+    }
+    
+    /**
+     * Runs each processor for the given amount of audio and returns one
+     * StageStats per processor, in the order given.
+     */
+    public List<StageStats> run(List<AudioProcessor> processors, double audioSeconds) {
+        List<StageStats> results = new ArrayList<>();
+        long warmupBlocks = (long) (WARMUP_SECONDS * SAMPLE_RATE / blockFrames);
+        long blocks = Math.max(1, (long) (audioSeconds * SAMPLE_RATE / blockFrames));
+        
+        for (AudioProcessor processor : processors) {
+            processor.prepare(SAMPLE_RATE, CHANNELS);
+            processor.reset();
+            for (long i = 0; i < warmupBlocks; i++) {
+                refill();
+                processor.process(block);
+            }
+            
+            StageStats stats = new StageStats(processor.getName());
+            long background = processor.getBackgroundCpuNanos();
+            for (long i = 0; i < blocks; i++) {
+                refill();
+                stats.begin();
+                processor.process(block);
+                stats.end();
+            }
+            backgroundCpu.put(stats.getName(), processor.getBackgroundCpuNanos() - background);
+            results.add(stats);
+        }
+        return results;
+    }
+    
+    private void refill() {
+        for (int ch = 0; ch < CHANNELS; ch++) {
+            System.arraycopy(source.getChannel(ch), 0, block.getChannel(ch), 0, blockFrames);
+        }
+        block.setFrames(blockFrames);
+    }
+    
+    /**
+     * Measures each kernel in samples per nanosecond (higher is better) on one
+     * stereo block, repeating each for at least minNanos after a warm-up.
+     */
+    public double[] measureKernels(DspKernels kernels, long minNanos) {
+        String[] names = getKernelNames();
+        double[] samplesPerNano = new double[names.length];
+        int samples = blockFrames * CHANNELS;
+        byte[] pcm = new byte[samples * 2];
+        float[] gains = new float[blockFrames];
+        Arrays.fill(gains, 0.5f);
+        float[] coefficients = new float[10 * BiquadDesign.STRIDE];
+        for (int band = 0; band < 10; band++) {
+            BiquadDesign.peaking(SAMPLE_RATE, 60 * Math.pow(2, band), 1.1, 3, coefficients, band * BiquadDesign.STRIDE);
+        }
+        float[][] state = new float[CHANNELS][20];
+        
+        for (int k = 0; k < names.length; k++) {
+            for (int pass = 0; pass < 3; pass++) { // early passes warm up the JIT
+                refill();
+                long calls = 0;
+                long start = System.nanoTime();
+                long elapsed;
+                do {
+                    for (int repeat = 0; repeat < 64; repeat++) {
+                        runKernel(kernels, k, pcm, gains, coefficients, state);
+                    }
+                    calls += 64;
+                    elapsed = System.nanoTime() - start;
+                } while (elapsed < minNanos);
+                samplesPerNano[k] = (double) calls * samples / elapsed;
+            }
+        }
+        return samplesPerNano;
+    }
+    
+    public static String[] getKernelNames() {
+        return new String[]{"scale", "multiply", "mix", "interleavePcm16", "deinterleavePcm16", "biquadCascade x10"};
+    }
+    
+    private void runKernel(DspKernels kernels, int kernel, byte[] pcm, float[] gains,
+                           float[] coefficients, float[][] state) {
+        float[] left = block.getChannel(0);
+        float[] right = block.getChannel(1);
+        switch (kernel) {
+            case 0:
+                // Exact reciprocal pairs keep the data from drifting into denormals
+                kernels.scale(left, 0, blockFrames, 0.5f);
+                kernels.scale(left, 0, blockFrames, 2.0f);
+                break;
+            case 1:
+                kernels.multiply(left, 0, gains, blockFrames);
+                kernels.multiply(right, 0, gains, blockFrames);
+                kernels.scale(left, 0, blockFrames, 2.0f);
+                kernels.scale(right, 0, blockFrames, 2.0f);
+                break;
+            case 2:
+                kernels.mix(left, 0, right, 0, blockFrames, 0.001f);
+                kernels.mix(right, 0, left, 0, blockFrames, -0.001f);
+                break;
+            case 3:
+                kernels.interleavePcm16(block, 0, blockFrames, CHANNELS, pcm, 0);
+                break;
+            case 4:
+                kernels.deinterleavePcm16(pcm, 0, CHANNELS, blockFrames, block, 0);
+                break;
+            default:
+                kernels.biquadCascade(coefficients, 10, state, block);
+                break;
+        }
+    }
+    
+    public void displayKernels(DspKernels baseline, double[] baselineRates, DspKernels active, double[] activeRates) {
+        System.out.println("\n[BENCH] === Kernels (samples/ns, higher is better) ===");
+        System.out.println("Selected: " + active.getName() + " - " + DspKernels.getSelectionReason());
+        boolean compare = active != baseline;
+        String[] names = getKernelNames();
+        for (int k = 0; k < names.length; k++) {
+            if (compare) {
+                System.out.printf("  %-18s %-8s %7.3f | %-8s %7.3f  (%.2fx)\n", names[k],
+                                 baseline.getName(), baselineRates[k], "selected", activeRates[k],
+                                 activeRates[k] / baselineRates[k]);
+            } else {
+                System.out.printf("  %-18s %7.3f\n", names[k], baselineRates[k]);
+            }
+        }
+    }
+    
+    public void display(List<StageStats> results, double audioSeconds) {
+        System.out.println("\n[BENCH] === DSP Cost @ " + SAMPLE_RATE + " Hz stereo, "
+                         + blockFrames + "-frame blocks ===");
+        double totalMsPerSecond = 0;
+        for (StageStats stats : results) {
+            // Helper-thread time (e.g. convolution tail worker) counts toward the stage
+            long cpuNanos = stats.getCpuNanos() + backgroundCpu.getOrDefault(stats.getName(), 0L);
+            double msPerSecond = cpuNanos / 1e6 / audioSeconds;
+            double nsPerFrame = (double) cpuNanos / (stats.getInvocations() * blockFrames);
+            totalMsPerSecond += msPerSecond;
+            // 1000 ms of CPU per audio second would be one full core
+            System.out.printf("  %-14s %8.3f ms per audio second (%5.2f%% of a core) %7.1f ns/frame %8d bytes alloc\n",
+                             stats.getName(), msPerSecond, msPerSecond / 10.0, nsPerFrame, stats.getAllocatedBytes());
+        }
+        System.out.printf("  %-14s %8.3f ms per audio second (%5.2f%% of a core)\n",
+                         "total", totalMsPerSecond, totalMsPerSecond / 10.0);
+    }
+}
@@ -0,0 +1,342 @@
+package com.musicplayer.audio;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The per-sample inner loops of the pipeline, behind one swappable implementation
+ * This class is the portable scalar version. On Java 17+ a multi-release build
+ * also ships VectorDspKernels (jdk.incubator.vector); get() switches to it when
+ * the module is present and the vector kernels pass a self-test against these.
+ * Kernels are stateless, so one instance is shared by every thread.
+ */
+public class DspKernels {
+    private static final String VECTOR_CLASS = "com.musicplayer.audio.VectorDspKernels";
+    private static final DspKernels SCALAR = new DspKernels();
+    private static volatile String selectionReason = "not selected yet";
+    private static volatile DspKernels selected;
+    private static Thread warmupThread;
+    private static final int WARMUP_ROUNDS = 20000;
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+    
+    /** 1.5 * 2^23: float + this has round-to-nearest(float) in its low mantissa bits */
+    protected static final float ROUNDING_MAGIC = 12582912.0f;
+    
+    protected DspKernels() {
+    }
+    
+    /**
+     * @return the fastest verified implementation; -Dmusicplayer.dsp=scalar forces the fallback.
+     * Callers should fetch this per block rather than caching it: the scalar kernels
+     * are returned until the vector ones have been verified and warmed up.
+     */
+    public static DspKernels get() {
+        DspKernels kernels = selected;
+        if (kernels == null) {
+            synchronized (DspKernels.class) {
+                if (selected == null) {
+                    selected = startSelection();
+                }
+                kernels = selected;
+            }
+        }
+        return kernels;
+    }
+    
+    public static DspKernels scalar() {
+        return SCALAR;
+    }
+    
+    /**
+     * Blocks until any background warm-up has finished (for benchmarks).
+     */
+    public static DspKernels awaitSelection() {
+        get();
+        Thread thread;
+        synchronized (DspKernels.class) {
+            thread = warmupThread;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return selected;
+    }
+    
+    public static String getSelectionReason() {
+        get();
+        return selectionReason;
+    }
+    
+    private static DspKernels startSelection() {
+        if ("scalar".equalsIgnoreCase(System.getProperty("musicplayer.dsp"))) {
+            selectionReason = "forced by -Dmusicplayer.dsp=scalar";
+            return SCALAR;
+        }
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            selectionReason = "jdk.incubator.vector not loaded (run with --add-modules jdk.incubator.vector on Java 17+)";
+            return SCALAR;
+        }
+        
+        // Until C2 compiles them, Vector API kernels run interpreted, allocate on
+        // every operation and are orders of magnitude slower than scalar code, so
+        // they are only swapped in after a warm-up off the playback thread
+        selectionReason = "scalar while vector kernels warm up";
+        warmupThread = new Thread(DspKernels::selectVector, "DspKernelWarmup");
+        warmupThread.setDaemon(true);
+        warmupThread.setPriority(Thread.MIN_PRIORITY);
+        warmupThread.start();
+        return SCALAR;
+    }
+    
+    private static void selectVector() {
+        try {
+            DspKernels vector = (DspKernels) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+            String mismatch = verify(vector);
+            if (mismatch != null) {
+                selectionReason = "vector kernels failed self-test (" + mismatch + ")";
+                return;
+            }
+            warmUp(vector);
+            selected = vector;
+            selectionReason = "vector kernels verified and warmed up";
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not a multi-release jar, or an incubator API that changed under us
+            selectionReason = "vector kernels unavailable (" + e.getClass().getSimpleName() + ")";
+        }
+    }
+    
+    private static void warmUp(DspKernels kernels) {
+        int frames = 1024;
+        PcmBlock block = randomBlock(new Random(11), 2, frames);
+        byte[] pcm = new byte[frames * 4];
+        short[] shorts = new short[frames * 2];
+        long deadline = System.nanoTime() + WARMUP_NANOS;
+        for (int round = 0; round < WARMUP_ROUNDS && System.nanoTime() < deadline; round++) {
+            kernels.mix(block.getChannel(0), 0, block.getChannel(1), 0, frames, 0.0f);
+            kernels.interleavePcm16(block, 0, frames, 2, pcm, 0);
+            kernels.deinterleavePcm16(pcm, 0, 2, frames, block, 0);
+            kernels.deinterleavePcm16(shorts, 0, 2, frames, block, 0);
+            kernels.interleavePcm16(block, 0, frames, 1, pcm, 0);
+            kernels.deinterleavePcm16(pcm, 0, 1, frames, block, 0);
+            kernels.deinterleavePcm16(shorts, 0, 1, frames, block, 0);
+        }
+    }
+    
+    /**
+     * Runs every kernel on odd-sized random input through both implementations.
+     * @return a description of the first mismatch, or null when they agree
+     */
+    static String verify(DspKernels candidate) {
+        Random random = new Random(7);
+        int frames = 1000 + 37;
+        for (int channels = 1; channels <= 3; channels++) {
+            PcmBlock a = randomBlock(random, channels, frames);
+            PcmBlock b = copyOf(a);
+            
+            SCALAR.scale(a.getChannel(0), 3, frames - 3, 0.7f);
+            candidate.scale(b.getChannel(0), 3, frames - 3, 0.7f);
+            if (!same(a, b, 1e-6f)) return "scale";
+            
+            float[] gains = new float[frames];
+            for (int i = 0; i < frames; i++) gains[i] = random.nextFloat();
+            SCALAR.multiply(a.getChannel(0), 0, gains, frames);
+            candidate.multiply(b.getChannel(0), 0, gains, frames);
+            if (!same(a, b, 1e-6f)) return "multiply";
+            
+            SCALAR.mix(a.getChannel(0), 1, a.getChannel(channels - 1), 2, frames - 2, 0.5f);
+            candidate.mix(b.getChannel(0), 1, b.getChannel(channels - 1), 2, frames - 2, 0.5f);
+            if (!same(a, b, 1e-6f)) return "mix";
+            
+            byte[] pcmA = new byte[frames * channels * 2];
+            byte[] pcmB = new byte[frames * channels * 2];
+            SCALAR.interleavePcm16(a, 5, frames - 5, channels, pcmA, 0);
+            candidate.interleavePcm16(b, 5, frames - 5, channels, pcmB, 0);
+            if (!Arrays.equals(pcmA, pcmB)) return "interleavePcm16";
+            
+            SCALAR.deinterleavePcm16(pcmA, 0, channels, frames, a, 0);
+            candidate.deinterleavePcm16(pcmA, 0, channels, frames, b, 0);
+            if (!same(a, b, 0.0f)) return "deinterleavePcm16(byte[])";
+            
+            short[] shorts = new short[frames * channels];
+            for (int i = 0; i < shorts.length; i++) shorts[i] = (short) random.nextInt();
+            SCALAR.deinterleavePcm16(shorts, 0, channels, frames, a, 0);
+            candidate.deinterleavePcm16(shorts, 0, channels, frames, b, 0);
+            if (!same(a, b, 0.0f)) return "deinterleavePcm16(short[])";
+            
+            float[] coefficients = new float[3 * BiquadDesign.STRIDE];
+            BiquadDesign.peaking(48000, 1000, 1.1, 6, coefficients, 0);
+            BiquadDesign.lowShelf(48000, 100, 4, coefficients, BiquadDesign.STRIDE);
+            BiquadDesign.highShelf(48000, 8000, -3, coefficients, 2 * BiquadDesign.STRIDE);
+            float[][] stateA = new float[channels][6];
+            float[][] stateB = new float[channels][6];
+            SCALAR.biquadCascade(coefficients, 3, stateA, a);
+            candidate.biquadCascade(coefficients, 3, stateB, b);
+            if (!same(a, b, 1e-4f)) return "biquadCascade";
+        }
+        return null;
+    }
+    
+    private static PcmBlock randomBlock(Random random, int channels, int frames) {
+        PcmBlock block = new PcmBlock(channels, frames);
+        block.configure(channels, 48000);
+        for (int ch = 0; ch < channels; ch++) {
+            float[] samples = block.getChannel(ch);
+            for (int i = 0; i < frames; i++) {
+                samples[i] = random.nextFloat() * 2.4f - 1.2f; // includes out-of-range values
+            }
+        }
+        block.setFrames(frames);
+        return block;
+    }
+    
+    private static PcmBlock copyOf(PcmBlock source) {
+        PcmBlock copy = new PcmBlock(source.getChannels(), source.getFrames());
+        copy.configure(source.getChannels(), source.getSampleRate());
+        for (int ch = 0; ch < source.getChannels(); ch++) {
+            System.arraycopy(source.getChannel(ch), 0, copy.getChannel(ch), 0, source.getFrames());
+        }
+        copy.setFrames(source.getFrames());
+        return copy;
+    }
+    
+    private static boolean same(PcmBlock a, PcmBlock b, float tolerance) {
+        for (int ch = 0; ch < a.getChannels(); ch++) {
+            for (int i = 0; i < a.getFrames(); i++) {
+                if (Math.abs(a.getChannel(ch)[i] - b.getChannel(ch)[i]) > tolerance) return false;
+            }
+        }
+        return true;
+    }
+    
+    // ---- Kernels ----
+    
+    /** samples[offset..offset+count) *= gain */
+    public void scale(float[] samples, int offset, int count, float gain) {
+        for (int i = offset, end = offset + count; i < end; i++) {
+            samples[i] *= gain;
+        }
+    }
+    
+    /** samples[offset + i] *= gains[i] */
+    public void multiply(float[] samples, int offset, float[] gains, int count) {
+        for (int i = 0; i < count; i++) {
+            samples[offset + i] *= gains[i];
+        }
+    }
+    
+    /** dst[dstOffset + i] += src[srcOffset + i] * gain */
+    public void mix(float[] dst, int dstOffset, float[] src, int srcOffset, int count, float gain) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] += src[srcOffset + i] * gain;
+        }
+    }
+    
+    /**
+     * Interleaves planar float frames into signed 16-bit little-endian PCM,
+     * clamping to full scale and rounding to nearest. Output channels beyond the
+     * block's own reuse its last channel (mono played on a stereo line).
+     */
+    public void interleavePcm16(PcmBlock block, int offset, int frames, int channels, byte[] out, int outOffset) {
+        int stride = channels * 2;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = block.getChannel(Math.min(ch, block.getChannels() - 1));
+            int pos = outOffset + ch * 2;
+            for (int i = 0; i < frames; i++, pos += stride) {
+                float y = in[offset + i] * 32767.0f;
+                if (y > 32767.0f) y = 32767.0f;
+                if (y < -32768.0f) y = -32768.0f;
+                // Adding 1.5 * 2^23 leaves round(y) in the low mantissa bits
+                int v = Float.floatToRawIntBits(y + ROUNDING_MAGIC);
+                out[pos] = (byte) v;
+                out[pos + 1] = (byte) (v >> 8);
+            }
+        }
+    }
+    
+    /** Interleaved signed 16-bit little-endian PCM bytes to planar floats. */
+    public void deinterleavePcm16(byte[] in, int inOffset, int channels, int frames, PcmBlock block, int offset) {
+        int stride = channels * 2;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = block.getChannel(ch);
+            int pos = inOffset + ch * 2;
+            for (int i = 0; i < frames; i++, pos += stride) {
+                out[offset + i] = (short) ((in[pos] & 0xFF) | (in[pos + 1] << 8)) / 32768.0f;
+            }
+        }
+    }
+    
+    /** Interleaved 16-bit samples (e.g. from the MP3 decoder) to planar floats. */
+    public void deinterleavePcm16(short[] in, int inOffset, int channels, int frames, PcmBlock block, int offset) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = block.getChannel(ch);
+            int pos = inOffset + ch;
+            for (int i = 0; i < frames; i++, pos += channels) {
+                out[offset + i] = in[pos] / 32768.0f;
+            }
+        }
+    }
+    
+    /**
+     * Runs a cascade of biquads (BiquadDesign layout) over every channel of the
+     * block in place. state[ch] holds two values per stage. Channels are filtered
+     * in pairs so the two independent recursions overlap in the CPU pipeline.
+     */
+    public void biquadCascade(float[] coefficients, int stages, float[][] state, PcmBlock block) {
+        int frames = block.getFrames();
+        int channels = block.getChannels();
+        int ch = 0;
+        for (; ch + 1 < channels; ch += 2) {
+            float[] left = block.getChannel(ch);
+            float[] right = block.getChannel(ch + 1);
+            for (int stage = 0; stage < stages; stage++) {
+                biquadPair(coefficients, stage * BiquadDesign.STRIDE, state[ch], state[ch + 1], stage * 2,
+                           left, right, frames);
+            }
+        }
+        if (ch < channels) {
+            float[] samples = block.getChannel(ch);
+            for (int stage = 0; stage < stages; stage++) {
+                BiquadDesign.process(coefficients, stage * BiquadDesign.STRIDE, state[ch], stage * 2, samples, frames);
+            }
+        }
+    }
+    
+    private static void biquadPair(float[] c, int offset, float[] leftState, float[] rightState, int stateOffset,
+                                   float[] left, float[] right, int frames) {
+        float b0 = c[offset];
+        float b1 = c[offset + 1];
+        float b2 = c[offset + 2];
+        float a1 = c[offset + 3];
+        float a2 = c[offset + 4];
+        float l1 = leftState[stateOffset];
+        float l2 = leftState[stateOffset + 1];
+        float r1 = rightState[stateOffset];
+        float r2 = rightState[stateOffset + 1];
+        
+        for (int i = 0; i < frames; i++) {
+            float xl = left[i];
+            float xr = right[i];
+            float yl = b0 * xl + l1;
+            float yr = b0 * xr + r1;
+            l1 = b1 * xl - a1 * yl + l2;
+            r1 = b1 * xr - a1 * yr + r2;
+            l2 = b2 * xl - a2 * yl;
+            r2 = b2 * xr - a2 * yr;
+            left[i] = yl;
+            right[i] = yr;
+        }
+        
+        leftState[stateOffset] = Math.abs(l1) < 1e-20f ? 0.0f : l1;
+        leftState[stateOffset + 1] = Math.abs(l2) < 1e-20f ? 0.0f : l2;
+        rightState[stateOffset] = Math.abs(r1) < 1e-20f ? 0.0f : r1;
+        rightState[stateOffset + 1] = Math.abs(r2) < 1e-20f ? 0.0f : r2;
+    }
+    
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,137 @@
+package com.musicplayer.audio;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ten-band graphic equalizer: low shelf, eight peaking bands, high shelf
+ * Coefficients live in immutable snapshots that the control thread builds and
+ * publishes with a single volatile write; the audio thread picks up the latest
+ * one at the start of each block and never waits. Only the band that changed
+ * is redesigned, and presets are compiled once per sample rate and reused.
+ */
+public class Equalizer implements AudioProcessor {
+    private static final double PEAKING_Q = 1.1;
+    
+    /**
+     * Compiled coefficient set for every band at one sample rate.
+     */
+    public static final class Coefficients {
+        final int sampleRate;
+        final float[] gainsDb;
+        final float[] values;
+        final boolean flat;
+        
+        Coefficients(int sampleRate, float[] gainsDb, float[] values) {
+            this.sampleRate = sampleRate;
+            this.gainsDb = gainsDb;
+            this.values = values;
+            boolean allZero = true;
+            for (float gain : gainsDb) {
+                if (gain != 0.0f) allZero = false;
+            }
+            this.flat = allZero;
+        }
+    }
+    
+    private final double[] frequencies;
+    private final Map<String, Coefficients> presetCache;
+    private volatile Coefficients current;
+    private volatile boolean enabled;
+    private int sampleRate;
+    private float[][] state;
+    
+    public Equalizer(double[] frequencies) {
+        this.frequencies = frequencies.clone();
+        this.presetCache = new HashMap<>();
+        this.sampleRate = 44100;
+        this.current = compile(new float[frequencies.length]);
+        this.state = new float[2][frequencies.length * 2];
+    }
+    
+    @Override
+    public synchronized void prepare(int sampleRate, int channels) {
+        if (sampleRate != this.sampleRate) {
+            this.sampleRate = sampleRate;
+            presetCache.clear();
+            current = compile(current.gainsDb);
+        }
+        if (state.length < channels) {
+            state = new float[channels][frequencies.length * 2];
+        }
+    }
+    
+    @Override
+    public void reset() {
+        for (float[] channelState : state) {
+            java.util.Arrays.fill(channelState, 0.0f);
+        }
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        Coefficients coefficients = current;
+        if (!enabled || coefficients.flat) return;
+        
+        DspKernels.get().biquadCascade(coefficients.values, frequencies.length, state, block);
+    }
+    
+    /**
+     * Redesigns one band and publishes a new snapshot with the others untouched.
+     */
+    public synchronized void setBandGain(int band, float gainDb) {
+        Coefficients old = current;
+        if (old.gainsDb[band] == gainDb) return;
+        
+        float[] gains = old.gainsDb.clone();
+        float[] values = old.values.clone();
+        gains[band] = gainDb;
+        designBand(band, gainDb, values);
+        current = new Coefficients(sampleRate, gains, values);
+    }
+    
+    public synchronized void setGains(float[] gainsDb) {
+        current = compile(gainsDb.clone());
+    }
+    
+    /**
+     * Swaps in a preset, compiling it only the first time it's used at this rate.
+     */
+    public synchronized void applyPreset(String name, float[] gainsDb) {
+        Coefficients compiled = presetCache.get(name);
+        if (compiled == null) {
+            compiled = compile(gainsDb.clone());
+            presetCache.put(name, compiled);
+        }
+        current = compiled;
+    }
+    
+    private Coefficients compile(float[] gainsDb) {
+        float[] values = new float[frequencies.length * BiquadDesign.STRIDE];
+        for (int band = 0; band < frequencies.length; band++) {
+            designBand(band, gainsDb[band], values);
+        }
+        return new Coefficients(sampleRate, gainsDb, values);
+    }
+    
+    private void designBand(int band, float gainDb, float[] values) {
+        int offset = band * BiquadDesign.STRIDE;
+        if (band == 0) {
+            BiquadDesign.lowShelf(sampleRate, frequencies[band], gainDb, values, offset);
+        } else if (band == frequencies.length - 1) {
+            BiquadDesign.highShelf(sampleRate, frequencies[band], gainDb, values, offset);
+        } else {
+            BiquadDesign.peaking(sampleRate, frequencies[band], PEAKING_Q, gainDb, values, offset);
+        }
+    }
+    
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    public float getBandGain(int band) { return current.gainsDb[band]; }
+    public int getBandCount() { return frequencies.length; }
+    
+    @Override
+    public String getName() {
+        return "equalizer";
+    }
+}
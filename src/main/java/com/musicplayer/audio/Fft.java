@@ -0,0 +1,75 @@
+package com.musicplayer.audio;
+
+/**
+ * In-place iterative radix-2 complex FFT on split real/imaginary arrays
+ * Twiddles and the bit-reversal permutation are computed once per size, so
+ * transforms never allocate. Inverse transforms are unscaled.
+ */
+public final class Fft {
+    private final int size;
+    private final int[] bitReverse;
+    private final float[] cos;
+    private final float[] sin;
+    
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.bitReverse = new int[size];
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2.0 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+    
+    public void forward(float[] re, float[] im) {
+        transform(re, im, false);
+    }
+    
+    public void inverse(float[] re, float[] im) {
+        transform(re, im, true);
+    }
+    
+    private void transform(float[] re, float[] im, boolean inverse) {
+        for (int i = 0; i < size; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        
+        float direction = inverse ? -1.0f : 1.0f;
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step] * direction;
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+    
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,144 @@
+package com.musicplayer.audio;
+
+import java.util.Arrays;
+
+/**
+ * Freeverb (Jezar's Schroeder/Moorer design): 8 parallel damped combs into 4
+ * series allpasses per channel, with the right channel's delays spread slightly
+ * All delay lines are allocated in prepare(); process() only indexes into them.
+ */
+public class FreeverbReverb implements AudioProcessor {
+    private static final int[] COMB_TUNING = {1116, 1188, 1277, 1356, 1422, 1491, 1557, 1617};
+    private static final int[] ALLPASS_TUNING = {556, 441, 341, 225};
+    private static final int STEREO_SPREAD = 23;
+    private static final int TUNING_RATE = 44100;
+    private static final float FIXED_GAIN = 0.015f;
+    private static final float ALLPASS_FEEDBACK = 0.5f;
+    
+    private float[][][] combBuffers;   // [channel][comb][sample]
+    private int[][] combIndex;
+    private float[][] combFilterStore;
+    private float[][][] allpassBuffers; // [channel][allpass][sample]
+    private int[][] allpassIndex;
+    
+    private volatile boolean enabled;
+    private volatile int level;
+    private volatile float roomSize;
+    private volatile float damping;
+    private volatile float wet;
+    private int channels;
+    
+    public FreeverbReverb() {
+        setLevel(3);
+    }
+    
+    @Override
+    public synchronized void prepare(int sampleRate, int channels) {
+        this.channels = channels;
+        double scale = (double) sampleRate / TUNING_RATE;
+        
+        combBuffers = new float[channels][COMB_TUNING.length][];
+        combIndex = new int[channels][COMB_TUNING.length];
+        combFilterStore = new float[channels][COMB_TUNING.length];
+        allpassBuffers = new float[channels][ALLPASS_TUNING.length][];
+        allpassIndex = new int[channels][ALLPASS_TUNING.length];
+        
+        for (int ch = 0; ch < channels; ch++) {
+            int spread = (ch % 2) * STEREO_SPREAD;
+            for (int i = 0; i < COMB_TUNING.length; i++) {
+                combBuffers[ch][i] = new float[(int) ((COMB_TUNING[i] + spread) * scale)];
+            }
+            for (int i = 0; i < ALLPASS_TUNING.length; i++) {
+                allpassBuffers[ch][i] = new float[(int) ((ALLPASS_TUNING[i] + spread) * scale)];
+            }
+        }
+    }
+    
+    @Override
+    public void reset() {
+        if (combBuffers == null) return;
+        for (int ch = 0; ch < channels; ch++) {
+            for (float[] buffer : combBuffers[ch]) Arrays.fill(buffer, 0.0f);
+            for (float[] buffer : allpassBuffers[ch]) Arrays.fill(buffer, 0.0f);
+            Arrays.fill(combFilterStore[ch], 0.0f);
+        }
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        if (!enabled || level == 0 || combBuffers == null) return;
+        
+        int frames = block.getFrames();
+        int blockChannels = Math.min(block.getChannels(), channels);
+        float feedback = roomSize;
+        float damp1 = damping;
+        float damp2 = 1.0f - damp1;
+        float wetGain = wet;
+        float dryGain = 1.0f - wetGain * 0.5f;
+        float inputGain = FIXED_GAIN * 2.0f / blockChannels;
+        
+        for (int i = 0; i < frames; i++) {
+            // Freeverb feeds the same mono sum into every channel's tank
+            float in = 0.0f;
+            for (int ch = 0; ch < blockChannels; ch++) {
+                in += block.getChannel(ch)[i];
+            }
+            in *= inputGain;
+            
+            for (int ch = 0; ch < blockChannels; ch++) {
+                float[][] combs = combBuffers[ch];
+                int[] combPos = combIndex[ch];
+                float[] store = combFilterStore[ch];
+                float out = 0.0f;
+                
+                for (int c = 0; c < combs.length; c++) {
+                    float[] buffer = combs[c];
+                    int pos = combPos[c];
+                    float delayed = buffer[pos];
+                    store[c] = delayed * damp2 + store[c] * damp1;
+                    buffer[pos] = in + store[c] * feedback;
+                    combPos[c] = ++pos == buffer.length ? 0 : pos;
+                    out += delayed;
+                }
+                
+                float[][] allpasses = allpassBuffers[ch];
+                int[] allpassPos = allpassIndex[ch];
+                for (int a = 0; a < allpasses.length; a++) {
+                    float[] buffer = allpasses[a];
+                    int pos = allpassPos[a];
+                    float delayed = buffer[pos];
+                    buffer[pos] = out + delayed * ALLPASS_FEEDBACK;
+                    out = delayed - out;
+                    allpassPos[a] = ++pos == buffer.length ? 0 : pos;
+                }
+                
+                float[] samples = block.getChannel(ch);
+                samples[i] = samples[i] * dryGain + out * wetGain;
+            }
+        }
+        
+        // Flush denormals in the damping filters once per block
+        for (int ch = 0; ch < blockChannels; ch++) {
+            float[] store = combFilterStore[ch];
+            for (int c = 0; c < store.length; c++) {
+                if (Math.abs(store[c]) < 1e-20f) store[c] = 0.0f;
+            }
+        }
+    }
+    
+    public void setLevel(int level) {
+        this.level = Math.max(0, Math.min(10, level));
+        this.wet = this.level * 0.05f;
+        this.roomSize = 0.7f + this.level * 0.028f;
+        this.damping = 0.4f;
+    }
+    
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    public int getLevel() { return level; }
+    
+    @Override
+    public String getName() {
+        return "reverb";
+    }
+}
@@ -0,0 +1,143 @@
+package com.musicplayer.audio;
+
+/**
+ * Final gain stage: master volume, mute and the sleep-timer fade
+ * Control threads only write volatile targets; the playback thread smooths
+ * towards them per sample (one-pole, ~10 ms) so volume steps and mute never
+ * produce zipper noise or clicks. Fades are counted in output samples rather
+ * than wall time, so they stay exact when playback is paused or rendered offline.
+ */
+public class GainStage implements AudioProcessor {
+    private static final double SMOOTHING_SECONDS = 0.010;
+    // Fade curve: linear in dB down to -60 dB, times a linear ramp that lands on zero
+    private static final double FADE_FLOOR_DB = -60.0;
+    private static final int CHUNK_FRAMES = 1024;
+    
+    private volatile float volume;
+    private volatile boolean muted;
+    private volatile double fadeSeconds;
+    private volatile int fadeRequest;
+    private volatile boolean fadeComplete;
+    
+    // Playback thread only
+    private final float[] gains;
+    private int sampleRate;
+    private float smoothing;
+    private float current;
+    private int fadeSeen;
+    private long fadeRemaining;
+    private float fadeLog;
+    private float fadeRatio;
+    private float fadeLinear;
+    private float fadeStep;
+    
+    public GainStage() {
+        this.volume = 1.0f;
+        this.current = 1.0f;
+        this.fadeLog = 1.0f;
+        this.fadeLinear = 1.0f;
+        this.gains = new float[CHUNK_FRAMES];
+        prepare(44100, 2);
+    }
+    
+    @Override
+    public void prepare(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.smoothing = (float) (1.0 - Math.exp(-1.0 / (SMOOTHING_SECONDS * sampleRate)));
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        int request = fadeRequest;
+        if (request != fadeSeen) {
+            fadeSeen = request;
+            applyFadeRequest(fadeSeconds);
+        }
+        
+        DspKernels kernels = DspKernels.get();
+        float target = muted ? 0.0f : volume;
+        boolean fading = fadeRemaining > 0;
+        if (!fading && Math.abs(target - current) < 1e-5f) {
+            // Steady state: one constant gain for the whole block
+            current = target;
+            float gain = current * fadeLog * fadeLinear;
+            if (gain != 1.0f) {
+                for (int ch = 0; ch < block.getChannels(); ch++) {
+                    kernels.scale(block.getChannel(ch), 0, block.getFrames(), gain);
+                }
+            }
+            return;
+        }
+        
+        int frames = block.getFrames();
+        for (int offset = 0; offset < frames; offset += CHUNK_FRAMES) {
+            int count = Math.min(CHUNK_FRAMES, frames - offset);
+            fillGains(target, count);
+            for (int ch = 0; ch < block.getChannels(); ch++) {
+                kernels.multiply(block.getChannel(ch), offset, gains, count);
+            }
+        }
+    }
+    
+    /**
+     * Computes one gain per frame so every channel gets the identical ramp.
+     */
+    private void fillGains(float target, int count) {
+        float g = current;
+        float k = smoothing;
+        for (int i = 0; i < count; i++) {
+            g += (target - g) * k;
+            if (fadeRemaining > 0) {
+                fadeLog *= fadeRatio;
+                fadeLinear -= fadeStep;
+                if (--fadeRemaining == 0) {
+                    fadeLinear = 0.0f;
+                    fadeComplete = true;
+                }
+            }
+            gains[i] = g * fadeLog * Math.max(0.0f, fadeLinear);
+        }
+        current = Math.abs(target - g) < 1e-5f ? target : g;
+    }
+    
+    private void applyFadeRequest(double seconds) {
+        if (seconds > 0) {
+            long length = Math.max(1, (long) (seconds * sampleRate));
+            fadeRemaining = length;
+            fadeRatio = (float) Math.pow(10.0, FADE_FLOOR_DB / 20.0 / length);
+            fadeStep = 1.0f / length;
+        } else {
+            // Cancel: carry the faded level into the smoother so it ramps back up
+            current *= fadeLog * Math.max(0.0f, fadeLinear);
+            fadeRemaining = 0;
+        }
+        fadeLog = 1.0f;
+        fadeLinear = 1.0f;
+        fadeComplete = false;
+    }
+    
+    /**
+     * Starts a fade to silence over the given number of seconds of audio.
+     * The stage stays silent afterwards until cancelFade().
+     */
+    public synchronized void startFade(double seconds) {
+        fadeSeconds = Math.max(0.001, seconds);
+        fadeRequest++;
+    }
+    
+    public synchronized void cancelFade() {
+        fadeSeconds = 0;
+        fadeRequest++;
+    }
+    
+    public void setVolume(float volume) { this.volume = Math.max(0.0f, Math.min(1.0f, volume)); }
+    public void setMuted(boolean muted) { this.muted = muted; }
+    public float getVolume() { return volume; }
+    public boolean isMuted() { return muted; }
+    public boolean isFadeComplete() { return fadeComplete; }
+    
+    @Override
+    public String getName() {
+        return "gain";
+    }
+}
@@ -0,0 +1,147 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Impulse response pre-transformed into uniform partitions for overlap-save
+ * Each partition of P samples is zero-padded to 2P and transformed once. Spectra
+ * are cached per file, modification time, sample rate and partition size, so
+ * switching back to an IR or restarting a track costs nothing.
+ */
+public final class ImpulseResponse {
+    public static final double MAX_SECONDS = 10.0;
+    
+    private static final Map<String, ImpulseResponse> CACHE = new ConcurrentHashMap<>();
+    
+    private final String name;
+    private final int sampleRate;
+    private final int channels;
+    private final int partitionSize;
+    private final int partitions;
+    private final long lengthFrames;
+    private final float[][][] re; // [channel][partition][bin]
+    private final float[][][] im;
+    
+    private ImpulseResponse(String name, int sampleRate, int partitionSize, float[][] samples, int length) {
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.channels = samples.length;
+        this.partitionSize = partitionSize;
+        this.partitions = Math.max(1, (length + partitionSize - 1) / partitionSize);
+        this.lengthFrames = length;
+        
+        RealFft fft = new RealFft(partitionSize * 2);
+        int bins = fft.getBinCount();
+        float[] padded = new float[partitionSize * 2];
+        this.re = new float[channels][partitions][bins];
+        this.im = new float[channels][partitions][bins];
+        
+        for (int ch = 0; ch < channels; ch++) {
+            for (int p = 0; p < partitions; p++) {
+                int start = p * partitionSize;
+                int count = Math.max(0, Math.min(partitionSize, length - start));
+                Arrays.fill(padded, 0.0f);
+                System.arraycopy(samples[ch], start, padded, 0, count);
+                fft.forward(padded, re[ch][p], im[ch][p]);
+            }
+        }
+    }
+    
+    /**
+     * Loads (or fetches from cache) the partitioned spectrum of an IR file,
+     * resampled to the given rate. The IR is normalised to unit energy on its
+     * loudest channel so the wet level is comparable between files.
+     */
+    public static ImpulseResponse load(File file, int sampleRate, int partitionSize)
+            throws IOException, UnsupportedAudioFileException {
+        String key = file.getAbsolutePath() + "|" + file.lastModified() + "|" + sampleRate + "|" + partitionSize;
+        ImpulseResponse cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        float[][] samples;
+        int length = 0;
+        try (AudioDecoder source = AudioDecoders.open(file)) {
+            int channels = source.getChannels();
+            AudioDecoder decoder = ConvertingDecoder.wrap(source, sampleRate, channels, 4096);
+            int maxFrames = (int) (MAX_SECONDS * sampleRate);
+            samples = new float[channels][Math.min(maxFrames, 1 << 16)];
+            PcmBlock block = new PcmBlock(channels, 4096);
+            
+            int read;
+            while (length < maxFrames && (read = decoder.read(block)) >= 0) {
+                int count = Math.min(read, maxFrames - length);
+                if (length + count > samples[0].length) {
+                    int grown = Math.min(maxFrames, Math.max(samples[0].length * 2, length + count));
+                    for (int ch = 0; ch < channels; ch++) {
+                        samples[ch] = Arrays.copyOf(samples[ch], grown);
+                    }
+                }
+                for (int ch = 0; ch < channels; ch++) {
+                    System.arraycopy(block.getChannel(ch), 0, samples[ch], length, count);
+                }
+                length += count;
+            }
+        }
+        
+        if (length == 0) {
+            throw new IOException("Impulse response is empty: " + file.getName());
+        }
+        normalise(samples, length);
+        
+        ImpulseResponse response = new ImpulseResponse(file.getName(), sampleRate, partitionSize, samples, length);
+        CACHE.put(key, response);
+        return response;
+    }
+    
+    /**
+     * Builds an uncached IR from samples already at the target rate (e.g. a
+     * synthetic tail for benchmarking). The samples are normalised in place.
+     */
+    public static ImpulseResponse fromSamples(String name, int sampleRate, int partitionSize, float[][] samples) {
+        int length = samples[0].length;
+        normalise(samples, length);
+        return new ImpulseResponse(name, sampleRate, partitionSize, samples, length);
+    }
+    
+    private static void normalise(float[][] samples, int length) {
+        double maxEnergy = 0;
+        for (float[] channel : samples) {
+            double energy = 0;
+            for (int i = 0; i < length; i++) {
+                energy += channel[i] * channel[i];
+            }
+            maxEnergy = Math.max(maxEnergy, energy);
+        }
+        if (maxEnergy <= 0) return;
+        
+        float scale = (float) (1.0 / Math.sqrt(maxEnergy));
+        for (float[] channel : samples) {
+            for (int i = 0; i < length; i++) {
+                channel[i] *= scale;
+            }
+        }
+    }
+    
+    public static void clearCache() {
+        CACHE.clear();
+    }
+    
+    float[][] getPartitionRe(int channel) { return re[channel % channels]; }
+    float[][] getPartitionIm(int channel) { return im[channel % channels]; }
+    
+    // Getters
+    public String getName() { return name; }
+    public int getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+    public int getPartitionSize() { return partitionSize; }
+    public int getPartitions() { return partitions; }
+    public double getLengthSeconds() { return (double) lengthFrames / sampleRate; }
+}
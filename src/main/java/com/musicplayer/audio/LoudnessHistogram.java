@@ -0,0 +1,80 @@
+package com.musicplayer.audio;
+
+/**
+ * Histogram of gating-block loudness (EBU R128 / ITU-R BS.1770)
+ * Blocks are binned at 0.1 LU between -70 and +5 LUFS together with their summed
+ * energy, which is enough to apply the gates to within one bin and to merge
+ * several tracks into an album measurement. The bin the relative gate falls in
+ * counts in proportion to its share above the gate.
+ */
+public class LoudnessHistogram {
+    public static final double ABSOLUTE_GATE = -70.0;
+    public static final double RELATIVE_GATE = -10.0;
+    private static final double MAX_LOUDNESS = 5.0;
+    private static final double BIN_WIDTH = 0.1;
+    public static final int BINS = (int) Math.round((MAX_LOUDNESS - ABSOLUTE_GATE) / BIN_WIDTH);
+    
+    private final long[] counts;
+    private final double[] energy;
+    
+    public LoudnessHistogram() {
+        this.counts = new long[BINS];
+        this.energy = new double[BINS];
+    }
+    
+    public void addBlock(double blockEnergy) {
+        double loudness = energyToLoudness(blockEnergy);
+        if (loudness < ABSOLUTE_GATE) return;
+        
+        int bin = (int) ((loudness - ABSOLUTE_GATE) / BIN_WIDTH);
+        bin = Math.min(BINS - 1, bin);
+        counts[bin]++;
+        energy[bin] += blockEnergy;
+    }
+    
+    public void addBin(int bin, long count, double binEnergy) {
+        counts[bin] += count;
+        energy[bin] += binEnergy;
+    }
+    
+    public void merge(LoudnessHistogram other) {
+        for (int i = 0; i < BINS; i++) {
+            counts[i] += other.counts[i];
+            energy[i] += other.energy[i];
+        }
+    }
+    
+    /**
+     * @return gated integrated loudness in LUFS, or -infinity for silence
+     */
+    public double getIntegratedLoudness() {
+        long totalCount = 0;
+        double totalEnergy = 0;
+        for (int i = 0; i < BINS; i++) {
+            totalCount += counts[i];
+            totalEnergy += energy[i];
+        }
+        if (totalCount == 0) return Double.NEGATIVE_INFINITY;
+        
+        double relativeGate = energyToLoudness(totalEnergy / totalCount) + RELATIVE_GATE;
+        double gateBin = Math.max(0, (relativeGate - ABSOLUTE_GATE) / BIN_WIDTH);
+        int boundary = (int) gateBin;
+        
+        // Blocks are taken as spread evenly over the boundary bin
+        double share = boundary < BINS ? boundary + 1 - gateBin : 0;
+        double gatedCount = boundary < BINS ? counts[boundary] * share : 0;
+        double gatedEnergy = boundary < BINS ? energy[boundary] * share : 0;
+        for (int i = boundary + 1; i < BINS; i++) {
+            gatedCount += counts[i];
+            gatedEnergy += energy[i];
+        }
+        return gatedCount == 0 ? Double.NEGATIVE_INFINITY : energyToLoudness(gatedEnergy / gatedCount);
+    }
+    
+    public static double energyToLoudness(double meanSquare) {
+        return -0.691 + 10.0 * Math.log10(meanSquare);
+    }
+    
+    public long getCount(int bin) { return counts[bin]; }
+    public double getEnergy(int bin) { return energy[bin]; }
+}
@@ -0,0 +1,184 @@
+package com.musicplayer.audio;
+
+/**
+ * Integrated loudness and true peak meter (ITU-R BS.1770-4)
+ * K-weighting is a high-shelf followed by the RLB high-pass, computed for any
+ * sample rate. Energy is collected in 100 ms steps so 400 ms gating blocks
+ * overlap by 75%. True peak is measured on a 4x oversampled signal.
+ */
+public class LoudnessMeter {
+    private static final int OVERSAMPLING = 4;
+    
+    private final int channels;
+    private final int hopFrames;
+    private final double[] weights;
+    
+    // Two cascaded biquads per channel: b0 b1 b2 a1 a2 for each stage, state z1 z2
+    private final double[] shelf;
+    private final double[] highPass;
+    private final double[][] state;
+    
+    private final double[] subBlocks;
+    private int subBlockCount;
+    private double hopEnergy;
+    private int hopFill;
+    
+    private final LoudnessHistogram histogram;
+    private final PolyphaseResampler oversampler;
+    private float[][] oversampled;
+    private float[][] input;
+    private double truePeak;
+    
+    public LoudnessMeter(int sampleRate, int channels) {
+        this.channels = channels;
+        this.hopFrames = sampleRate / 10;
+        this.weights = new double[channels];
+        for (int ch = 0; ch < channels; ch++) {
+            // Surround channels (index 3+ in a 5-channel layout) are weighted +1.5 dB
+            weights[ch] = channels >= 5 && ch >= 3 ? 1.41 : 1.0;
+        }
+        
+        this.shelf = highShelf(sampleRate);
+        this.highPass = highPass(sampleRate);
+        this.state = new double[channels][4];
+        this.subBlocks = new double[4];
+        this.histogram = new LoudnessHistogram();
+        
+        this.oversampler = sampleRate < 96000
+                ? new PolyphaseResampler(sampleRate, sampleRate * OVERSAMPLING, channels, 48)
+                : null;
+        this.oversampled = new float[channels][0];
+        this.input = new float[channels][];
+    }
+    
+    private static double[] highShelf(int sampleRate) {
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10.0, gain / 20.0);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1.0 + k / q + k * k;
+        return new double[] {
+            (vh + vb * k / q + k * k) / a0,
+            2.0 * (k * k - vh) / a0,
+            (vh - vb * k / q + k * k) / a0,
+            2.0 * (k * k - 1.0) / a0,
+            (1.0 - k / q + k * k) / a0
+        };
+    }
+    
+    private static double[] highPass(int sampleRate) {
+        double f0 = 38.13547087602444;
+        double q = 0.5003270373238773;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double a0 = 1.0 + k / q + k * k;
+        return new double[] {
+            1.0, -2.0, 1.0,
+            2.0 * (k * k - 1.0) / a0,
+            (1.0 - k / q + k * k) / a0
+        };
+    }
+    
+    public void process(PcmBlock block) {
+        int frames = block.getFrames();
+        int offset = 0;
+        
+        measureTruePeak(block);
+        
+        while (offset < frames) {
+            int count = Math.min(hopFrames - hopFill, frames - offset);
+            for (int ch = 0; ch < channels; ch++) {
+                hopEnergy += weights[ch] * kWeightedSquares(ch, block.getChannel(ch), offset, count);
+            }
+            hopFill += count;
+            offset += count;
+            
+            if (hopFill == hopFrames) {
+                completeHop();
+            }
+        }
+    }
+    
+    private double kWeightedSquares(int ch, float[] samples, int offset, int count) {
+        double[] z = state[ch];
+        double s1 = z[0], s2 = z[1], h1 = z[2], h2 = z[3];
+        double sum = 0;
+        
+        for (int i = offset; i < offset + count; i++) {
+            // Transposed direct form II, shelf then high-pass
+            double x = samples[i];
+            double y = shelf[0] * x + s1;
+            s1 = shelf[1] * x - shelf[3] * y + s2;
+            s2 = shelf[2] * x - shelf[4] * y;
+            
+            double w = highPass[0] * y + h1;
+            h1 = highPass[1] * y - highPass[3] * w + h2;
+            h2 = highPass[2] * y - highPass[4] * w;
+            
+            sum += w * w;
+        }
+        
+        z[0] = s1; z[1] = s2; z[2] = h1; z[3] = h2;
+        return sum;
+    }
+    
+    private void completeHop() {
+        subBlocks[subBlockCount % 4] = hopEnergy / hopFrames;
+        subBlockCount++;
+        hopEnergy = 0;
+        hopFill = 0;
+        
+        if (subBlockCount >= 4) {
+            double blockEnergy = (subBlocks[0] + subBlocks[1] + subBlocks[2] + subBlocks[3]) / 4.0;
+            histogram.addBlock(blockEnergy);
+        }
+    }
+    
+    private void measureTruePeak(PcmBlock block) {
+        int frames = block.getFrames();
+        
+        if (oversampler == null) {
+            for (int ch = 0; ch < channels; ch++) {
+                float[] samples = block.getChannel(ch);
+                for (int i = 0; i < frames; i++) {
+                    truePeak = Math.max(truePeak, Math.abs(samples[i]));
+                }
+            }
+            return;
+        }
+        
+        int needed = frames * OVERSAMPLING + OVERSAMPLING;
+        if (oversampled[0].length < needed) {
+            oversampled = new float[channels][needed];
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            input[ch] = block.getChannel(ch);
+        }
+        
+        oversampler.write(input, 0, frames);
+        int produced;
+        while ((produced = oversampler.read(oversampled, 0, needed)) > 0) {
+            for (int ch = 0; ch < channels; ch++) {
+                float[] samples = oversampled[ch];
+                for (int i = 0; i < produced; i++) {
+                    truePeak = Math.max(truePeak, Math.abs(samples[i]));
+                }
+            }
+        }
+    }
+    
+    public double getIntegratedLoudness() {
+        return histogram.getIntegratedLoudness();
+    }
+    
+    /**
+     * @return true peak in dBTP
+     */
+    public double getTruePeakDb() {
+        return truePeak > 0 ? 20.0 * Math.log10(truePeak) : Double.NEGATIVE_INFINITY;
+    }
+    
+    public double getTruePeak() { return truePeak; }
+    public LoudnessHistogram getHistogram() { return histogram; }
+}
@@ -0,0 +1,79 @@
+package com.musicplayer.audio;
+
+/**
+ * Applies the ReplayGain-style normalization gain in the PCM stage
+ * Followed by an instant-attack, smooth-release limiter so that neither the
+ * gain nor later DSP can push samples past the ceiling.
+ */
+public class LoudnessNormalizer implements AudioProcessor {
+    public static final float CEILING = 0.891f; // -1 dBFS
+    private static final float RELEASE_SECONDS = 0.05f;
+    
+    private volatile float gain;
+    private volatile boolean enabled;
+    private float envelope;
+    private float release;
+    
+    public LoudnessNormalizer() {
+        this.gain = 1.0f;
+        this.enabled = false;
+        this.envelope = 1.0f;
+    }
+    
+    @Override
+    public void prepare(int sampleRate, int channels) {
+        release = (float) (1.0 - Math.exp(-1.0 / (RELEASE_SECONDS * sampleRate)));
+    }
+    
+    @Override
+    public void reset() {
+        envelope = 1.0f;
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        if (!enabled) return;
+        
+        int frames = block.getFrames();
+        int channels = block.getChannels();
+        float g = gain;
+        float env = envelope;
+        
+        for (int i = 0; i < frames; i++) {
+            float peak = 0.0f;
+            for (int ch = 0; ch < channels; ch++) {
+                peak = Math.max(peak, Math.abs(block.getChannel(ch)[i]));
+            }
+            peak *= g;
+            
+            if (peak * env > CEILING) {
+                env = CEILING / peak;
+            } else {
+                env += (1.0f - env) * release;
+            }
+            
+            float scale = g * env;
+            for (int ch = 0; ch < channels; ch++) {
+                block.getChannel(ch)[i] *= scale;
+            }
+        }
+        
+        envelope = env;
+    }
+    
+    public void setGainDb(double gainDb) {
+        this.gain = (float) Math.pow(10.0, gainDb / 20.0);
+    }
+    
+    public double getGainDb() {
+        return 20.0 * Math.log10(gain);
+    }
+    
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    
+    @Override
+    public String getName() {
+        return "loudness";
+    }
+}
@@ -0,0 +1,123 @@
+package com.musicplayer.audio;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * MP3 decoder built on JLayer's frame decoder
+ * Bypasses AdvancedPlayer so the PCM can flow through our own pipeline
+ */
+public class Mp3AudioDecoder implements AudioDecoder {
+    private final FileInputStream fileStream;
+    private final Bitstream bitstream;
+    private final Decoder decoder;
+    private Header pendingHeader;
+    private final int sampleRate;
+    private final int channels;
+    private final long frameLength;
+    
+    // Samples of the last decoded MP3 frame not yet handed out
+    private short[] frameSamples;
+    private int frameSampleCount;
+    private int frameSamplePos;
+    
+    public Mp3AudioDecoder(File file) throws IOException {
+        this.fileStream = new FileInputStream(file);
+        this.bitstream = new Bitstream(new BufferedInputStream(fileStream));
+        this.decoder = new Decoder();
+        
+        try {
+            pendingHeader = bitstream.readFrame();
+        } catch (BitstreamException e) {
+            close();
+            throw new IOException("Invalid MP3 stream: " + e.getMessage(), e);
+        }
+        if (pendingHeader == null) {
+            close();
+            throw new IOException("No MP3 frames found in " + file.getName());
+        }
+        
+        this.sampleRate = pendingHeader.frequency();
+        this.channels = pendingHeader.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+        
+        // Estimate from the first header; exact for CBR, close enough for VBR
+        float totalMs = pendingHeader.total_ms((int) file.length());
+        this.frameLength = totalMs > 0 ? (long) (totalMs * sampleRate / 1000.0) : -1;
+    }
+    
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+    
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+    
+    @Override
+    public int read(PcmBlock block) throws IOException {
+        block.configure(channels, sampleRate);
+        int capacity = block.getCapacity();
+        int frames = 0;
+        
+        while (frames < capacity) {
+            if (frameSamplePos >= frameSampleCount && !decodeNextFrame()) {
+                break;
+            }
+            
+            int available = (frameSampleCount - frameSamplePos) / channels;
+            int count = Math.min(available, capacity - frames);
+            DspKernels.get().deinterleavePcm16(frameSamples, frameSamplePos, channels, count, block, frames);
+            frameSamplePos += count * channels;
+            frames += count;
+        }
+        
+        block.setFrames(frames);
+        return frames == 0 ? -1 : frames;
+    }
+    
+    private boolean decodeNextFrame() throws IOException {
+        try {
+            Header header = pendingHeader != null ? pendingHeader : bitstream.readFrame();
+            pendingHeader = null;
+            if (header == null) {
+                return false;
+            }
+            
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            bitstream.closeFrame();
+            
+            frameSamples = output.getBuffer();
+            frameSampleCount = output.getBufferLength();
+            frameSamplePos = 0;
+            return true;
+        } catch (BitstreamException | DecoderException e) {
+            throw new IOException("Error decoding MP3 frame: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            bitstream.close();
+        } catch (BitstreamException e) {
+            // Ignore close errors
+        }
+        fileStream.close();
+    }
+}
@@ -0,0 +1,61 @@
+package com.musicplayer.audio;
+
+/**
+ * Output that discards everything, used to measure decode and DSP throughput
+ */
+public class NullAudioOutput implements AudioOutput {
+    private boolean open;
+    private long framesWritten;
+    private float checksum;
+    
+    @Override
+    public void open(int sampleRate, int channels) {
+        open = true;
+    }
+    
+    @Override
+    public void write(PcmBlock block) {
+        framesWritten += block.getFrames();
+        // Touch one sample per block so the JIT can't drop the work feeding us
+        if (block.getFrames() > 0) {
+            checksum += block.getChannel(0)[block.getFrames() - 1];
+        }
+    }
+    
+    @Override
+    public void drain() {
+    }
+    
+    @Override
+    public void close() {
+        open = false;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+    
+    @Override
+    public double getLatencyMillis() {
+        return 0; // nothing is queued, write() returns once the data is gone
+    }
+    
+    @Override
+    public long getUnderrunCount() {
+        return 0;
+    }
+    
+    @Override
+    public boolean isRealtime() {
+        return false;
+    }
+    
+    @Override
+    public String getName() {
+        return "null";
+    }
+    
+    public long getFramesWritten() { return framesWritten; }
+    public float getChecksum() { return checksum; }
+}
@@ -0,0 +1,119 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Headless renderer that pushes a playlist through decode -> DSP -> output
+ * as fast as the CPU allows, for throughput benchmarking without a sound device
+ */
+public class OfflineRenderer {
+    public static final int DEFAULT_BLOCK_FRAMES = 1024;
+    
+    private final PlaybackPipeline pipeline;
+    private final AudioOutput output;
+    private final int blockFrames;
+    private int sampleRate;
+    private int channels;
+    
+    public OfflineRenderer(PlaybackPipeline pipeline, AudioOutput output) {
+        this(pipeline, output, DEFAULT_BLOCK_FRAMES);
+    }
+    
+    public OfflineRenderer(PlaybackPipeline pipeline, AudioOutput output, int blockFrames) {
+        this.pipeline = pipeline;
+        this.output = output;
+        this.blockFrames = blockFrames;
+    }
+    
+    /**
+     * Forces the output format; by default the first track's format is used.
+     */
+    public void setOutputFormat(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+    
+    public RenderReport render(List<Song> songs) throws IOException {
+        PcmBlock block = new PcmBlock(2, blockFrames);
+        StageStats decodeStats = new StageStats("decode");
+        StageStats outputStats = new StageStats("output");
+        List<String> skipped = new ArrayList<>();
+        
+        int outputRate = 0;
+        int outputChannels = 0;
+        int tracksRendered = 0;
+        long framesRendered = 0;
+        double audioSeconds = 0;
+        
+        pipeline.setProfiling(true);
+        long wallStart = System.nanoTime();
+        long cpuStart = ThreadMetrics.cpuTimeNanos();
+        long allocStart = ThreadMetrics.allocatedBytes();
+        
+        try {
+            for (Song song : songs) {
+                File file = new File(song.getFilePath());
+                
+                try (AudioDecoder trackDecoder = AudioDecoders.open(file)) {
+                    if (!output.isOpen()) {
+                        outputRate = sampleRate > 0 ? sampleRate : trackDecoder.getSampleRate();
+                        outputChannels = channels > 0 ? channels : trackDecoder.getChannels();
+                        pipeline.prepare(outputRate, outputChannels);
+                        output.open(outputRate, outputChannels);
+                    }
+                    
+                    // Tracks in other formats are resampled/remapped to the output format
+                    AudioDecoder decoder = ConvertingDecoder.wrap(trackDecoder, outputRate, outputChannels, blockFrames);
+                    pipeline.reset();
+                    
+                    long trackFrames = 0;
+                    while (true) {
+                        decodeStats.begin();
+                        int frames = decoder.read(block);
+                        decodeStats.end();
+                        if (frames < 0) break;
+                        
+                        pipeline.process(block);
+                        
+                        outputStats.begin();
+                        output.write(block);
+                        outputStats.end();
+                        
+                        trackFrames += frames;
+                    }
+                    
+                    framesRendered += trackFrames;
+                    audioSeconds += (double) trackFrames / outputRate;
+                    tracksRendered++;
+                } catch (UnsupportedAudioFileException | LineUnavailableException | IOException e) {
+                    skipped.add(file.getName() + " (" + e.getMessage() + ")");
+                }
+            }
+            
+            output.drain();
+        } finally {
+            output.close();
+            pipeline.setProfiling(false);
+        }
+        
+        long wallNanos = System.nanoTime() - wallStart;
+        long cpuNanos = ThreadMetrics.cpuTimeNanos() - cpuStart;
+        long allocatedBytes = ThreadMetrics.allocatedBytes() - allocStart;
+        
+        List<StageStats> stages = new ArrayList<>();
+        stages.add(decodeStats);
+        stages.addAll(pipeline.getStageStats());
+        stages.add(outputStats);
+        
+        return new RenderReport(output.getName(), tracksRendered, framesRendered, audioSeconds,
+                wallNanos, cpuNanos, allocatedBytes, stages, skipped);
+    }
+}
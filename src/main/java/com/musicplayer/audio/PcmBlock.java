@@ -0,0 +1,60 @@
+package com.musicplayer.audio;
+
+/**
+ * Block of planar floating point PCM samples
+ * Reused across the whole playback pipeline so the audio thread never allocates
+ */
+public final class PcmBlock {
+    private float[][] samples;
+    private final int capacity;
+    private int channels;
+    private int frames;
+    private int sampleRate;
+    
+    public PcmBlock(int channels, int capacity) {
+        this.capacity = capacity;
+        this.samples = new float[Math.max(1, channels)][capacity];
+        this.channels = channels;
+        this.frames = 0;
+    }
+    
+    /**
+     * Sets the channel layout for the next fill. Buffers only grow, so a block
+     * that has seen a stereo track never reallocates for the following ones.
+     */
+    public void configure(int channels, int sampleRate) {
+        if (channels > samples.length) {
+            float[][] grown = new float[channels][];
+            System.arraycopy(samples, 0, grown, 0, samples.length);
+            for (int ch = samples.length; ch < channels; ch++) {
+                grown[ch] = new float[capacity];
+            }
+            samples = grown;
+        }
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+    }
+    
+    public float[] getChannel(int channel) {
+        return samples[channel];
+    }
+    
+    public void clear() {
+        for (int ch = 0; ch < channels; ch++) {
+            java.util.Arrays.fill(samples[ch], 0, frames, 0.0f);
+        }
+    }
+    
+    public void setFrames(int frames) {
+        if (frames < 0 || frames > capacity) {
+            throw new IllegalArgumentException("Frame count out of range: " + frames);
+        }
+        this.frames = frames;
+    }
+    
+    // Getters
+    public int getFrames() { return frames; }
+    public int getChannels() { return channels; }
+    public int getCapacity() { return capacity; }
+    public int getSampleRate() { return sampleRate; }
+}
@@ -0,0 +1,108 @@
+package com.musicplayer.audio;
+
+/**
+ * Pass-through stage that copies a mono mixdown of the stream into a ring buffer
+ * Single writer (the playback thread), any number of readers. The writer publishes
+ * its position with one volatile store per block; readers copy a window and then
+ * re-check the position, so a window the writer lapped is detected instead of locked.
+ */
+public class PcmTap implements AudioProcessor {
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    // Window plus delay must stay clear of the part of the ring being rewritten
+    public static final int MAX_WINDOW = CAPACITY / 2;
+    
+    private final float[] ring;
+    private volatile long written;
+    private volatile int sampleRate;
+    
+    public PcmTap() {
+        this.ring = new float[CAPACITY];
+        this.sampleRate = 44100;
+    }
+    
+    @Override
+    public void prepare(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        int frames = block.getFrames();
+        int channels = block.getChannels();
+        long position = written;
+        int start = (int) (position & MASK);
+        
+        // Copy in at most two runs so the channel loops stay simple
+        int first = Math.min(frames, CAPACITY - start);
+        mixdown(block, channels, 0, start, first);
+        if (first < frames) {
+            mixdown(block, channels, first, 0, frames - first);
+        }
+        written = position + frames;
+    }
+    
+    private void mixdown(PcmBlock block, int channels, int from, int to, int count) {
+        float[] left = block.getChannel(0);
+        if (channels == 1) {
+            System.arraycopy(left, from, ring, to, count);
+            return;
+        }
+        
+        float scale = 1.0f / channels;
+        for (int i = 0; i < count; i++) {
+            ring[to + i] = left[from + i] * scale;
+        }
+        for (int ch = 1; ch < channels; ch++) {
+            float[] samples = block.getChannel(ch);
+            for (int i = 0; i < count; i++) {
+                ring[to + i] += samples[from + i] * scale;
+            }
+        }
+    }
+    
+    /**
+     * Copies a window of count samples ending delay samples before the newest one.
+     * @return the stream position of the sample after the window, or -1 if
+     *         not enough audio has been played yet
+     */
+    public long read(float[] target, int count, int delay) {
+        if (count > MAX_WINDOW) {
+            throw new IllegalArgumentException("Window too large for tap: " + count);
+        }
+        delay = Math.max(0, Math.min(delay, MAX_WINDOW - count));
+        
+        while (true) {
+            long end = written - delay;
+            if (end < count) return -1;
+            
+            long begin = end - count;
+            int start = (int) (begin & MASK);
+            int first = Math.min(count, CAPACITY - start);
+            System.arraycopy(ring, start, target, 0, first);
+            System.arraycopy(ring, 0, target, first, count - first);
+            
+            // The writer fills a block before publishing it, so leave a quarter of
+            // the ring as slack for one in flight rather than trusting written alone
+            if (written - begin <= CAPACITY - CAPACITY / 4) {
+                return end;
+            }
+        }
+    }
+    
+    /**
+     * Samples written since start-up; stops advancing while playback is paused.
+     */
+    public long getPosition() {
+        return written;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    @Override
+    public String getName() {
+        return "tap";
+    }
+}
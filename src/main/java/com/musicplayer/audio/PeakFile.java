@@ -0,0 +1,266 @@
+package com.musicplayer.audio;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Waveform overview of one track: min, max and RMS per block of frames
+ * Level 0 holds one entry per BLOCK_FRAMES frames, every further level halves the
+ * previous one, so any zoom reads about one entry per drawn column. Values are
+ * stored as bytes and the file is memory-mapped, so drawing never decodes audio.
+ */
+public final class PeakFile {
+    public static final int BLOCK_FRAMES = 256;
+    private static final int MAGIC = 0x4D50504B; // "MPPK"
+    private static final int VERSION = 1;
+    private static final int ENTRY_BYTES = 3;
+    private static final int MIN_LEVEL_ENTRIES = 64;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 8 + 4;
+    private static final int LEVEL_BYTES = 4 + 8;
+    
+    private final MappedByteBuffer data;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final int sampleRate;
+    private final long frameLength;
+    private final int[] entries;
+    private final int[] offsets;
+    
+    private PeakFile(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.getInt(0) != MAGIC || data.getShort(4) != VERSION) {
+            throw new IOException("Not a peak file");
+        }
+        int levels = data.getShort(6);
+        this.sourceLength = data.getLong(8);
+        this.sourceModified = data.getLong(16);
+        this.sampleRate = data.getInt(24);
+        this.frameLength = data.getLong(28);
+        this.entries = new int[levels];
+        this.offsets = new int[levels];
+        for (int level = 0; level < levels; level++) {
+            int at = HEADER_BYTES + level * LEVEL_BYTES;
+            entries[level] = data.getInt(at);
+            offsets[level] = (int) data.getLong(at + 4);
+            if (offsets[level] + (long) entries[level] * ENTRY_BYTES > data.capacity()) {
+                throw new IOException("Truncated peak file");
+            }
+        }
+    }
+    
+    /**
+     * Maps an existing peak file read-only.
+     */
+    public static PeakFile open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return new PeakFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    /**
+     * Decodes the whole track once and writes its overview to target.
+     */
+    public static void extract(File source, File target) throws IOException, UnsupportedAudioFileException {
+        long sourceLength = source.length();
+        long sourceModified = source.lastModified();
+        
+        float[] mins = new float[1024];
+        float[] maxs = new float[1024];
+        float[] squares = new float[1024];
+        int count = 0;
+        int sampleRate;
+        long frames = 0;
+        
+        try (AudioDecoder decoder = AudioDecoders.open(source)) {
+            sampleRate = decoder.getSampleRate();
+            PcmBlock block = new PcmBlock(decoder.getChannels(), BLOCK_FRAMES * 16);
+            
+            // Running entry; decoders return arbitrary block sizes, so entries span reads
+            float min = 0.0f;
+            float max = 0.0f;
+            double sum = 0;
+            int filled = 0;
+            
+            int read;
+            while ((read = decoder.read(block)) >= 0) {
+                int channels = block.getChannels();
+                int start = 0;
+                while (start < read) {
+                    int end = Math.min(read, start + BLOCK_FRAMES - filled);
+                    for (int ch = 0; ch < channels; ch++) {
+                        float[] samples = block.getChannel(ch);
+                        for (int i = start; i < end; i++) {
+                            float sample = samples[i];
+                            min = Math.min(min, sample);
+                            max = Math.max(max, sample);
+                            sum += sample * sample;
+                        }
+                    }
+                    filled += end - start;
+                    start = end;
+                    
+                    if (filled == BLOCK_FRAMES) {
+                        if (count == mins.length) {
+                            mins = Arrays.copyOf(mins, count * 2);
+                            maxs = Arrays.copyOf(maxs, count * 2);
+                            squares = Arrays.copyOf(squares, count * 2);
+                        }
+                        mins[count] = min;
+                        maxs[count] = max;
+                        squares[count] = (float) (sum / (BLOCK_FRAMES * channels));
+                        count++;
+                        min = 0.0f;
+                        max = 0.0f;
+                        sum = 0;
+                        filled = 0;
+                    }
+                }
+                frames += read;
+            }
+            
+            if (filled > 0) {
+                if (count == mins.length) {
+                    mins = Arrays.copyOf(mins, count + 1);
+                    maxs = Arrays.copyOf(maxs, count + 1);
+                    squares = Arrays.copyOf(squares, count + 1);
+                }
+                mins[count] = min;
+                maxs[count] = max;
+                squares[count] = (float) (sum / (filled * Math.max(1, decoder.getChannels())));
+                count++;
+            }
+        }
+        
+        write(target, sourceLength, sourceModified, sampleRate, frames, mins, maxs, squares, count);
+    }
+    
+    private static void write(File target, long sourceLength, long sourceModified, int sampleRate,
+                              long frames, float[] mins, float[] maxs, float[] squares, int count) throws IOException {
+        // Level sizes first, so the table can go in the header
+        int levels = 1;
+        for (int n = count; n > MIN_LEVEL_ENTRIES; n = (n + 1) / 2) {
+            levels++;
+        }
+        
+        File temp = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(levels);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(sampleRate);
+            out.writeLong(frames);
+            out.writeInt(BLOCK_FRAMES);
+            
+            long offset = HEADER_BYTES + (long) levels * LEVEL_BYTES;
+            for (int level = 0, n = count; level < levels; level++, n = (n + 1) / 2) {
+                out.writeInt(n);
+                out.writeLong(offset);
+                offset += (long) n * ENTRY_BYTES;
+            }
+            
+            // Each level is written, then folded in place into the next
+            int n = count;
+            for (int level = 0; level < levels; level++) {
+                for (int i = 0; i < n; i++) {
+                    out.writeByte(quantizeSigned(mins[i]));
+                    out.writeByte(quantizeSigned(maxs[i]));
+                    out.writeByte(Math.round(Math.min(1.0f, (float) Math.sqrt(squares[i])) * 255));
+                }
+                int half = (n + 1) / 2;
+                for (int i = 0; i < half; i++) {
+                    int a = 2 * i;
+                    int b = Math.min(n - 1, a + 1);
+                    mins[i] = Math.min(mins[a], mins[b]);
+                    maxs[i] = Math.max(maxs[a], maxs[b]);
+                    squares[i] = 0.5f * (squares[a] + squares[b]);
+                }
+                n = half;
+            }
+        }
+        
+        // Readers only ever see a complete file
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    private static int quantizeSigned(float value) {
+        return Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * 127);
+    }
+    
+    /**
+     * @return true if the overview was made from the file as it is now
+     */
+    public boolean matches(File source) {
+        return source.length() == sourceLength && source.lastModified() == sourceModified;
+    }
+    
+    /**
+     * Same check as matches(), reading only the header instead of mapping the file.
+     *
+     * @return true if peakFile is an overview of the source as it is now
+     */
+    public static boolean isCurrent(File peakFile, File source) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(peakFile))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) return false;
+            in.readShort();
+            return in.readLong() == source.length() && in.readLong() == source.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Coarsest level whose entries still cover no more than framesPerEntry frames.
+     */
+    public int levelFor(double framesPerEntry) {
+        int level = 0;
+        while (level + 1 < entries.length && ((long) BLOCK_FRAMES << (level + 1)) <= framesPerEntry) {
+            level++;
+        }
+        return level;
+    }
+    
+    public float getMin(int level, int index) {
+        return data.get(offsets[level] + index * ENTRY_BYTES) / 127.0f;
+    }
+    
+    public float getMax(int level, int index) {
+        return data.get(offsets[level] + index * ENTRY_BYTES + 1) / 127.0f;
+    }
+    
+    public float getRms(int level, int index) {
+        return (data.get(offsets[level] + index * ENTRY_BYTES + 2) & 0xFF) / 255.0f;
+    }
+    
+    public int getEntryCount(int level) {
+        return entries[level];
+    }
+    
+    public int getLevelCount() {
+        return entries.length;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    public long getFrameLength() {
+        return frameLength;
+    }
+}
@@ -0,0 +1,283 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Streams one track at a time from a decoder through the pipeline into an AudioOutput
+ * Runs on its own thread; control methods may be called from any thread
+ */
+public class PlaybackEngine {
+    public static final int BLOCK_FRAMES = 1024;
+    
+    // How far a non-realtime output may run ahead of the wall clock
+    private static final long PACING_LEAD_NANOS = 50_000_000L;
+    
+    public interface Listener {
+        /**
+         * Called on a thread of its own once the playback thread has ended, so it
+         * may start the next track.
+         */
+        void onTrackFinished();
+        
+        void onPlaybackError(String message);
+    }
+    
+    private final PlaybackPipeline pipeline;
+    private final PcmBlock block;
+    private final Object pauseLock = new Object();
+    private volatile AudioOutput output;
+    private volatile Listener listener;
+    
+    private Thread playbackThread;
+    private AudioDecoder decoder;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile long framesRendered;
+    private volatile int sampleRate;
+    private long trackFrames;
+    
+    // Output format; 0 means "whatever the first track uses", later tracks are converted to it
+    private int requestedRate;
+    private int requestedChannels;
+    private int openRate;
+    private int openChannels;
+    
+    // Wall-clock pacing for outputs that don't block (null sink, WAV writer)
+    private long paceStartNanos;
+    
+    public PlaybackEngine(PlaybackPipeline pipeline, AudioOutput output) {
+        this.pipeline = pipeline;
+        this.output = output;
+        this.block = new PcmBlock(2, BLOCK_FRAMES);
+    }
+    
+    public synchronized void start(File file) throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+        stop();
+        
+        AudioDecoder opened = AudioDecoders.open(file);
+        try {
+            openOutput(opened.getSampleRate(), opened.getChannels());
+        } catch (LineUnavailableException | IOException e) {
+            opened.close();
+            throw e;
+        }
+        opened = ConvertingDecoder.wrap(opened, openRate, openChannels, BLOCK_FRAMES);
+        
+        pipeline.prepare(opened.getSampleRate(), opened.getChannels());
+        pipeline.reset();
+        
+        this.decoder = opened;
+        this.sampleRate = opened.getSampleRate();
+        this.trackFrames = opened.getFrameLength();
+        this.framesRendered = 0;
+        this.paused = false;
+        this.running = true;
+        this.paceStartNanos = System.nanoTime();
+        
+        playbackThread = new Thread(this::runPlayback, "playback");
+        playbackThread.setDaemon(true);
+        playbackThread.start();
+    }
+    
+    private void openOutput(int trackRate, int trackChannels) throws LineUnavailableException, IOException {
+        AudioOutput current = output;
+        if (current.isOpen()) {
+            return; // keep the line running, the track is converted to its format instead
+        }
+        
+        int rate = requestedRate > 0 ? requestedRate : trackRate;
+        int channels = requestedChannels > 0 ? requestedChannels : trackChannels;
+        current.open(rate, channels);
+        openRate = rate;
+        openChannels = channels;
+    }
+    
+    /**
+     * Fixes the output format; 0 lets the first track decide. Reopens the output on the next start().
+     */
+    public synchronized void setOutputFormat(int sampleRate, int channels) {
+        stop();
+        this.requestedRate = sampleRate;
+        this.requestedChannels = channels;
+        try {
+            output.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+    
+    private void runPlayback() {
+        AudioDecoder source = decoder;
+        AudioOutput sink = output;
+        boolean finished = false;
+        
+        try {
+            while (running) {
+                if (paused) {
+                    synchronized (pauseLock) {
+                        while (paused && running) {
+                            pauseLock.wait();
+                        }
+                    }
+                    continue;
+                }
+                
+                int frames = source.read(block);
+                if (frames < 0) {
+                    finished = true;
+                    break;
+                }
+                
+                pipeline.process(block);
+                sink.write(block);
+                framesRendered += frames;
+                
+                if (!sink.isRealtime()) {
+                    pace();
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                notifyError("Playback error: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+        }
+        
+        if (finished && running) {
+            running = false;
+            Listener current = listener;
+            if (current != null) {
+                // Not from this thread: the listener may stop() or start(), which wait for it
+                Thread notifier = new Thread(current::onTrackFinished, "playback-finished");
+                notifier.setDaemon(true);
+                notifier.start();
+            }
+        }
+    }
+    
+    private void pace() throws InterruptedException {
+        long aheadNanos = framesRendered * 1_000_000_000L / sampleRate - (System.nanoTime() - paceStartNanos);
+        if (aheadNanos > PACING_LEAD_NANOS) {
+            Thread.sleep((aheadNanos - PACING_LEAD_NANOS) / 1_000_000L);
+        }
+    }
+    
+    private void notifyError(String message) {
+        Listener current = listener;
+        if (current != null) {
+            current.onPlaybackError(message);
+        }
+    }
+    
+    public void pause() {
+        if (!running || paused) return;
+        paused = true;
+        output.pause();
+    }
+    
+    public void resume() {
+        if (!running || !paused) return;
+        
+        // Rebase pacing so the clock continues from the paused position
+        paceStartNanos = System.nanoTime() - framesRendered * 1_000_000_000L / Math.max(1, sampleRate);
+        output.resume();
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+    
+    public synchronized void stop() {
+        if (playbackThread == null) return;
+        
+        // A track that ended by itself has queued audio still to play; leave it, so
+        // the next track follows on the open line without a gap
+        boolean interrupting = running;
+        running = false;
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+        if (interrupting) {
+            output.flush();
+            output.resume();
+        }
+        
+        // No timeout: the next start() must not share the block and pipeline with a
+        // thread still running. The flush above has released any blocked write.
+        boolean interrupted = false;
+        while (playbackThread.isAlive()) {
+            try {
+                playbackThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        playbackThread = null;
+        decoder = null;
+    }
+    
+    public synchronized void close() {
+        stop();
+        try {
+            output.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+    
+    /**
+     * Swaps the output device. The new output is opened on the next start().
+     */
+    public synchronized void setOutput(AudioOutput newOutput) {
+        stop();
+        try {
+            output.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        this.output = newOutput;
+    }
+    
+    /**
+     * @return position of the audio currently leaving the output, in microseconds
+     */
+    public long getPositionMicros() {
+        int rate = sampleRate;
+        if (rate == 0) return 0;
+        
+        long latencyFrames = (long) (output.getLatencyMillis() * rate / 1000.0);
+        long frames = Math.max(0, framesRendered - latencyFrames);
+        return frames * 1_000_000L / rate;
+    }
+    
+    /**
+     * @return track length in microseconds, or -1 if the decoder doesn't know it
+     */
+    public long getLengthMicros() {
+        int rate = sampleRate;
+        return trackFrames < 0 || rate == 0 ? -1 : trackFrames * 1_000_000L / rate;
+    }
+    
+    public void setListener(Listener listener) { this.listener = listener; }
+    
+    // Getters
+    public boolean isActive() { return running; }
+    public boolean isPaused() { return paused; }
+    public AudioOutput getOutput() { return output; }
+    public PlaybackPipeline getPipeline() { return pipeline; }
+}
@@ -0,0 +1,93 @@
+package com.musicplayer.audio;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered chain of DSP processors between the decoder and the output
+ * With profiling on, every processor gets its own CPU/allocation counters
+ */
+public class PlaybackPipeline {
+    // Copy-on-write arrays so the audio thread never takes a lock to walk the chain
+    private volatile AudioProcessor[] processors;
+    private volatile StageStats[] stageStats;
+    private volatile boolean profiling;
+    private int sampleRate;
+    private int channels;
+    
+    public PlaybackPipeline() {
+        this.processors = new AudioProcessor[0];
+        this.stageStats = new StageStats[0];
+        this.profiling = false;
+    }
+    
+    public synchronized void addProcessor(AudioProcessor processor) {
+        if (sampleRate > 0) {
+            processor.prepare(sampleRate, channels);
+        }
+        
+        AudioProcessor[] grownProcessors = Arrays.copyOf(processors, processors.length + 1);
+        StageStats[] grownStats = Arrays.copyOf(stageStats, stageStats.length + 1);
+        grownProcessors[processors.length] = processor;
+        grownStats[stageStats.length] = new StageStats(processor.getName());
+        
+        stageStats = grownStats;
+        processors = grownProcessors;
+    }
+    
+    public synchronized void prepare(int sampleRate, int channels) {
+        if (this.sampleRate == sampleRate && this.channels == channels) return;
+        
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        for (AudioProcessor processor : processors) {
+            processor.prepare(sampleRate, channels);
+        }
+    }
+    
+    public void reset() {
+        for (AudioProcessor processor : processors) {
+            processor.reset();
+        }
+    }
+    
+    public void process(PcmBlock block) {
+        if (block.getFrames() == 0) return;
+        
+        AudioProcessor[] chain = processors;
+        if (!profiling) {
+            for (AudioProcessor processor : chain) {
+                processor.process(block);
+            }
+            return;
+        }
+        
+        StageStats[] stats = stageStats;
+        for (int i = 0; i < chain.length; i++) {
+            stats[i].begin();
+            chain[i].process(block);
+            stats[i].end();
+        }
+    }
+    
+    /**
+     * Counters start from zero when profiling is turned on, and keep their totals
+     * when it is turned off, so they can be read afterwards.
+     */
+    public void setProfiling(boolean profiling) {
+        if (profiling) {
+            for (StageStats stats : stageStats) {
+                stats.reset();
+            }
+        }
+        this.profiling = profiling;
+    }
+    
+    // Getters
+    public List<AudioProcessor> getProcessors() { return Collections.unmodifiableList(Arrays.asList(processors)); }
+    public List<StageStats> getStageStats() { return Collections.unmodifiableList(Arrays.asList(stageStats)); }
+    public boolean isProfiling() { return profiling; }
+    public synchronized int getSampleRate() { return sampleRate; }
+    public synchronized int getChannels() { return channels; }
+}
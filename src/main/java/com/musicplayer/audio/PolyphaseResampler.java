@@ -0,0 +1,209 @@
+package com.musicplayer.audio;
+
+/**
+ * Streaming polyphase windowed-sinc sample-rate converter
+ * The Kaiser-windowed prototype filter is split into one coefficient row per
+ * output phase and stored flat and time-reversed, so the inner loop is a plain
+ * dot product over two contiguous float arrays that the JIT can vectorize.
+ */
+public class PolyphaseResampler {
+    public static final int DEFAULT_TAPS = 32;
+    
+    // Rates whose reduced ratio needs more phases than this use the nearest phase
+    private static final int MAX_PHASES = 1024;
+    private static final double KAISER_BETA = 8.6;
+    private static final double PASSBAND = 0.94;
+    
+    private final int inputRate;
+    private final int outputRate;
+    private final int channels;
+    private final int taps;
+    private final int interpolation; // L
+    private final int decimation;    // M
+    private final int phases;
+    private final float[] coefficients;
+    
+    private float[][] history;
+    private int fill;
+    private int position;
+    private long phase;
+    
+    public PolyphaseResampler(int inputRate, int outputRate, int channels) {
+        this(inputRate, outputRate, channels, DEFAULT_TAPS);
+    }
+    
+    public PolyphaseResampler(int inputRate, int outputRate, int channels, int taps) {
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.channels = channels;
+        this.taps = taps;
+        
+        int gcd = gcd(inputRate, outputRate);
+        this.interpolation = outputRate / gcd;
+        this.decimation = inputRate / gcd;
+        this.phases = Math.min(interpolation, MAX_PHASES);
+        this.coefficients = designFilter();
+        
+        this.history = new float[channels][taps * 4];
+        reset();
+    }
+    
+    /**
+     * Builds the prototype low-pass at phases x input rate and splits it into rows.
+     */
+    private float[] designFilter() {
+        double cutoff = PASSBAND * Math.min(1.0, (double) interpolation / decimation);
+        int length = taps * phases;
+        double center = (length - 1) / 2.0;
+        double besselBeta = besselI0(KAISER_BETA);
+        
+        float[] table = new float[length];
+        for (int p = 0; p < phases; p++) {
+            double sum = 0;
+            double[] row = new double[taps];
+            for (int k = 0; k < taps; k++) {
+                int j = k * phases + p;
+                double t = (j - center) / phases;
+                double x = 2.0 * (j - center) / (length - 1);
+                double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - x * x))) / besselBeta;
+                row[k] = cutoff * sinc(cutoff * t) * window;
+                sum += row[k];
+            }
+            // Normalise each phase to unity DC gain and store reversed for the dot product
+            for (int k = 0; k < taps; k++) {
+                table[p * taps + (taps - 1 - k)] = (float) (row[k] / sum);
+            }
+        }
+        return table;
+    }
+    
+    public void reset() {
+        int delay = taps / 2;
+        for (float[] channel : history) {
+            java.util.Arrays.fill(channel, 0.0f);
+        }
+        // Prime with fewer than taps-1 zeros so the filter's group delay is cancelled
+        fill = taps - 1 - delay;
+        position = taps - 1;
+        phase = 0;
+    }
+    
+    /**
+     * Appends input frames. Only grows the history buffer the first time a larger
+     * block arrives.
+     */
+    public void write(float[][] input, int offset, int frames) {
+        compact();
+        
+        if (fill + frames > history[0].length) {
+            int size = Math.max(fill + frames, history[0].length * 2);
+            for (int ch = 0; ch < channels; ch++) {
+                history[ch] = java.util.Arrays.copyOf(history[ch], size);
+            }
+        }
+        
+        for (int ch = 0; ch < channels; ch++) {
+            System.arraycopy(input[ch], offset, history[ch], fill, frames);
+        }
+        fill += frames;
+    }
+    
+    /**
+     * Feeds the zeros needed to push the last real samples out of the filter.
+     */
+    public void flush() {
+        compact();
+        int delay = taps / 2;
+        if (fill + delay > history[0].length) {
+            for (int ch = 0; ch < channels; ch++) {
+                history[ch] = java.util.Arrays.copyOf(history[ch], fill + delay);
+            }
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            java.util.Arrays.fill(history[ch], fill, fill + delay, 0.0f);
+        }
+        fill += delay;
+    }
+    
+    /**
+     * Produces as many output frames as the buffered input allows.
+     *
+     * @return frames written into output starting at offset
+     */
+    public int read(float[][] output, int offset, int maxFrames) {
+        int produced = 0;
+        
+        while (produced < maxFrames && position < fill) {
+            int row = phaseRow();
+            int start = position - taps + 1;
+            
+            for (int ch = 0; ch < channels; ch++) {
+                float[] in = history[ch];
+                float acc = 0.0f;
+                for (int k = 0; k < taps; k++) {
+                    acc += coefficients[row + k] * in[start + k];
+                }
+                output[ch][offset + produced] = acc;
+            }
+            
+            produced++;
+            phase += decimation;
+            position += (int) (phase / interpolation);
+            phase %= interpolation;
+        }
+        
+        return produced;
+    }
+    
+    private int phaseRow() {
+        if (phases == interpolation) {
+            return (int) phase * taps;
+        }
+        // Very large reduced ratios: round to the nearest stored phase
+        int nearest = (int) ((phase * phases + interpolation / 2) / interpolation);
+        return Math.min(nearest, phases - 1) * taps;
+    }
+    
+    private void compact() {
+        int shift = Math.min(position - (taps - 1), fill);
+        if (shift <= 0) return;
+        
+        for (int ch = 0; ch < channels; ch++) {
+            System.arraycopy(history[ch], shift, history[ch], 0, fill - shift);
+        }
+        fill -= shift;
+        position -= shift;
+    }
+    
+    private static double sinc(double x) {
+        if (Math.abs(x) < 1e-12) return 1.0;
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+    
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double halfX = x / 2.0;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < 1e-12 * sum) break;
+        }
+        return sum;
+    }
+    
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+    
+    // Getters
+    public int getInputRate() { return inputRate; }
+    public int getOutputRate() { return outputRate; }
+    public int getChannels() { return channels; }
+    public int getTaps() { return taps; }
+}
@@ -0,0 +1,89 @@
+package com.musicplayer.audio;
+
+/**
+ * FFT of real signals, packed into a complex FFT of half the length
+ * A real block of size N produces N/2 + 1 bins (DC to Nyquist). Scratch space is
+ * owned by the instance, so one RealFft must not be shared between threads.
+ */
+public final class RealFft {
+    private final int size;
+    private final int half;
+    private final Fft fft;
+    private final float[] cos;
+    private final float[] sin;
+    private final float[] zRe;
+    private final float[] zIm;
+    
+    public RealFft(int size) {
+        this.size = size;
+        this.half = size / 2;
+        this.fft = new Fft(half);
+        this.cos = new float[half + 1];
+        this.sin = new float[half + 1];
+        this.zRe = new float[half];
+        this.zIm = new float[half];
+        for (int k = 0; k <= half; k++) {
+            double angle = -2.0 * Math.PI * k / size;
+            cos[k] = (float) Math.cos(angle);
+            sin[k] = (float) Math.sin(angle);
+        }
+    }
+    
+    /**
+     * @param input  size real samples
+     * @param re     receives size/2 + 1 real parts
+     * @param im     receives size/2 + 1 imaginary parts
+     */
+    public void forward(float[] input, float[] re, float[] im) {
+        for (int n = 0; n < half; n++) {
+            zRe[n] = input[2 * n];
+            zIm[n] = input[2 * n + 1];
+        }
+        fft.forward(zRe, zIm);
+        
+        for (int k = 0; k <= half; k++) {
+            int a = k == half ? 0 : k;
+            int b = k == 0 ? 0 : half - k;
+            // Even part E = (Z[k] + conj(Z[N/2-k])) / 2, odd part O = (Z[k] - conj(Z[N/2-k])) / 2i
+            float eRe = 0.5f * (zRe[a] + zRe[b]);
+            float eIm = 0.5f * (zIm[a] - zIm[b]);
+            float oRe = 0.5f * (zIm[a] + zIm[b]);
+            float oIm = -0.5f * (zRe[a] - zRe[b]);
+            re[k] = eRe + cos[k] * oRe - sin[k] * oIm;
+            im[k] = eIm + cos[k] * oIm + sin[k] * oRe;
+        }
+    }
+    
+    /**
+     * Inverse of forward(), including the 1/N scale.
+     */
+    public void inverse(float[] re, float[] im, float[] output) {
+        for (int k = 0; k < half; k++) {
+            int b = half - k;
+            float eRe = 0.5f * (re[k] + re[b]);
+            float eIm = 0.5f * (im[k] - im[b]);
+            float dRe = 0.5f * (re[k] - re[b]);
+            float dIm = 0.5f * (im[k] + im[b]);
+            // O = D * e^{+2πik/N}; Z = E + iO
+            float oRe = dRe * cos[k] + dIm * sin[k];
+            float oIm = dIm * cos[k] - dRe * sin[k];
+            zRe[k] = eRe - oIm;
+            zIm[k] = eIm + oRe;
+        }
+        fft.inverse(zRe, zIm);
+        
+        float scale = 1.0f / half;
+        for (int n = 0; n < half; n++) {
+            output[2 * n] = zRe[n] * scale;
+            output[2 * n + 1] = zIm[n] * scale;
+        }
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    public int getBinCount() {
+        return half + 1;
+    }
+}
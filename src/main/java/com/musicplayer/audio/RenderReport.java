@@ -0,0 +1,84 @@
+package com.musicplayer.audio;
+
+import java.util.List;
+
+/**
+ * Result of an offline render: speed relative to realtime and where the time went
+ */
+public class RenderReport {
+    private final String outputName;
+    private final int tracksRendered;
+    private final long framesRendered;
+    private final double audioSeconds;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final List<StageStats> stages;
+    private final List<String> skippedTracks;
+    
+    public RenderReport(String outputName, int tracksRendered, long framesRendered, double audioSeconds,
+                        long wallNanos, long cpuNanos, long allocatedBytes,
+                        List<StageStats> stages, List<String> skippedTracks) {
+        this.outputName = outputName;
+        this.tracksRendered = tracksRendered;
+        this.framesRendered = framesRendered;
+        this.audioSeconds = audioSeconds;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.stages = stages;
+        this.skippedTracks = skippedTracks;
+    }
+    
+    /**
+     * @return seconds of audio produced per second of wall time
+     */
+    public double getRealtimeFactor() {
+        return wallNanos > 0 ? audioSeconds / (wallNanos / 1e9) : 0;
+    }
+    
+    /**
+     * @return bytes allocated per second of wall time on the render thread
+     */
+    public double getAllocationRate() {
+        return wallNanos > 0 ? allocatedBytes / (wallNanos / 1e9) : 0;
+    }
+    
+    public void display() {
+        System.out.println("\n[RENDER] === Offline Render Report ===");
+        System.out.println("Output: " + outputName);
+        System.out.printf("Tracks rendered: %d (%d frames, %.1f s of audio)\n",
+                         tracksRendered, framesRendered, audioSeconds);
+        System.out.printf("Wall time: %.1f ms | CPU time: %.1f ms\n", wallNanos / 1e6, cpuNanos / 1e6);
+        System.out.printf("Realtime factor: %.1fx\n", getRealtimeFactor());
+        if (ThreadMetrics.isAllocationTracked()) {
+            System.out.printf("Allocation: %d bytes total, %.1f KB/s\n", allocatedBytes, getAllocationRate() / 1024);
+        }
+        
+        System.out.println("Per-stage cost:");
+        for (StageStats stage : stages) {
+            double share = cpuNanos > 0 ? 100.0 * stage.getCpuNanos() / cpuNanos : 0;
+            double perSecond = audioSeconds > 0 ? stage.getCpuNanos() / 1e6 / audioSeconds : 0;
+            System.out.printf("  %-20s %9.1f ms CPU (%5.1f%%, %.3f ms per audio second) %10d bytes alloc\n",
+                             stage.getName(), stage.getCpuNanos() / 1e6, share, perSecond, stage.getAllocatedBytes());
+        }
+        
+        if (!skippedTracks.isEmpty()) {
+            System.out.println("Skipped:");
+            for (String skipped : skippedTracks) {
+                System.out.println("  X " + skipped);
+            }
+        }
+    }
+    
+    // Getters
+    public String getOutputName() { return outputName; }
+    public int getTracksRendered() { return tracksRendered; }
+    public long getFramesRendered() { return framesRendered; }
+    public double getAudioSeconds() { return audioSeconds; }
+    public long getWallNanos() { return wallNanos; }
+    public long getCpuNanos() { return cpuNanos; }
+    public long getAllocatedBytes() { return allocatedBytes; }
+    public List<StageStats> getStages() { return stages; }
+    public List<String> getSkippedTracks() { return skippedTracks; }
+}
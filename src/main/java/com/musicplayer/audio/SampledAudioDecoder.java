@@ -0,0 +1,136 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Decoder for the formats JavaSound reads natively (WAV, AIFF, AU)
+ * Handles 8/16/24/32-bit integer and 32-bit float PCM in either byte order
+ */
+public class SampledAudioDecoder implements AudioDecoder {
+    private final AudioInputStream stream;
+    private final AudioFormat format;
+    private final int bytesPerSample;
+    private final int frameSize;
+    private byte[] buffer;
+    
+    public SampledAudioDecoder(File file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(file);
+        AudioFormat sourceFormat = source.getFormat();
+        AudioFormat.Encoding encoding = sourceFormat.getEncoding();
+        
+        if (!AudioFormat.Encoding.PCM_SIGNED.equals(encoding)
+                && !AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)
+                && !AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+            // Compressed encodings (u-law, a-law, ...) are converted to 16-bit PCM once here
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                    sourceFormat.getSampleRate(), 16, sourceFormat.getChannels(),
+                    sourceFormat.getChannels() * 2, sourceFormat.getSampleRate(), false);
+            source = AudioSystem.getAudioInputStream(pcm, source);
+        }
+        
+        this.stream = source;
+        this.format = source.getFormat();
+        this.bytesPerSample = format.getSampleSizeInBits() / 8;
+        this.frameSize = bytesPerSample * format.getChannels();
+        this.buffer = new byte[0];
+    }
+    
+    @Override
+    public int getSampleRate() {
+        return (int) format.getSampleRate();
+    }
+    
+    @Override
+    public int getChannels() {
+        return format.getChannels();
+    }
+    
+    @Override
+    public long getFrameLength() {
+        return stream.getFrameLength() == AudioSystem.NOT_SPECIFIED ? -1 : stream.getFrameLength();
+    }
+    
+    @Override
+    public int read(PcmBlock block) throws IOException {
+        int channels = getChannels();
+        block.configure(channels, getSampleRate());
+        
+        int wanted = block.getCapacity() * frameSize;
+        if (buffer.length < wanted) {
+            buffer = new byte[wanted];
+        }
+        
+        int filled = 0;
+        while (filled < wanted) {
+            int n = stream.read(buffer, filled, wanted - filled);
+            if (n < 0) break;
+            filled += n;
+        }
+        
+        int frames = filled / frameSize;
+        if (frames == 0) {
+            block.setFrames(0);
+            return -1;
+        }
+        
+        boolean bigEndian = format.isBigEndian();
+        boolean unsigned = AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+        boolean floating = AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding());
+        
+        if (bytesPerSample == 2 && !bigEndian && !unsigned && !floating) {
+            // The common CD/WAV case goes through the (possibly vectorized) kernel
+            DspKernels.get().deinterleavePcm16(buffer, 0, channels, frames, block, 0);
+            block.setFrames(frames);
+            return frames;
+        }
+        
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = block.getChannel(ch);
+            int offset = ch * bytesPerSample;
+            for (int i = 0; i < frames; i++, offset += frameSize) {
+                out[i] = floating
+                        ? Float.intBitsToFloat(readInt(offset, 4, bigEndian))
+                        : decodeInteger(offset, bigEndian, unsigned);
+            }
+        }
+        
+        block.setFrames(frames);
+        return frames;
+    }
+    
+    private float decodeInteger(int offset, boolean bigEndian, boolean unsigned) {
+        switch (bytesPerSample) {
+            case 1:
+                int b = unsigned ? (buffer[offset] & 0xFF) - 128 : buffer[offset];
+                return b / 128.0f;
+            case 2:
+                int s = readInt(offset, 2, bigEndian);
+                return (short) s / 32768.0f;
+            case 3:
+                int t = readInt(offset, 3, bigEndian) << 8 >> 8;
+                return t / 8388608.0f;
+            default:
+                return readInt(offset, 4, bigEndian) / 2147483648.0f;
+        }
+    }
+    
+    private int readInt(int offset, int bytes, boolean bigEndian) {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int index = bigEndian ? offset + i : offset + bytes - 1 - i;
+            value = (value << 8) | (buffer[index] & 0xFF);
+        }
+        return value;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -0,0 +1,179 @@
+package com.musicplayer.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * JavaSound output on a SourceDataLine with selectable mixer and buffer sizes
+ * A smaller buffer lowers latency but raises the risk of dropouts on a loaded machine
+ */
+public class SourceDataLineOutput implements AudioOutput {
+    public static final int DEFAULT_BUFFER_FRAMES = 8192;
+    public static final int DEFAULT_PERIOD_FRAMES = 1024;
+    
+    private final String mixerName;
+    private final int bufferFrames;
+    private final int periodFrames;
+    
+    private SourceDataLine line;
+    private byte[] buffer;
+    private int channels;
+    private int sampleRate;
+    private int frameSize;
+    private volatile long framesWritten;
+    private volatile long underruns;
+    private volatile boolean paused;
+    
+    public SourceDataLineOutput() {
+        this(null, DEFAULT_BUFFER_FRAMES, DEFAULT_PERIOD_FRAMES);
+    }
+    
+    /**
+     * @param mixerName    mixer to open the line on, or null for the system default
+     * @param bufferFrames size of the device buffer in frames
+     * @param periodFrames frames handed to the line per write call
+     */
+    public SourceDataLineOutput(String mixerName, int bufferFrames, int periodFrames) {
+        this.mixerName = mixerName;
+        this.bufferFrames = Math.max(256, bufferFrames);
+        this.periodFrames = Math.max(64, Math.min(periodFrames, this.bufferFrames / 2));
+    }
+    
+    @Override
+    public void open(int sampleRate, int channels) throws LineUnavailableException {
+        AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+        DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+        
+        SourceDataLine opened;
+        try {
+            if (mixerName != null) {
+                Mixer.Info mixerInfo = AudioOutputs.findMixer(mixerName);
+                if (mixerInfo == null) {
+                    throw new LineUnavailableException("Mixer not found: " + mixerName);
+                }
+                opened = (SourceDataLine) AudioSystem.getMixer(mixerInfo).getLine(info);
+            } else {
+                opened = (SourceDataLine) AudioSystem.getLine(info);
+            }
+        } catch (IllegalArgumentException e) {
+            // Thrown instead of LineUnavailableException when no device supports the format (headless machines)
+            throw new LineUnavailableException(e.getMessage());
+        }
+        
+        this.frameSize = format.getFrameSize();
+        opened.open(format, bufferFrames * frameSize);
+        opened.start();
+        
+        this.line = opened;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.buffer = new byte[periodFrames * frameSize];
+        this.framesWritten = 0;
+        this.paused = false;
+    }
+    
+    @Override
+    public void write(PcmBlock block) {
+        int frames = block.getFrames();
+        int offset = 0;
+        
+        while (offset < frames) {
+            int count = Math.min(periodFrames, frames - offset);
+            convert(block, offset, count);
+            
+            // A full buffer of free space after the first write means the device ran dry
+            if (!paused && framesWritten > 0 && line.available() >= line.getBufferSize()) {
+                underruns++;
+            }
+            
+            line.write(buffer, 0, count * frameSize);
+            framesWritten += count;
+            offset += count;
+        }
+    }
+    
+    private void convert(PcmBlock block, int offset, int count) {
+        DspKernels.get().interleavePcm16(block, offset, count, channels, buffer, 0);
+    }
+    
+    @Override
+    public void drain() {
+        if (line != null) {
+            line.drain();
+        }
+    }
+    
+    @Override
+    public void pause() {
+        paused = true;
+        if (line != null) {
+            line.stop();
+        }
+    }
+    
+    @Override
+    public void resume() {
+        if (line != null) {
+            line.start();
+        }
+        paused = false;
+    }
+    
+    @Override
+    public void flush() {
+        if (line != null) {
+            line.flush();
+            // Flushed frames are never rendered, so rebase the written count on the device clock
+            framesWritten = line.getLongFramePosition();
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (line != null) {
+            line.stop();
+            line.flush();
+            line.close();
+            line = null;
+        }
+    }
+    
+    @Override
+    public double getLatencyMillis() {
+        SourceDataLine current = line;
+        if (current == null || sampleRate == 0) return 0;
+        
+        long queued = framesWritten - current.getLongFramePosition();
+        return Math.max(0, queued) * 1000.0 / sampleRate;
+    }
+    
+    @Override
+    public long getUnderrunCount() {
+        return underruns;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return line != null;
+    }
+    
+    @Override
+    public boolean isRealtime() {
+        return true;
+    }
+    
+    @Override
+    public String getName() {
+        return "javasound:" + (mixerName != null ? mixerName : "default")
+                + " (buffer " + bufferFrames + ", period " + periodFrames + ")";
+    }
+    
+    // Getters
+    public String getMixerName() { return mixerName; }
+    public int getBufferFrames() { return bufferFrames; }
+    public int getPeriodFrames() { return periodFrames; }
+}
@@ -0,0 +1,299 @@
+package com.musicplayer.audio;
+
+import java.util.Arrays;
+
+/**
+ * Band levels of the audio currently playing, for the visualizer
+ * Each analyze() reads the latest window from a PcmTap, applies a Hann window and
+ * a real FFT, and folds the bins into bands around the given centre frequencies.
+ * Levels rise instantly and fall at a fixed rate; peaks hold briefly, then fall.
+ * Further band layouts can be added to read from the same FFT, so several views
+ * of one window cost one transform. Every buffer is allocated up front, so
+ * analyze() never allocates. Not thread-safe:
+ * one thread (the visualizer's) drives analyze() and reads the results.
+ */
+public class SpectrumAnalyzer {
+    public static final int FFT_SIZE = 2048;
+    private static final double FLOOR_DB = -60.0;
+    // Level units per second, where 1.0 is the full 60 dB display range
+    private static final float RELEASE_PER_SECOND = 1.5f;
+    private static final float PEAK_FALL_PER_SECOND = 0.6f;
+    private static final float PEAK_HOLD_SECONDS = 0.5f;
+    // No new audio for this long (paused, stopped) lets everything fall to zero
+    private static final float STALE_SECONDS = 0.15f;
+    private static final float MAX_FRAME_SECONDS = 0.25f;
+    
+    private final PcmTap tap;
+    private final RealFft fft;
+    private final float[] window;
+    private final float[] samples;
+    private final float[] re;
+    private final float[] im;
+    private final float amplitudeScale;
+    // The layout of the constructor first, then any added
+    private final Bands primary;
+    private Bands[] layouts;
+    
+    private volatile double latencyMillis;
+    private int binSampleRate;
+    private long lastEnd;
+    private long lastNanos;
+    private float staleSeconds;
+    private float rmsTarget;
+    private float rmsLevel;
+    
+    /**
+     * Levels and peaks of one set of bands, read from the analyzer's FFT.
+     */
+    public static final class Bands {
+        private final double[] centres;
+        private final int[] binLow;
+        private final int[] binHigh;
+        private final float[] targets;
+        private final float[] levels;
+        private final float[] peaks;
+        private final float[] peakAges;
+        
+        private Bands(double[] centreFrequencies) {
+            this.centres = centreFrequencies.clone();
+            this.binLow = new int[centres.length];
+            this.binHigh = new int[centres.length];
+            this.targets = new float[centres.length];
+            this.levels = new float[centres.length];
+            this.peaks = new float[centres.length];
+            this.peakAges = new float[centres.length];
+        }
+        
+        /**
+         * Splits the spectrum at the geometric midpoints between neighbouring centres.
+         * Bands above Nyquist get no bins and stay at zero.
+         */
+        private void assignBins(int sampleRate, int bins) {
+            double binHz = (double) sampleRate / FFT_SIZE;
+            int count = centres.length;
+            
+            for (int band = 0; band < count; band++) {
+                double centre = centres[band];
+                double lower = band > 0
+                    ? Math.sqrt(centres[band - 1] * centre)
+                    : centre * centre / Math.sqrt(centre * centres[Math.min(1, count - 1)]);
+                double upper = band < count - 1
+                    ? Math.sqrt(centre * centres[band + 1])
+                    : centre * centre / lower;
+                
+                int low = Math.max(1, (int) Math.ceil(lower / binHz));
+                int high = Math.min(bins, (int) Math.ceil(upper / binHz));
+                if (high <= low) {
+                    // Narrower than a bin: take the one nearest the centre
+                    low = (int) Math.round(centre / binHz);
+                    high = low + 1;
+                }
+                if (low >= bins - 1 || centre * 2 > sampleRate) {
+                    low = 0;
+                    high = 0;
+                }
+                binLow[band] = low;
+                binHigh[band] = Math.min(high, bins);
+            }
+        }
+        
+        private void computeTargets(float[] re, float[] im, float amplitudeScale) {
+            for (int band = 0; band < targets.length; band++) {
+                double power = 0;
+                for (int bin = binLow[band]; bin < binHigh[band]; bin++) {
+                    power += re[bin] * re[bin] + im[bin] * im[bin];
+                }
+                targets[band] = toLevel(Math.sqrt(power) * amplitudeScale);
+            }
+        }
+        
+        private void advance(float elapsed, float release) {
+            for (int band = 0; band < levels.length; band++) {
+                levels[band] = Math.max(targets[band], levels[band] - release);
+                
+                if (levels[band] >= peaks[band]) {
+                    peaks[band] = levels[band];
+                    peakAges[band] = 0.0f;
+                } else {
+                    peakAges[band] += elapsed;
+                    if (peakAges[band] > PEAK_HOLD_SECONDS) {
+                        peaks[band] = Math.max(levels[band], peaks[band] - PEAK_FALL_PER_SECOND * elapsed);
+                    }
+                }
+            }
+        }
+        
+        public int getBandCount() {
+            return levels.length;
+        }
+        
+        /**
+         * @return band level in 0..1 over a 60 dB range
+         */
+        public float getLevel(int band) {
+            return levels[band];
+        }
+        
+        /**
+         * @return band level of the latest window, without release smoothing
+         */
+        public float getInstantLevel(int band) {
+            return targets[band];
+        }
+        
+        public float getPeak(int band) {
+            return peaks[band];
+        }
+        
+        private boolean isSettled() {
+            for (int band = 0; band < levels.length; band++) {
+                if (levels[band] > 0.0f || peaks[band] > 0.0f) return false;
+            }
+            return true;
+        }
+    }
+    
+    public SpectrumAnalyzer(PcmTap tap, double[] centreFrequencies) {
+        this.tap = tap;
+        this.fft = new RealFft(FFT_SIZE);
+        this.window = new float[FFT_SIZE];
+        this.samples = new float[FFT_SIZE];
+        this.re = new float[fft.getBinCount()];
+        this.im = new float[fft.getBinCount()];
+        this.primary = new Bands(centreFrequencies);
+        this.layouts = new Bands[] {primary};
+        
+        double windowSum = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / FFT_SIZE));
+            windowSum += window[i];
+        }
+        // Bin magnitude of a sine of amplitude A is A * sum(w) / 2
+        this.amplitudeScale = (float) (2.0 / windowSum);
+        this.lastEnd = -1;
+    }
+    
+    /**
+     * Adds another set of bands, filled by every later analyze() from the same FFT.
+     * Call before analysing starts, from the thread that drives analyze().
+     */
+    public Bands addBands(double[] centreFrequencies) {
+        Bands bands = new Bands(centreFrequencies);
+        layouts = Arrays.copyOf(layouts, layouts.length + 1);
+        layouts[layouts.length - 1] = bands;
+        binSampleRate = 0;
+        return bands;
+    }
+    
+    /**
+     * Analyses the newest audio and advances the level/peak animation.
+     * @return true if new audio was analysed, false if the levels only decayed
+     */
+    public boolean analyze() {
+        long now = System.nanoTime();
+        float elapsed = lastNanos == 0 ? 0.0f : Math.min(MAX_FRAME_SECONDS, (now - lastNanos) / 1e9f);
+        lastNanos = now;
+        
+        int sampleRate = tap.getSampleRate();
+        int delay = (int) (latencyMillis * sampleRate / 1000.0);
+        long end = tap.read(samples, FFT_SIZE, delay);
+        
+        boolean fresh = end >= 0 && end != lastEnd;
+        if (fresh) {
+            lastEnd = end;
+            staleSeconds = 0.0f;
+            computeTargets(sampleRate);
+        } else {
+            // Frames can outpace audio blocks; keep the last spectrum until audio really stops
+            staleSeconds += elapsed;
+            if (staleSeconds > STALE_SECONDS) {
+                for (Bands bands : layouts) {
+                    Arrays.fill(bands.targets, 0.0f);
+                }
+                rmsTarget = 0.0f;
+            }
+        }
+        
+        float release = RELEASE_PER_SECOND * elapsed;
+        for (Bands bands : layouts) {
+            bands.advance(elapsed, release);
+        }
+        rmsLevel = Math.max(rmsTarget, rmsLevel - release);
+        return fresh;
+    }
+    
+    private void computeTargets(int sampleRate) {
+        if (sampleRate != binSampleRate) {
+            for (Bands bands : layouts) {
+                bands.assignBins(sampleRate, fft.getBinCount());
+            }
+            binSampleRate = sampleRate;
+        }
+        
+        double energy = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            energy += samples[i] * samples[i];
+            samples[i] *= window[i];
+        }
+        rmsTarget = toLevel(Math.sqrt(energy / FFT_SIZE) * Math.sqrt(2.0));
+        
+        fft.forward(samples, re, im);
+        
+        for (Bands bands : layouts) {
+            bands.computeTargets(re, im, amplitudeScale);
+        }
+    }
+    
+    private static float toLevel(double amplitude) {
+        if (amplitude <= 0) return 0.0f;
+        double db = 20.0 * Math.log10(amplitude);
+        return (float) Math.max(0.0, Math.min(1.0, 1.0 - db / FLOOR_DB));
+    }
+    
+    /**
+     * Delays the analysed window by the output's latency so bars match what is heard.
+     */
+    public void setLatencyMillis(double latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+    
+    public int getBandCount() {
+        return primary.getBandCount();
+    }
+    
+    /**
+     * @return band level in 0..1 over a 60 dB range
+     */
+    public float getLevel(int band) {
+        return primary.getLevel(band);
+    }
+    
+    /**
+     * @return band level of the latest window, without release smoothing
+     */
+    public float getInstantLevel(int band) {
+        return primary.getInstantLevel(band);
+    }
+    
+    public float getPeak(int band) {
+        return primary.getPeak(band);
+    }
+    
+    /**
+     * @return true once every level and held peak has fallen to zero
+     */
+    public boolean isSettled() {
+        if (rmsLevel > 0.0f) return false;
+        for (Bands bands : layouts) {
+            if (!bands.isSettled()) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * @return broadband RMS level in 0..1 over the same 60 dB range
+     */
+    public float getOverallLevel() {
+        return rmsLevel;
+    }
+}
@@ -0,0 +1,42 @@
+package com.musicplayer.audio;
+
+/**
+ * Accumulated cost of one pipeline stage (decode, a DSP processor, output)
+ */
+public final class StageStats {
+    private final String name;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long invocations;
+    
+    // Readings taken by begin(), consumed by end()
+    private long startCpu;
+    private long startAllocated;
+    
+    public StageStats(String name) {
+        this.name = name;
+    }
+    
+    public void begin() {
+        startAllocated = ThreadMetrics.allocatedBytes();
+        startCpu = ThreadMetrics.cpuTimeNanos();
+    }
+    
+    public void end() {
+        cpuNanos += ThreadMetrics.cpuTimeNanos() - startCpu;
+        allocatedBytes += ThreadMetrics.allocatedBytes() - startAllocated;
+        invocations++;
+    }
+    
+    public void reset() {
+        cpuNanos = 0;
+        allocatedBytes = 0;
+        invocations = 0;
+    }
+    
+    // Getters
+    public String getName() { return name; }
+    public long getCpuNanos() { return cpuNanos; }
+    public long getAllocatedBytes() { return allocatedBytes; }
+    public long getInvocations() { return invocations; }
+}
@@ -0,0 +1,93 @@
+package com.musicplayer.audio;
+
+import java.util.Arrays;
+
+/**
+ * Virtual surround: mid/side widening plus an "HRTF-lite" crossfeed
+ * Each ear gets a delayed, low-passed and inverted copy of the opposite channel,
+ * which pushes the image outside the speakers/headphones without a full HRTF.
+ */
+public class StereoWidener implements AudioProcessor {
+    private static final double HEAD_DELAY_SECONDS = 0.0003;
+    private static final double SHADOW_CUTOFF = 1500.0;
+    
+    private float[][] delayLines;
+    private int delayLength;
+    private int delayPos;
+    private float shadowCoefficient;
+    private final float[] shadowState;
+    
+    private volatile boolean enabled;
+    private volatile int level;
+    
+    public StereoWidener() {
+        this.shadowState = new float[2];
+    }
+    
+    @Override
+    public synchronized void prepare(int sampleRate, int channels) {
+        delayLength = Math.max(1, (int) Math.round(HEAD_DELAY_SECONDS * sampleRate));
+        delayLines = new float[2][delayLength];
+        delayPos = 0;
+        shadowCoefficient = (float) Math.exp(-2.0 * Math.PI * SHADOW_CUTOFF / sampleRate);
+    }
+    
+    @Override
+    public void reset() {
+        if (delayLines == null) return;
+        Arrays.fill(delayLines[0], 0.0f);
+        Arrays.fill(delayLines[1], 0.0f);
+        shadowState[0] = 0.0f;
+        shadowState[1] = 0.0f;
+    }
+    
+    @Override
+    public void process(PcmBlock block) {
+        if (!enabled || level == 0 || block.getChannels() != 2 || delayLines == null) return;
+        
+        float amount = level / 10.0f;
+        float sideGain = 1.0f + amount;
+        float crossfeed = 0.35f * amount;
+        float pole = shadowCoefficient;
+        float norm = 1.0f / (1.0f + 0.5f * amount);
+        float[] left = block.getChannel(0);
+        float[] right = block.getChannel(1);
+        float[] leftDelay = delayLines[0];
+        float[] rightDelay = delayLines[1];
+        float leftShadow = shadowState[0];
+        float rightShadow = shadowState[1];
+        int pos = delayPos;
+        int frames = block.getFrames();
+        
+        for (int i = 0; i < frames; i++) {
+            float mid = (left[i] + right[i]) * 0.5f;
+            float side = (left[i] - right[i]) * 0.5f * sideGain;
+            float l = mid + side;
+            float r = mid - side;
+            
+            // Head shadow: one-pole low-pass on the delayed opposite channel
+            leftShadow = rightDelay[pos] + (leftShadow - rightDelay[pos]) * pole;
+            rightShadow = leftDelay[pos] + (rightShadow - leftDelay[pos]) * pole;
+            leftDelay[pos] = l;
+            rightDelay[pos] = r;
+            if (++pos == delayLength) pos = 0;
+            
+            left[i] = (l - crossfeed * leftShadow) * norm;
+            right[i] = (r - crossfeed * rightShadow) * norm;
+        }
+        
+        shadowState[0] = leftShadow;
+        shadowState[1] = rightShadow;
+        delayPos = pos;
+    }
+    
+    public void setLevel(int level) { this.level = Math.max(0, Math.min(10, level)); }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public boolean isEnabled() { return enabled; }
+    public int getLevel() { return level; }
+    
+    @Override
+    public String getName() {
+        return "surround";
+    }
+}
@@ -0,0 +1,122 @@
+package com.musicplayer.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes the pipeline output to a 16-bit PCM WAV file
+ * The RIFF sizes are patched in when the file is closed
+ */
+public class WavFileOutput implements AudioOutput {
+    private static final int HEADER_SIZE = 44;
+    
+    private final File file;
+    private RandomAccessFile out;
+    private byte[] buffer;
+    private int channels;
+    private long dataBytes;
+    
+    public WavFileOutput(File file) {
+        this.file = file;
+        this.buffer = new byte[0];
+    }
+    
+    @Override
+    public void open(int sampleRate, int channels) throws IOException {
+        if (out != null) {
+            throw new IOException("WAV output already open: " + file.getName());
+        }
+        this.channels = channels;
+        this.dataBytes = 0;
+        this.out = new RandomAccessFile(file, "rw");
+        out.setLength(0);
+        writeHeader(sampleRate, channels, 0);
+    }
+    
+    @Override
+    public void write(PcmBlock block) throws IOException {
+        int frames = block.getFrames();
+        int bytes = frames * channels * 2;
+        if (buffer.length < bytes) {
+            buffer = new byte[bytes];
+        }
+        
+        DspKernels.get().interleavePcm16(block, 0, frames, channels, buffer, 0);
+        
+        out.write(buffer, 0, bytes);
+        dataBytes += bytes;
+    }
+    
+    @Override
+    public void drain() {
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (out == null) return;
+        
+        // Patch RIFF and data chunk sizes now that the length is known
+        out.seek(4);
+        writeIntLE((int) (36 + dataBytes));
+        out.seek(40);
+        writeIntLE((int) dataBytes);
+        out.close();
+        out = null;
+    }
+    
+    private void writeHeader(int sampleRate, int channels, int dataSize) throws IOException {
+        out.writeBytes("RIFF");
+        writeIntLE(36 + dataSize);
+        out.writeBytes("WAVE");
+        out.writeBytes("fmt ");
+        writeIntLE(16);
+        writeShortLE(1); // PCM
+        writeShortLE(channels);
+        writeIntLE(sampleRate);
+        writeIntLE(sampleRate * channels * 2);
+        writeShortLE(channels * 2);
+        writeShortLE(16);
+        out.writeBytes("data");
+        writeIntLE(dataSize);
+    }
+    
+    private void writeIntLE(int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write((v >> 8) & 0xFF);
+        out.write((v >> 16) & 0xFF);
+        out.write((v >> 24) & 0xFF);
+    }
+    
+    private void writeShortLE(int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write((v >> 8) & 0xFF);
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return out != null;
+    }
+    
+    @Override
+    public double getLatencyMillis() {
+        return 0; // nothing is queued, write() returns once the data is gone
+    }
+    
+    @Override
+    public long getUnderrunCount() {
+        return 0;
+    }
+    
+    @Override
+    public boolean isRealtime() {
+        return false;
+    }
+    
+    @Override
+    public String getName() {
+        return "wav:" + file.getPath();
+    }
+    
+    public long getBytesWritten() { return HEADER_SIZE + dataBytes; }
+}
@@ -0,0 +1,194 @@
+package com.musicplayer.library;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Which SongFeatures each library song has, as one bitset of song positions per
+ * feature
+ * Songs are matched once, as they join the library, with one automaton over the
+ * keywords of every feature. A smart playlist filter is then a bitset copy, or
+ * the intersection of several, instead of a text search of every song.
+ */
+public class FeatureIndex {
+    private static final SongFeature[] FEATURES = SongFeature.values();
+    private static final KeywordAutomaton AUTOMATON;
+    private static final long TEXT_FEATURES;
+    private static final long PATH_FEATURES;
+    // Sampling guesses positions while at least this share of songs qualifies, and
+    // at most this share of those is wanted; a guess then hits a new pick at least
+    // one time in DENSE_FRACTION * WANTED_FRACTION
+    private static final int DENSE_FRACTION = 4;
+    private static final int WANTED_FRACTION = 2;
+    
+    static {
+        // A keyword in several features reports all of them
+        Map<String, Long> keywords = new LinkedHashMap<>();
+        long text = 0;
+        long path = 0;
+        for (SongFeature feature : FEATURES) {
+            for (String keyword : feature.getKeywords()) {
+                keywords.merge(keyword, feature.mask(), (a, b) -> a | b);
+            }
+            if (feature.getField() == SongFeature.Field.TEXT) {
+                text |= feature.mask();
+            } else {
+                path |= feature.mask();
+            }
+        }
+        AUTOMATON = new KeywordAutomaton(keywords);
+        TEXT_FEATURES = text;
+        PATH_FEATURES = path;
+    }
+    
+    // Features of the song at each position, in library order
+    private long[] features = new long[64];
+    private int size;
+    private final BitSet[] songsWith = new BitSet[FEATURES.length];
+    // Cardinality of each bitset
+    private final int[] counts = new int[FEATURES.length];
+    
+    public FeatureIndex() {
+        for (int i = 0; i < songsWith.length; i++) {
+            songsWith[i] = new BitSet();
+        }
+    }
+    
+    /**
+     * @return mask of SongFeature.mask() bits for every feature the song has
+     */
+    public static long featuresOf(Song song) {
+        long text = AUTOMATON.match(song.getTitle()) | AUTOMATON.match(song.getArtist())
+                | AUTOMATON.match(song.getAlbum());
+        return text & TEXT_FEATURES | AUTOMATON.match(song.getFilePath()) & PATH_FEATURES;
+    }
+    
+    /**
+     * Indexes a song added at the end of the library.
+     */
+    public void add(Song song) {
+        if (size == features.length) {
+            features = Arrays.copyOf(features, size * 2);
+        }
+        long mask = featuresOf(song);
+        features[size] = mask;
+        setBits(size, mask);
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            counts[Long.numberOfTrailingZeros(rest)]++;
+        }
+        size++;
+    }
+    
+    /**
+     * Forgets the song at this position; later songs move down one, as in the library.
+     */
+    public void remove(int position) {
+        for (long rest = features[position]; rest != 0; rest &= rest - 1) {
+            counts[Long.numberOfTrailingZeros(rest)]--;
+        }
+        System.arraycopy(features, position + 1, features, position, size - position - 1);
+        size--;
+        // Bitsets cannot shift, so clear from the gap on and set the moved songs again
+        for (BitSet songs : songsWith) {
+            songs.clear(position, size + 1);
+        }
+        for (int i = position; i < size; i++) {
+            setBits(i, features[i]);
+        }
+    }
+    
+    private void setBits(int position, long mask) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            songsWith[Long.numberOfTrailingZeros(rest)].set(position);
+        }
+    }
+    
+    /**
+     * @return positions of the songs having every one of the features
+     */
+    public BitSet matching(SongFeature first, SongFeature... more) {
+        BitSet result = (BitSet) songsWith[first.ordinal()].clone();
+        for (SongFeature feature : more) {
+            result.and(songsWith[feature.ordinal()]);
+        }
+        return result;
+    }
+    
+    /**
+     * @return positions of the first songs with the feature, at most limit of them
+     */
+    public int[] first(SongFeature feature, int limit) {
+        BitSet songs = songsWith[feature.ordinal()];
+        int[] positions = new int[Math.max(0, Math.min(limit, counts[feature.ordinal()]))];
+        int position = -1;
+        for (int i = 0; i < positions.length; i++) {
+            position = songs.nextSetBit(position + 1);
+            positions[i] = position;
+        }
+        return positions;
+    }
+    
+    /**
+     * Picks songs that have, or lack, the feature, uniformly and in random order,
+     * using memory for the picks only. When they are common and only a few of them
+     * are wanted, random positions are tried until enough qualify, at most eight
+     * tries per pick on average; otherwise a reservoir samples them in one pass
+     * over the bitset.
+     *
+     * @return positions of up to count distinct songs
+     */
+    public int[] sample(SongFeature feature, boolean having, int count, Random random) {
+        BitSet songs = songsWith[feature.ordinal()];
+        int qualifying = having ? counts[feature.ordinal()] : size - counts[feature.ordinal()];
+        int wanted = Math.max(0, Math.min(count, qualifying));
+        if (wanted == 0) return new int[0];
+        
+        if ((long) qualifying * DENSE_FRACTION >= size && (long) wanted * WANTED_FRACTION <= qualifying) {
+            int[] picked = new int[wanted];
+            Set<Integer> seen = new HashSet<>(wanted * 2);
+            int found = 0;
+            while (found < wanted) {
+                int position = random.nextInt(size);
+                if (songs.get(position) == having && seen.add(position)) {
+                    picked[found++] = position;
+                }
+            }
+            return picked;
+        }
+        
+        Sampling.Reservoir reservoir = new Sampling.Reservoir(wanted, random);
+        int position = having ? songs.nextSetBit(0) : songs.nextClearBit(0);
+        while (position >= 0 && position < size) {
+            reservoir.offer(position);
+            position = having ? songs.nextSetBit(position + 1) : songs.nextClearBit(position + 1);
+        }
+        return reservoir.result();
+    }
+    
+    public int count(SongFeature feature) {
+        return counts[feature.ordinal()];
+    }
+    
+    public boolean has(int position, SongFeature feature) {
+        return position < size && (features[position] & feature.mask()) != 0;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void clear() {
+        size = 0;
+        Arrays.fill(counts, 0);
+        for (BitSet songs : songsWith) {
+            songs.clear();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.musicplayer.library;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Aho–Corasick automaton that finds every keyword in a text in one pass
+ * Each keyword carries a bit mask, and a match returns the OR of the masks of all
+ * keywords found, so one scan answers "which classes of keyword occur here".
+ * Failure links are folded into a dense transition table, making each character
+ * one array lookup. Matching ignores case.
+ */
+public final class KeywordAutomaton {
+    // Character class per ASCII character; 0 for characters in no keyword
+    private final int[] classOf = new int[128];
+    private final int alphabet;
+    // Next state for each state and character class
+    private final int[] transitions;
+    // Masks of the keywords that end at each state, suffixes included
+    private final long[] outputs;
+    
+    /**
+     * @param keywords lower-case ASCII keywords, each with the mask a match reports
+     */
+    public KeywordAutomaton(Map<String, Long> keywords) {
+        int classes = 1;
+        int maxStates = 1;
+        for (String keyword : keywords.keySet()) {
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Empty keyword");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= 128 || Character.toLowerCase(c) != c) {
+                    throw new IllegalArgumentException("Keywords must be lower-case ASCII: " + keyword);
+                }
+                if (classOf[c] == 0) classOf[c] = classes++;
+            }
+            maxStates += keyword.length();
+        }
+        this.alphabet = classes;
+        
+        // Trie of the keywords; state 0 is the root
+        int[] next = new int[maxStates * alphabet];
+        long[] found = new long[maxStates];
+        int states = 1;
+        for (Map.Entry<String, Long> entry : keywords.entrySet()) {
+            String keyword = entry.getKey();
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int slot = state * alphabet + classOf[keyword.charAt(i)];
+                if (next[slot] == 0) next[slot] = states++;
+                state = next[slot];
+            }
+            found[state] |= entry.getValue();
+        }
+        
+        // Breadth first, so each state's failure target is complete before it is used
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 1; c < alphabet; c++) {
+            if (next[c] != 0) queue[tail++] = next[c];
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            found[state] |= found[fail[state]];
+            for (int c = 1; c < alphabet; c++) {
+                int slot = state * alphabet + c;
+                int fallback = next[fail[state] * alphabet + c];
+                if (next[slot] != 0) {
+                    fail[next[slot]] = fallback;
+                    queue[tail++] = next[slot];
+                } else {
+                    next[slot] = fallback;
+                }
+            }
+        }
+        
+        this.transitions = Arrays.copyOf(next, states * alphabet);
+        this.outputs = Arrays.copyOf(found, states);
+    }
+    
+    /**
+     * @return OR of the masks of every keyword occurring in the text
+     */
+    public long match(CharSequence text) {
+        if (text == null) return 0;
+        
+        long matched = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            // Class 0 leads back to the root from every state
+            state = transitions[state * alphabet + (c < 128 ? classOf[c] : 0)];
+            matched |= outputs[state];
+        }
+        return matched;
+    }
+    
+    public int getStates() {
+        return outputs.length;
+    }
+}
@@ -0,0 +1,76 @@
+package com.musicplayer.library;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Uniform random picks that cost memory for the picks only, never for what they
+ * are picked from
+ */
+public final class Sampling {
+    private Sampling() {
+    }
+    
+    /**
+     * Picks k distinct indexes of [0, n), every k-subset equally likely, in random
+     * order. A partial Fisher–Yates shuffle of the identity array that stores only
+     * the entries it has moved: O(k) time and memory, however large n is.
+     */
+    public static int[] sampleIndexes(int n, int k, Random random) {
+        int count = Math.max(0, Math.min(k, n));
+        int[] picked = new int[count];
+        Map<Integer, Integer> moved = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            picked[i] = moved.getOrDefault(j, j);
+            // The entry at i goes where the picked one was
+            moved.put(j, moved.getOrDefault(i, i));
+        }
+        return picked;
+    }
+    
+    /**
+     * Reservoir sampling (Algorithm R): call offer with every candidate, in any
+     * number, and end with a uniform sample of at most the capacity.
+     */
+    public static class Reservoir {
+        private final int[] picked;
+        private final Random random;
+        private long offered;
+        
+        public Reservoir(int capacity, Random random) {
+            this.picked = new int[Math.max(0, capacity)];
+            this.random = random;
+        }
+        
+        public void offer(int value) {
+            if (offered < picked.length) {
+                picked[(int) offered] = value;
+            } else {
+                long slot = (long) (random.nextDouble() * (offered + 1));
+                if (slot < picked.length) picked[(int) slot] = value;
+            }
+            offered++;
+        }
+        
+        /**
+         * @return the sample, in random order
+         */
+        public int[] result() {
+            int[] result = Arrays.copyOf(picked, (int) Math.min(offered, picked.length));
+            shuffle(result, random);
+            return result;
+        }
+    }
+    
+    public static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.musicplayer.library;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyword classes smart playlists pick songs by
+ * Moods and styles match words in the title, artist or album; decades match the
+ * file path, since songs carry no release date.
+ */
+public enum SongFeature {
+    ENERGETIC(Field.TEXT, "rock", "dance", "party", "energy", "power", "fast", "beat"),
+    RELAXED(Field.TEXT, "chill", "relax", "calm", "soft", "acoustic", "ambient", "slow"),
+    SAD(Field.TEXT, "sad", "blue", "melancholy", "tears", "lonely", "broken"),
+    HAPPY(Field.TEXT, "happy", "joy", "sunshine", "smile", "love", "celebration"),
+    WORKOUT(Field.TEXT, "rock", "electronic", "dance", "hip", "rap", "metal", "punk", "energy"),
+    CHILL(Field.TEXT, "acoustic", "ambient", "chill", "jazz", "classical", "soft", "piano", "guitar"),
+    EIGHTIES(Field.PATH, "80", "classic"),
+    NINETIES(Field.PATH, "90", "retro"),
+    TWO_THOUSANDS(Field.PATH, "2000", "00"),
+    TWENTY_TENS(Field.PATH, "201", "modern");
+    
+    /**
+     * What part of a song the keywords are looked for in.
+     */
+    public enum Field {
+        // Title, artist and album
+        TEXT,
+        PATH
+    }
+    
+    private final Field field;
+    private final List<String> keywords;
+    
+    SongFeature(Field field, String... keywords) {
+        this.field = field;
+        this.keywords = Collections.unmodifiableList(Arrays.asList(keywords));
+    }
+    
+    public Field getField() {
+        return field;
+    }
+    
+    /**
+     * @return lower-case keywords; a song has the feature if it contains any
+     */
+    public List<String> getKeywords() {
+        return keywords;
+    }
+    
+    public long mask() {
+        return 1L << ordinal();
+    }
+}
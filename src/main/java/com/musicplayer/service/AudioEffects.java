@@ -1,8 +1,24 @@
 package com.musicplayer.service;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.musicplayer.audio.AudioProcessor;
+import com.musicplayer.audio.BassBoost;
+import com.musicplayer.audio.ConvolutionReverb;
+import com.musicplayer.audio.Equalizer;
+import com.musicplayer.audio.FreeverbReverb;
+import com.musicplayer.audio.GainStage;
+import com.musicplayer.audio.ImpulseResponse;
+import com.musicplayer.audio.StereoWidener;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
 /**
  * Audio Effects and Equalizer System
  * Provides various audio enhancements and frequency control
@@ -17,6 +33,13 @@ public class AudioEffects {
     private int reverbLevel;
     private int virtualSurroundLevel;
     private float masterVolume;
+    private final Equalizer equalizer;
+    private final BassBoost bassBoost;
+    private final FreeverbReverb reverb;
+    private final ConvolutionReverb convolution;
+    private final StereoWidener surround;
+    private final List<AudioProcessor> processors;
+    private final GainStage gainStage;
     
     // Equalizer frequency bands (Hz)
     private static final String[] EQ_BANDS = {
@@ -24,6 +47,21 @@ public class AudioEffects {
         "3kHz", "6kHz", "12kHz", "14kHz", "16kHz"
     };
     
+    // Centre frequencies matching EQ_BANDS
+    private static final double[] EQ_FREQUENCIES = {
+        60, 170, 310, 600, 1000, 3000, 6000, 12000, 14000, 16000
+    };
+    
+    // Preset levels per band in EQ_BANDS order (dB)
+    private static final Map<String, int[]> EQ_PRESETS = new LinkedHashMap<>();
+    static {
+        EQ_PRESETS.put("rock",       new int[]{5, 3, -2, -1, 2, 4, 3, 2, 0, 0});
+        EQ_PRESETS.put("pop",        new int[]{2, 1, 0, 1, 3, 4, 3, 2, 0, 0});
+        EQ_PRESETS.put("classical",  new int[]{3, 2, 1, 0, -1, 1, 3, 4, 0, 0});
+        EQ_PRESETS.put("jazz",       new int[]{4, 2, 1, 2, -1, 1, 2, 3, 0, 0});
+        EQ_PRESETS.put("electronic", new int[]{6, 4, 1, 0, -1, 2, 4, 5, 0, 0});
+    }
+    
     public AudioEffects() {
         this.equalizerEnabled = false;
         this.equalizerBands = new HashMap<>();
@@ -34,6 +72,13 @@ public class AudioEffects {
         this.reverbLevel = 0;
         this.virtualSurroundLevel = 0;
         this.masterVolume = 1.0f;
+        this.equalizer = new Equalizer(EQ_FREQUENCIES);
+        this.bassBoost = new BassBoost();
+        this.reverb = new FreeverbReverb();
+        this.convolution = new ConvolutionReverb();
+        this.surround = new StereoWidener();
+        this.processors = Arrays.asList(equalizer, bassBoost, reverb, convolution, surround);
+        this.gainStage = new GainStage();
         
         // Initialize equalizer bands to 0 (neutral)
         for (String band : EQ_BANDS) {
@@ -43,6 +88,7 @@ public class AudioEffects {
     
     public void toggleEqualizer() {
         equalizerEnabled = !equalizerEnabled;
+        equalizer.setEnabled(equalizerEnabled);
         System.out.println("[EQ] Equalizer: " + (equalizerEnabled ? "ON" : "OFF"));
     }
     
@@ -51,6 +97,7 @@ public class AudioEffects {
             // Clamp level between -12 and +12 dB
             level = Math.max(-12, Math.min(12, level));
             equalizerBands.put(frequency, level);
+            equalizer.setBandGain(Arrays.asList(EQ_BANDS).indexOf(frequency), level);
             System.out.printf("[EQ] EQ %s: %+d dB\n", frequency, level);
         }
     }
@@ -59,74 +106,31 @@ public class AudioEffects {
         for (String band : EQ_BANDS) {
             equalizerBands.put(band, 0);
         }
+        equalizer.setGains(new float[EQ_BANDS.length]);
         System.out.println("[EQ] Equalizer reset to flat");
     }
     
     public void loadEqualizerPreset(String presetName) {
-        resetEqualizer();
+        String name = presetName.toLowerCase();
+        int[] levels = EQ_PRESETS.get(name);
+        if (levels == null) {
+            System.out.println("[ERROR] Unknown preset: " + presetName);
+            return;
+        }
         
-        switch (presetName.toLowerCase()) {
-            case "rock":
-                setEqualizerBand("60Hz", 5);
-                setEqualizerBand("170Hz", 3);
-                setEqualizerBand("310Hz", -2);
-                setEqualizerBand("600Hz", -1);
-                setEqualizerBand("1kHz", 2);
-                setEqualizerBand("3kHz", 4);
-                setEqualizerBand("6kHz", 3);
-                setEqualizerBand("12kHz", 2);
-                break;
-                
-            case "pop":
-                setEqualizerBand("60Hz", 2);
-                setEqualizerBand("170Hz", 1);
-                setEqualizerBand("310Hz", 0);
-                setEqualizerBand("600Hz", 1);
-                setEqualizerBand("1kHz", 3);
-                setEqualizerBand("3kHz", 4);
-                setEqualizerBand("6kHz", 3);
-                setEqualizerBand("12kHz", 2);
-                break;
-                
-            case "classical":
-                setEqualizerBand("60Hz", 3);
-                setEqualizerBand("170Hz", 2);
-                setEqualizerBand("310Hz", 1);
-                setEqualizerBand("600Hz", 0);
-                setEqualizerBand("1kHz", -1);
-                setEqualizerBand("3kHz", 1);
-                setEqualizerBand("6kHz", 3);
-                setEqualizerBand("12kHz", 4);
-                break;
-                
-            case "jazz":
-                setEqualizerBand("60Hz", 4);
-                setEqualizerBand("170Hz", 2);
-                setEqualizerBand("310Hz", 1);
-                setEqualizerBand("600Hz", 2);
-                setEqualizerBand("1kHz", -1);
-                setEqualizerBand("3kHz", 1);
-                setEqualizerBand("6kHz", 2);
-                setEqualizerBand("12kHz", 3);
-                break;
-                
-            case "electronic":
-                setEqualizerBand("60Hz", 6);
-                setEqualizerBand("170Hz", 4);
-                setEqualizerBand("310Hz", 1);
-                setEqualizerBand("600Hz", 0);
-                setEqualizerBand("1kHz", -1);
-                setEqualizerBand("3kHz", 2);
-                setEqualizerBand("6kHz", 4);
-                setEqualizerBand("12kHz", 5);
-                break;
-                
-            default:
-                System.out.println("[ERROR] Unknown preset: " + presetName);
-                return;
+        // The whole preset is swapped in as one precompiled coefficient set
+        float[] gains = new float[EQ_BANDS.length];
+        for (int i = 0; i < EQ_BANDS.length; i++) {
+            equalizerBands.put(EQ_BANDS[i], levels[i]);
+            gains[i] = levels[i];
+            if (levels[i] != 0) {
+                System.out.printf("[EQ] EQ %s: %+d dB\n", EQ_BANDS[i], levels[i]);
+            }
         }
+        equalizer.applyPreset(name, gains);
         
         equalizerEnabled = true;
+        equalizer.setEnabled(true);
         System.out.println("[EQ] Loaded EQ preset: " + presetName);
     }
     
@@ -135,6 +139,8 @@ public class AudioEffects {
         if (bassBoostEnabled && bassBoostLevel == 0) {
             bassBoostLevel = 5; // Default boost level
         }
+        bassBoost.setLevel(bassBoostLevel);
+        bassBoost.setEnabled(bassBoostEnabled);
         System.out.println("[BASS] Bass Boost: " + (bassBoostEnabled ? "ON (" + bassBoostLevel + ")" : "OFF"));
     }
     
@@ -143,6 +149,8 @@ public class AudioEffects {
         if (bassBoostLevel > 0) {
             bassBoostEnabled = true;
         }
+        bassBoost.setLevel(bassBoostLevel);
+        bassBoost.setEnabled(bassBoostEnabled);
         System.out.println("🔊 Bass Boost Level: " + bassBoostLevel);
     }
     
@@ -151,6 +159,8 @@ public class AudioEffects {
         if (reverbEnabled && reverbLevel == 0) {
             reverbLevel = 3; // Default reverb level
         }
+        reverb.setLevel(reverbLevel);
+        reverb.setEnabled(reverbEnabled);
         System.out.println("[REVERB] Reverb: " + (reverbEnabled ? "ON (" + reverbLevel + ")" : "OFF"));
     }
     
@@ -159,14 +169,55 @@ public class AudioEffects {
         if (reverbLevel > 0) {
             reverbEnabled = true;
         }
+        reverb.setLevel(reverbLevel);
+        reverb.setEnabled(reverbEnabled);
         System.out.println("[REVERB] Reverb Level: " + reverbLevel);
     }
     
+    /**
+     * Loads an impulse response WAV for the convolution reverb and turns it on.
+     */
+    public boolean loadImpulseResponse(String path) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            System.out.println("[ERROR] Impulse response not found: " + path);
+            return false;
+        }
+        
+        try {
+            ImpulseResponse response = convolution.loadImpulseResponse(file);
+            convolution.setEnabled(true);
+            System.out.printf("[REVERB] Loaded impulse response: %s (%.1f s, %d partitions)\n",
+                             response.getName(), response.getLengthSeconds(), response.getPartitions());
+            return true;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            System.out.println("[ERROR] Could not load impulse response: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    public void toggleConvolutionReverb() {
+        if (!convolution.hasImpulseResponse()) {
+            System.out.println("[REVERB] Load an impulse response first.");
+            return;
+        }
+        convolution.setEnabled(!convolution.isEnabled());
+        System.out.println("[REVERB] Convolution Reverb: " + (convolution.isEnabled() ? "ON" : "OFF"));
+    }
+    
+    public void setConvolutionMix(int level) {
+        level = Math.max(0, Math.min(10, level));
+        convolution.setMix(level / 10.0f);
+        System.out.println("[REVERB] Convolution Mix: " + level);
+    }
+    
     public void toggleVirtualSurround() {
         virtualSurroundEnabled = !virtualSurroundEnabled;
         if (virtualSurroundEnabled && virtualSurroundLevel == 0) {
             virtualSurroundLevel = 5; // Default surround level
         }
+        surround.setLevel(virtualSurroundLevel);
+        surround.setEnabled(virtualSurroundEnabled);
         System.out.println("[SURROUND] Virtual Surround: " + (virtualSurroundEnabled ? "ON (" + virtualSurroundLevel + ")" : "OFF"));
     }
     
@@ -175,11 +226,14 @@ public class AudioEffects {
         if (virtualSurroundLevel > 0) {
             virtualSurroundEnabled = true;
         }
+        surround.setLevel(virtualSurroundLevel);
+        surround.setEnabled(virtualSurroundEnabled);
         System.out.println("🎭 Virtual Surround Level: " + virtualSurroundLevel);
     }
     
     public void setMasterVolume(float volume) {
         masterVolume = Math.max(0.0f, Math.min(1.0f, volume));
+        gainStage.setVolume(masterVolume);
         System.out.printf("🔊 Master Volume: %.0f%%\n", masterVolume * 100);
     }
     
@@ -187,9 +241,14 @@ public class AudioEffects {
         setMasterVolume(masterVolume + delta);
     }
     
+    public void toggleMute() {
+        gainStage.setMuted(!gainStage.isMuted());
+        System.out.println(gainStage.isMuted() ? "🔇 Muted" : String.format("🔊 Unmuted (%.0f%%)", masterVolume * 100));
+    }
+    
     public void displayCurrentSettings() {
         System.out.println("\n[EQ] === Audio Effects Settings ===");
-        System.out.printf("Master Volume: %.0f%%\n", masterVolume * 100);
+        System.out.printf("Master Volume: %.0f%%%s\n", masterVolume * 100, gainStage.isMuted() ? " (muted)" : "");
         System.out.println("Equalizer: " + (equalizerEnabled ? "ON" : "OFF"));
         
         if (equalizerEnabled) {
@@ -203,6 +262,9 @@ public class AudioEffects {
         
         System.out.println("Bass Boost: " + (bassBoostEnabled ? "ON (" + bassBoostLevel + ")" : "OFF"));
         System.out.println("Reverb: " + (reverbEnabled ? "ON (" + reverbLevel + ")" : "OFF"));
+        ImpulseResponse response = convolution.getImpulseResponse();
+        System.out.println("Convolution Reverb: " + (convolution.isEnabled() && response != null
+                ? "ON (" + response.getName() + ", mix " + Math.round(convolution.getMix() * 10) + ")" : "OFF"));
         System.out.println("Virtual Surround: " + (virtualSurroundEnabled ? "ON (" + virtualSurroundLevel + ")" : "OFF"));
     }
     
@@ -224,7 +286,24 @@ public class AudioEffects {
     }
     
     public String[] getAvailablePresets() {
-        return new String[]{"rock", "pop", "classical", "jazz", "electronic"};
+        return EQ_PRESETS.keySet().toArray(new String[0]);
+    }
+    
+    /**
+     * DSP stages to insert into the playback pipeline, in processing order.
+     * Disabled stages stay in the chain and return immediately, so toggling an
+     * effect never reshapes the pipeline while audio is running.
+     */
+    public List<AudioProcessor> getProcessors() {
+        return processors;
+    }
+    
+    /**
+     * Volume, mute and fade stage; belongs at the very end of the pipeline,
+     * after normalization, so it only ever attenuates the final signal.
+     */
+    public GainStage getGainStage() {
+        return gainStage;
     }
     
     // Getters
@@ -237,5 +316,11 @@ public class AudioEffects {
     public int getReverbLevel() { return reverbLevel; }
     public int getVirtualSurroundLevel() { return virtualSurroundLevel; }
     public float getMasterVolume() { return masterVolume; }
+    public boolean isMuted() { return gainStage.isMuted(); }
     public String[] getEqualizerBandNames() { return EQ_BANDS; }
+    public Equalizer getEqualizer() { return equalizer; }
+    public BassBoost getBassBoost() { return bassBoost; }
+    public FreeverbReverb getReverb() { return reverb; }
+    public ConvolutionReverb getConvolution() { return convolution; }
+    public StereoWidener getSurround() { return surround; }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.musicplayer.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Frame loop for console animation that adapts its rate to what each frame costs
+ * Frame time (compose plus the blocking terminal write) is averaged, and the frame
+ * interval is stretched so drawing stays within a share of one core. When the loop
+ * falls behind, the missed frames are dropped rather than rendered back to back.
+ * While there is nothing to draw, the loop only polls.
+ */
+public class FrameScheduler {
+    private static final long IDLE_POLL_NANOS = 250_000_000L;
+    private static final int HISTORY = 512;
+    private static final double COST_SMOOTHING = 0.1;
+    
+    private final String name;
+    private final Runnable frame;
+    private final BooleanSupplier active;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double cpuBudget;
+    
+    private volatile boolean running;
+    private Thread thread;
+    
+    // Written by the frame thread only
+    private final long[] frameTimes;
+    private volatile long intervalNanos;
+    private volatile long framesRendered;
+    private volatile long framesDropped;
+    private volatile boolean idle;
+    private double averageCost;
+    
+    /**
+     * @param maxFps    rate when frames are cheap
+     * @param minFps    rate never undercut, however slow frames get
+     * @param cpuBudget share of one core frames may use, e.g. 0.05
+     * @param active    false pauses the loop, e.g. while playback is paused
+     */
+    public FrameScheduler(String name, int maxFps, int minFps, double cpuBudget,
+                          BooleanSupplier active, Runnable frame) {
+        this.name = name;
+        this.frame = frame;
+        this.active = active;
+        this.minIntervalNanos = 1_000_000_000L / maxFps;
+        this.maxIntervalNanos = 1_000_000_000L / minFps;
+        this.cpuBudget = cpuBudget;
+        this.frameTimes = new long[HISTORY];
+        this.intervalNanos = minIntervalNanos;
+    }
+    
+    public synchronized void start() {
+        if (running) return;
+        
+        running = true;
+        thread = new Thread(this::runLoop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public synchronized void stop() {
+        if (!running) return;
+        
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+    
+    private void runLoop() {
+        long nextFrame = System.nanoTime();
+        
+        while (running) {
+            if (!active.getAsBoolean()) {
+                idle = true;
+                LockSupport.parkNanos(IDLE_POLL_NANOS);
+                nextFrame = System.nanoTime();
+                continue;
+            }
+            idle = false;
+            
+            long now = System.nanoTime();
+            if (now < nextFrame) {
+                LockSupport.parkNanos(nextFrame - now);
+                continue;
+            }
+            
+            long interval = intervalNanos;
+            long late = now - nextFrame;
+            if (late >= interval) {
+                // Whole frames slipped by; skip them instead of catching up in a burst
+                framesDropped += late / interval;
+                nextFrame = now;
+            }
+            
+            long start = System.nanoTime();
+            try {
+                frame.run();
+            } catch (RuntimeException e) {
+                System.out.println("X " + name + " frame failed: " + e.getMessage());
+            }
+            long cost = System.nanoTime() - start;
+            
+            frameTimes[(int) (framesRendered % HISTORY)] = cost;
+            framesRendered++;
+            adapt(cost);
+            nextFrame += intervalNanos;
+        }
+    }
+    
+    private void adapt(long cost) {
+        averageCost = averageCost == 0 ? cost : averageCost + COST_SMOOTHING * (cost - averageCost);
+        long wanted = (long) (averageCost / cpuBudget);
+        intervalNanos = Math.max(minIntervalNanos, Math.min(maxIntervalNanos, wanted));
+    }
+    
+    /**
+     * @param percentile 0..100 over the last few hundred frames
+     * @return frame time in milliseconds, or 0 before the first frame
+     */
+    public double getFrameTimePercentile(double percentile) {
+        int count = (int) Math.min(framesRendered, HISTORY);
+        if (count == 0) return 0.0;
+        
+        long[] sorted = Arrays.copyOf(frameTimes, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+    
+    // Getters
+    public boolean isRunning() { return running; }
+    public boolean isIdle() { return idle; }
+    public double getTargetFps() { return 1e9 / intervalNanos; }
+    public long getFramesRendered() { return framesRendered; }
+    public long getFramesDropped() { return framesDropped; }
+}
@@ -0,0 +1,315 @@
+package com.musicplayer.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.musicplayer.audio.AudioDecoder;
+import com.musicplayer.audio.AudioDecoders;
+import com.musicplayer.audio.LoudnessHistogram;
+import com.musicplayer.audio.LoudnessMeter;
+import com.musicplayer.audio.PcmBlock;
+import com.musicplayer.model.Song;
+
+/**
+ * Background loudness analysis (EBU R128) for ReplayGain-style normalization
+ * Tracks are measured on a small pool of low-priority threads and the results
+ * are cached on disk, keyed by path, size and modification time.
+ */
+public class LoudnessAnalyzer {
+    public static final double TARGET_LOUDNESS = -18.0; // LUFS, ReplayGain 2.0 reference
+    public static final double TRUE_PEAK_CEILING = -1.0; // dBTP
+    
+    private static final int MAX_PENDING = 64;
+    private static final String UNKNOWN_ALBUM = "Unknown Album";
+    
+    public enum Mode {
+        OFF, TRACK, ALBUM
+    }
+    
+    /**
+     * Measurement of one track.
+     */
+    public static class TrackLoudness {
+        final long fileLength;
+        final long lastModified;
+        final double integratedLufs;
+        final double truePeakDb;
+        final LoudnessHistogram histogram;
+        
+        TrackLoudness(long fileLength, long lastModified, double integratedLufs,
+                      double truePeakDb, LoudnessHistogram histogram) {
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+            this.integratedLufs = integratedLufs;
+            this.truePeakDb = truePeakDb;
+            this.histogram = histogram;
+        }
+        
+        public double getIntegratedLufs() { return integratedLufs; }
+        public double getTruePeakDb() { return truePeakDb; }
+    }
+    
+    private final File cacheFile;
+    private final Map<String, TrackLoudness> results;
+    private final Map<String, String> albumOfPath;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore pendingSlots;
+    private final AtomicInteger analyzedCount;
+    private volatile boolean dirty;
+    private Mode mode;
+    
+    public LoudnessAnalyzer() {
+        this(new File(System.getProperty("user.home"), ".musicplayer" + File.separator + "loudness.cache"));
+    }
+    
+    public LoudnessAnalyzer(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.results = new ConcurrentHashMap<>();
+        this.albumOfPath = new ConcurrentHashMap<>();
+        this.analyzedCount = new AtomicInteger();
+        this.pendingSlots = new Semaphore(MAX_PENDING);
+        this.mode = Mode.OFF;
+        
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING), runnable -> {
+                    Thread thread = new Thread(runnable, "loudness-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+        
+        loadCache();
+    }
+    
+    /**
+     * Queues every song that has no valid cached result. Returns immediately;
+     * a feeder thread hands work to the bounded pool as slots free up.
+     */
+    public void analyzeInBackground(List<Song> songs) {
+        Thread feeder = new Thread(() -> {
+            int queued = 0;
+            for (Song song : songs) {
+                albumOfPath.put(song.getFilePath(), song.getAlbum());
+                if (isCached(song) || !AudioDecoders.canDecode(song.getFilePath())) continue;
+                
+                try {
+                    pendingSlots.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                workers.execute(() -> {
+                    try {
+                        if (analyze(song) != null && analyzedCount.get() % 25 == 0) {
+                            saveCache();
+                        }
+                    } finally {
+                        pendingSlots.release();
+                    }
+                });
+                queued++;
+            }
+            
+            if (queued > 0) {
+                System.out.printf("[LOUDNESS] Analyzing %d tracks in background\n", queued);
+            }
+        }, "loudness-feeder");
+        feeder.setDaemon(true);
+        feeder.setPriority(Thread.MIN_PRIORITY);
+        feeder.start();
+    }
+    
+    private boolean isCached(Song song) {
+        File file = new File(song.getFilePath());
+        TrackLoudness cached = results.get(song.getFilePath());
+        return cached != null && cached.fileLength == file.length() && cached.lastModified == file.lastModified();
+    }
+    
+    /**
+     * Measures one track synchronously on the calling thread.
+     */
+    public TrackLoudness analyze(Song song) {
+        File file = new File(song.getFilePath());
+        albumOfPath.put(song.getFilePath(), song.getAlbum());
+        
+        try (AudioDecoder decoder = AudioDecoders.open(file)) {
+            LoudnessMeter meter = new LoudnessMeter(decoder.getSampleRate(), decoder.getChannels());
+            PcmBlock block = new PcmBlock(decoder.getChannels(), 4096);
+            
+            while (decoder.read(block) >= 0) {
+                meter.process(block);
+            }
+            
+            TrackLoudness result = new TrackLoudness(file.length(), file.lastModified(),
+                    meter.getIntegratedLoudness(), meter.getTruePeakDb(), meter.getHistogram());
+            results.put(song.getFilePath(), result);
+            analyzedCount.incrementAndGet();
+            dirty = true;
+            return result;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            System.out.println("X Loudness analysis failed for " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * @return gain in dB to apply for the current mode, 0 if unknown or off
+     */
+    public double getGainDb(Song song) {
+        switch (mode) {
+            case TRACK:
+                return getTrackGainDb(song);
+            case ALBUM:
+                return getAlbumGainDb(song);
+            default:
+                return 0.0;
+        }
+    }
+    
+    public double getTrackGainDb(Song song) {
+        TrackLoudness track = results.get(song.getFilePath());
+        if (track == null) return 0.0;
+        return peakSafeGain(track.integratedLufs, track.truePeakDb);
+    }
+    
+    public double getAlbumGainDb(Song song) {
+        String album = song.getAlbum();
+        if (album == null || album.equals(UNKNOWN_ALBUM)) {
+            return getTrackGainDb(song);
+        }
+        
+        LoudnessHistogram merged = new LoudnessHistogram();
+        double albumPeak = Double.NEGATIVE_INFINITY;
+        boolean any = false;
+        for (Map.Entry<String, TrackLoudness> entry : results.entrySet()) {
+            if (album.equals(albumOfPath.get(entry.getKey()))) {
+                merged.merge(entry.getValue().histogram);
+                albumPeak = Math.max(albumPeak, entry.getValue().truePeakDb);
+                any = true;
+            }
+        }
+        return any ? peakSafeGain(merged.getIntegratedLoudness(), albumPeak) : getTrackGainDb(song);
+    }
+    
+    private static double peakSafeGain(double loudness, double truePeakDb) {
+        if (Double.isInfinite(loudness)) return 0.0;
+        double gain = TARGET_LOUDNESS - loudness;
+        if (!Double.isInfinite(truePeakDb)) {
+            gain = Math.min(gain, TRUE_PEAK_CEILING - truePeakDb);
+        }
+        return gain;
+    }
+    
+    private void loadCache() {
+        if (!cacheFile.isFile()) return;
+        
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 6) continue;
+                
+                LoudnessHistogram histogram = new LoudnessHistogram();
+                if (!fields[5].isEmpty()) {
+                    for (String bin : fields[5].split(",")) {
+                        String[] parts = bin.split(":");
+                        histogram.addBin(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+                    }
+                }
+                results.put(fields[0], new TrackLoudness(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), histogram));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("X Could not read loudness cache: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes the cache if anything changed. Written to a temp file and moved into
+     * place so a crash never leaves a truncated cache.
+     */
+    public synchronized void saveCache() {
+        if (!dirty) return;
+        
+        try {
+            File dir = cacheFile.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            File temp = new File(cacheFile.getPath() + ".tmp");
+            
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, TrackLoudness> entry : results.entrySet()) {
+                    TrackLoudness t = entry.getValue();
+                    writer.write(entry.getKey() + "\t" + t.fileLength + "\t" + t.lastModified + "\t"
+                            + t.integratedLufs + "\t" + t.truePeakDb + "\t");
+                    boolean first = true;
+                    for (int bin = 0; bin < LoudnessHistogram.BINS; bin++) {
+                        long count = t.histogram.getCount(bin);
+                        if (count == 0) continue;
+                        if (!first) writer.write(",");
+                        writer.write(bin + ":" + count + ":" + t.histogram.getEnergy(bin));
+                        first = false;
+                    }
+                    writer.newLine();
+                }
+            }
+            
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.out.println("X Could not save loudness cache: " + e.getMessage());
+        }
+    }
+    
+    public void displayStatus(Song current) {
+        System.out.println("\n[LOUDNESS] === Loudness Normalization ===");
+        System.out.println("Mode: " + mode.name() + " (target " + TARGET_LOUDNESS + " LUFS, ceiling "
+                + TRUE_PEAK_CEILING + " dBTP)");
+        System.out.println("Analyzed tracks: " + results.size()
+                + (workers.getActiveCount() > 0 ? " (analysis running)" : ""));
+        
+        if (current != null) {
+            TrackLoudness track = results.get(current.getFilePath());
+            if (track != null) {
+                System.out.printf("Current track: %.1f LUFS, true peak %.1f dBTP, gain %+.1f dB\n",
+                                 track.integratedLufs, track.truePeakDb, getGainDb(current));
+            } else {
+                System.out.println("Current track: not analyzed yet");
+            }
+        }
+    }
+    
+    public void shutdown() {
+        workers.shutdownNow();
+        saveCache();
+    }
+    
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        System.out.println("[LOUDNESS] Normalization: " + mode.name());
+    }
+    
+    // Getters
+    public Mode getMode() { return mode; }
+    public TrackLoudness getResult(Song song) { return results.get(song.getFilePath()); }
+    public int getAnalyzedCount() { return analyzedCount.get(); }
+}
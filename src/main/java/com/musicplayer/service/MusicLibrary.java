@@ -2,18 +2,32 @@ package com.musicplayer.service;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
+import com.musicplayer.library.FeatureIndex;
+import com.musicplayer.library.Sampling;
+import com.musicplayer.library.SongFeature;
 import com.musicplayer.model.Song;
 
 public class MusicLibrary {
     private final List<Song> songs;
+    // The same songs, so adding one need not search the list for a duplicate
+    private final Set<Song> songSet;
+    // Keyword features of each song, by position in songs
+    private final FeatureIndex features;
     private static final String[] SUPPORTED_EXTENSIONS = {".mp3", ".wav", ".flac", ".m4a", ".aac", ".ogg"};
     
     public MusicLibrary() {
         this.songs = new ArrayList<>();
+        this.songSet = new HashSet<>();
+        this.features = new FeatureIndex();
         // Start with completely empty library - songs will be loaded from folders only
     }
     
@@ -159,8 +173,9 @@ public class MusicLibrary {
                 count += scanFolder(file);
             } else if (file.isFile() && isSupportedAudioFile(file)) {
                 Song song = createSongFromFile(file);
-                if (song != null && !songs.contains(song)) {
+                if (song != null && songSet.add(song)) {
                     songs.add(song);
+                    features.add(song);
                     count++;
                 }
             }
@@ -202,23 +217,97 @@ public class MusicLibrary {
     
     public void clearLibrary() {
         songs.clear();
+        songSet.clear();
+        features.clear();
         System.out.println("+ Music library cleared.");
     }
     
     public void addSong(Song song) {
-        if (!songs.contains(song)) {
+        if (songSet.add(song)) {
             songs.add(song);
+            features.add(song);
         }
     }
     
     public boolean removeSong(Song song) {
-        return songs.remove(song);
+        if (!songSet.remove(song)) return false;
+        
+        int position = songs.indexOf(song);
+        songs.remove(position);
+        features.remove(position);
+        return true;
     }
     
     public List<Song> getAllSongs() {
         return new ArrayList<>(songs);
     }
     
+    /**
+     * @return the library itself, read-only, for callers that only read it;
+     *         unlike getAllSongs nothing is copied
+     */
+    public List<Song> getSongsView() {
+        return Collections.unmodifiableList(songs);
+    }
+    
+    public boolean contains(Song song) {
+        return songSet.contains(song);
+    }
+    
+    /**
+     * @return up to count songs, every choice equally likely, in random order;
+     *         costs O(count) however large the library
+     */
+    public List<Song> sampleSongs(int count, Random random) {
+        return songsAt(Sampling.sampleIndexes(songs.size(), count, random));
+    }
+    
+    /**
+     * @return up to count random songs with the feature, in random order
+     */
+    public List<Song> sampleSongsWith(SongFeature feature, int count, Random random) {
+        return songsAt(features.sample(feature, true, count, random));
+    }
+    
+    /**
+     * @return up to count random songs without the feature, in random order
+     */
+    public List<Song> sampleSongsWithout(SongFeature feature, int count, Random random) {
+        return songsAt(features.sample(feature, false, count, random));
+    }
+    
+    private List<Song> songsAt(int[] positions) {
+        List<Song> results = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            results.add(songs.get(position));
+        }
+        return results;
+    }
+    
+    /**
+     * @return songs having every one of the features, in library order; looked up
+     *         in the feature index, without searching any song's text
+     */
+    public List<Song> getSongsWith(SongFeature first, SongFeature... more) {
+        BitSet matching = features.matching(first, more);
+        List<Song> results = new ArrayList<>(matching.cardinality());
+        for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+            results.add(songs.get(i));
+        }
+        return results;
+    }
+    
+    /**
+     * @return the first songs with the feature in library order, at most limit
+     */
+    public List<Song> getSongsWith(SongFeature feature, int limit) {
+        return songsAt(features.first(feature, limit));
+    }
+    
+    public int countSongsWith(SongFeature feature) {
+        return features.count(feature);
+    }
+    
     public List<Song> searchByTitle(String title) {
         List<Song> results = new ArrayList<>();
         String lowerTitle = title.toLowerCase();
@@ -1,29 +1,42 @@
 package com.musicplayer.service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineEvent;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
+import com.musicplayer.audio.AudioDecoders;
+import com.musicplayer.audio.AudioOutput;
+import com.musicplayer.audio.AudioProcessor;
+import com.musicplayer.audio.GainStage;
+import com.musicplayer.audio.LoudnessNormalizer;
+import com.musicplayer.audio.PcmTap;
+import com.musicplayer.audio.PlaybackEngine;
+import com.musicplayer.audio.PlaybackPipeline;
+import com.musicplayer.audio.SourceDataLineOutput;
 import com.musicplayer.model.Playlist;
 import com.musicplayer.model.Song;
 
-import javazoom.jl.decoder.JavaLayerException;
-import javazoom.jl.player.advanced.AdvancedPlayer;
-import javazoom.jl.player.advanced.PlaybackEvent;
-import javazoom.jl.player.advanced.PlaybackListener;
-
 public class MusicPlayer {
+    /**
+     * Told how long each track was actually heard once it stops playing.
+     */
+    public interface ListenListener {
+        /**
+         * @param startedAtMillis wall-clock time the track started
+         * @param listenedMillis  audio heard, from the output clock; pauses excluded
+         * @param lengthMillis    length of the track as decoded, or -1 if unknown
+         * @param completed       true if the track played to its end
+         */
+        void onListen(Song song, long startedAtMillis, long listenedMillis, long lengthMillis, boolean completed);
+    }
+    
     private Song currentSong;
     private Playlist currentPlaylist;
     private int currentIndex;
@@ -35,25 +48,37 @@ public class MusicPlayer {
     private final List<Integer> shuffleOrder;
     private int shuffleIndex;
     
-    // Audio playback components for WAV/AIFF/AU
-    private Clip audioClip;
-    private AudioInputStream audioStream;
-    private long clipPosition = 0;
-    
-    // MP3 playback components (JLayer)
-    private AdvancedPlayer mp3Player;
-    private Thread mp3Thread;
-    private FileInputStream mp3FileStream;
-    private boolean isMp3File = false;
+    // Streaming playback (MP3/WAV/AIFF/AU) through the DSP pipeline to the selected output
+    private final PlaybackPipeline pipeline;
+    private final PlaybackEngine engine;
+    private final LoudnessNormalizer normalizer;
+    private final GainStage gainStage;
+    private final PcmTap pcmTap;
+    private LoudnessAnalyzer loudnessAnalyzer;
     
     // Simulation mode tracking (fallback)
     private boolean isSimulationMode = false;
     private long simulationStartTime = 0;
     private long simulationPauseTime = 0;
+    // Bumped whenever the simulated track stops, pauses or restarts; a timer only
+    // ends the track if it still holds the current value
+    private final AtomicLong simulationTimer = new AtomicLong();
+    
+    // The track being heard, as spans of the audio clock between start/resume and pause/stop
+    private final Object listenLock = new Object();
+    private volatile ListenListener listenListener;
+    private Song listenSong;
+    private long listenStartedAt;
+    private long listenedMicros;
+    private long spanStartMicros = -1;
     
     private static final int MAX_RECENTLY_PLAYED = 20;
     
     public MusicPlayer() {
+        this(new AudioEffects());
+    }
+    
+    public MusicPlayer(AudioEffects audioEffects) {
         this.currentIndex = 0;
         this.isPlaying = false;
         this.isPaused = false;
@@ -62,6 +87,39 @@ public class MusicPlayer {
         this.recentlyPlayed = new ArrayList<>();
         this.shuffleOrder = new ArrayList<>();
         this.shuffleIndex = 0;
+        this.pipeline = new PlaybackPipeline();
+        this.normalizer = new LoudnessNormalizer();
+        for (AudioProcessor processor : audioEffects.getProcessors()) {
+            pipeline.addProcessor(processor);
+        }
+        // Normalization and its limiter run after the effects so nothing can clip past them
+        pipeline.addProcessor(normalizer);
+        // Visualizer tap sits before the master volume so bars don't shrink with it
+        this.pcmTap = new PcmTap();
+        pipeline.addProcessor(pcmTap);
+        this.gainStage = audioEffects.getGainStage();
+        pipeline.addProcessor(gainStage);
+        this.engine = new PlaybackEngine(pipeline, new SourceDataLineOutput());
+        
+        engine.setListener(new PlaybackEngine.Listener() {
+            @Override
+            public void onTrackFinished() {
+                endListen(true);
+                if (isPlaying && !isPaused) {
+                    // Song finished, play next if repeat mode or move to next
+                    if (repeatMode) {
+                        playNewSong();
+                    } else {
+                        next();
+                    }
+                }
+            }
+            
+            @Override
+            public void onPlaybackError(String message) {
+                System.out.println("X " + message);
+            }
+        });
     }
     
     public void loadPlaylist(Playlist playlist) {
@@ -81,31 +139,30 @@ public class MusicPlayer {
         try {
             if (isPaused) {
                 // Resume from pause
-                if (isMp3File) {
-                    // For MP3, we need to restart from beginning (JLayer limitation)
-                    System.out.println(">> Restarting MP3: " + currentSong.getTitle());
-                    return playNewSong();
-                } else if (isSimulationMode) {
+                if (isSimulationMode) {
                     // Resume simulation
                     long pausedDuration = System.currentTimeMillis() - simulationPauseTime;
                     simulationStartTime += pausedDuration;
                     isPaused = false;
                     isPlaying = true;
+                    resumeListen();
+                    scheduleSimulationEnd(simulationStartTime + currentSong.getDuration() * 1000L
+                                          - System.currentTimeMillis());
                     System.out.println(">> Resumed: " + currentSong.getTitle());
                     return true;
-                } else if (audioClip != null) {
-                    // Resume WAV/AIFF/AU
-                    audioClip.setMicrosecondPosition(clipPosition);
-                    audioClip.start();
+                } else if (engine.isActive()) {
+                    // Resume streamed playback where it stopped
+                    engine.resume();
                     isPaused = false;
                     isPlaying = true;
+                    resumeListen();
                     System.out.println(">> Resumed: " + currentSong.getTitle());
                     return true;
                 }
             }
             
             return playNewSong();
-            
+        
         } catch (Exception e) {
             System.out.println("X Error playing audio: " + e.getMessage());
             return startSimulation();
@@ -122,101 +179,29 @@ public class MusicPlayer {
             return startSimulation();
         }
         
-        String fileName = audioFile.getName().toLowerCase();
-        isMp3File = fileName.endsWith(".mp3");
-        
-        if (isMp3File) {
-            return playMp3File(audioFile);
-        } else if (fileName.endsWith(".wav") || fileName.endsWith(".aiff") || fileName.endsWith(".au")) {
-            return playRealAudioFile(audioFile);
+        if (AudioDecoders.canDecode(audioFile.getName())) {
+            return playStreamedFile(audioFile);
         } else {
             // For other formats, use simulation
             return startSimulation();
         }
     }
     
-    private boolean playMp3File(File audioFile) {
+    private boolean playStreamedFile(File audioFile) {
         try {
-            mp3FileStream = new FileInputStream(audioFile);
-            mp3Player = new AdvancedPlayer(mp3FileStream);
-            
-            // Add playback listener for when song ends
-            mp3Player.setPlayBackListener(new PlaybackListener() {
-                @Override
-                public void playbackFinished(PlaybackEvent evt) {
-                    if (isPlaying && !isPaused) {
-                        // Song finished, play next if repeat mode or move to next
-                        if (repeatMode) {
-                            playNewSong();
-                        } else {
-                            next();
-                        }
-                    }
-                }
-            });
-            
-            // Play MP3 in a separate thread
-            mp3Thread = new Thread(() -> {
-                try {
-                    mp3Player.play();
-                } catch (JavaLayerException e) {
-                    if (isPlaying) { // Only show error if we're still trying to play
-                        System.out.println("X Error playing MP3: " + e.getMessage());
-                    }
-                }
-            });
-            
-            mp3Thread.start();
+            applyLoudnessGain();
+            engine.start(audioFile);
             isPlaying = true;
             isPaused = false;
             isSimulationMode = false;
-            clipPosition = 0;
+            beginListen(currentSong);
             
             System.out.println(">> Playing: " + currentSong.getTitle() + " - " + currentSong.getArtist() + " (" + formatDuration(currentSong.getDuration()) + ")");
             
             currentSong.setLastPlayed(LocalDateTime.now());
             addToRecentlyPlayed(currentSong);
             return true;
-            
-        } catch (IOException | JavaLayerException e) {
-            System.out.println("X Error playing MP3 file: " + e.getMessage());
-            System.out.println(">> Falling back to simulation mode");
-            return startSimulation();
-        }
-    }
-    
-    private boolean playRealAudioFile(File audioFile) {
-        try {
-            audioStream = AudioSystem.getAudioInputStream(audioFile);
-            audioClip = AudioSystem.getClip();
-            audioClip.open(audioStream);
-            
-            // Add listener for when song ends
-            audioClip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP) {
-                    if (isPlaying && !isPaused) {
-                        // Song finished, play next if repeat mode or move to next
-                        if (repeatMode) {
-                            playCurrentSong();
-                        } else {
-                            next();
-                        }
-                    }
-                }
-            });
-            
-            audioClip.start();
-            isPlaying = true;
-            isPaused = false;
-            isSimulationMode = false;
-            clipPosition = 0;
-            
-            System.out.println(">> Playing: " + currentSong.getTitle() + " - " + currentSong.getArtist() + " (" + formatDuration(currentSong.getDuration()) + ")");
-            
-            currentSong.setLastPlayed(LocalDateTime.now());
-            addToRecentlyPlayed(currentSong);
-            return true;
-            
+        
         } catch (UnsupportedAudioFileException e) {
             System.out.println("X Unsupported audio format: " + audioFile.getName());
             return startSimulation();
@@ -234,6 +219,7 @@ public class MusicPlayer {
         isPaused = false;
         isSimulationMode = true;
         simulationStartTime = System.currentTimeMillis();
+        beginListen(currentSong);
         
         System.out.println(">> Playing (Simulation): " + currentSong.getTitle() + " - " + currentSong.getArtist() + " (" + formatDuration(currentSong.getDuration()) + ")");
         
@@ -241,25 +227,112 @@ public class MusicPlayer {
         addToRecentlyPlayed(currentSong);
         
         // Start a timer thread to auto-advance after song duration
-        Thread simulationTimer = new Thread(() -> {
+        scheduleSimulationEnd(currentSong.getDuration() * 1000L);
+        
+        return true;
+    }
+    
+    /**
+     * Ends the simulated track after the delay, unless it was stopped, paused or
+     * replaced in the meantime.
+     */
+    private void scheduleSimulationEnd(long delayMillis) {
+        long token = simulationTimer.incrementAndGet();
+        Thread timer = new Thread(() -> {
             try {
-                Thread.sleep(currentSong.getDuration() * 1000L); // Convert to milliseconds
-                if (isPlaying && isSimulationMode && !isPaused) {
-                    // Song finished, play next if repeat mode or move to next
-                    if (repeatMode) {
-                        playNewSong();
-                    } else {
-                        next();
-                    }
-                }
+                Thread.sleep(Math.max(0, delayMillis));
             } catch (InterruptedException e) {
-                // Timer was interrupted, ignore
+                return;
+            }
+            // Claim the token, so a stop racing with this cannot also end the track
+            if (!simulationTimer.compareAndSet(token, token + 1)) return;
+            
+            endListen(true);
+            // Song finished, play next if repeat mode or move to next
+            if (repeatMode) {
+                playNewSong();
+            } else {
+                next();
             }
         });
-        simulationTimer.setDaemon(true);
-        simulationTimer.start();
+        timer.setDaemon(true);
+        timer.start();
+    }
+    
+    private void beginListen(Song song) {
+        synchronized (listenLock) {
+            listenSong = song;
+            listenStartedAt = System.currentTimeMillis();
+            listenedMicros = 0;
+            spanStartMicros = listenClockMicros();
+        }
+    }
+    
+    private void pauseListen() {
+        synchronized (listenLock) {
+            if (listenSong == null || spanStartMicros < 0) return;
+            listenedMicros += Math.max(0, listenClockMicros() - spanStartMicros);
+            spanStartMicros = -1;
+        }
+    }
+    
+    private void resumeListen() {
+        synchronized (listenLock) {
+            if (listenSong == null || spanStartMicros >= 0) return;
+            spanStartMicros = listenClockMicros();
+        }
+    }
+    
+    /**
+     * Closes the open span and reports the listen. A track that ran to its end is
+     * counted up to its full length: the audio still queued in the output will play.
+     */
+    private void endListen(boolean completed) {
+        Song song;
+        long startedAt;
+        long listened;
+        long length;
+        synchronized (listenLock) {
+            if (listenSong == null) return;
+            length = trackLengthMicros(listenSong);
+            if (spanStartMicros >= 0) {
+                long end = listenClockMicros();
+                if (completed) {
+                    end = Math.max(end, length);
+                }
+                listenedMicros += Math.max(0, end - spanStartMicros);
+            }
+            song = listenSong;
+            startedAt = listenStartedAt;
+            listened = listenedMicros;
+            listenSong = null;
+            spanStartMicros = -1;
+        }
         
-        return true;
+        ListenListener current = listenListener;
+        if (current != null) {
+            current.onListen(song, startedAt, listened / 1000, length < 0 ? -1 : length / 1000, completed);
+        }
+    }
+    
+    /**
+     * Playback position for span accounting: the output's audio clock when
+     * streaming, elapsed unpaused time in simulation mode.
+     */
+    private long listenClockMicros() {
+        if (isSimulationMode) {
+            long now = isPaused ? simulationPauseTime : System.currentTimeMillis();
+            return Math.max(0, now - simulationStartTime) * 1000;
+        }
+        return engine.getPositionMicros();
+    }
+    
+    /**
+     * @return length of the track being heard, or -1 if the decoder doesn't know
+     *         it; a simulated track lasts the song's nominal duration
+     */
+    private long trackLengthMicros(Song song) {
+        return isSimulationMode ? song.getDuration() * 1_000_000L : engine.getLengthMicros();
     }
     
     private String formatDuration(int seconds) {
@@ -268,32 +341,20 @@ public class MusicPlayer {
         return String.format("%d:%02d", minutes, remainingSeconds);
     }
     
-    private void playCurrentSong() {
-        if (audioClip != null) {
-            audioClip.setMicrosecondPosition(0);
-            audioClip.start();
-        }
-    }
-    
     public void pause() {
         if (isPlaying) {
-            if (isMp3File && mp3Player != null) {
-                // For MP3, we need to stop (JLayer doesn't support pause/resume)
-                stopAudio();
-                isPaused = true;
-                isPlaying = false;
-                System.out.println("|| Paused: " + (currentSong != null ? currentSong.getTitle() : ""));
-                System.out.println("   Note: MP3 will restart from beginning when resumed");
-            } else if (isSimulationMode) {
-                // Pause simulation
+            if (isSimulationMode) {
+                // Pause simulation; resuming schedules the rest of the track
+                simulationTimer.incrementAndGet();
                 simulationPauseTime = System.currentTimeMillis();
+                pauseListen();
                 isPaused = true;
                 isPlaying = false;
                 System.out.println("|| Paused: " + (currentSong != null ? currentSong.getTitle() : ""));
-            } else if (audioClip != null && audioClip.isRunning()) {
-                // Pause WAV/AIFF/AU
-                clipPosition = audioClip.getMicrosecondPosition();
-                audioClip.stop();
+            } else if (engine.isActive()) {
+                // Pause streamed playback, keeping the decoder position
+                engine.pause();
+                pauseListen();
                 isPaused = true;
                 isPlaying = false;
                 System.out.println("|| Paused: " + (currentSong != null ? currentSong.getTitle() : ""));
@@ -305,54 +366,21 @@ public class MusicPlayer {
         stopAudio();
         isPlaying = false;
         isPaused = false;
-        clipPosition = 0;
         System.out.println("[] Stopped");
     }
     
     private void stopAudio() {
-        // Stop WAV/AIFF/AU playback
-        if (audioClip != null) {
-            if (audioClip.isRunning()) {
-                audioClip.stop();
-            }
-            audioClip.close();
-            audioClip = null;
-        }
-        
-        if (audioStream != null) {
-            try {
-                audioStream.close();
-            } catch (IOException e) {
-                // Ignore close errors
-            }
-            audioStream = null;
-        }
+        simulationTimer.incrementAndGet();
+        // Read the clock before stopping: stop() discards the audio still queued
+        endListen(false);
         
-        // Stop MP3 playback
-        if (mp3Player != null) {
-            mp3Player.close();
-            mp3Player = null;
-        }
-        
-        if (mp3Thread != null && mp3Thread.isAlive()) {
-            mp3Thread.interrupt();
-            mp3Thread = null;
-        }
-        
-        if (mp3FileStream != null) {
-            try {
-                mp3FileStream.close();
-            } catch (IOException e) {
-                // Ignore close errors
-            }
-            mp3FileStream = null;
-        }
+        // Stop streamed playback; the output stays open for the next track
+        engine.stop();
         
         // Reset simulation mode
         isSimulationMode = false;
         simulationStartTime = 0;
         simulationPauseTime = 0;
-        isMp3File = false;
     }
     
     public boolean next() {
@@ -462,11 +490,7 @@ public class MusicPlayer {
         
         // Add playback position if available
         String position = "";
-        if (isMp3File && (isPlaying || isPaused)) {
-            // For MP3, just show the total duration (JLayer doesn't provide position)
-            int totalSeconds = currentSong.getDuration();
-            position = String.format(" [%d:%02d]", totalSeconds / 60, totalSeconds % 60);
-        } else if (isSimulationMode && (isPlaying || isPaused)) {
+        if (isSimulationMode && (isPlaying || isPaused)) {
             // For simulation mode, calculate elapsed time
             long currentTime = isPaused ? simulationPauseTime : System.currentTimeMillis();
             long elapsedSeconds = (currentTime - simulationStartTime) / 1000;
@@ -478,13 +502,11 @@ public class MusicPlayer {
             position = String.format(" [%d:%02d / %d:%02d]", 
                 elapsedSeconds / 60, elapsedSeconds % 60,
                 totalSeconds / 60, totalSeconds % 60);
-        } else if (!isSimulationMode && !isMp3File && audioClip != null && (isPlaying || isPaused)) {
-            // For real audio playback (WAV/AIFF/AU)
-            long currentPos = isPaused ? clipPosition : audioClip.getMicrosecondPosition();
-            long totalLength = audioClip.getMicrosecondLength();
-            
-            int currentSeconds = (int) (currentPos / 1_000_000);
-            int totalSeconds = (int) (totalLength / 1_000_000);
+        } else if (!isSimulationMode && engine.isActive()) {
+            // For streamed playback, position comes from the output's audio clock
+            long totalLength = engine.getLengthMicros();
+            int currentSeconds = (int) (engine.getPositionMicros() / 1_000_000);
+            int totalSeconds = totalLength >= 0 ? (int) (totalLength / 1_000_000) : currentSong.getDuration();
             
             position = String.format(" [%d:%02d / %d:%02d]", 
                 currentSeconds / 60, currentSeconds % 60,
@@ -496,8 +518,77 @@ public class MusicPlayer {
     
     public void cleanup() {
         stopAudio();
+        engine.close();
+    }
+    
+    /**
+     * Switches playback to another output (device, mixer, buffer size).
+     * Takes effect from the next song that starts.
+     */
+    public void setAudioOutput(AudioOutput output) {
+        boolean wasPlaying = isPlaying && !isSimulationMode;
+        if (wasPlaying) {
+            endListen(false);
+        }
+        engine.setOutput(output);
+        if (wasPlaying) {
+            isPlaying = false;
+            isPaused = false;
+        }
+    }
+    
+    public void setListenListener(ListenListener listenListener) {
+        this.listenListener = listenListener;
     }
     
+    public void setLoudnessAnalyzer(LoudnessAnalyzer loudnessAnalyzer) {
+        this.loudnessAnalyzer = loudnessAnalyzer;
+    }
+    
+    /**
+     * Updates the normalization gain for the current song, e.g. after the mode
+     * changed or analysis finished.
+     */
+    public void applyLoudnessGain() {
+        if (loudnessAnalyzer == null || currentSong == null
+                || loudnessAnalyzer.getMode() == LoudnessAnalyzer.Mode.OFF) {
+            normalizer.setEnabled(false);
+            return;
+        }
+        
+        if (loudnessAnalyzer.getResult(currentSong) == null) {
+            loudnessAnalyzer.analyzeInBackground(Collections.singletonList(currentSong));
+        }
+        normalizer.setGainDb(loudnessAnalyzer.getGainDb(currentSong));
+        normalizer.setEnabled(true);
+    }
+    
+    /**
+     * Fades the output to silence over the given seconds of played audio.
+     */
+    public void fadeOut(double seconds) {
+        gainStage.startFade(seconds);
+    }
+    
+    public void cancelFade() {
+        gainStage.cancelFade();
+    }
+    
+    public boolean isFadeComplete() {
+        return gainStage.isFadeComplete();
+    }
+    
+    /**
+     * @return position of the audio being heard, or 0 when nothing is streaming
+     */
+    public long getPositionMicros() {
+        return !isSimulationMode && engine.isActive() ? engine.getPositionMicros() : 0;
+    }
+    
+    public AudioOutput getAudioOutput() { return engine.getOutput(); }
+    public PlaybackPipeline getPipeline() { return pipeline; }
+    public PcmTap getPcmTap() { return pcmTap; }
+    
     // Get supported audio formats
     public static String[] getSupportedFormats() {
         return new String[]{"MP3", "WAV", "AIFF", "AU"};
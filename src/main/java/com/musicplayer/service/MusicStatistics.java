@@ -1,43 +1,142 @@
 package com.musicplayer.service;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import com.musicplayer.model.Song;
+import com.musicplayer.stats.ColumnarHistory;
+import com.musicplayer.stats.CsvHistory;
+import com.musicplayer.stats.EventCodec;
+import com.musicplayer.stats.EventLog;
+import com.musicplayer.stats.EventTable;
+import com.musicplayer.stats.HistoryQuery;
+import com.musicplayer.stats.HistorySink;
+import com.musicplayer.stats.ListeningSketches;
+import com.musicplayer.stats.ListeningTimeSeries;
+import com.musicplayer.stats.MpscQueue;
+import com.musicplayer.stats.PlayEventType;
+import com.musicplayer.stats.QueryResult;
+import com.musicplayer.stats.Ranking;
+import com.musicplayer.stats.RunningTotals;
+import com.musicplayer.stats.SpaceSaving;
 
 /**
  * Music Statistics and Analytics Service
- * Tracks listening habits, play counts, and generates insights
+ * Tracks listening habits, play counts, and generates insights. Every play is
+ * appended to an event log under ~/.musicplayer/stats and replayed on startup,
+ * so the history survives restarts.
+ * 
+ * Recording only enqueues the event; a single aggregator thread applies events in
+ * order and is the only writer of the statistics. Reads wait for events recorded
+ * before them and then hold a read lock, so each read sees one consistent state.
+ *
+ * Exports carry the ID of the machine each event was recorded on. Importing one
+ * merges only the events of each other machine not already here, so exports can
+ * be exchanged between machines in any order and imported again without double
+ * counting.
+ *
+ * In sketch mode (-Dmusicplayer.stats=sketch) per-song counts are not kept at
+ * all: play counts, unique songs and artists, and top songs come from fixed-size
+ * probabilistic sketches and are shown with their error bounds.
  */
 public class MusicStatistics {
+    // Records a restart may have to replay before the log is compacted
+    private static final int SNAPSHOT_INTERVAL = 10_000;
+    private static final int SNAPSHOT_VERSION = 5;
+    private static final int RECENT_LIMIT = 100;
+    private static final int PEAK_HOUR_DAYS = 90;
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final long WAIT_PARK_NANOS = 50_000L;
+    private static final int IMPORT_BATCH = 1024;
+    private static final int MIN_SKIPS = 3;
+    
     private final Map<Song, Integer> playCount;
     private final Map<Song, Long> totalPlayTime; // in seconds
     private final Map<Song, LocalDateTime> lastPlayed;
-    private final Map<LocalDate, Integer> dailyPlayCount;
     private final Map<String, Integer> artistPlayCount;
     private final Map<String, Integer> genrePlayCount;
+    private final Map<Song, Integer> skipCount;
+    // Every track started, whether it counted as a play or was skipped
+    private long totalListens;
+    private long totalSkips;
+    private double completionSum;
     private final List<PlaySession> playSessions;
     private LocalDateTime sessionStart;
     private int currentSessionSongs;
     
+    // Kept in order as plays arrive, so top-k queries never sort
+    private final Ranking<Song> songRanking;
+    private final Ranking<String> artistRanking;
+    private final Ranking<Song> recentRanking;
+    // Songs skipped at least MIN_SKIPS times, by skips per start in parts per million
+    private final Ranking<Song> skipRanking;
+    // Totals, diversity and session averages, updated per event so no display rescans
+    private final RunningTotals totals;
+    private final ListeningTimeSeries timeSeries;
+    // Kept in both modes, so switching to sketch mode starts with a full history
+    private final ListeningSketches sketches;
+    private final boolean sketchMode;
+    // Looked up once; ZoneId.systemDefault() copies the default TimeZone on every call
+    private final ZoneId zone;
+    
+    // Songs are logged once and referred to by ID afterwards
+    private final Map<Song, Integer> songIds;
+    private final List<Song> songsById;
+    private EventLog eventLog;
+    // This machine, as named in exports; events from other machines are logged after
+    // a source record naming theirs
+    private String sourceId;
+    // Events merged from each other machine, in that machine's order
+    private final Map<String, Long> importedEvents;
+    private String replaySource;
+    private final Object importLock = new Object();
+    // Every event as columns for ad-hoc queries; read from the log on first use
+    private EventTable history;
+    
+    private final MpscQueue<Runnable> ingest;
+    private final ReentrantReadWriteLock stateLock;
+    private final Thread aggregator;
+    private volatile boolean running;
+    private volatile boolean aggregatorParked;
+    // Events the aggregator has applied, in queue order
+    private volatile long applied;
+    
     private static class PlaySession {
         LocalDateTime startTime;
         LocalDateTime endTime;
         int songsPlayed;
         
-        PlaySession(LocalDateTime start) {
+        PlaySession(LocalDateTime start, LocalDateTime end, int songsPlayed) {
             this.startTime = start;
-            this.songsPlayed = 0;
-        }
-        
-        void endSession() {
-            this.endTime = LocalDateTime.now();
+            this.endTime = end;
+            this.songsPlayed = songsPlayed;
         }
         
         long getSessionDuration() {
@@ -47,182 +146,875 @@ public class MusicStatistics {
     }
     
     public MusicStatistics() {
+        this(new File(System.getProperty("user.home"), ".musicplayer" + File.separator + "stats"));
+    }
+    
+    public MusicStatistics(File directory) {
+        this(directory, "sketch".equalsIgnoreCase(System.getProperty("musicplayer.stats")));
+    }
+    
+    /**
+     * @param directory  where the play-event log is kept, or null to keep statistics
+     *                   in memory only
+     * @param sketchMode answer from fixed-memory sketches instead of exact per-song counts
+     */
+    public MusicStatistics(File directory, boolean sketchMode) {
+        this.sketchMode = sketchMode;
+        this.sketches = new ListeningSketches();
         this.playCount = new HashMap<>();
         this.totalPlayTime = new HashMap<>();
         this.lastPlayed = new HashMap<>();
-        this.dailyPlayCount = new HashMap<>();
         this.artistPlayCount = new HashMap<>();
         this.genrePlayCount = new HashMap<>();
+        this.skipCount = new HashMap<>();
         this.playSessions = new ArrayList<>();
         this.currentSessionSongs = 0;
+        this.songIds = new HashMap<>();
+        this.songsById = new ArrayList<>();
+        this.importedEvents = new HashMap<>();
+        this.sourceId = UUID.randomUUID().toString();
+        this.songRanking = new Ranking<>();
+        this.artistRanking = new Ranking<>();
+        this.recentRanking = new Ranking<>();
+        this.skipRanking = new Ranking<>();
+        this.totals = new RunningTotals();
+        this.zone = ZoneId.systemDefault();
+        this.timeSeries = new ListeningTimeSeries(zone);
+        
+        if (directory != null) {
+            openEventLog(directory);
+        }
+        if (eventLog == null) {
+            // Nothing on disk to load later, so collect from the first event
+            history = new EventTable(zone);
+        }
+        
+        this.ingest = new MpscQueue<>(QUEUE_CAPACITY);
+        this.stateLock = new ReentrantReadWriteLock();
+        this.running = true;
+        this.aggregator = new Thread(this::aggregate, "stats-aggregator");
+        aggregator.setDaemon(true);
+        aggregator.start();
     }
     
+    /**
+     * Queues an update for the aggregator. Waits only if the queue is full, so no
+     * event is ever dropped.
+     *
+     * @return the update's sequence number
+     */
+    private long submit(Runnable update) {
+        if (!running) {
+            // Closed: apply in place so late events still count in memory
+            stateLock.writeLock().lock();
+            try {
+                update.run();
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            return -1;
+        }
+        long sequence;
+        while ((sequence = ingest.offer(update)) < 0) {
+            LockSupport.unpark(aggregator);
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+        if (aggregatorParked) {
+            LockSupport.unpark(aggregator);
+        }
+        return sequence;
+    }
+    
+    private void aggregate() {
+        while (true) {
+            Runnable update = ingest.poll();
+            if (update == null) {
+                if (!running) return;
+                aggregatorParked = true;
+                // Re-check after announcing, so a producer's wake-up cannot be missed
+                if (ingest.isEmpty() && running) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                aggregatorParked = false;
+                continue;
+            }
+            
+            // Apply whatever has queued up under one write lock
+            stateLock.writeLock().lock();
+            try {
+                int batch = 0;
+                do {
+                    try {
+                        update.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("X Statistics update failed: " + e.getMessage());
+                    }
+                    applied++;
+                } while (++batch < MAX_BATCH && (update = ingest.poll()) != null);
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * Waits until every update queued so far (by any thread) has been applied.
+     */
+    private void awaitApplied() {
+        long target = ingest.getTail();
+        while (applied < target && running && Thread.currentThread() != aggregator) {
+            LockSupport.unpark(aggregator);
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+    
+    private <T> T read(Supplier<T> query) {
+        beginRead();
+        try {
+            return query.get();
+        } finally {
+            endRead();
+        }
+    }
+    
+    private void beginRead() {
+        awaitApplied();
+        stateLock.readLock().lock();
+    }
+    
+    private void endRead() {
+        stateLock.readLock().unlock();
+    }
+    
+    private void openEventLog(File directory) {
+        long started = System.nanoTime();
+        EventLog log = new EventLog(directory);
+        try {
+            sourceId = loadSourceId(directory);
+            long replayed = log.open(new EventLog.Replay() {
+                @Override
+                public void snapshot(DataInputStream in) throws IOException {
+                    readSnapshot(in);
+                }
+                
+                @Override
+                public void record(byte[] payload) throws IOException {
+                    EventCodec.decode(payload, replayHandler);
+                }
+            });
+            eventLog = log;
+            if (replaySource != null) {
+                // Stopped in the middle of an import; what follows is local again
+                append(EventCodec.source(sourceId));
+                replaySource = null;
+            }
+            if (sumPlays() > 0 || replayed > 0) {
+                System.out.printf("[STATS] Loaded %d plays of %d songs (%d ms)\n",
+                                 sumPlays(), countSongs(), (System.nanoTime() - started) / 1_000_000);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("X Could not load play history, statistics will not be saved: " + e.getMessage());
+            log.close();
+            clearAggregates();
+        }
+    }
+    
+    /**
+     * @return this machine's ID, created on first use and kept with the log
+     */
+    private static String loadSourceId(File directory) throws IOException {
+        File file = new File(directory, "source-id");
+        if (file.isFile()) {
+            String id = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            if (!id.isEmpty()) return id;
+        }
+        return newSourceId(directory);
+    }
+    
+    private static String newSourceId(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String id = UUID.randomUUID().toString();
+        Files.write(new File(directory, "source-id").toPath(), id.getBytes(StandardCharsets.UTF_8));
+        return id;
+    }
+    
+    private final EventCodec.Handler replayHandler = new EventCodec.Handler() {
+        @Override
+        public void song(int id, String title, String artist, String album, int duration, String path) {
+            Song song = new Song(title, artist, album, duration, path);
+            while (songsById.size() <= id) {
+                songsById.add(null);
+            }
+            songsById.set(id, song);
+            songIds.putIfAbsent(song, id);
+        }
+        
+        @Override
+        public void play(PlayEventType type, int songId, long timestampMillis, int seconds) {
+            Song song = songId < songsById.size() ? songsById.get(songId) : null;
+            if (song != null) {
+                apply(type, song, timestampMillis, seconds);
+            }
+            if (replaySource != null) {
+                importedEvents.merge(replaySource, 1L, Long::sum);
+            }
+        }
+        
+        @Override
+        public void session(long startMillis, long endMillis, int songs) {
+            addSession(new PlaySession(toDateTime(startMillis), toDateTime(endMillis), songs));
+        }
+        
+        @Override
+        public void source(String id) {
+            replaySource = id.equals(sourceId) ? null : id;
+        }
+    };
+    
     public void startListeningSession() {
-        sessionStart = LocalDateTime.now();
-        currentSessionSongs = 0;
+        LocalDateTime start = LocalDateTime.now();
+        submit(() -> {
+            sessionStart = start;
+            currentSessionSongs = 0;
+        });
         System.out.println("[STATS] Started new listening session");
     }
     
     public void endListeningSession() {
-        if (sessionStart != null) {
-            PlaySession session = new PlaySession(sessionStart);
-            session.songsPlayed = currentSessionSongs;
-            session.endSession();
-            playSessions.add(session);
+        LocalDateTime end = LocalDateTime.now();
+        submit(() -> {
+            if (sessionStart == null) return;
+            
+            PlaySession session = new PlaySession(sessionStart, end, currentSessionSongs);
+            addSession(session);
+            append(EventCodec.session(toMillis(session.startTime), toMillis(session.endTime), currentSessionSongs));
+            compactIfDue();
             
             System.out.printf("[STATS] Session ended: %d songs, %d minutes\n", 
                              currentSessionSongs, (int) session.getSessionDuration());
             sessionStart = null;
-        }
+        });
+        awaitApplied();
+    }
+    
+    /**
+     * Records one listen as reported by the player when the track stopped. A track
+     * played to its end is a play; one stopped early is a partial play, or a skip if
+     * heard for less than min(30 s, half the song). Safe from any thread; costs one
+     * enqueue.
+     *
+     * @param startedAtMillis when the track started, so it lands in the right hour
+     * @param listenedMillis  audio actually heard, pauses excluded
+     * @param lengthMillis    length of the track as played, or -1 if unknown; the
+     *                        song's own duration is only an estimate for scanned files
+     */
+    public void recordListen(Song song, long startedAtMillis, long listenedMillis, long lengthMillis,
+                             boolean completed) {
+        if (song == null) return;
+        
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (listenedMillis + 500) / 1000);
+        int length = lengthMillis > 0 ? (int) Math.min(Integer.MAX_VALUE, (lengthMillis + 500) / 1000) : 0;
+        submit(() -> {
+            // Classified against the length the song is stored with, once updated
+            Song stored = storedSong(song, length);
+            PlayEventType type;
+            if (completed) {
+                type = PlayEventType.COMPLETED;
+            } else if (seconds >= playThreshold(stored)) {
+                type = PlayEventType.PARTIAL;
+            } else {
+                type = PlayEventType.SKIPPED;
+            }
+            record(type, stored, startedAtMillis, seconds);
+        });
     }
     
+    /**
+     * Records a full play. Safe from any thread; costs one enqueue.
+     */
     public void recordSongPlay(Song song) {
         if (song == null) return;
         
-        // Update play count
-        playCount.put(song, playCount.getOrDefault(song, 0) + 1);
+        long now = System.currentTimeMillis();
+        submit(() -> {
+            Song stored = storedSong(song, 0);
+            record(PlayEventType.COMPLETED, stored, now, stored.getDuration());
+        });
+    }
+    
+    /**
+     * Records a play that stopped early; it counts as a play past min(30 s, half the
+     * song). Safe from any thread; costs one enqueue.
+     */
+    public void recordPartialPlay(Song song, long secondsPlayed) {
+        if (song == null) return;
         
-        // Update total play time
-        totalPlayTime.put(song, totalPlayTime.getOrDefault(song, 0L) + song.getDuration());
+        long now = System.currentTimeMillis();
+        int seconds = (int) Math.min(Integer.MAX_VALUE, secondsPlayed);
+        submit(() -> record(PlayEventType.PARTIAL, song, now, seconds));
+    }
+    
+    /**
+     * Logs an event and applies it to the in-memory statistics. Aggregator only.
+     */
+    private void record(PlayEventType type, Song song, long now, int seconds) {
+        if (store(type, song, now, seconds)) {
+            currentSessionSongs++;
+        }
+        compactIfDue();
+    }
+    
+    /**
+     * Logs and applies one event, without compacting.
+     *
+     * @return whether it counted as a play
+     */
+    private boolean store(PlayEventType type, Song song, long now, int seconds) {
+        Song stored = storedSong(song, 0);
+        int id = songIds.get(stored);
+        append(EventCodec.play(type, id, now, seconds));
+        if (history != null) history.add(id, type, now, seconds);
         
-        // Update last played
-        lastPlayed.put(song, LocalDateTime.now());
+        return apply(type, stored, now, seconds);
+    }
+    
+    /**
+     * The song as statistics know it, logged on first use. Its duration is the
+     * track's length: the one given if known, else the first one seen. A changed
+     * length logs the song again under its ID, so replay, snapshots and queries
+     * measure completion against the same length. Aggregator only.
+     *
+     * @param length length in seconds as played, or 0 if unknown
+     */
+    private Song storedSong(Song song, int length) {
+        Integer id = songIds.get(song);
+        Song stored = id == null ? null : songsById.get(id);
+        if (stored != null && (length <= 0 || length == stored.getDuration())) {
+            return stored;
+        }
         
-        // Update daily play count
-        LocalDate today = LocalDate.now();
-        dailyPlayCount.put(today, dailyPlayCount.getOrDefault(today, 0) + 1);
+        if (id == null) {
+            id = songsById.size();
+            songIds.put(song, id);
+            songsById.add(null);
+        }
+        int duration = length > 0 ? length : song.getDuration();
+        stored = duration == song.getDuration() ? song
+                : new Song(song.getTitle(), song.getArtist(), song.getAlbum(), duration, song.getFilePath());
+        songsById.set(id, stored);
+        append(EventCodec.song(id, stored.getTitle(), stored.getArtist(), stored.getAlbum(),
+                               stored.getDuration(), stored.getFilePath()));
+        if (history != null) history.addSong(id, stored);
+        return stored;
+    }
+    
+    /**
+     * @return the song's length as statistics know it
+     */
+    private int lengthOf(Song song) {
+        Integer id = songIds.get(song);
+        Song stored = id == null ? null : songsById.get(id);
+        return stored != null ? stored.getDuration() : song.getDuration();
+    }
+    
+    /**
+     * Folds one event into the aggregates; shared by live plays and replay, so
+     * both always agree.
+     */
+    private boolean apply(PlayEventType type, Song song, long timestampMillis, int seconds) {
+        switch (type) {
+            case COMPLETED:
+                countListen(song, seconds);
+                countPlay(song, timestampMillis, seconds);
+                return true;
+            case PARTIAL:
+                countListen(song, seconds);
+                // Only count as full play if more than 30 seconds or 50% of song
+                if (seconds >= playThreshold(song)) {
+                    countPlay(song, timestampMillis, seconds);
+                    return true;
+                }
+                // Just update play time without incrementing play count
+                addListeningTime(song, timestampMillis, seconds);
+                return false;
+            case SKIPPED:
+                countListen(song, seconds);
+                totalSkips++;
+                if (!sketchMode) {
+                    skipCount.put(song, skipCount.getOrDefault(song, 0) + 1);
+                    updateSkipRate(song);
+                }
+                addListeningTime(song, timestampMillis, seconds);
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    private static long playThreshold(Song song) {
+        return Math.min(30, song.getDuration() / 2);
+    }
+    
+    private void countListen(Song song, int seconds) {
+        totalListens++;
+        if (song.getDuration() > 0) {
+            completionSum += Math.min(1.0, (double) seconds / song.getDuration());
+        }
+    }
+    
+    private void addListeningTime(Song song, long timestampMillis, long seconds) {
+        totals.addSeconds(seconds);
+        if (!sketchMode) {
+            totalPlayTime.put(song, totalPlayTime.getOrDefault(song, 0L) + seconds);
+        }
+        timeSeries.record(timestampMillis, 0, seconds);
+        sketches.addSeconds(seconds);
+    }
+    
+    private void countPlay(Song song, long timestampMillis, long seconds) {
+        // Sketch mode keeps no per-song counts, so no diversity either
+        totals.addPlay(sketchMode ? 0 : playCount.getOrDefault(song, 0));
+        totals.addSeconds(seconds);
+        timeSeries.record(timestampMillis, 1, seconds);
+        // Imported plays may be older than the last one seen here
+        if (timestampMillis > recentRanking.getScore(song)) {
+            recentRanking.set(song, timestampMillis);
+        }
+        sketches.record(song, timeSeries.bucketOf(ListeningTimeSeries.Resolution.DAY, timestampMillis), 1, seconds);
+        if (sketchMode) {
+            // Only the recent list is kept per song, and only its newest entries
+            recentRanking.trimTo(RECENT_LIMIT);
+            return;
+        }
+        
+        LocalDateTime playedAt = toDateTime(timestampMillis);
+        playCount.put(song, playCount.getOrDefault(song, 0) + 1);
+        totalPlayTime.put(song, totalPlayTime.getOrDefault(song, 0L) + seconds);
+        lastPlayed.merge(song, playedAt, (last, played) -> played.isAfter(last) ? played : last);
+        songRanking.add(song, 1);
         
-        // Update artist play count
         artistPlayCount.put(song.getArtist(), artistPlayCount.getOrDefault(song.getArtist(), 0) + 1);
+        artistRanking.add(song.getArtist(), 1);
+        if (skipCount.containsKey(song)) updateSkipRate(song);
+    }
+    
+    private void updateSkipRate(Song song) {
+        int skips = skipCount.getOrDefault(song, 0);
+        if (skips < MIN_SKIPS) return;
         
-        // Update session count
-        currentSessionSongs++;
+        skipRanking.set(song, 1_000_000L * skips / (skips + playCount.getOrDefault(song, 0)));
+    }
+    
+    private void append(byte[] payload) {
+        if (eventLog == null) return;
         
-        System.out.printf("[STATS] Recorded play: %s (Total plays: %d)\n", 
-                         song.getTitle(), playCount.get(song));
+        eventLog.append(payload);
     }
     
-    public void recordPartialPlay(Song song, long secondsPlayed) {
-        if (song == null) return;
+    /**
+     * Snapshots once enough records have piled up. Only called between events, when
+     * the aggregates reflect every record logged so far.
+     */
+    private void compactIfDue() {
+        if (eventLog != null && eventLog.getLiveRecords() >= SNAPSHOT_INTERVAL) {
+            snapshot();
+        }
+    }
+    
+    private void snapshot() {
+        try {
+            eventLog.snapshot(this::writeSnapshot);
+        } catch (IOException e) {
+            System.out.println("X Could not compact play history: " + e.getMessage());
+        }
+    }
+    
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        
+        // Songs in ID order, so the IDs of later events stay valid
+        out.writeInt(songsById.size());
+        for (Song song : songsById) {
+            out.writeUTF(song.getTitle());
+            out.writeUTF(song.getArtist());
+            out.writeUTF(song.getAlbum() == null ? "" : song.getAlbum());
+            out.writeInt(song.getDuration());
+            out.writeUTF(song.getFilePath() == null ? "" : song.getFilePath());
+            out.writeInt(playCount.getOrDefault(song, 0));
+            out.writeLong(totalPlayTime.getOrDefault(song, 0L));
+            LocalDateTime last = lastPlayed.get(song);
+            out.writeLong(last == null ? Long.MIN_VALUE : toMillis(last));
+        }
+        
+        timeSeries.write(out);
+        
+        out.writeInt(artistPlayCount.size());
+        for (Map.Entry<String, Integer> entry : artistPlayCount.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        
+        out.writeInt(playSessions.size());
+        for (PlaySession session : playSessions) {
+            out.writeLong(toMillis(session.startTime));
+            out.writeLong(toMillis(session.endTime));
+            out.writeInt(session.songsPlayed);
+        }
+        
+        sketches.write(out);
+        
+        out.writeLong(totalListens);
+        out.writeLong(totalSkips);
+        out.writeDouble(completionSum);
+        out.writeInt(skipCount.size());
+        for (Map.Entry<Song, Integer> entry : skipCount.entrySet()) {
+            out.writeInt(songIds.get(entry.getKey()));
+            out.writeInt(entry.getValue());
+        }
+        
+        out.writeInt(importedEvents.size());
+        for (Map.Entry<String, Long> entry : importedEvents.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+    
+    private void readSnapshot(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version < 1 || version > SNAPSHOT_VERSION) {
+            throw new IOException("Unknown statistics snapshot version");
+        }
         
-        // Only count as full play if more than 30 seconds or 50% of song
-        long threshold = Math.min(30, song.getDuration() / 2);
+        int songs = in.readInt();
+        for (int id = 0; id < songs; id++) {
+            Song song = new Song(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF());
+            songsById.add(song);
+            songIds.putIfAbsent(song, id);
+            int plays = in.readInt();
+            long seconds = in.readLong();
+            long last = in.readLong();
+            if (plays > 0) {
+                playCount.put(song, plays);
+                songRanking.set(song, plays);
+                totals.seedSong(plays);
+                if (version < 3) {
+                    // Older snapshots have no sketches; rebuild the all-time ones from the counts
+                    sketches.seed(song, plays);
+                }
+            }
+            if (seconds > 0) {
+                totalPlayTime.put(song, seconds);
+                if (version < 3) sketches.addSeconds(seconds);
+            }
+            if (last != Long.MIN_VALUE) {
+                lastPlayed.put(song, toDateTime(last));
+                recentRanking.set(song, last);
+            }
+        }
         
-        if (secondsPlayed >= threshold) {
-            recordSongPlay(song);
+        if (version == 1) {
+            // Version 1 kept plays per day only
+            int days = in.readInt();
+            for (int i = 0; i < days; i++) {
+                timeSeries.recordDay(LocalDate.ofEpochDay(in.readLong()), in.readInt(), 0);
+            }
         } else {
-            // Just update play time without incrementing play count
-            totalPlayTime.put(song, totalPlayTime.getOrDefault(song, 0L) + secondsPlayed);
-            System.out.printf("[STATS] Recorded partial play: %s (%d seconds)\n", 
-                             song.getTitle(), secondsPlayed);
+            timeSeries.read(in);
+        }
+        
+        int artists = in.readInt();
+        for (int i = 0; i < artists; i++) {
+            String artist = in.readUTF();
+            int plays = in.readInt();
+            artistPlayCount.put(artist, plays);
+            artistRanking.set(artist, plays);
+        }
+        
+        int sessions = in.readInt();
+        for (int i = 0; i < sessions; i++) {
+            addSession(new PlaySession(toDateTime(in.readLong()), toDateTime(in.readLong()), in.readInt()));
+        }
+        
+        if (version >= 3) {
+            sketches.read(in);
+        }
+        if (version >= 4) {
+            totalListens = in.readLong();
+            totalSkips = in.readLong();
+            completionSum = in.readDouble();
+            int skipped = in.readInt();
+            for (int i = 0; i < skipped; i++) {
+                Song song = songsById.get(in.readInt());
+                skipCount.put(song, in.readInt());
+                updateSkipRate(song);
+            }
+        }
+        if (version >= 5) {
+            int sources = in.readInt();
+            for (int i = 0; i < sources; i++) {
+                importedEvents.put(in.readUTF(), in.readLong());
+            }
+        }
+        // The sketches' totals are right in either mode and for every version
+        totals.seed(sketches.getTotalPlays(), sketches.getTotalSeconds());
+        if (sketchMode) {
+            // The exact counts were only needed to seed the sketches
+            playCount.clear();
+            totalPlayTime.clear();
+            lastPlayed.clear();
+            artistPlayCount.clear();
+            skipCount.clear();
+            songRanking.clear();
+            artistRanking.clear();
+            recentRanking.trimTo(RECENT_LIMIT);
+            skipRanking.clear();
+        }
+    }
+    
+    private void addSession(PlaySession session) {
+        playSessions.add(session);
+        totals.addSession(session.getSessionDuration(), session.songsPlayed);
+    }
+    
+    private LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+    
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Makes the history durable and compacts the log if it has grown long.
+     */
+    public void close() {
+        awaitApplied();
+        running = false;
+        LockSupport.unpark(aggregator);
+        try {
+            aggregator.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        stateLock.writeLock().lock();
+        try {
+            // Anything queued while the aggregator was stopping
+            Runnable update;
+            while ((update = ingest.poll()) != null) {
+                update.run();
+            }
+            if (eventLog == null) return;
+            
+            eventLog.flush();
+            if (eventLog.getLiveRecords() >= SNAPSHOT_INTERVAL / 10) {
+                snapshot();
+            }
+            eventLog.close();
+            eventLog = null;
+        } finally {
+            stateLock.writeLock().unlock();
         }
     }
     
     public List<Song> getTopSongs(int limit) {
-        return playCount.entrySet().stream()
-                .sorted(Map.Entry.<Song, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> sketchMode ? sketches.getTopSongs(limit) : songRanking.top(limit));
     }
     
     public List<String> getTopArtists(int limit) {
-        return artistPlayCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> sketchMode ? sketches.getTopArtists(limit) : artistRanking.top(limit));
     }
     
     public List<Song> getRecentlyPlayed(int limit) {
-        return lastPlayed.entrySet().stream()
-                .sorted(Map.Entry.<Song, LocalDateTime>comparingByValue().reversed())
-                .limit(limit)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> recentRanking.top(limit));
     }
     
     public List<Song> getMostPlayedToday() {
         LocalDate today = LocalDate.now();
-        return playCount.entrySet().stream()
-                .filter(entry -> {
-                    LocalDateTime lastPlay = lastPlayed.get(entry.getKey());
-                    return lastPlay != null && lastPlay.toLocalDate().equals(today);
-                })
-                .sorted(Map.Entry.<Song, Integer>comparingByValue().reversed())
-                .limit(10)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> {
+            if (sketchMode) return sketches.getTopSongsOn(today.toEpochDay(), 10);
+            
+            // Most played first, so the walk can stop at the tenth match
+            List<Song> result = new ArrayList<>();
+            for (Song song : songRanking) {
+                LocalDateTime lastPlay = lastPlayed.get(song);
+                if (lastPlay != null && lastPlay.toLocalDate().equals(today)) {
+                    result.add(song);
+                    if (result.size() == 10) break;
+                }
+            }
+            return result;
+        });
     }
     
     public void displayOverallStats() {
-        System.out.println("\n[STATS] === Music Statistics Overview ===");
+        beginRead();
+        try {
+            System.out.println("\n[STATS] === Music Statistics Overview ===");
+            
+            if (sketchMode) {
+                displaySketchOverview();
+                return;
+            }
+            
+            int totalSongs = playCount.size();
+            long totalPlays = totals.getPlays();
+            long totalMinutes = totals.getSeconds() / 60;
+            
+            System.out.printf("Total unique songs played: %d\n", totalSongs);
+            System.out.printf("Total plays: %d\n", totalPlays);
+            System.out.printf("Total listening time: %d hours %d minutes\n", 
+                             totalMinutes / 60, totalMinutes % 60);
+            System.out.printf("Average plays per song: %.1f\n", 
+                             totalSongs > 0 ? (double) totalPlays / totalSongs : 0);
+            
+            // Today's stats
+            LocalDate today = LocalDate.now();
+            int todayPlays = timeSeries.getPlays(ListeningTimeSeries.Resolution.DAY, today.toEpochDay());
+            System.out.printf("Songs played today: %d\n", todayPlays);
+            
+            displayCompletion();
+            
+            displaySessionAverages();
+        } finally {
+            endRead();
+        }
+    }
+    
+    private void displayCompletion() {
+        if (totalListens == 0) return;
         
-        int totalSongs = playCount.size();
-        int totalPlays = playCount.values().stream().mapToInt(Integer::intValue).sum();
-        long totalMinutes = totalPlayTime.values().stream().mapToLong(Long::longValue).sum() / 60;
+        System.out.printf("Skipped: %d of %d tracks started (%.0f%%)\n",
+                         totalSkips, totalListens, 100.0 * totalSkips / totalListens);
+        System.out.printf("Average completion: %.0f%% of each track heard\n", 100 * completionSum / totalListens);
+    }
+    
+    /**
+     * Overview from the sketches, each figure with how far off it may be.
+     */
+    private void displaySketchOverview() {
+        long totalPlays = sketches.getTotalPlays();
+        long totalMinutes = sketches.getTotalSeconds() / 60;
+        long uniqueSongs = sketches.estimateUniqueSongs();
+        long uniqueArtists = sketches.estimateUniqueArtists();
+        // Two standard errors: about 95% of estimates fall within
+        double uniqueError = 2 * sketches.getUniqueError();
         
-        System.out.printf("Total unique songs played: %d\n", totalSongs);
+        System.out.printf("Total unique songs played: ~%d (±%.1f%%)\n", uniqueSongs, uniqueError * 100);
+        System.out.printf("Total unique artists: ~%d (±%.1f%%)\n", uniqueArtists, uniqueError * 100);
         System.out.printf("Total plays: %d\n", totalPlays);
-        System.out.printf("Total listening time: %d hours %d minutes\n", 
+        System.out.printf("Total listening time: %d hours %d minutes\n",
                          totalMinutes / 60, totalMinutes % 60);
-        System.out.printf("Average plays per song: %.1f\n", 
-                         totalSongs > 0 ? (double) totalPlays / totalSongs : 0);
+        System.out.printf("Average plays per song: ~%.1f\n",
+                         uniqueSongs > 0 ? (double) totalPlays / uniqueSongs : 0);
         
-        // Today's stats
-        LocalDate today = LocalDate.now();
-        int todayPlays = dailyPlayCount.getOrDefault(today, 0);
-        System.out.printf("Songs played today: %d\n", todayPlays);
+        long today = LocalDate.now().toEpochDay();
+        System.out.printf("Songs played today: %d (~%d different, ±%.1f%%)\n",
+                         timeSeries.getPlays(ListeningTimeSeries.Resolution.DAY, today),
+                         sketches.estimateUniqueSongsOn(today), 2 * sketches.getDailyUniqueError() * 100);
+        System.out.printf("Artists today: ~%d\n", sketches.estimateUniqueArtistsOn(today));
+        displayCompletion();
+        System.out.printf("Per-song play counts: at most +%d too high (%.1f%% confidence)\n",
+                         sketches.getPlayCountError(), sketches.getPlayCountConfidence() * 100);
         
-        // Session stats
-        if (!playSessions.isEmpty()) {
-            double avgSessionLength = playSessions.stream()
-                    .mapToLong(PlaySession::getSessionDuration)
-                    .average().orElse(0);
-            System.out.printf("Total sessions: %d\n", playSessions.size());
-            System.out.printf("Average session length: %.1f minutes\n", avgSessionLength);
+        SpaceSaving<Song> trending = sketches.trending(today);
+        List<Song> trendingSongs = new ArrayList<>();
+        for (Song song : trending.top(5)) {
+            // A count made up entirely of inherited error says nothing about the song
+            if (trending.getCount(song) > 2 * trending.getError(song)) {
+                trendingSongs.add(song);
+            }
         }
+        if (!trendingSongs.isEmpty()) {
+            System.out.println("Trending this week (counts may be high by the ± shown):");
+            for (int i = 0; i < trendingSongs.size(); i++) {
+                Song song = trendingSongs.get(i);
+                System.out.printf("  %d. %s - %s (~%d plays, ±%d)\n", i + 1, song.getTitle(), song.getArtist(),
+                                 trending.getCount(song), trending.getError(song));
+            }
+        }
+        
+        displaySessionAverages();
     }
     
-    public void displayTopSongs(int limit) {
-        System.out.printf("\n[MUSIC] === Top %d Songs ===\n", limit);
+    private void displaySessionAverages() {
+        if (totals.getSessions() == 0) return;
         
-        List<Song> topSongs = getTopSongs(limit);
-        for (int i = 0; i < topSongs.size(); i++) {
-            Song song = topSongs.get(i);
-            int plays = playCount.get(song);
-            long minutes = totalPlayTime.getOrDefault(song, 0L) / 60;
+        System.out.printf("Total sessions: %d\n", totals.getSessions());
+        System.out.printf("Average session length: %.1f minutes, %.1f songs\n",
+                         totals.getAverageSessionMinutes(), totals.getAverageSessionSongs());
+    }
+    
+    public void displayTopSongs(int limit) {
+        beginRead();
+        try {
+            System.out.printf("\n[MUSIC] === Top %d Songs ===\n", limit);
             
-            System.out.printf("%d. %s - %s (%d plays, %d min)\n", 
-                             i + 1, song.getTitle(), song.getArtist(), plays, minutes);
+            if (sketchMode) {
+                List<Song> topSongs = sketches.getTopSongs(limit);
+                for (int i = 0; i < topSongs.size(); i++) {
+                    Song song = topSongs.get(i);
+                    System.out.printf("%d. %s - %s (~%d plays, ±%d)\n", i + 1, song.getTitle(), song.getArtist(),
+                                     sketches.getTopSongCount(song), sketches.getTopSongError(song));
+                }
+                return;
+            }
+            
+            List<Song> topSongs = songRanking.top(limit);
+            for (int i = 0; i < topSongs.size(); i++) {
+                Song song = topSongs.get(i);
+                int plays = playCount.get(song);
+                long minutes = totalPlayTime.getOrDefault(song, 0L) / 60;
+                
+                System.out.printf("%d. %s - %s (%d plays, %d min)\n", 
+                                 i + 1, song.getTitle(), song.getArtist(), plays, minutes);
+            }
+        } finally {
+            endRead();
         }
     }
     
     public void displayTopArtists(int limit) {
-        System.out.printf("\n🎤 === Top %d Artists ===\n", limit);
-        
-        List<String> topArtists = getTopArtists(limit);
-        for (int i = 0; i < topArtists.size(); i++) {
-            String artist = topArtists.get(i);
-            int plays = artistPlayCount.get(artist);
+        beginRead();
+        try {
+            System.out.printf("\n🎤 === Top %d Artists ===\n", limit);
             
-            System.out.printf("%d. %s (%d plays)\n", i + 1, artist, plays);
+            List<String> topArtists = sketchMode ? sketches.getTopArtists(limit) : artistRanking.top(limit);
+            for (int i = 0; i < topArtists.size(); i++) {
+                String artist = topArtists.get(i);
+                long plays = sketchMode ? sketches.getTopArtistCount(artist) : artistPlayCount.get(artist);
+                
+                System.out.printf(sketchMode ? "%d. %s (~%d plays)\n" : "%d. %s (%d plays)\n", i + 1, artist, plays);
+            }
+        } finally {
+            endRead();
         }
     }
     
     public void displayListeningHistory(int days) {
-        System.out.printf("\n📅 === Listening History (%d days) ===\n", days);
-        
-        LocalDate startDate = LocalDate.now().minusDays(days - 1);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd");
-        
-        for (int i = 0; i < days; i++) {
-            LocalDate date = startDate.plusDays(i);
-            int plays = dailyPlayCount.getOrDefault(date, 0);
-            String bar = createPlayBar(plays, 50); // Max 50 plays for full bar
+        beginRead();
+        try {
+            System.out.printf("\n📅 === Listening History (%d days) ===\n", days);
+            
+            LocalDate startDate = LocalDate.now().minusDays(days - 1);
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd");
+            
+            for (int i = 0; i < days; i++) {
+                LocalDate date = startDate.plusDays(i);
+                int plays = timeSeries.getPlays(ListeningTimeSeries.Resolution.DAY, date.toEpochDay());
+                String bar = createPlayBar(plays, 50); // Max 50 plays for full bar
+                
+                System.out.printf("%s: %s %d plays\n", 
+                                 date.format(formatter), bar, plays);
+            }
             
-            System.out.printf("%s: %s %d plays\n", 
-                             date.format(formatter), bar, plays);
+            long today = LocalDate.now().toEpochDay();
+            long total = timeSeries.sumPlays(ListeningTimeSeries.Resolution.DAY, today + 1 - days, today + 1);
+            System.out.printf("Total: %d plays, %.1f per day\n", total, (double) total / Math.max(1, days));
+        } finally {
+            endRead();
         }
     }
     
@@ -242,106 +1034,541 @@ public class MusicStatistics {
     }
     
     public void displayRecentSessions() {
-        System.out.println("\n[SESSIONS] === Recent Listening Sessions ===");
-        
-        if (playSessions.isEmpty()) {
-            System.out.println("No completed sessions recorded.");
-            return;
+        beginRead();
+        try {
+            System.out.println("\n[SESSIONS] === Recent Listening Sessions ===");
+            
+            if (playSessions.isEmpty()) {
+                System.out.println("No completed sessions recorded.");
+                return;
+            }
+            
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd HH:mm");
+            
+            // Show last 5 sessions
+            int start = Math.max(0, playSessions.size() - 5);
+            for (int i = start; i < playSessions.size(); i++) {
+                PlaySession session = playSessions.get(i);
+                System.out.printf("%d. %s - %d songs, %.1f minutes\n", 
+                                 i + 1, 
+                                 session.startTime.format(formatter),
+                                 session.songsPlayed,
+                                 (double) session.getSessionDuration());
+            }
+            
+            // Current session
+            if (sessionStart != null) {
+                long currentDuration = java.time.Duration.between(sessionStart, LocalDateTime.now()).toMinutes();
+                System.out.printf("Current: %s - %d songs, %.1f minutes (ongoing)\n",
+                                 sessionStart.format(formatter),
+                                 currentSessionSongs,
+                                 (double) currentDuration);
+            }
+        } finally {
+            endRead();
         }
-        
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd HH:mm");
-        
-        // Show last 5 sessions
-        int start = Math.max(0, playSessions.size() - 5);
-        for (int i = start; i < playSessions.size(); i++) {
-            PlaySession session = playSessions.get(i);
-            System.out.printf("%d. %s - %d songs, %.1f minutes\n", 
-                             i + 1, 
-                             session.startTime.format(formatter),
-                             session.songsPlayed,
-                             (double) session.getSessionDuration());
+    }
+    
+    public void generateInsights() {
+        beginRead();
+        try {
+            System.out.println("\n[INSIGHTS] === Music Insights ===");
+            
+            if (sumPlays() == 0) {
+                System.out.println("Not enough data for insights.");
+                return;
+            }
+            
+            // Most played song
+            if (sketchMode) {
+                Song topSong = sketches.getTopSongs(1).get(0);
+                System.out.printf("[TOP] Most played song: %s (~%d plays)\n",
+                                 topSong.getTitle(), sketches.getTopSongCount(topSong));
+                String topArtist = sketches.getTopArtists(1).get(0);
+                System.out.printf("🎤 Favorite artist: %s (~%d plays)\n",
+                                 topArtist, sketches.getTopArtistCount(topArtist));
+            } else {
+                Song topSong = songRanking.top(1).get(0);
+                System.out.printf("[TOP] Most played song: %s (%d plays)\n", 
+                                 topSong.getTitle(), playCount.get(topSong));
+                
+                // Favorite artist
+                if (!artistPlayCount.isEmpty()) {
+                    String topArtist = artistRanking.top(1).get(0);
+                    System.out.printf("🎤 Favorite artist: %s (%d plays)\n", 
+                                     topArtist, artistPlayCount.get(topArtist));
+                }
+            }
+            
+            // Listening patterns, from every play in the window rather than each song's last one
+            long[] hourlyPlays = timeSeries.playsByHourOfDay(System.currentTimeMillis(), PEAK_HOUR_DAYS);
+            int peakHour = 0;
+            for (int hour = 1; hour < hourlyPlays.length; hour++) {
+                if (hourlyPlays[hour] > hourlyPlays[peakHour]) peakHour = hour;
+            }
+            if (hourlyPlays[peakHour] > 0) {
+                System.out.printf("[TIME] Peak listening hour: %02d:00 (last %d days)\n", peakHour, PEAK_HOUR_DAYS);
+            }
+            
+            // This month against the one before
+            long month = ListeningTimeSeries.monthBucket(LocalDate.now());
+            long thisMonth = timeSeries.getSeconds(ListeningTimeSeries.Resolution.MONTH, month) / 60;
+            long lastMonth = timeSeries.getSeconds(ListeningTimeSeries.Resolution.MONTH, month - 1) / 60;
+            System.out.printf("[TIME] Listening this month: %d min (last month: %d min)\n", thisMonth, lastMonth);
+            
+            // Most skipped, relative to how often the song was started
+            if (skipRanking.size() > 0) {
+                Song mostSkipped = skipRanking.top(1).get(0);
+                System.out.printf("[SKIP] Most skipped: %s (%.0f%% of starts)\n", mostSkipped.getTitle(),
+                                 skipRanking.getScore(mostSkipped) / 10_000.0);
+            }
+            
+            if (sketchMode) {
+                // No per-song counts to spread plays over; share of plays that found a new song
+                double diversityScore = (double) countSongs() / Math.max(1, sumPlays());
+                System.out.printf("[STATS] Music diversity: ~%.2f (higher = more diverse)\n", diversityScore);
+            } else {
+                System.out.printf("[STATS] Music diversity: %.2f (0 = one song on repeat, 1 = all played equally)\n",
+                                 totals.getDiversity(countSongs()));
+                System.out.printf("[STATS] Plays spread like %.0f songs played equally often (%.1f bits)\n",
+                                 totals.getEffectiveSongs(), totals.getEntropyBits());
+            }
+        } finally {
+            endRead();
         }
-        
-        // Current session
-        if (sessionStart != null) {
-            long currentDuration = java.time.Duration.between(sessionStart, LocalDateTime.now()).toMinutes();
-            System.out.printf("Current: %s - %d songs, %.1f minutes (ongoing)\n",
-                             sessionStart.format(formatter),
-                             currentSessionSongs,
-                             (double) currentDuration);
+    }
+    
+    /**
+     * Runs an ad-hoc query over every event ever recorded. The first query reads
+     * the whole log, archive included; later ones scan memory only.
+     */
+    public QueryResult query(HistoryQuery query) {
+        loadHistory();
+        return read(() -> history.execute(query));
+    }
+    
+    private void loadHistory() {
+        awaitApplied();
+        stateLock.writeLock().lock();
+        try {
+            if (history != null) return;
+            
+            long started = System.nanoTime();
+            EventTable table = new EventTable(zone);
+            for (int id = 0; id < songsById.size(); id++) {
+                table.addSong(id, songsById.get(id));
+            }
+            EventCodec.Handler loader = new EventCodec.Handler() {
+                @Override
+                public void song(int id, String title, String artist, String album, int duration, String path) {
+                    // Already known from the snapshot or replay
+                }
+                
+                @Override
+                public void play(PlayEventType type, int songId, long timestampMillis, int seconds) {
+                    table.add(songId, type, timestampMillis, seconds);
+                }
+                
+                @Override
+                public void session(long startMillis, long endMillis, int songs) {
+                }
+            };
+            if (eventLog != null) {
+                try {
+                    eventLog.replayHistory(new EventLog.Replay() {
+                        @Override
+                        public void snapshot(DataInputStream in) {
+                        }
+                        
+                        @Override
+                        public void record(byte[] payload) throws IOException {
+                            EventCodec.decode(payload, loader);
+                        }
+                    });
+                } catch (IOException e) {
+                    System.out.println("X Could not read the full play history: " + e.getMessage());
+                }
+            }
+            history = table;
+            System.out.printf("[STATS] Indexed %d events for queries (%d ms)\n",
+                             table.size(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            stateLock.writeLock().unlock();
         }
     }
     
-    public void generateInsights() {
-        System.out.println("\n[INSIGHTS] === Music Insights ===");
-        
-        if (playCount.isEmpty()) {
-            System.out.println("Not enough data for insights.");
-            return;
+    public void displayQueryResult(QueryResult result, int limit) {
+        HistoryQuery query = result.getQuery();
+        List<QueryResult.Row> rows = result.getRows();
+        StringBuilder title = new StringBuilder(query.getMeasure().getLabel());
+        for (HistoryQuery.Dimension dimension : query.getDimensions()) {
+            title.append(title.indexOf(" by ") < 0 ? " by " : " × ").append(dimension.name().toLowerCase());
         }
+        System.out.printf("\n[QUERY] === %s ===\n", title);
         
-        // Most played song
-        Song topSong = getTopSongs(1).get(0);
-        System.out.printf("[TOP] Most played song: %s (%d plays)\n", 
-                         topSong.getTitle(), playCount.get(topSong));
+        if (rows.isEmpty()) {
+            System.out.println("No matching plays.");
+        }
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            QueryResult.Row row = rows.get(i);
+            String keys = row.getKeys().length > 0 ? String.join(" | ", row.getKeys()) : "All";
+            String value = query.getMeasure() == HistoryQuery.Measure.COMPLETION
+                    ? String.format("%.0f%%", row.getValue() * 100)
+                    : query.getMeasure() == HistoryQuery.Measure.MINUTES
+                    ? String.format("%.0f min", row.getValue())
+                    : String.format("%.0f", row.getValue());
+            System.out.printf("%-50s %10s  (%d events)\n", keys, value, row.getEvents());
+        }
+        if (rows.size() > limit) {
+            System.out.printf("... %d more rows\n", rows.size() - limit);
+        }
+        System.out.printf("Scanned %d events in %.1f ms\n", result.getScanned(), result.getElapsedMillis());
+    }
+    
+    /**
+     * Streams every logged event to a file, as CSV or in the columnar format, each
+     * with the machine it was recorded on. The log is read segment by segment, so
+     * memory use does not grow with the history; new events wait until it is done.
+     *
+     * @return events written
+     */
+    public long exportHistory(File file, boolean columnar) throws IOException {
+        beginRead();
+        try {
+            if (eventLog == null) {
+                throw new IOException("statistics are kept in memory only, so there is no history to export");
+            }
+            
+            long started = System.nanoTime();
+            // Written aside first, so a failed export never looks like a complete one
+            File temp = new File(file.getPath() + ".tmp");
+            long events;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+                if (columnar) {
+                    try (ColumnarHistory.Writer writer = new ColumnarHistory.Writer(buffered)) {
+                        events = exportTo(writer);
+                    }
+                } else {
+                    try (CsvHistory.Writer writer = new CsvHistory.Writer(buffered)) {
+                        events = exportTo(writer);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp.toPath());
+                throw e;
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            
+            System.out.printf("[STATS] Exported %d events to %s (%d KB, %d ms)\n", events, file,
+                             file.length() / 1024, (System.nanoTime() - started) / 1_000_000);
+            return events;
+        } finally {
+            endRead();
+        }
+    }
+    
+    private long exportTo(HistorySink sink) throws IOException {
+        long[] events = new long[1];
+        EventCodec.Handler exporter = new EventCodec.Handler() {
+            private String source = sourceId;
+            
+            @Override
+            public void song(int id, String title, String artist, String album, int duration, String path) {
+                // Same IDs as songsById, which holds every song logged
+            }
+            
+            @Override
+            public void play(PlayEventType type, int songId, long timestampMillis, int seconds) {
+                try {
+                    sink.event(source, songsById.get(songId), type, timestampMillis, seconds);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                events[0]++;
+            }
+            
+            @Override
+            public void session(long startMillis, long endMillis, int songs) {
+            }
+            
+            @Override
+            public void source(String id) {
+                source = id;
+            }
+        };
+        try {
+            eventLog.replayHistory(new EventLog.Replay() {
+                @Override
+                public void snapshot(DataInputStream in) {
+                }
+                
+                @Override
+                public void record(byte[] payload) throws IOException {
+                    EventCodec.decode(payload, exporter);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return events[0];
+    }
+    
+    /**
+     * Writes one CSV row of totals per song, most played first. In sketch mode only
+     * the songs the sketches track, with estimated plays.
+     *
+     * @return songs written
+     */
+    public int exportSongTotals(File file) throws IOException {
+        beginRead();
+        try {
+            int rows = 0;
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                out.write("title,artist,album,plays,skips,minutes,completion,last_played");
+                out.newLine();
+                if (sketchMode) {
+                    for (Song song : sketches.getTopSongs(Integer.MAX_VALUE)) {
+                        out.write(CsvHistory.row(song.getTitle(), song.getArtist(), song.getAlbum(),
+                                                 Long.toString(sketches.getTopSongCount(song)), "", "", "", ""));
+                        out.newLine();
+                        rows++;
+                    }
+                } else {
+                    for (Song song : songRanking) {
+                        writeSongTotals(out, song);
+                        rows++;
+                    }
+                    // Songs only ever skipped or heard in part come last
+                    for (Song song : songsById) {
+                        if (!playCount.containsKey(song)
+                                && (totalPlayTime.containsKey(song) || skipCount.containsKey(song))) {
+                            writeSongTotals(out, song);
+                            rows++;
+                        }
+                    }
+                }
+            }
+            System.out.printf("[STATS] Exported totals of %d songs to %s\n", rows, file);
+            return rows;
+        } finally {
+            endRead();
+        }
+    }
+    
+    private void writeSongTotals(BufferedWriter out, Song song) throws IOException {
+        LocalDateTime last = lastPlayed.get(song);
+        out.write(CsvHistory.row(song.getTitle(), song.getArtist(), song.getAlbum(),
+                                 Integer.toString(playCount.getOrDefault(song, 0)),
+                                 Integer.toString(skipCount.getOrDefault(song, 0)),
+                                 Long.toString(totalPlayTime.getOrDefault(song, 0L) / 60),
+                                 String.format("%.2f", completionRatio(song)),
+                                 last == null ? "" : last.toString()));
+        out.newLine();
+    }
+    
+    /**
+     * Merges a history exported on another machine, CSV or columnar. Events this
+     * machine recorded, and events of other machines merged before, are skipped;
+     * the rest are logged under their own machine's ID, so they travel on in later
+     * exports. The file is read and applied in batches, so its size does not matter.
+     *
+     * @return events merged
+     */
+    public long importHistory(File file) throws IOException {
+        synchronized (importLock) {
+            long started = System.nanoTime();
+            Importer importer = read(() -> new Importer(sourceId, new HashMap<>(importedEvents)));
+            long read;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                in.mark(4);
+                byte[] head = in.readNBytes(4);
+                in.reset();
+                read = ColumnarHistory.isColumnar(head) ? ColumnarHistory.read(in, importer)
+                                                        : CsvHistory.read(in, importer);
+            } finally {
+                // Whatever was read before a failure is still a valid prefix to merge
+                importer.flush();
+                awaitApplied();
+            }
+            
+            System.out.printf("[STATS] Merged %d of %d events from %s (%d already here, %d ms)\n",
+                             importer.merged, read, file.getName(), read - importer.merged,
+                             (System.nanoTime() - started) / 1_000_000);
+            return importer.merged;
+        }
+    }
+    
+    /**
+     * Sorts the events of an import into new ones and ones already merged. Each
+     * machine's events reach every export in the order that machine recorded them,
+     * so counting per machine is enough to tell them apart.
+     */
+    private class Importer implements HistorySink {
+        private final String local;
+        private final Map<String, Long> known;
+        private final Map<String, Long> seen = new HashMap<>();
+        private List<ImportedEvent> batch = new ArrayList<>(IMPORT_BATCH);
+        long merged;
         
-        // Favorite artist
-        if (!artistPlayCount.isEmpty()) {
-            String topArtist = getTopArtists(1).get(0);
-            System.out.printf("🎤 Favorite artist: %s (%d plays)\n", 
-                             topArtist, artistPlayCount.get(topArtist));
+        Importer(String local, Map<String, Long> known) {
+            this.local = local;
+            this.known = known;
         }
         
-        // Listening patterns
-        Map<Integer, Integer> hourlyPlays = new HashMap<>();
-        for (LocalDateTime playTime : lastPlayed.values()) {
-            int hour = playTime.getHour();
-            hourlyPlays.put(hour, hourlyPlays.getOrDefault(hour, 0) + 1);
+        @Override
+        public void event(String source, Song song, PlayEventType type, long timestampMillis, int seconds) {
+            long index = seen.merge(source, 1L, Long::sum);
+            if (source.equals(local) || index <= known.getOrDefault(source, 0L)) return;
+            
+            batch.add(new ImportedEvent(source, song, type, timestampMillis, seconds));
+            if (batch.size() == IMPORT_BATCH) flush();
         }
         
-        if (!hourlyPlays.isEmpty()) {
-            int peakHour = hourlyPlays.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .get().getKey();
-            System.out.printf("[TIME] Peak listening hour: %02d:00\n", peakHour);
+        void flush() {
+            if (batch.isEmpty()) return;
+            
+            List<ImportedEvent> events = batch;
+            submit(() -> importBatch(events));
+            merged += events.size();
+            batch = new ArrayList<>(IMPORT_BATCH);
         }
+    }
+    
+    private static class ImportedEvent {
+        final String source;
+        final Song song;
+        final PlayEventType type;
+        final long timestampMillis;
+        final int seconds;
         
-        // Diversity score
-        double diversityScore = (double) playCount.size() / Math.max(1, playCount.values().stream().mapToInt(Integer::intValue).sum());
-        System.out.printf("[STATS] Music diversity: %.2f (higher = more diverse)\n", diversityScore);
+        ImportedEvent(String source, Song song, PlayEventType type, long timestampMillis, int seconds) {
+            this.source = source;
+            this.song = song;
+            this.type = type;
+            this.timestampMillis = timestampMillis;
+            this.seconds = seconds;
+        }
+    }
+    
+    /**
+     * Logs imported events after source records naming their machine, and applies
+     * them. The batch ends back on this machine, so a snapshot or a crash after it
+     * never leaves later local events attributed elsewhere. Aggregator only.
+     */
+    private void importBatch(List<ImportedEvent> batch) {
+        String current = null;
+        for (ImportedEvent event : batch) {
+            if (!event.source.equals(current)) {
+                current = event.source;
+                append(EventCodec.source(current));
+            }
+            store(event.type, event.song, event.timestampMillis, event.seconds);
+            importedEvents.merge(current, 1L, Long::sum);
+        }
+        append(EventCodec.source(sourceId));
+        compactIfDue();
     }
     
     public void resetStatistics() {
+        submit(() -> {
+            clearAggregates();
+            sessionStart = null;
+            currentSessionSongs = 0;
+            if (eventLog != null) {
+                try {
+                    eventLog.clear();
+                    // Other machines may hold this one's old events; new ones must not
+                    // be taken for those
+                    sourceId = newSourceId(eventLog.getDirectory());
+                } catch (IOException e) {
+                    System.out.println("X Could not delete play history: " + e.getMessage());
+                }
+            }
+        });
+        awaitApplied();
+        System.out.println("[STATS] All statistics have been reset");
+    }
+    
+    private void clearAggregates() {
         playCount.clear();
         totalPlayTime.clear();
         lastPlayed.clear();
-        dailyPlayCount.clear();
+        timeSeries.clear();
         artistPlayCount.clear();
         genrePlayCount.clear();
+        skipCount.clear();
+        totalListens = 0;
+        totalSkips = 0;
+        completionSum = 0;
         playSessions.clear();
-        sessionStart = null;
-        currentSessionSongs = 0;
-        System.out.println("[STATS] All statistics have been reset");
+        songIds.clear();
+        songsById.clear();
+        songRanking.clear();
+        artistRanking.clear();
+        recentRanking.clear();
+        skipRanking.clear();
+        totals.clear();
+        sketches.clear();
+        importedEvents.clear();
+        if (history != null) history.clear();
     }
     
     // Getters
+    /**
+     * In sketch mode an estimate that may be too high, never too low.
+     */
     public int getPlayCount(Song song) {
-        return playCount.getOrDefault(song, 0);
+        return read(() -> sketchMode ? (int) sketches.estimatePlays(song) : playCount.getOrDefault(song, 0));
+    }
+    
+    /**
+     * Always 0 in sketch mode, which keeps no per-song counts.
+     */
+    public int getSkipCount(Song song) {
+        return read(() -> skipCount.getOrDefault(song, 0));
+    }
+    
+    /**
+     * @return share of the song heard per start, from 0 to 1 (0 in sketch mode)
+     */
+    public double getCompletionRatio(Song song) {
+        return read(() -> completionRatio(song));
+    }
+    
+    private double completionRatio(Song song) {
+        long starts = playCount.getOrDefault(song, 0) + skipCount.getOrDefault(song, 0);
+        int length = lengthOf(song);
+        if (starts == 0 || length <= 0) return 0.0;
+        return Math.min(1.0, (double) totalPlayTime.getOrDefault(song, 0L) / (starts * length));
     }
     
     public long getTotalPlayTime(Song song) {
-        return totalPlayTime.getOrDefault(song, 0L);
+        return read(() -> totalPlayTime.getOrDefault(song, 0L));
     }
     
     public LocalDateTime getLastPlayed(Song song) {
-        return lastPlayed.get(song);
+        return read(() -> {
+            if (!sketchMode) return lastPlayed.get(song);
+            // Sketch mode only remembers the most recent songs
+            long last = recentRanking.getScore(song);
+            return last != 0 ? toDateTime(last) : null;
+        });
     }
     
     public int getTotalSongsPlayed() {
-        return playCount.size();
+        return read(this::countSongs);
     }
     
     public int getTotalPlays() {
-        return playCount.values().stream().mapToInt(Integer::intValue).sum();
+        return read(this::sumPlays);
+    }
+    
+    private int sumPlays() {
+        return (int) Math.min(Integer.MAX_VALUE, totals.getPlays());
+    }
+    
+    private int countSongs() {
+        return sketchMode ? (int) sketches.estimateUniqueSongs() : playCount.size();
     }
 }
\ No newline at end of file
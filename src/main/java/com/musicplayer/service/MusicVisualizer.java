@@ -1,64 +1,134 @@
 package com.musicplayer.service;
 
+import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+
+import com.musicplayer.audio.AudioOutput;
+import com.musicplayer.audio.PeakFile;
+import com.musicplayer.audio.SpectrumAnalyzer;
+import com.musicplayer.model.Song;
 
 /**
  * ASCII-based Music Visualizer
- * Creates visual representations of audio playback
+ * Creates visual representations of audio playback. BARS, SPECTRUM and PULSE are
+ * driven by an FFT of the audio tapped from the playback pipeline; frames are
+ * drawn through a TerminalRenderer so only changed cells reach the terminal.
+ * WAVE shows the whole track from its precomputed peak file, with the playhead.
+ * SPECTROGRAM scrolls a history of spectra held in preallocated rings.
+ * A FrameScheduler lowers the frame rate on slow terminals and stops drawing
+ * once playback is paused or stopped and the bars have fallen.
  */
 public class MusicVisualizer {
-    private boolean isEnabled;
-    private boolean isRunning;
-    private ScheduledExecutorService visualizerThread;
+    private static final int MAX_FPS = 30;
+    private static final int MIN_FPS = 5;
+    private static final double CPU_BUDGET = 0.05; // share of one core
+    private static final int SCREEN_WIDTH = 60;
+    private static final int SCREEN_HEIGHT = 22;
+    // Full repaint now and then in case other console output scrolled the screen
+    private static final int REDRAW_INTERVAL_FRAMES = 150;
+    
+    // Same bands as the equalizer
+    private static final double[] BAND_FREQUENCIES = {
+        60, 170, 310, 600, 1000, 3000, 6000, 12000, 14000, 16000
+    };
+    private static final String[] BAND_LABELS = {
+        "60Hz", "170Hz", "310Hz", "600Hz", "1kHz", "3kHz", "6kHz", "12kHz", "14kHz", "16kHz"
+    };
+    private static final char[] MATRIX_CHARS = {'0', '1', '#', '%', ':', '.', '|', '-', '+', '*'};
+    
+    private static final int PULSE_WIDTH = 60;
+    private static final int PULSE_HEIGHT = 20;
+    
+    // Log-spaced rows from 50 Hz to 16 kHz, one column per analysed window
+    private static final int SPECTROGRAM_ROWS = 16;
+    private static final int SPECTROGRAM_GUTTER = 5;
+    private static final int SPECTROGRAM_COLUMNS = SCREEN_WIDTH - SPECTROGRAM_GUTTER;
+    private static final double SPECTROGRAM_LOW_HZ = 50.0;
+    private static final double SPECTROGRAM_HIGH_HZ = 16000.0;
+    private static final char[] DENSITY_GLYPHS = {' ', '.', ':', '░', '▒', '▓', '█'};
+    
+    private volatile boolean isEnabled;
+    // Set by mode changes so one frame is drawn even while nothing plays
+    private volatile boolean needsRepaint;
+    private boolean wasIdle;
+    private final FrameScheduler scheduler;
     private final Random random;
-    private VisualizerMode currentMode;
+    private final MusicPlayer musicPlayer;
+    private final WaveformCache waveforms;
+    private final SpectrumAnalyzer analyzer;
+    private final TerminalRenderer renderer;
+    // Distance of every PULSE cell from the centre, computed once
+    private final float[] pulseDistances;
+    // Spectrogram rows, read from the bars' FFT; history as density glyphs in one
+    // row-major ring per frequency row
+    private final SpectrumAnalyzer.Bands spectrogramBands;
+    private final char[] spectrogramGlyphs;
+    private final char[] densityLookup;
+    private int spectrogramHead;
+    private VisualizerMode lastDrawnMode;
+    private volatile VisualizerMode currentMode;
     private int frameCount;
     
     public enum VisualizerMode {
-        BARS, WAVE, SPECTRUM, PULSE, MATRIX
+        BARS, WAVE, SPECTRUM, PULSE, MATRIX, SPECTROGRAM
     }
     
-    public MusicVisualizer() {
+    public MusicVisualizer(MusicPlayer musicPlayer, WaveformCache waveforms) {
         this.isEnabled = false;
-        this.isRunning = false;
         this.random = new Random();
+        this.musicPlayer = musicPlayer;
+        this.waveforms = waveforms;
+        this.analyzer = new SpectrumAnalyzer(musicPlayer.getPcmTap(), BAND_FREQUENCIES);
+        this.renderer = new TerminalRenderer(System.out, SCREEN_WIDTH, SCREEN_HEIGHT);
         this.currentMode = VisualizerMode.BARS;
         this.frameCount = 0;
+        this.scheduler = new FrameScheduler("Visualizer", MAX_FPS, MIN_FPS, CPU_BUDGET,
+                                            this::hasFrameToDraw, this::drawFrame);
+        
+        this.pulseDistances = new float[PULSE_WIDTH * PULSE_HEIGHT];
+        for (int y = 0; y < PULSE_HEIGHT; y++) {
+            for (int x = 0; x < PULSE_WIDTH; x++) {
+                // Terminal cells are about twice as tall as wide
+                double dx = (x - PULSE_WIDTH / 2) * 0.5;
+                double dy = y - PULSE_HEIGHT / 2;
+                pulseDistances[y * PULSE_WIDTH + x] = (float) Math.sqrt(dx * dx + dy * dy);
+            }
+        }
+        
+        double[] rowFrequencies = new double[SPECTROGRAM_ROWS];
+        for (int row = 0; row < SPECTROGRAM_ROWS; row++) {
+            rowFrequencies[row] = SPECTROGRAM_LOW_HZ
+                * Math.pow(SPECTROGRAM_HIGH_HZ / SPECTROGRAM_LOW_HZ, row / (SPECTROGRAM_ROWS - 1.0));
+        }
+        this.spectrogramBands = analyzer.addBands(rowFrequencies);
+        this.spectrogramGlyphs = new char[SPECTROGRAM_ROWS * SPECTROGRAM_COLUMNS];
+        Arrays.fill(spectrogramGlyphs, ' ');
+        this.densityLookup = new char[256];
+        for (int i = 0; i < densityLookup.length; i++) {
+            densityLookup[i] = DENSITY_GLYPHS[i * DENSITY_GLYPHS.length / densityLookup.length];
+        }
     }
     
     public void start() {
-        if (isRunning) return;
-        
-        isRunning = true;
-        visualizerThread = Executors.newSingleThreadScheduledExecutor();
-        
-        visualizerThread.scheduleAtFixedRate(() -> {
-            if (isEnabled && isRunning) {
-                clearScreen();
-                renderFrame();
-                frameCount++;
-            }
-        }, 0, 100, TimeUnit.MILLISECONDS); // 10 FPS
+        if (scheduler.isRunning()) return;
         
+        needsRepaint = true;
+        scheduler.start();
         System.out.println("[VIZ] Visualizer started");
     }
     
     public void stop() {
-        if (!isRunning) return;
+        if (!scheduler.isRunning()) return;
         
-        isRunning = false;
-        if (visualizerThread != null) {
-            visualizerThread.shutdown();
-        }
+        scheduler.stop();
+        renderer.release();
         System.out.println("[VIZ] Visualizer stopped");
     }
     
     public void toggle() {
         isEnabled = !isEnabled;
-        if (isEnabled && !isRunning) {
+        repaint();
+        if (isEnabled && !scheduler.isRunning()) {
             start();
         }
         System.out.println("[VIZ] Visualizer: " + (isEnabled ? "ON" : "OFF"));
@@ -66,6 +136,7 @@ public class MusicVisualizer {
     
     public void setMode(VisualizerMode mode) {
         this.currentMode = mode;
+        repaint();
         System.out.println("[VIZ] Visualizer mode: " + mode.name());
     }
     
@@ -73,16 +144,62 @@ public class MusicVisualizer {
         VisualizerMode[] modes = VisualizerMode.values();
         int currentIndex = currentMode.ordinal();
         currentMode = modes[(currentIndex + 1) % modes.length];
+        repaint();
         System.out.println("[VIZ] Visualizer mode: " + currentMode.name());
     }
     
-    private void clearScreen() {
-        // ANSI escape code to clear screen and move cursor to top
-        System.out.print("\033[2J\033[H");
+    private void repaint() {
+        renderer.invalidate();
+        needsRepaint = true;
     }
     
-    private void renderFrame() {
-        switch (currentMode) {
+    /**
+     * Keeps drawing while music plays and until the bars have decayed after it stops.
+     */
+    private boolean hasFrameToDraw() {
+        if (!isEnabled) return false;
+        
+        boolean draw = needsRepaint || musicPlayer.isPlaying() || !analyzer.isSettled();
+        if (!draw) {
+            wasIdle = true;
+        } else if (wasIdle) {
+            // Console output while idle may have scrolled the screen
+            wasIdle = false;
+            renderer.invalidate();
+        }
+        return draw;
+    }
+    
+    private void drawFrame() {
+        needsRepaint = false;
+        AudioOutput output = musicPlayer.getAudioOutput();
+        double latency = output.isOpen() ? output.getLatencyMillis() : 0.0;
+        analyzer.setLatencyMillis(latency);
+        boolean fresh = analyzer.analyze();
+        VisualizerMode mode = currentMode;
+        if (mode == VisualizerMode.SPECTROGRAM) {
+            if (lastDrawnMode != VisualizerMode.SPECTROGRAM) {
+                // History only grows while the mode is shown; start it afresh
+                Arrays.fill(spectrogramGlyphs, ' ');
+                spectrogramHead = 0;
+            }
+            if (fresh) {
+                appendSpectrogramColumn();
+            }
+        }
+        
+        if (frameCount % REDRAW_INTERVAL_FRAMES == 0) {
+            renderer.invalidate();
+        }
+        renderer.beginFrame();
+        renderFrame(mode);
+        renderer.present();
+        lastDrawnMode = mode;
+        frameCount++;
+    }
+    
+    private void renderFrame(VisualizerMode mode) {
+        switch (mode) {
             case BARS:
                 renderBars();
                 break;
@@ -98,139 +215,235 @@ public class MusicVisualizer {
             case MATRIX:
                 renderMatrix();
                 break;
+            case SPECTROGRAM:
+                renderSpectrogram();
+                break;
         }
     }
     
     private void renderBars() {
-        System.out.println("[BARS] === MUSIC VISUALIZER - BARS MODE ===");
-        System.out.println();
+        renderer.text(0, 0, "[BARS] === MUSIC VISUALIZER - BARS MODE ===");
         
-        int numBars = 20;
         int maxHeight = 10;
+        int top = 2;
         
-        // Generate random bar heights (simulating audio levels)
-        for (int row = maxHeight; row >= 1; row--) {
-            for (int bar = 0; bar < numBars; bar++) {
-                int height = random.nextInt(maxHeight) + 1;
+        for (int band = 0; band < analyzer.getBandCount(); band++) {
+            int height = Math.round(analyzer.getLevel(band) * maxHeight);
+            int peak = Math.round(analyzer.getPeak(band) * maxHeight);
+            int x = band * 4;
+            
+            for (int row = maxHeight; row >= 1; row--) {
+                char glyph = ' ';
                 if (height >= row) {
-                    if (height > 8) {
-                        System.out.print("█"); // High level - red
-                    } else if (height > 5) {
-                        System.out.print("▓"); // Medium level - yellow
+                    if (row > 8) {
+                        glyph = '█'; // High level - red
+                    } else if (row > 5) {
+                        glyph = '▓'; // Medium level - yellow
                     } else {
-                        System.out.print("▒"); // Low level - green
+                        glyph = '▒'; // Low level - green
                     }
-                } else {
-                    System.out.print(" ");
+                } else if (peak == row) {
+                    glyph = '▔'; // Held peak
                 }
-                System.out.print(" ");
+                int y = top + maxHeight - row;
+                renderer.put(x, y, glyph);
+                renderer.put(x + 1, y, glyph);
+                renderer.put(x + 2, y, glyph);
             }
-            System.out.println();
         }
         
         // Frequency labels
-        System.out.println("60  170 310 600 1k  3k  6k  12k 14k 16k");
-        System.out.println("Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz");
+        renderer.text(0, top + maxHeight, "60  170 310 600 1k  3k  6k  12k 14k 16k");
+        renderer.text(0, top + maxHeight + 1, "Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz  Hz");
     }
     
     private void renderWave() {
-        System.out.println("🌊 === MUSIC VISUALIZER - WAVE MODE ===");
-        System.out.println();
+        renderer.text(0, 0, "[WAVE] === MUSIC VISUALIZER - WAVE MODE ===");
+        
+        Song song = musicPlayer.getCurrentSong();
+        if (song == null) {
+            renderer.text(0, 2, "No song loaded");
+            return;
+        }
+        renderer.text(0, 1, song.getTitle());
+        
+        PeakFile peaks = waveforms.get(song);
+        if (peaks == null || peaks.getFrameLength() <= 0) {
+            renderer.text(0, 3, waveforms.isPending(song) ? "Extracting waveform..." : "No waveform available");
+            return;
+        }
         
         int width = 60;
         int height = 15;
-        int centerY = height / 2;
+        int top = 2;
+        float half = (height - 1) * 0.5f;
+        float centre = top + half;
         
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                double wave = Math.sin((x + frameCount) * 0.2) * 3 + 
-                             Math.sin((x + frameCount) * 0.1) * 2;
-                int waveY = (int) (centerY + wave);
-                
-                if (Math.abs(y - waveY) <= 1) {
-                    if (Math.abs(wave) > 4) {
-                        System.out.print("█");
-                    } else if (Math.abs(wave) > 2) {
-                        System.out.print("▓");
-                    } else {
-                        System.out.print("▒");
-                    }
-                } else {
-                    System.out.print(" ");
+        // Pick the pyramid level with one or two entries per column: O(width) reads
+        long totalFrames = peaks.getFrameLength();
+        int level = peaks.levelFor((double) totalFrames / width);
+        int entries = peaks.getEntryCount(level);
+        long positionFrames = musicPlayer.getPositionMicros() * peaks.getSampleRate() / 1_000_000L;
+        int playhead = (int) Math.min(width - 1, positionFrames * width / totalFrames);
+        
+        for (int x = 0; x < width; x++) {
+            int from = (int) ((long) x * entries / width);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * entries / width));
+            float min = 0.0f;
+            float max = 0.0f;
+            float rms = 0.0f;
+            for (int i = from; i < Math.min(to, entries); i++) {
+                min = Math.min(min, peaks.getMin(level, i));
+                max = Math.max(max, peaks.getMax(level, i));
+                rms = Math.max(rms, peaks.getRms(level, i));
+            }
+            
+            // Played part solid, the rest shaded; RMS body inside the peak envelope
+            boolean played = x <= playhead;
+            int peakTop = Math.round(centre - max * half);
+            int peakBottom = Math.round(centre - min * half);
+            int rmsTop = Math.round(centre - rms * half);
+            int rmsBottom = Math.round(centre + rms * half);
+            for (int y = top; y < top + height; y++) {
+                if (y >= rmsTop && y <= rmsBottom) {
+                    renderer.put(x, y, played ? '█' : '▒');
+                } else if (y >= peakTop && y <= peakBottom) {
+                    renderer.put(x, y, played ? '▓' : '░');
+                } else if (x == playhead) {
+                    renderer.put(x, y, '│');
                 }
             }
-            System.out.println();
         }
+        
+        int seconds = (int) (positionFrames / peaks.getSampleRate());
+        int column = time(0, top + height, seconds);
+        renderer.text(column, top + height, " / ");
+        time(column + 3, top + height, (int) (totalFrames / peaks.getSampleRate()));
+    }
+    
+    /**
+     * Writes m:ss at (x, y) and returns the column after it.
+     */
+    private int time(int x, int y, int seconds) {
+        int column = renderer.number(x, y, seconds / 60);
+        renderer.put(column, y, ':');
+        renderer.put(column + 1, y, (char) ('0' + seconds % 60 / 10));
+        renderer.put(column + 2, y, (char) ('0' + seconds % 10));
+        return column + 3;
     }
     
     private void renderSpectrum() {
-        System.out.println("[SPECTRUM] === MUSIC VISUALIZER - SPECTRUM MODE ===");
-        System.out.println();
+        renderer.text(0, 0, "[SPECTRUM] === MUSIC VISUALIZER - SPECTRUM MODE ===");
         
-        String[] frequencies = {"60Hz", "170Hz", "310Hz", "600Hz", "1kHz", "3kHz", "6kHz", "12kHz"};
-        
-        for (String freq : frequencies) {
-            int level = random.nextInt(20) + 1;
-            System.out.printf("%6s |", freq);
+        int width = 20;
+        int top = 2;
+        for (int band = 0; band < analyzer.getBandCount(); band++) {
+            int level = Math.round(analyzer.getLevel(band) * width);
+            int peak = Math.round(analyzer.getPeak(band) * width);
+            int y = top + band;
+            
+            String label = BAND_LABELS[band];
+            renderer.text(6 - label.length(), y, label);
+            renderer.text(6, y, " |");
             
-            for (int i = 0; i < level; i++) {
-                if (i < 5) {
-                    System.out.print("▒"); // Low
-                } else if (i < 12) {
-                    System.out.print("▓"); // Medium
-                } else {
-                    System.out.print("█"); // High
+            for (int i = 0; i < width; i++) {
+                char glyph = ' ';
+                if (i < level) {
+                    if (i < 5) {
+                        glyph = '▒'; // Low
+                    } else if (i < 12) {
+                        glyph = '▓'; // Medium
+                    } else {
+                        glyph = '█'; // High
+                    }
+                } else if (i == peak - 1) {
+                    glyph = '|'; // Held peak
                 }
+                renderer.put(8 + i, y, glyph);
             }
-            System.out.printf(" %d\n", level);
+            renderer.number(9 + width, y, level);
         }
     }
     
     private void renderPulse() {
-        System.out.println("💓 === MUSIC VISUALIZER - PULSE MODE ===");
-        System.out.println();
+        renderer.text(0, 0, "[PULSE] === MUSIC VISUALIZER - PULSE MODE ===");
         
-        int pulseSize = (int) (Math.sin(frameCount * 0.3) * 5 + 8);
-        int centerX = 30;
-        int centerY = 10;
+        // Radius follows the loudness, ring thickness the bass
+        float bass = Math.max(analyzer.getLevel(0), analyzer.getLevel(1));
+        float pulseSize = 2.0f + analyzer.getOverallLevel() * 10.0f;
+        float thickness = 1.0f + bass * 1.5f;
+        int top = 2;
         
-        for (int y = 0; y < 20; y++) {
-            for (int x = 0; x < 60; x++) {
-                double distance = Math.sqrt(Math.pow(x - centerX, 2) + Math.pow(y - centerY, 2));
+        for (int y = 0; y < PULSE_HEIGHT; y++) {
+            for (int x = 0; x < PULSE_WIDTH; x++) {
+                float ring = Math.abs(pulseDistances[y * PULSE_WIDTH + x] - pulseSize);
                 
-                if (Math.abs(distance - pulseSize) < 1.5) {
-                    System.out.print("█");
-                } else if (Math.abs(distance - pulseSize) < 2.5) {
-                    System.out.print("▓");
-                } else if (Math.abs(distance - pulseSize) < 3.5) {
-                    System.out.print("▒");
-                } else {
-                    System.out.print(" ");
+                if (ring < thickness * 0.5f) {
+                    renderer.put(x, top + y, '█');
+                } else if (ring < thickness) {
+                    renderer.put(x, top + y, '▓');
+                } else if (ring < thickness * 1.5f) {
+                    renderer.put(x, top + y, '▒');
                 }
             }
-            System.out.println();
         }
     }
     
     private void renderMatrix() {
-        System.out.println("[MATRIX] === MUSIC VISUALIZER - MATRIX MODE ===");
-        System.out.println();
-        
-        char[] chars = {'0', '1', '#', '%', ':', '.', '|', '-', '+', '*'};
+        renderer.text(0, 0, "[MATRIX] === MUSIC VISUALIZER - MATRIX MODE ===");
         
+        int top = 2;
         for (int y = 0; y < 15; y++) {
             for (int x = 0; x < 50; x++) {
                 if (random.nextInt(10) < 3) { // 30% chance of character
-                    char c = chars[random.nextInt(chars.length)];
-                    System.out.print(c);
-                } else {
-                    System.out.print(" ");
+                    renderer.put(x, top + y, MATRIX_CHARS[random.nextInt(MATRIX_CHARS.length)]);
                 }
             }
-            System.out.println();
         }
     }
     
+    /**
+     * Stores the newest spectrum as one column; each level is mapped to a glyph
+     * once, here, so drawing is only copying.
+     */
+    private void appendSpectrogramColumn() {
+        int head = spectrogramHead;
+        for (int row = 0; row < SPECTROGRAM_ROWS; row++) {
+            float level = spectrogramBands.getInstantLevel(row);
+            spectrogramGlyphs[row * SPECTROGRAM_COLUMNS + head] = densityLookup[Math.min(255, (int) (level * 256))];
+        }
+        spectrogramHead = (head + 1) % SPECTROGRAM_COLUMNS;
+    }
+    
+    private void renderSpectrogram() {
+        renderer.text(0, 0, "[SPECTROGRAM] === MUSIC VISUALIZER - SPECTROGRAM MODE ===");
+        
+        int top = 2;
+        int head = spectrogramHead;
+        int older = SPECTROGRAM_COLUMNS - head;
+        for (int row = 0; row < SPECTROGRAM_ROWS; row++) {
+            // Highest frequency on top; oldest column on the left, newest on the right
+            int y = top + SPECTROGRAM_ROWS - 1 - row;
+            int ring = row * SPECTROGRAM_COLUMNS;
+            renderer.put(SPECTROGRAM_GUTTER, y, spectrogramGlyphs, ring + head, older);
+            renderer.put(SPECTROGRAM_GUTTER + older, y, spectrogramGlyphs, ring, head);
+        }
+        
+        renderer.text(0, spectrogramRowY(top, 16000), "16k");
+        renderer.text(0, spectrogramRowY(top, 4000), "4k");
+        renderer.text(0, spectrogramRowY(top, 1000), "1k");
+        renderer.text(0, spectrogramRowY(top, 250), "250");
+        renderer.text(0, spectrogramRowY(top, 50), "50");
+        renderer.text(SPECTROGRAM_GUTTER, top + SPECTROGRAM_ROWS, "older");
+        renderer.text(SCREEN_WIDTH - 3, top + SPECTROGRAM_ROWS, "now");
+    }
+    
+    private static int spectrogramRowY(int top, double hz) {
+        double position = Math.log(hz / SPECTROGRAM_LOW_HZ) / Math.log(SPECTROGRAM_HIGH_HZ / SPECTROGRAM_LOW_HZ);
+        int row = (int) Math.round(position * (SPECTROGRAM_ROWS - 1));
+        return top + SPECTROGRAM_ROWS - 1 - row;
+    }
+    
     public void displayModeHelp() {
         System.out.println("\n[VIZ] === Visualizer Modes ===");
         System.out.println("1. BARS - Frequency bars display");
@@ -238,12 +451,26 @@ public class MusicVisualizer {
         System.out.println("3. SPECTRUM - Spectrum analyzer");
         System.out.println("4. PULSE - Pulsing circle effect");
         System.out.println("5. MATRIX - Matrix-style effect");
+        System.out.println("6. SPECTROGRAM - Scrolling frequency history");
         System.out.println("\nUse 'viz mode <name>' to change modes");
         System.out.println("Use 'viz toggle' to enable/disable");
     }
     
+    public void displayFrameStats() {
+        System.out.println("\n[VIZ] === Frame Statistics ===");
+        System.out.printf("State: %s at %.1f FPS (max %d)%n",
+                         !scheduler.isRunning() ? "stopped" : scheduler.isIdle() ? "idle" : "drawing",
+                         scheduler.getTargetFps(), MAX_FPS);
+        System.out.printf("Frames drawn: %d, dropped: %d%n",
+                         scheduler.getFramesRendered(), scheduler.getFramesDropped());
+        System.out.printf("Frame time: p50 %.3f ms, p99 %.3f ms%n",
+                         scheduler.getFrameTimePercentile(50), scheduler.getFrameTimePercentile(99));
+        System.out.printf("Average output: %.0f bytes per frame (last %d)%n",
+                         renderer.getAverageFrameBytes(), renderer.getLastFrameBytes());
+    }
+    
     // Getters
     public boolean isEnabled() { return isEnabled; }
-    public boolean isRunning() { return isRunning; }
+    public boolean isRunning() { return scheduler.isRunning(); }
     public VisualizerMode getCurrentMode() { return currentMode; }
-}
\ No newline at end of file
+}
@@ -20,6 +20,8 @@ public class SleepTimer {
     private SleepAction sleepAction;
     private int fadeOutDuration; // seconds
     
+    private static final long FADE_GRACE_MILLIS = 2000;
+    
     public enum SleepAction {
         STOP, PAUSE, FADE_OUT
     }
@@ -117,30 +119,21 @@ public class SleepTimer {
     private void performFadeOut() {
         System.out.printf("🔉 Fading out over %d seconds...\n", fadeOutDuration);
         
-        // Simulate fade out by gradually reducing volume
+        // The gain stage ramps the audio itself; here we only wait for it to reach
+        // silence. The deadline covers simulation mode and a paused player, where
+        // no audio flows and the fade would never finish.
+        musicPlayer.fadeOut(fadeOutDuration);
         ScheduledExecutorService fadeExecutor = Executors.newSingleThreadScheduledExecutor();
+        final long deadline = System.currentTimeMillis() + fadeOutDuration * 1000L + FADE_GRACE_MILLIS;
         
-        final int steps = fadeOutDuration * 2; // 2 steps per second
-        final long stepDelay = 500; // 500ms between steps
-        
-        for (int i = 0; i < steps; i++) {
-            final int step = i;
-            fadeExecutor.schedule(() -> {
-                float volumeLevel = 1.0f - ((float) step / steps);
-                
-                if (step == steps - 1) {
-                    // Final step - stop the music
-                    musicPlayer.stop();
-                    System.out.println("🔇 Fade out complete - Music stopped");
-                    fadeExecutor.shutdown();
-                } else {
-                    // Show fade progress
-                    if (step % 4 == 0) { // Update every 2 seconds
-                        System.out.printf("🔉 Volume: %.0f%%\n", volumeLevel * 100);
-                    }
-                }
-            }, i * stepDelay, TimeUnit.MILLISECONDS);
-        }
+        fadeExecutor.scheduleAtFixedRate(() -> {
+            if (musicPlayer.isFadeComplete() || System.currentTimeMillis() >= deadline) {
+                musicPlayer.stop();
+                musicPlayer.cancelFade();
+                System.out.println("🔇 Fade out complete - Music stopped");
+                fadeExecutor.shutdown();
+            }
+        }, 100, 100, TimeUnit.MILLISECONDS);
     }
     
     private void startCountdownDisplay() {
@@ -1,12 +1,14 @@
 package com.musicplayer.service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
 
+import com.musicplayer.library.FeatureIndex;
+import com.musicplayer.library.Sampling;
+import com.musicplayer.library.SongFeature;
 import com.musicplayer.model.Playlist;
 import com.musicplayer.model.Song;
 
@@ -44,7 +46,7 @@ public class SmartPlaylistGenerator {
     }
     
     public Playlist generateSmartPlaylist(PlaylistType type, int maxSongs, String parameter) {
-        List<Song> allSongs = musicLibrary.getAllSongs();
+        List<Song> allSongs = musicLibrary.getSongsView();
         if (allSongs.isEmpty()) {
             return new Playlist("Empty Smart Playlist");
         }
@@ -74,7 +76,7 @@ public class SmartPlaylistGenerator {
                 break;
                 
             case RANDOM_MIX:
-                selectedSongs = generateRandomMix(allSongs, maxSongs);
+                selectedSongs = generateRandomMix(maxSongs);
                 playlistName = "Random Mix";
                 break;
                 
@@ -84,22 +86,22 @@ public class SmartPlaylistGenerator {
                 break;
                 
             case MOOD_BASED:
-                selectedSongs = generateMoodBased(allSongs, parameter, maxSongs);
+                selectedSongs = generateMoodBased(parameter, maxSongs);
                 playlistName = "Mood: " + (parameter != null ? parameter : "Mixed");
                 break;
                 
             case DECADE_MIX:
-                selectedSongs = generateDecadeMix(allSongs, parameter, maxSongs);
+                selectedSongs = generateDecadeMix(parameter, maxSongs);
                 playlistName = "Decade: " + (parameter != null ? parameter : "Mixed");
                 break;
                 
             case WORKOUT:
-                selectedSongs = generateWorkout(allSongs, maxSongs);
+                selectedSongs = generateWorkout(maxSongs);
                 playlistName = "Workout Mix";
                 break;
                 
             case CHILL:
-                selectedSongs = generateChill(allSongs, maxSongs);
+                selectedSongs = generateChill(maxSongs);
                 playlistName = "Chill Vibes";
                 break;
                 
@@ -143,10 +145,8 @@ public class SmartPlaylistGenerator {
                 .collect(Collectors.toList());
     }
     
-    private List<Song> generateRandomMix(List<Song> allSongs, int maxSongs) {
-        List<Song> shuffled = new ArrayList<>(allSongs);
-        Collections.shuffle(shuffled, random);
-        return shuffled.stream().limit(maxSongs).collect(Collectors.toList());
+    private List<Song> generateRandomMix(int maxSongs) {
+        return musicLibrary.sampleSongs(maxSongs, random);
     }
     
     private List<Song> generateArtistFocus(List<Song> allSongs, String artist, int maxSongs) {
@@ -171,139 +171,130 @@ public class SmartPlaylistGenerator {
                 .collect(Collectors.toList());
     }
     
-    private List<Song> generateMoodBased(List<Song> allSongs, String mood, int maxSongs) {
+    private List<Song> generateMoodBased(String mood, int maxSongs) {
         // Simulate mood detection based on song title keywords
-        List<String> energeticKeywords = Arrays.asList("rock", "dance", "party", "energy", "power", "fast", "beat");
-        List<String> chillKeywords = Arrays.asList("chill", "relax", "calm", "soft", "acoustic", "ambient", "slow");
-        List<String> sadKeywords = Arrays.asList("sad", "blue", "melancholy", "tears", "lonely", "broken");
-        List<String> happyKeywords = Arrays.asList("happy", "joy", "sunshine", "smile", "love", "celebration");
-        
         if (mood == null) mood = "mixed";
         
-        List<Song> moodSongs;
+        SongFeature feature;
         
         switch (mood.toLowerCase()) {
             case "energetic":
             case "upbeat":
-                moodSongs = filterByKeywords(allSongs, energeticKeywords);
+                feature = SongFeature.ENERGETIC;
                 break;
             case "chill":
             case "relaxed":
-                moodSongs = filterByKeywords(allSongs, chillKeywords);
+                feature = SongFeature.RELAXED;
                 break;
             case "sad":
             case "melancholy":
-                moodSongs = filterByKeywords(allSongs, sadKeywords);
+                feature = SongFeature.SAD;
                 break;
             case "happy":
             case "joyful":
-                moodSongs = filterByKeywords(allSongs, happyKeywords);
+                feature = SongFeature.HAPPY;
                 break;
             default:
-                moodSongs = new ArrayList<>(allSongs);
-                Collections.shuffle(moodSongs, random);
+                return musicLibrary.sampleSongs(maxSongs, random);
         }
         
-        return moodSongs.stream().limit(maxSongs).collect(Collectors.toList());
+        return musicLibrary.getSongsWith(feature, maxSongs);
     }
     
-    private List<Song> generateDecadeMix(List<Song> allSongs, String decade, int maxSongs) {
+    private List<Song> generateDecadeMix(String decade, int maxSongs) {
         // Since we don't have actual release dates, simulate based on file names
         if (decade == null) decade = "2000s";
         
-        final String targetDecade = decade.toLowerCase();
-        
-        List<Song> decadeSongs = allSongs.stream()
-                .filter(song -> {
-                    String fileName = song.getFilePath().toLowerCase();
-                    switch (targetDecade) {
-                        case "80s":
-                        case "1980s":
-                            return fileName.contains("80") || fileName.contains("classic");
-                        case "90s":
-                        case "1990s":
-                            return fileName.contains("90") || fileName.contains("retro");
-                        case "2000s":
-                            return fileName.contains("2000") || fileName.contains("00");
-                        case "2010s":
-                            return fileName.contains("201") || fileName.contains("modern");
-                        default:
-                            return true;
-                    }
-                })
-                .collect(Collectors.toList());
-        
-        if (decadeSongs.isEmpty()) {
-            decadeSongs = new ArrayList<>(allSongs);
+        SongFeature feature;
+        switch (decade.toLowerCase()) {
+            case "80s":
+            case "1980s":
+                feature = SongFeature.EIGHTIES;
+                break;
+            case "90s":
+            case "1990s":
+                feature = SongFeature.NINETIES;
+                break;
+            case "2000s":
+                feature = SongFeature.TWO_THOUSANDS;
+                break;
+            case "2010s":
+                feature = SongFeature.TWENTY_TENS;
+                break;
+            default:
+                feature = null;
         }
         
-        Collections.shuffle(decadeSongs, random);
-        return decadeSongs.stream().limit(maxSongs).collect(Collectors.toList());
+        if (feature == null || musicLibrary.countSongsWith(feature) == 0) {
+            return musicLibrary.sampleSongs(maxSongs, random);
+        }
+        return musicLibrary.sampleSongsWith(feature, maxSongs, random);
     }
     
-    private List<Song> generateWorkout(List<Song> allSongs, int maxSongs) {
+    private List<Song> generateWorkout(int maxSongs) {
         // Prefer songs with energetic keywords and higher play counts
-        List<String> workoutKeywords = Arrays.asList("rock", "electronic", "dance", "hip", "rap", "metal", "punk", "energy");
-        
-        List<Song> workoutSongs = filterByKeywords(allSongs, workoutKeywords);
+        int matches = musicLibrary.countSongsWith(SongFeature.WORKOUT);
         
         // Add some popular songs even if they don't match keywords
-        List<Song> popularSongs = statistics.getTopSongs(maxSongs / 2);
-        for (Song song : popularSongs) {
-            if (!workoutSongs.contains(song)) {
-                workoutSongs.add(song);
+        List<Song> extras = new ArrayList<>();
+        for (Song song : statistics.getTopSongs(maxSongs / 2)) {
+            boolean matched = (FeatureIndex.featuresOf(song) & SongFeature.WORKOUT.mask()) != 0;
+            if (!matched || !musicLibrary.contains(song)) {
+                extras.add(song);
             }
         }
         
+        // Pick from matches and extras as one pool; only the picks are materialised
+        List<Song> workoutSongs = new ArrayList<>();
+        int fromMatches = 0;
+        for (int pick : Sampling.sampleIndexes(matches + extras.size(), maxSongs, random)) {
+            if (pick < matches) {
+                fromMatches++;
+            } else {
+                workoutSongs.add(extras.get(pick - matches));
+            }
+        }
+        workoutSongs.addAll(musicLibrary.sampleSongsWith(SongFeature.WORKOUT, fromMatches, random));
+        
         Collections.shuffle(workoutSongs, random);
-        return workoutSongs.stream().limit(maxSongs).collect(Collectors.toList());
+        return workoutSongs;
     }
     
-    private List<Song> generateChill(List<Song> allSongs, int maxSongs) {
-        List<String> chillKeywords = Arrays.asList("acoustic", "ambient", "chill", "jazz", "classical", "soft", "piano", "guitar");
-        
-        List<Song> chillSongs = filterByKeywords(allSongs, chillKeywords);
+    private List<Song> generateChill(int maxSongs) {
+        List<Song> chillSongs = musicLibrary.getSongsWith(SongFeature.CHILL, maxSongs);
         
         if (chillSongs.size() < maxSongs) {
             // Add random songs to fill up
-            List<Song> remaining = new ArrayList<>(allSongs);
-            remaining.removeAll(chillSongs);
-            Collections.shuffle(remaining, random);
-            
-            int needed = maxSongs - chillSongs.size();
-            chillSongs.addAll(remaining.stream().limit(needed).collect(Collectors.toList()));
+            chillSongs.addAll(musicLibrary.sampleSongsWithout(SongFeature.CHILL, maxSongs - chillSongs.size(), random));
         }
         
-        return chillSongs.stream().limit(maxSongs).collect(Collectors.toList());
+        return chillSongs;
     }
     
     private List<Song> generateDiscovery(List<Song> allSongs, int maxSongs) {
         // Mix of never played and rarely played songs
         List<Song> neverPlayed = generateNeverPlayed(allSongs, maxSongs / 2);
-        List<Song> rarelyPlayed = allSongs.stream()
-                .filter(song -> statistics.getPlayCount(song) > 0 && statistics.getPlayCount(song) <= 2)
-                .collect(Collectors.toList());
         
-        Collections.shuffle(rarelyPlayed, random);
+        // One pass keeps a uniform sample of the rarely played, without listing them all
+        Sampling.Reservoir rarelyPlayed = new Sampling.Reservoir(maxSongs - neverPlayed.size(), random);
+        for (int i = 0; i < allSongs.size(); i++) {
+            int plays = statistics.getPlayCount(allSongs.get(i));
+            if (plays > 0 && plays <= 2) {
+                rarelyPlayed.offer(i);
+            }
+        }
         
         List<Song> discovery = new ArrayList<>(neverPlayed);
-        discovery.addAll(rarelyPlayed.stream().limit(maxSongs - neverPlayed.size()).collect(Collectors.toList()));
+        for (int index : rarelyPlayed.result()) {
+            discovery.add(allSongs.get(index));
+        }
         
         Collections.shuffle(discovery, random);
-        return discovery.stream().limit(maxSongs).collect(Collectors.toList());
-    }
-    
-    private List<Song> filterByKeywords(List<Song> songs, List<String> keywords) {
-        return songs.stream()
-                .filter(song -> {
-                    String searchText = (song.getTitle() + " " + song.getArtist() + " " + song.getAlbum()).toLowerCase();
-                    return keywords.stream().anyMatch(searchText::contains);
-                })
-                .collect(Collectors.toList());
+        return discovery;
     }
     
     public Playlist generatePersonalizedMix(int maxSongs) {
-        List<Song> allSongs = musicLibrary.getAllSongs();
+        List<Song> allSongs = musicLibrary.getSongsView();
         if (allSongs.isEmpty()) {
             return new Playlist("Empty Personalized Mix");
         }
@@ -331,7 +322,7 @@ public class SmartPlaylistGenerator {
         }
         
         // 10% random for variety
-        List<Song> randomSongs = generateRandomMix(allSongs, maxSongs / 10);
+        List<Song> randomSongs = generateRandomMix(maxSongs / 10);
         for (Song song : randomSongs) {
             if (!personalizedSongs.contains(song)) {
                 personalizedSongs.add(song);
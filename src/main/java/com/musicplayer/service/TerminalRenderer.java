@@ -0,0 +1,224 @@
+package com.musicplayer.service;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Double-buffered character grid for full-screen terminal output
+ * A frame is composed into a reused grid, compared with the frame already on
+ * screen, and only the changed runs are sent, each behind a cursor-position
+ * escape, in one write. Nothing is allocated per frame.
+ */
+public class TerminalRenderer {
+    private static final byte ESC = 0x1B;
+    // Unchanged cells shorter than this are rewritten rather than jumped over,
+    // since a cursor escape costs about as many bytes
+    private static final int MIN_GAP = 6;
+    
+    private final PrintStream out;
+    private final int width;
+    private final int height;
+    private final char[] cells;
+    private final char[] shown;
+    private final byte[] buffer;
+    private int length;
+    private boolean fullRedraw;
+    
+    // Cost of the last present() and running totals
+    private long lastFrameNanos;
+    private int lastFrameBytes;
+    private long totalFrameNanos;
+    private long totalFrameBytes;
+    private long frames;
+    private long frameStart;
+    
+    public TerminalRenderer(PrintStream out, int width, int height) {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.cells = new char[width * height];
+        this.shown = new char[width * height];
+        // Worst case: every cell as 3 UTF-8 bytes plus a cursor escape per run,
+        // and runs on a row are at least MIN_GAP cells apart
+        this.buffer = new byte[width * height * 3 + height * (width / MIN_GAP + 2) * 12 + 32];
+        this.fullRedraw = true;
+    }
+    
+    /**
+     * Starts a new frame with every cell blank.
+     */
+    public void beginFrame() {
+        frameStart = System.nanoTime();
+        Arrays.fill(cells, ' ');
+    }
+    
+    public void put(int x, int y, char c) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            cells[y * width + x] = c;
+        }
+    }
+    
+    /**
+     * Copies count cells from source into row y starting at column x.
+     */
+    public void put(int x, int y, char[] source, int offset, int count) {
+        if (y < 0 || y >= height || x >= width) return;
+        if (x < 0) {
+            offset -= x;
+            count += x;
+            x = 0;
+        }
+        count = Math.min(count, width - x);
+        if (count > 0) {
+            System.arraycopy(source, offset, cells, y * width + x, count);
+        }
+    }
+    
+    /**
+     * Writes text from (x, y), clipped at the right edge.
+     */
+    public void text(int x, int y, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put(x + i, y, text.charAt(i));
+        }
+    }
+    
+    /**
+     * Writes a non-negative number from (x, y) without going through a String.
+     * @return the column after the last digit
+     */
+    public int number(int x, int y, int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            put(x + i, y, (char) ('0' + value % 10));
+            value /= 10;
+        }
+        return x + digits;
+    }
+    
+    /**
+     * Sends the cells that differ from what is on screen and flushes.
+     */
+    public void present() {
+        length = 0;
+        if (fullRedraw) {
+            appendAscii("\033[?25l\033[H\033[2J");
+            Arrays.fill(shown, ' ');
+            fullRedraw = false;
+        }
+        
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int x = 0;
+            while (x < width) {
+                if (cells[row + x] == shown[row + x]) {
+                    x++;
+                    continue;
+                }
+                
+                // Extend the run across short unchanged gaps
+                int end = x + 1;
+                int gap = 0;
+                for (int i = end; i < width && gap < MIN_GAP; i++) {
+                    if (cells[row + i] != shown[row + i]) {
+                        end = i + 1;
+                        gap = 0;
+                    } else {
+                        gap++;
+                    }
+                }
+                
+                moveCursor(x, y);
+                for (int i = x; i < end; i++) {
+                    appendChar(cells[row + i]);
+                }
+                x = end;
+            }
+        }
+        System.arraycopy(cells, 0, shown, 0, cells.length);
+        
+        if (length > 0) {
+            // Park the cursor below the frame so other output does not land inside it
+            moveCursor(0, height);
+            out.write(buffer, 0, length);
+            out.flush();
+        }
+        
+        lastFrameBytes = length;
+        lastFrameNanos = System.nanoTime() - frameStart;
+        totalFrameBytes += length;
+        totalFrameNanos += lastFrameNanos;
+        frames++;
+    }
+    
+    /**
+     * Forces the next present() to clear the screen and redraw everything,
+     * e.g. after other output has scrolled the terminal.
+     */
+    public void invalidate() {
+        fullRedraw = true;
+    }
+    
+    /**
+     * Makes the cursor visible again once the renderer is done with the screen.
+     */
+    public void release() {
+        out.print("\033[?25h");
+        out.flush();
+        fullRedraw = true;
+    }
+    
+    public void resetStats() {
+        totalFrameNanos = 0;
+        totalFrameBytes = 0;
+        frames = 0;
+    }
+    
+    private void moveCursor(int x, int y) {
+        buffer[length++] = ESC;
+        buffer[length++] = '[';
+        appendDecimal(y + 1);
+        buffer[length++] = ';';
+        appendDecimal(x + 1);
+        buffer[length++] = 'H';
+    }
+    
+    private void appendDecimal(int value) {
+        if (value >= 10) {
+            appendDecimal(value / 10);
+        }
+        buffer[length++] = (byte) ('0' + value % 10);
+    }
+    
+    private void appendAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer[length++] = (byte) text.charAt(i);
+        }
+    }
+    
+    // Grid cells hold single BMP characters, so at most three UTF-8 bytes each
+    private void appendChar(char c) {
+        if (c < 0x80) {
+            buffer[length++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[length++] = (byte) (0xC0 | (c >> 6));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            buffer[length++] = (byte) (0xE0 | (c >> 12));
+            buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+    
+    // Getters
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public long getLastFrameNanos() { return lastFrameNanos; }
+    public int getLastFrameBytes() { return lastFrameBytes; }
+    public long getFrames() { return frames; }
+    public double getAverageFrameMillis() { return frames == 0 ? 0.0 : totalFrameNanos / 1e6 / frames; }
+    public double getAverageFrameBytes() { return frames == 0 ? 0.0 : (double) totalFrameBytes / frames; }
+}
@@ -0,0 +1,187 @@
+package com.musicplayer.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.musicplayer.audio.AudioDecoders;
+import com.musicplayer.audio.PeakFile;
+import com.musicplayer.model.Song;
+
+/**
+ * Waveform overviews (peak files) for the WAVE visualizer
+ * Each track is decoded once on a low-priority background thread and its overview
+ * stored under ~/.musicplayer/peaks. Recently used overviews stay memory-mapped.
+ */
+public class WaveformCache {
+    private static final int MAX_MAPPED = 16;
+    
+    private final File directory;
+    private final LinkedBlockingDeque<Song> queue;
+    private final Set<String> queued;
+    private final Set<String> failed;
+    // Access-ordered, so the eldest entry is the least recently drawn
+    private final Map<String, PeakFile> mapped;
+    private volatile Thread worker;
+    private volatile String promoted;
+    
+    public WaveformCache() {
+        this(new File(System.getProperty("user.home"), ".musicplayer" + File.separator + "peaks"));
+    }
+    
+    public WaveformCache(File directory) {
+        this.directory = directory;
+        this.queue = new LinkedBlockingDeque<>();
+        this.queued = ConcurrentHashMap.newKeySet();
+        this.failed = ConcurrentHashMap.newKeySet();
+        this.mapped = new LinkedHashMap<String, PeakFile>(MAX_MAPPED, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PeakFile> eldest) {
+                return size() > MAX_MAPPED;
+            }
+        };
+    }
+    
+    /**
+     * Queues every song without an up-to-date overview behind any current requests.
+     */
+    public void extractInBackground(List<Song> songs) {
+        for (Song song : songs) {
+            if (isWanted(song) && !hasValidFile(song) && queued.add(song.getFilePath())) {
+                queue.offerLast(song);
+            }
+        }
+        ensureWorker();
+    }
+    
+    /**
+     * @return the overview of the song, or null while it is still being extracted
+     *         (extraction is then moved to the front of the queue)
+     */
+    public PeakFile get(Song song) {
+        String path = song.getFilePath();
+        File source = new File(path);
+        synchronized (mapped) {
+            PeakFile peaks = mapped.get(path);
+            if (peaks != null) {
+                if (peaks.matches(source)) return peaks;
+                // The track was edited since; its overview is made again below
+                mapped.remove(path);
+            }
+        }
+        if (queued.contains(path)) {
+            // Already waiting; move it to the front once rather than on every frame
+            if (!path.equals(promoted)) {
+                promoted = path;
+                if (queue.removeIf(candidate -> candidate.getFilePath().equals(path))) {
+                    queue.offerFirst(song);
+                }
+            }
+            return null;
+        }
+        if (!isWanted(song)) return null;
+        
+        File peakFile = peakFileFor(path);
+        if (peakFile.isFile()) {
+            try {
+                PeakFile peaks = PeakFile.open(peakFile);
+                if (peaks.matches(source)) {
+                    synchronized (mapped) {
+                        mapped.put(path, peaks);
+                    }
+                    return peaks;
+                }
+            } catch (IOException e) {
+                // Unreadable or from an older version; extract again
+            }
+        }
+        
+        if (queued.add(path)) {
+            promoted = path;
+            queue.offerFirst(song);
+            ensureWorker();
+        }
+        return null;
+    }
+    
+    /**
+     * @return true if an overview is queued or being made for the song
+     */
+    public boolean isPending(Song song) {
+        return queued.contains(song.getFilePath());
+    }
+    
+    private boolean isWanted(Song song) {
+        String path = song.getFilePath();
+        return path != null && AudioDecoders.canDecode(path) && !failed.contains(path) && new File(path).isFile();
+    }
+    
+    private boolean hasValidFile(Song song) {
+        File peakFile = peakFileFor(song.getFilePath());
+        return peakFile.isFile() && PeakFile.isCurrent(peakFile, new File(song.getFilePath()));
+    }
+    
+    private File peakFileFor(String path) {
+        String key = UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+        return new File(directory, key + ".peaks");
+    }
+    
+    private synchronized void ensureWorker() {
+        if (worker != null || queue.isEmpty()) return;
+        
+        Thread thread = new Thread(this::drainQueue, "waveform-peaks");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        worker = thread;
+        thread.start();
+    }
+    
+    private void drainQueue() {
+        try {
+            Song song;
+            while ((song = queue.pollFirst()) != null) {
+                extract(song);
+                queued.remove(song.getFilePath());
+            }
+        } finally {
+            synchronized (this) {
+                worker = null;
+            }
+            // A request may have slipped in between the last poll and clearing worker
+            ensureWorker();
+        }
+    }
+    
+    private void extract(Song song) {
+        File source = new File(song.getFilePath());
+        try {
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            PeakFile.extract(source, peakFileFor(song.getFilePath()));
+            synchronized (mapped) {
+                mapped.remove(song.getFilePath());
+            }
+        } catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+            failed.add(song.getFilePath());
+            System.out.println("X Waveform extraction failed for " + source.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    public void shutdown() {
+        queue.clear();
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
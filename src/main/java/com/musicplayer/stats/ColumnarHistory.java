@@ -0,0 +1,322 @@
+package com.musicplayer.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Play history in a compact columnar file
+ * Events are written in blocks of up to 64K, each column stored on its own:
+ * timestamps as zig-zag varint deltas, sources and songs as varint dictionary IDs,
+ * and artists as IDs inside the song dictionary. Dictionary entries are written
+ * in a block of their own just before the first events that use them, so both
+ * sides stream with one block in memory. Every block carries a CRC32.
+ *
+ * File: "MPHX", version, then blocks of [kind][length][payload][CRC32], ending
+ * with an END block.
+ */
+public final class ColumnarHistory {
+    private static final int MAGIC = 0x4D504858; // "MPHX"
+    private static final int VERSION = 1;
+    private static final int BLOCK_EVENTS = 1 << 16;
+    private static final int MAX_BLOCK_BYTES = 64 << 20;
+    
+    private static final int END = 0;
+    private static final int SOURCES = 1;
+    private static final int ARTISTS = 2;
+    private static final int SONGS = 3;
+    private static final int EVENTS = 4;
+    
+    /**
+     * Streams events into blocks; memory grows with the number of different songs,
+     * never with the number of events.
+     */
+    public static class Writer implements HistorySink, Closeable {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(1 << 20);
+        private final DataOutputStream block = new DataOutputStream(blockBytes);
+        
+        private final Map<String, Integer> sourceIds = new HashMap<>();
+        private final Map<String, Integer> artistIds = new HashMap<>();
+        private final Map<Song, Integer> songIds = new HashMap<>();
+        // Dictionary entries not yet written
+        private final List<String> newSources = new ArrayList<>();
+        private final List<String> newArtists = new ArrayList<>();
+        private final List<Song> newSongs = new ArrayList<>();
+        
+        private final int[] sources = new int[BLOCK_EVENTS];
+        private final long[] timestamps = new long[BLOCK_EVENTS];
+        private final int[] songs = new int[BLOCK_EVENTS];
+        private final byte[] types = new byte[BLOCK_EVENTS];
+        private final int[] seconds = new int[BLOCK_EVENTS];
+        private int count;
+        
+        public Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+        
+        @Override
+        public void event(String source, Song song, PlayEventType type, long timestampMillis, int seconds)
+                throws IOException {
+            sources[count] = intern(sourceIds, newSources, source);
+            Integer songId = songIds.get(song);
+            if (songId == null) {
+                intern(artistIds, newArtists, song.getArtist());
+                songId = songIds.size();
+                songIds.put(song, songId);
+                newSongs.add(song);
+            }
+            songs[count] = songId;
+            timestamps[count] = timestampMillis;
+            types[count] = (byte) type.getCode();
+            this.seconds[count] = seconds;
+            if (++count == BLOCK_EVENTS) {
+                flushEvents();
+            }
+        }
+        
+        private static int intern(Map<String, Integer> ids, List<String> pending, String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = ids.size();
+                ids.put(value, id);
+                pending.add(value);
+            }
+            return id;
+        }
+        
+        private void flushEvents() throws IOException {
+            if (!newSources.isEmpty()) {
+                writeVarint(block, newSources.size());
+                for (String source : newSources) {
+                    block.writeUTF(source);
+                }
+                writeBlock(SOURCES);
+                newSources.clear();
+            }
+            if (!newArtists.isEmpty()) {
+                writeVarint(block, newArtists.size());
+                for (String artist : newArtists) {
+                    block.writeUTF(artist);
+                }
+                writeBlock(ARTISTS);
+                newArtists.clear();
+            }
+            if (!newSongs.isEmpty()) {
+                writeVarint(block, newSongs.size());
+                for (Song song : newSongs) {
+                    block.writeUTF(song.getTitle());
+                    writeVarint(block, artistIds.get(song.getArtist()));
+                    block.writeUTF(song.getAlbum() == null ? "" : song.getAlbum());
+                    writeVarint(block, Math.max(0, song.getDuration()));
+                    block.writeUTF(song.getFilePath() == null ? "" : song.getFilePath());
+                }
+                writeBlock(SONGS);
+                newSongs.clear();
+            }
+            if (count == 0) return;
+            
+            writeVarint(block, count);
+            block.writeLong(timestamps[0]);
+            for (int i = 0; i < count; i++) {
+                writeVarint(block, sources[i]);
+            }
+            // Events come in roughly time order, so most deltas fit in two or three bytes
+            long previous = timestamps[0];
+            for (int i = 0; i < count; i++) {
+                long delta = timestamps[i] - previous;
+                writeVarint(block, (delta << 1) ^ (delta >> 63));
+                previous = timestamps[i];
+            }
+            for (int i = 0; i < count; i++) {
+                writeVarint(block, songs[i]);
+            }
+            block.write(types, 0, count);
+            for (int i = 0; i < count; i++) {
+                writeVarint(block, Math.max(0, seconds[i]));
+            }
+            writeBlock(EVENTS);
+            count = 0;
+        }
+        
+        private void writeBlock(int kind) throws IOException {
+            block.flush();
+            CRC32 crc = new CRC32();
+            crc.update(blockBytes.toByteArray());
+            out.writeByte(kind);
+            out.writeInt(blockBytes.size());
+            blockBytes.writeTo(out);
+            out.writeInt((int) crc.getValue());
+            blockBytes.reset();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                flushEvents();
+                writeBlock(END);
+            } finally {
+                out.close();
+            }
+        }
+    }
+    
+    private ColumnarHistory() {
+    }
+    
+    /**
+     * @return whether the stream, read from its start, holds a columnar history
+     */
+    public static boolean isColumnar(byte[] head) {
+        return head.length >= 4 && ((head[0] & 0xFF) << 24 | (head[1] & 0xFF) << 16
+                | (head[2] & 0xFF) << 8 | (head[3] & 0xFF)) == MAGIC;
+    }
+    
+    /**
+     * Reads a file written by Writer, passing events on block by block.
+     *
+     * @return events read
+     */
+    public static long read(InputStream stream, HistorySink sink) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a columnar play history");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown columnar history version " + version);
+        }
+        
+        List<String> sources = new ArrayList<>();
+        List<String> artists = new ArrayList<>();
+        List<Song> songs = new ArrayList<>();
+        byte[] buffer = new byte[1 << 16];
+        long events = 0;
+        while (true) {
+            int kind;
+            int length;
+            try {
+                kind = in.readUnsignedByte();
+                length = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("History file ends early; it may still be being written");
+            }
+            if (length < 0 || length > MAX_BLOCK_BYTES) {
+                throw new IOException("Corrupt history block length " + length);
+            }
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            CRC32 crc = new CRC32();
+            crc.update(buffer, 0, length);
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Corrupt history block after " + events + " events");
+            }
+            
+            DataInputStream block = new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+            switch (kind) {
+                case END:
+                    return events;
+                case SOURCES:
+                    for (int n = readVarint(block); n > 0; n--) {
+                        sources.add(block.readUTF());
+                    }
+                    break;
+                case ARTISTS:
+                    for (int n = readVarint(block); n > 0; n--) {
+                        artists.add(block.readUTF());
+                    }
+                    break;
+                case SONGS:
+                    for (int n = readVarint(block); n > 0; n--) {
+                        String title = block.readUTF();
+                        String artist = artists.get(readVarint(block));
+                        songs.add(new Song(title, artist, block.readUTF(), readVarint(block), block.readUTF()));
+                    }
+                    break;
+                case EVENTS:
+                    events += readEvents(block, sources, songs, sink);
+                    break;
+                default:
+                    throw new IOException("Unknown history block kind " + kind);
+            }
+        }
+    }
+    
+    private static int readEvents(DataInputStream block, List<String> sources, List<Song> songs,
+                                  HistorySink sink) throws IOException {
+        int count = readVarint(block);
+        if (count > BLOCK_EVENTS) {
+            throw new IOException("Corrupt history block of " + count + " events");
+        }
+        int[] sourceIds = new int[count];
+        long[] timestamps = new long[count];
+        int[] songIds = new int[count];
+        byte[] types = new byte[count];
+        
+        long timestamp = block.readLong();
+        for (int i = 0; i < count; i++) {
+            sourceIds[i] = readVarint(block);
+        }
+        for (int i = 0; i < count; i++) {
+            long zigzag = readVarlong(block);
+            timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+            timestamps[i] = timestamp;
+        }
+        for (int i = 0; i < count; i++) {
+            songIds[i] = readVarint(block);
+        }
+        block.readFully(types);
+        try {
+            for (int i = 0; i < count; i++) {
+                sink.event(sources.get(sourceIds[i]), songs.get(songIds[i]), PlayEventType.fromCode(types[i]),
+                           timestamps[i], readVarint(block));
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt history block: " + e.getMessage());
+        }
+        return count;
+    }
+    
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static long readVarlong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt varint in history block");
+    }
+    
+    private static int readVarint(DataInputStream in) throws IOException {
+        long value = readVarlong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt varint in history block");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,101 @@
+package com.musicplayer.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate counts per key in fixed memory
+ * Each key adds to one counter in every row and its estimate is the smallest of
+ * them, so estimates never undercount. With width w and depth d, an estimate
+ * exceeds the true count by more than (e / w) * total with probability at most
+ * e^-d. Sketches of the same shape merge by adding their tables.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] table;
+    private long total;
+    
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth rows (independent hash functions)
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.table = new long[this.width * depth];
+    }
+    
+    public void add(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            // Row hashes derived from one 64-bit hash (Kirsch-Mitzenmacher)
+            int column = (h1 + row * h2) & (width - 1);
+            table[row * width + column] += count;
+        }
+        total += count;
+    }
+    
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = (h1 + row * h2) & (width - 1);
+            min = Math.min(min, table[row * width + column]);
+        }
+        return min;
+    }
+    
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Count-Min sketches differ in shape");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        total += other.total;
+    }
+    
+    /**
+     * @return how far an estimate may exceed the true count, at getConfidence()
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+    
+    public double getConfidence() {
+        return 1.0 - Math.exp(-depth);
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    public void clear() {
+        Arrays.fill(table, 0);
+        total = 0;
+    }
+    
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(total);
+        for (long counter : table) {
+            out.writeLong(counter);
+        }
+    }
+    
+    public void read(DataInputStream in) throws IOException {
+        if (in.readInt() != width || in.readInt() != depth) {
+            throw new IOException("Count-Min sketch shape changed");
+        }
+        total = in.readLong();
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.readLong();
+        }
+    }
+}
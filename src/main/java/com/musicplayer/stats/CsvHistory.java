@@ -0,0 +1,142 @@
+package com.musicplayer.stats;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Play history as CSV, one event per row, for spreadsheets and scripts
+ * Times are ISO-8601 instants in UTC with milliseconds, so a file read back
+ * yields exactly the events that were written.
+ */
+public final class CsvHistory {
+    public static final String HEADER = "source,time,type,seconds,title,artist,album,duration,path";
+    private static final int COLUMNS = 9;
+    
+    /**
+     * Streams events to CSV; each row is written as it arrives.
+     */
+    public static class Writer implements HistorySink, Closeable {
+        private final BufferedWriter out;
+        
+        public Writer(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            this.out.write(HEADER);
+            this.out.newLine();
+        }
+        
+        @Override
+        public void event(String source, Song song, PlayEventType type, long timestampMillis, int seconds)
+                throws IOException {
+            out.write(row(source, Instant.ofEpochMilli(timestampMillis).toString(), type.name().toLowerCase(),
+                          Integer.toString(seconds), song.getTitle(), song.getArtist(), song.getAlbum(),
+                          Integer.toString(song.getDuration()), song.getFilePath()));
+            out.newLine();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+    
+    private CsvHistory() {
+    }
+    
+    /**
+     * Reads an export written by Writer, passing each row on as it is parsed.
+     *
+     * @return events read
+     */
+    public static long read(InputStream in, HistorySink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String header = reader.readLine();
+        if (header == null || !header.startsWith(HEADER)) {
+            throw new IOException("Not a play history CSV: the first line must be " + HEADER);
+        }
+        
+        long events = 0;
+        int lineNumber = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) continue;
+            
+            List<String> fields = parse(line);
+            if (fields.size() < COLUMNS) {
+                throw new IOException("Line " + lineNumber + ": expected " + COLUMNS + " columns");
+            }
+            try {
+                Song song = new Song(fields.get(4), fields.get(5), fields.get(6),
+                                     Integer.parseInt(fields.get(7)), fields.get(8));
+                sink.event(fields.get(0), song, PlayEventType.valueOf(fields.get(2).toUpperCase()),
+                           Instant.parse(fields.get(1)).toEpochMilli(), Integer.parseInt(fields.get(3)));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            events++;
+        }
+        return events;
+    }
+    
+    /**
+     * Joins fields into one CSV line, quoting those that need it.
+     */
+    public static String row(String... fields) {
+        StringBuilder line = new StringBuilder(128);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) line.append(',');
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+                    && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                line.append(field);
+                continue;
+            }
+            // Rows stay on one line, so the reader can go line by line
+            line.append('"')
+                .append(field.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' '))
+                .append('"');
+        }
+        return line.toString();
+    }
+    
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,133 @@
+package com.musicplayer.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Binary payloads of the play-event log
+ * Songs are written once, as a dictionary record, and every later event refers to
+ * them by ID, so a play costs 18 bytes plus framing.
+ */
+public final class EventCodec {
+    public static final int SONG = 1;
+    public static final int PLAY = 2;
+    public static final int SESSION = 3;
+    public static final int SOURCE = 4;
+    
+    /**
+     * Receives decoded records in log order.
+     */
+    public interface Handler {
+        void song(int id, String title, String artist, String album, int duration, String path);
+        
+        void play(PlayEventType type, int songId, long timestampMillis, int seconds);
+        
+        void session(long startMillis, long endMillis, int songs);
+        
+        /**
+         * The machine the plays that follow were recorded on, until the next source
+         * record; plays before any are local.
+         */
+        default void source(String id) {
+        }
+    }
+    
+    private EventCodec() {
+    }
+    
+    public static byte[] song(int id, String title, String artist, String album, int duration, String path) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SONG);
+            out.writeInt(id);
+            out.writeUTF(nullToEmpty(title));
+            out.writeUTF(nullToEmpty(artist));
+            out.writeUTF(nullToEmpty(album));
+            out.writeInt(duration);
+            out.writeUTF(nullToEmpty(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static byte[] play(PlayEventType type, int songId, long timestampMillis, int seconds) {
+        byte[] payload = new byte[18];
+        payload[0] = PLAY;
+        payload[1] = (byte) type.getCode();
+        putInt(payload, 2, songId);
+        putLong(payload, 6, timestampMillis);
+        putInt(payload, 14, seconds);
+        return payload;
+    }
+    
+    public static byte[] session(long startMillis, long endMillis, int songs) {
+        byte[] payload = new byte[21];
+        payload[0] = SESSION;
+        putLong(payload, 1, startMillis);
+        putLong(payload, 9, endMillis);
+        putInt(payload, 17, songs);
+        return payload;
+    }
+    
+    public static byte[] source(String id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(40);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SOURCE);
+            out.writeUTF(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static void decode(byte[] payload, Handler handler) throws IOException {
+        switch (payload[0]) {
+            case PLAY:
+                handler.play(PlayEventType.fromCode(payload[1]), getInt(payload, 2),
+                             getLong(payload, 6), getInt(payload, 14));
+                break;
+            case SONG:
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                handler.song(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF());
+                break;
+            case SESSION:
+                handler.session(getLong(payload, 1), getLong(payload, 9), getInt(payload, 17));
+                break;
+            case SOURCE:
+                handler.source(new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1)).readUTF());
+                break;
+            default:
+                throw new IOException("Unknown record kind: " + payload[0]);
+        }
+    }
+    
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+    
+    private static void putInt(byte[] target, int at, int value) {
+        target[at] = (byte) (value >>> 24);
+        target[at + 1] = (byte) (value >>> 16);
+        target[at + 2] = (byte) (value >>> 8);
+        target[at + 3] = (byte) value;
+    }
+    
+    private static void putLong(byte[] target, int at, long value) {
+        putInt(target, at, (int) (value >>> 32));
+        putInt(target, at + 4, (int) value);
+    }
+    
+    private static int getInt(byte[] source, int at) {
+        return (source[at] & 0xFF) << 24 | (source[at + 1] & 0xFF) << 16
+            | (source[at + 2] & 0xFF) << 8 | (source[at + 3] & 0xFF);
+    }
+    
+    private static long getLong(byte[] source, int at) {
+        return (long) getInt(source, at) << 32 | (getInt(source, at + 4) & 0xFFFFFFFFL);
+    }
+}
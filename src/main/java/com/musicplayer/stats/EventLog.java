@@ -0,0 +1,477 @@
+package com.musicplayer.stats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, crash-safe record log with snapshots
+ * Records are framed as [length][payload][CRC32] in numbered segment files. Appends
+ * return at once; a background writer collects whatever has queued up and makes it
+ * durable with one write and one fsync (group commit). A snapshot captures the
+ * owner's state, after which the segments it covers are moved to archive/, so
+ * startup reads the snapshot plus one short segment however long the history is.
+ * Compaction speeds up startup only: archived segments are never deleted, since
+ * queries and exports replay the full history from them, so disk use keeps
+ * growing with the history until the log is cleared.
+ */
+public class EventLog {
+    private static final int SNAPSHOT_MAGIC = 0x4D505353; // "MPSS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    /**
+     * Receives the state found on disk, oldest first.
+     */
+    public interface Replay {
+        void snapshot(DataInputStream in) throws IOException;
+        
+        void record(byte[] payload) throws IOException;
+    }
+    
+    /**
+     * Writes the owner's state into a snapshot.
+     */
+    public interface SnapshotWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private final File directory;
+    private final File archive;
+    private final File snapshotFile;
+    
+    // Guards pending, the sequence numbers and running
+    private final Object queueLock = new Object();
+    private List<byte[]> pending = new ArrayList<>();
+    private long enqueued;
+    private long durable;
+    private boolean running;
+    
+    // Guards the active segment; held by the writer for each batch
+    private final Object segmentLock = new Object();
+    private FileChannel channel;
+    private long generation;
+    
+    private Thread writer;
+    private volatile boolean failed;
+    private long liveRecords;
+    private volatile long batches;
+    
+    public EventLog(File directory) {
+        this.directory = directory;
+        this.archive = new File(directory, "archive");
+        this.snapshotFile = new File(directory, "snapshot.bin");
+    }
+    
+    /**
+     * Replays the snapshot and every record written after it, repairs a torn tail
+     * left by a crash and starts the writer.
+     *
+     * @return number of records replayed after the snapshot
+     */
+    public long open(Replay replay) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        
+        long covered = readSnapshot(replay);
+        if (covered < 0 && snapshotFile.isFile()) {
+            // Unusable snapshot: rebuild from the archived segments it had absorbed
+            for (File segment : segments(archive)) {
+                replaySegment(segment, replay);
+            }
+        }
+        
+        long replayed = 0;
+        File active = null;
+        long activeEnd = 0;
+        for (File segment : segments(directory)) {
+            if (generationOf(segment) <= covered) {
+                // Snapshot was written but the segment not yet archived
+                archiveSegment(segment);
+                continue;
+            }
+            long[] result = replaySegment(segment, replay);
+            replayed += result[0];
+            active = segment;
+            activeEnd = result[1];
+        }
+        liveRecords = replayed;
+        
+        synchronized (segmentLock) {
+            if (active != null) {
+                generation = generationOf(active);
+                channel = FileChannel.open(active.toPath(), StandardOpenOption.WRITE);
+                if (channel.size() > activeEnd) {
+                    System.out.printf("[STATS] Discarded %d bytes of an interrupted write\n",
+                                      channel.size() - activeEnd);
+                    channel.truncate(activeEnd);
+                }
+                channel.position(activeEnd);
+            } else {
+                generation = Math.max(0, covered + 1);
+                channel = openSegment(generation);
+            }
+        }
+        
+        startWriter();
+        return replayed;
+    }
+    
+    /**
+     * Queues a record. It is durable once a later flush() returns.
+     */
+    public void append(byte[] payload) {
+        synchronized (queueLock) {
+            if (!running) throw new IllegalStateException("Event log is not open");
+            pending.add(payload);
+            enqueued++;
+            liveRecords++;
+            queueLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Blocks until every record appended so far is on disk.
+     */
+    public void flush() {
+        synchronized (queueLock) {
+            long target = enqueued;
+            boolean interrupted = false;
+            while (durable < target && running) {
+                try {
+                    queueLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Reads every record ever logged, oldest first: the archive, then the live
+     * segments. The snapshot is skipped. The caller must not snapshot concurrently.
+     *
+     * @return number of records read
+     */
+    public long replayHistory(Replay replay) throws IOException {
+        flush();
+        long records = 0;
+        for (File segment : segments(archive)) {
+            records += replaySegment(segment, replay)[0];
+        }
+        for (File segment : segments(directory)) {
+            records += replaySegment(segment, replay)[0];
+        }
+        return records;
+    }
+    
+    /**
+     * Replaces all records written so far with a snapshot of the owner's state.
+     * The caller must not append concurrently, so that the state it writes matches
+     * exactly the records the snapshot covers.
+     */
+    public void snapshot(SnapshotWriter state) throws IOException {
+        flush();
+        
+        long covered;
+        synchronized (segmentLock) {
+            covered = generation;
+            channel.close();
+            generation++;
+            channel = openSegment(generation);
+        }
+        
+        ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            state.write(out);
+        }
+        byte[] payload = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(covered);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        
+        // Compaction: recovery no longer needs the covered segments
+        for (File segment : segments(directory)) {
+            if (generationOf(segment) <= covered) {
+                archiveSegment(segment);
+            }
+        }
+        synchronized (queueLock) {
+            liveRecords = pending.size();
+        }
+    }
+    
+    /**
+     * Deletes the snapshot, the live segments and the archive, and starts empty.
+     */
+    public void clear() throws IOException {
+        flush();
+        synchronized (segmentLock) {
+            channel.close();
+            for (File segment : segments(directory)) {
+                Files.deleteIfExists(segment.toPath());
+            }
+            for (File segment : segments(archive)) {
+                Files.deleteIfExists(segment.toPath());
+            }
+            Files.deleteIfExists(snapshotFile.toPath());
+            generation = 0;
+            channel = openSegment(generation);
+        }
+        synchronized (queueLock) {
+            liveRecords = 0;
+        }
+    }
+    
+    /**
+     * Writes out everything queued, stops the writer and closes the segment.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (queueLock) {
+            if (!running) return;
+            running = false;
+            queueLock.notifyAll();
+            thread = writer;
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (segmentLock) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("X Could not close play history: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void startWriter() {
+        synchronized (queueLock) {
+            running = true;
+        }
+        writer = new Thread(this::writeLoop, "stats-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    private void writeLoop() {
+        List<byte[]> spare = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        CRC32 crc = new CRC32();
+        
+        while (true) {
+            List<byte[]> batch;
+            long target;
+            synchronized (queueLock) {
+                while (pending.isEmpty() && running) {
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                        // Keep draining; close() ends the loop
+                    }
+                }
+                if (pending.isEmpty()) return;
+                
+                // Swap lists so appends continue while this batch is written
+                batch = pending;
+                pending = spare;
+                target = enqueued;
+            }
+            
+            int bytes = 0;
+            for (byte[] payload : batch) {
+                bytes += payload.length + 8;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1);
+            }
+            buffer.clear();
+            for (byte[] payload : batch) {
+                crc.reset();
+                crc.update(payload);
+                buffer.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+            }
+            buffer.flip();
+            
+            synchronized (segmentLock) {
+                try {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                    batches++;
+                } catch (IOException e) {
+                    if (!failed) {
+                        System.out.println("X Could not write play history: " + e.getMessage());
+                    }
+                    failed = true;
+                }
+            }
+            
+            batch.clear();
+            spare = batch;
+            synchronized (queueLock) {
+                durable = target;
+                queueLock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * @return covered segment generation, or -1 without a usable snapshot
+     */
+    private long readSnapshot(Replay replay) throws IOException {
+        if (!snapshotFile.isFile()) return -1;
+        
+        byte[] payload;
+        long covered;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                System.out.println("X Ignoring unknown statistics snapshot format");
+                return -1;
+            }
+            covered = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > snapshotFile.length()) {
+                System.out.println("X Ignoring damaged statistics snapshot");
+                return -1;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.readInt() != (int) crc.getValue()) {
+                System.out.println("X Ignoring damaged statistics snapshot");
+                return -1;
+            }
+        } catch (EOFException e) {
+            System.out.println("X Ignoring truncated statistics snapshot");
+            return -1;
+        }
+        
+        replay.snapshot(new DataInputStream(new ByteArrayInputStream(payload)));
+        return covered;
+    }
+    
+    /**
+     * Replays the intact records of one segment.
+     *
+     * @return {records replayed, byte offset after the last intact record}
+     */
+    private long[] replaySegment(File segment, Replay replay) throws IOException {
+        long records = 0;
+        long end = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(segment), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                
+                byte[] payload = new byte[length];
+                int checksum;
+                try {
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if (checksum != (int) crc.getValue()) break;
+                
+                replay.record(payload);
+                records++;
+                end += length + 8;
+            }
+        }
+        return new long[] {records, end};
+    }
+    
+    private FileChannel openSegment(long gen) throws IOException {
+        File file = new File(directory, segmentName(gen));
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+    }
+    
+    private void archiveSegment(File segment) throws IOException {
+        if (!archive.exists() && !archive.mkdirs()) {
+            throw new IOException("Cannot create " + archive);
+        }
+        // Raw events are kept for the full history; only recovery skips them
+        Files.move(segment.toPath(), new File(archive, segment.getName()).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    private static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> Long.compare(generationOf(a), generationOf(b)));
+        return files;
+    }
+    
+    private static String segmentName(long gen) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, gen, SEGMENT_SUFFIX);
+    }
+    
+    private static long generationOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    /**
+     * @return records a restart would replay on top of the snapshot
+     */
+    public long getLiveRecords() {
+        synchronized (queueLock) {
+            return liveRecords;
+        }
+    }
+    
+    // Getters
+    public boolean isFailed() { return failed; }
+    public long getBatches() { return batches; }
+    public File getDirectory() { return directory; }
+}
@@ -0,0 +1,422 @@
+package com.musicplayer.stats;
+
+import java.io.File;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.musicplayer.model.Song;
+
+/**
+ * The play history as parallel primitive arrays, one entry per event
+ * Songs are referred to by their log ID; artist, album and folder are interned per
+ * song, and each event keeps its local time in minutes. A query scans the arrays
+ * in chunks on the common fork-join pool, each chunk grouping into its own
+ * counters (plain arrays when the groups are few, one such chunk per core), and
+ * merges the chunks at the end.
+ */
+public class EventTable {
+    private static final int TYPE_MASK = 0x7;
+    private static final int PLAYED = 0x8;
+    private static final int MINUTES_PER_DAY = 1440;
+    // Group counts up to this use arrays indexed by group instead of a hash map
+    private static final int DENSE_GROUPS = 1 << 18;
+    private static final int MIN_CHUNK = 1 << 16;
+    
+    /**
+     * Strings numbered in order of first appearance.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+        
+        int find(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+        
+        void clear() {
+            codes.clear();
+            values.clear();
+        }
+    }
+    
+    /**
+     * Per-group event counts and measure sums for one chunk.
+     */
+    private static final class Groups {
+        final long[] denseCounts;
+        final double[] denseSums;
+        final Map<Long, double[]> sparse;
+        
+        Groups(long groups) {
+            boolean dense = groups <= DENSE_GROUPS;
+            this.denseCounts = dense ? new long[(int) groups] : null;
+            this.denseSums = dense ? new double[(int) groups] : null;
+            this.sparse = dense ? null : new HashMap<>();
+        }
+        
+        void add(long key, double value) {
+            if (denseCounts != null) {
+                denseCounts[(int) key]++;
+                denseSums[(int) key] += value;
+            } else {
+                double[] group = sparse.computeIfAbsent(key, k -> new double[2]);
+                group[0]++;
+                group[1] += value;
+            }
+        }
+        
+        Groups merge(Groups other) {
+            if (denseCounts != null) {
+                for (int i = 0; i < denseCounts.length; i++) {
+                    denseCounts[i] += other.denseCounts[i];
+                    denseSums[i] += other.denseSums[i];
+                }
+            } else {
+                for (Map.Entry<Long, double[]> entry : other.sparse.entrySet()) {
+                    double[] group = sparse.computeIfAbsent(entry.getKey(), k -> new double[2]);
+                    group[0] += entry.getValue()[0];
+                    group[1] += entry.getValue()[1];
+                }
+            }
+            return this;
+        }
+    }
+    
+    private final ZoneRules rules;
+    
+    // Per event
+    private int[] eventSongs = new int[1024];
+    private int[] eventMinutes = new int[1024];
+    private int[] eventSeconds = new int[1024];
+    private byte[] eventFlags = new byte[1024];
+    private int size;
+    private int firstDay = Integer.MAX_VALUE;
+    private int lastDay = Integer.MIN_VALUE;
+    
+    // Per song, indexed by log song ID
+    private int[] songArtists = new int[256];
+    private int[] songAlbums = new int[256];
+    private int[] songFolders = new int[256];
+    private int[] songDurations = new int[256];
+    private String[] songLabels = new String[256];
+    private int songCount;
+    private final Dictionary artists = new Dictionary();
+    private final Dictionary albums = new Dictionary();
+    private final Dictionary folders = new Dictionary();
+    
+    // UTC offset in force over [offsetFrom, offsetTo)
+    private long offsetFrom = Long.MAX_VALUE;
+    private long offsetTo = Long.MIN_VALUE;
+    private long offsetMillis;
+    
+    public EventTable(ZoneId zone) {
+        this.rules = zone.getRules();
+    }
+    
+    public void addSong(int id, Song song) {
+        if (id >= songLabels.length) {
+            int capacity = Math.max(id + 1, songLabels.length * 2);
+            songArtists = Arrays.copyOf(songArtists, capacity);
+            songAlbums = Arrays.copyOf(songAlbums, capacity);
+            songFolders = Arrays.copyOf(songFolders, capacity);
+            songDurations = Arrays.copyOf(songDurations, capacity);
+            songLabels = Arrays.copyOf(songLabels, capacity);
+        }
+        songArtists[id] = artists.code(song.getArtist());
+        songAlbums[id] = albums.code(song.getAlbum() == null || song.getAlbum().isEmpty() ? "(no album)" : song.getAlbum());
+        songFolders[id] = folders.code(folderOf(song.getFilePath()));
+        songDurations[id] = song.getDuration();
+        songLabels[id] = song.getTitle() + " - " + song.getArtist();
+        songCount = Math.max(songCount, id + 1);
+    }
+    
+    private static String folderOf(String path) {
+        if (path == null || path.isEmpty()) return "(no folder)";
+        String parent = new File(path).getParent();
+        return parent != null ? parent : "(no folder)";
+    }
+    
+    /**
+     * Appends one event. The song must have been added first.
+     */
+    public void add(int songId, PlayEventType type, long timestampMillis, int seconds) {
+        if (songId < 0 || songId >= songCount) return;
+        
+        if (size == eventSongs.length) {
+            int capacity = size * 2;
+            eventSongs = Arrays.copyOf(eventSongs, capacity);
+            eventMinutes = Arrays.copyOf(eventMinutes, capacity);
+            eventSeconds = Arrays.copyOf(eventSeconds, capacity);
+            eventFlags = Arrays.copyOf(eventFlags, capacity);
+        }
+        
+        // Same rule as the statistics: a partial play counts past min(30 s, half the song)
+        boolean played = type == PlayEventType.COMPLETED
+                || (type == PlayEventType.PARTIAL && seconds >= Math.min(30, songDurations[songId] / 2));
+        int minute = (int) Math.floorDiv(timestampMillis + offsetAt(timestampMillis), 60_000L);
+        int day = Math.floorDiv(minute, MINUTES_PER_DAY);
+        
+        eventSongs[size] = songId;
+        eventMinutes[size] = minute;
+        eventSeconds[size] = seconds;
+        eventFlags[size] = (byte) (type.getCode() | (played ? PLAYED : 0));
+        size++;
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+    }
+    
+    /**
+     * Zone offset at the instant, looked up again only when a transition is crossed.
+     */
+    private long offsetAt(long epochMillis) {
+        if (epochMillis < offsetFrom || epochMillis >= offsetTo) {
+            Instant instant = Instant.ofEpochMilli(epochMillis);
+            offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+            ZoneOffsetTransition previous = rules.previousTransition(instant);
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            offsetFrom = previous != null ? previous.toEpochSecond() * 1000 : Long.MIN_VALUE;
+            offsetTo = next != null ? next.toEpochSecond() * 1000 : Long.MAX_VALUE;
+        }
+        return offsetMillis;
+    }
+    
+    public QueryResult execute(HistoryQuery query) {
+        long started = System.nanoTime();
+        List<HistoryQuery.Dimension> dimensions = query.getDimensions();
+        
+        int artistFilter = -1;
+        if (query.getArtist() != null) {
+            artistFilter = artists.find(query.getArtist());
+            if (artistFilter < 0) {
+                return new QueryResult(query, new ArrayList<>(), size, System.nanoTime() - started);
+            }
+        }
+        long fromMinute = query.getFrom() != null ? query.getFrom().toEpochDay() * MINUTES_PER_DAY : Long.MIN_VALUE;
+        long toMinute = query.getTo() != null ? (query.getTo().toEpochDay() + 1) * MINUTES_PER_DAY : Long.MAX_VALUE;
+        
+        long[] cardinalities = new long[dimensions.size()];
+        long groups = 1;
+        for (int d = 0; d < dimensions.size(); d++) {
+            cardinalities[d] = cardinalityOf(dimensions.get(d));
+            groups *= cardinalities[d];
+        }
+        
+        // A group key is the sum of each dimension's code times its place value. The
+        // song and day parts are summed up front, so the scan does two lookups per event.
+        long[] songPart = new long[Math.max(1, songCount)];
+        long[] dayPart = new long[size == 0 ? 1 : lastDay - firstDay + 1];
+        long hourPlace = 0;
+        long place = 1;
+        for (int d = dimensions.size() - 1; d >= 0; d--) {
+            HistoryQuery.Dimension dimension = dimensions.get(d);
+            if (dimension == HistoryQuery.Dimension.HOUR) {
+                hourPlace = place;
+            } else if (dimension.isTime()) {
+                for (int day = 0; day < dayPart.length; day++) {
+                    dayPart[day] += dayCode(dimension, firstDay + day) * place;
+                }
+            } else {
+                for (int song = 0; song < songCount; song++) {
+                    songPart[song] += songCode(dimension, song) * place;
+                }
+            }
+            place *= cardinalities[d];
+        }
+        
+        // Locals, so the scanning threads read only what the query started with
+        int events = size;
+        int first = firstDay;
+        int[] songs = eventSongs;
+        int[] minutes = eventMinutes;
+        int[] seconds = eventSeconds;
+        byte[] flags = eventFlags;
+        int[] artistOf = songArtists;
+        int filter = artistFilter;
+        long perHour = hourPlace;
+        HistoryQuery.Measure measure = query.getMeasure();
+        // Counting measures depend on the flags alone; completion on each song's length
+        double[] weights = weightsOf(measure);
+        double[] inverseDurations = null;
+        if (measure == HistoryQuery.Measure.COMPLETION) {
+            inverseDurations = new double[Math.max(1, songCount)];
+            for (int song = 0; song < songCount; song++) {
+                inverseDurations[song] = songDurations[song] > 0 ? 1.0 / songDurations[song] : 0;
+            }
+        }
+        double[] perSecond = inverseDurations;
+        long groupCount = groups;
+        
+        // Spare chunks even out the load, but every dense chunk holds an array slot
+        // per group (up to 4 MB), so those stop at one chunk per core
+        int processors = Runtime.getRuntime().availableProcessors();
+        int maxChunks = groupCount <= DENSE_GROUPS ? processors : processors * 4;
+        int chunks = Math.max(1, Math.min(events / MIN_CHUNK, maxChunks));
+        Groups totals = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            Groups local = new Groups(groupCount);
+            long[] counts = local.denseCounts;
+            double[] sums = local.denseSums;
+            int end = (int) ((long) (chunk + 1) * events / chunks);
+            for (int e = (int) ((long) chunk * events / chunks); e < end; e++) {
+                int minute = minutes[e];
+                if (minute < fromMinute || minute >= toMinute) continue;
+                int song = songs[e];
+                if (filter >= 0 && artistOf[song] != filter) continue;
+                
+                // Plain division (a multiply after JIT): play times are after 1970, so never negative
+                int day = minute / MINUTES_PER_DAY;
+                long key = songPart[song] + dayPart[day - first] + (minute - day * MINUTES_PER_DAY) / 60 * perHour;
+                double value;
+                if (weights != null) {
+                    value = weights[flags[e]];
+                } else if (perSecond != null) {
+                    value = Math.min(1.0, seconds[e] * perSecond[song]);
+                } else {
+                    value = seconds[e] / 60.0;
+                }
+                if (counts != null) {
+                    counts[(int) key]++;
+                    sums[(int) key] += value;
+                } else {
+                    local.add(key, value);
+                }
+            }
+            return local;
+        }).reduce(Groups::merge).orElseGet(() -> new Groups(groupCount));
+        
+        List<QueryResult.Row> rows = new ArrayList<>();
+        if (totals.denseCounts != null) {
+            for (int key = 0; key < totals.denseCounts.length; key++) {
+                if (totals.denseCounts[key] > 0) {
+                    rows.add(rowOf(dimensions, cardinalities, measure, key, totals.denseCounts[key], totals.denseSums[key]));
+                }
+            }
+        } else {
+            for (Map.Entry<Long, double[]> entry : totals.sparse.entrySet()) {
+                double[] group = entry.getValue();
+                rows.add(rowOf(dimensions, cardinalities, measure, entry.getKey(), (long) group[0], group[1]));
+            }
+        }
+        
+        if (!dimensions.isEmpty() && dimensions.stream().allMatch(HistoryQuery.Dimension::isTime)) {
+            // A pure time grouping reads best in time order
+            rows.sort((a, b) -> Long.compare(a.group, b.group));
+        } else {
+            rows.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        }
+        return new QueryResult(query, rows, events, System.nanoTime() - started);
+    }
+    
+    private QueryResult.Row rowOf(List<HistoryQuery.Dimension> dimensions, long[] cardinalities,
+                                  HistoryQuery.Measure measure, long group, long count, double sum) {
+        String[] labels = new String[dimensions.size()];
+        long rest = group;
+        for (int d = dimensions.size() - 1; d >= 0; d--) {
+            labels[d] = labelOf(dimensions.get(d), (int) (rest % cardinalities[d]));
+            rest /= cardinalities[d];
+        }
+        double value = measure == HistoryQuery.Measure.COMPLETION ? sum / count : sum;
+        return new QueryResult.Row(labels, value, count, group);
+    }
+    
+    private long songCode(HistoryQuery.Dimension dimension, int song) {
+        switch (dimension) {
+            case ARTIST: return songArtists[song];
+            case ALBUM: return songAlbums[song];
+            case FOLDER: return songFolders[song];
+            default: return song;
+        }
+    }
+    
+    private long dayCode(HistoryQuery.Dimension dimension, int day) {
+        // Epoch day 0 was a Thursday, index 3 from Monday
+        if (dimension == HistoryQuery.Dimension.WEEKDAY) return Math.floorMod(day + 3, 7);
+        return timeIndex(dimension, LocalDate.ofEpochDay(day)) - timeIndex(dimension, LocalDate.ofEpochDay(firstDay));
+    }
+    
+    private static int timeIndex(HistoryQuery.Dimension dimension, LocalDate date) {
+        return dimension == HistoryQuery.Dimension.YEAR ? date.getYear() : date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+    
+    private long cardinalityOf(HistoryQuery.Dimension dimension) {
+        switch (dimension) {
+            case SONG: return Math.max(1, songCount);
+            case ARTIST: return Math.max(1, artists.values.size());
+            case ALBUM: return Math.max(1, albums.values.size());
+            case FOLDER: return Math.max(1, folders.values.size());
+            case WEEKDAY: return 7;
+            case HOUR: return 24;
+            default:
+                if (size == 0) return 1;
+                return timeIndex(dimension, LocalDate.ofEpochDay(lastDay))
+                        - timeIndex(dimension, LocalDate.ofEpochDay(firstDay)) + 1;
+        }
+    }
+    
+    /**
+     * @return value of an event indexed by its flags, or null for the measures
+     *         that depend on the seconds heard
+     */
+    private static double[] weightsOf(HistoryQuery.Measure measure) {
+        double[] weights = new double[PLAYED << 1];
+        for (int flags = 0; flags < weights.length; flags++) {
+            switch (measure) {
+                case LISTENS: weights[flags] = 1; break;
+                case PLAYS: weights[flags] = (flags & PLAYED) != 0 ? 1 : 0; break;
+                case SKIPS: weights[flags] = (flags & TYPE_MASK) == PlayEventType.SKIPPED.getCode() ? 1 : 0; break;
+                default: return null;
+            }
+        }
+        return weights;
+    }
+    
+    private String labelOf(HistoryQuery.Dimension dimension, int code) {
+        switch (dimension) {
+            case SONG: return songLabels[code];
+            case ARTIST: return artists.values.get(code);
+            case ALBUM: return albums.values.get(code);
+            case FOLDER: return folders.values.get(code);
+            case WEEKDAY: return DayOfWeek.of(code + 1).getDisplayName(TextStyle.SHORT, Locale.getDefault());
+            case HOUR: return String.format("%02d:00", code);
+            case YEAR: return String.valueOf(LocalDate.ofEpochDay(firstDay).getYear() + code);
+            default: return YearMonth.from(LocalDate.ofEpochDay(firstDay)).plusMonths(code).toString();
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void clear() {
+        size = 0;
+        songCount = 0;
+        firstDay = Integer.MAX_VALUE;
+        lastDay = Integer.MIN_VALUE;
+        artists.clear();
+        albums.clear();
+        folders.clear();
+    }
+}
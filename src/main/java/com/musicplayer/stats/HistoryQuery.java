@@ -0,0 +1,90 @@
+package com.musicplayer.stats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ad-hoc question about the play history: filter, group-by and one measure
+ * Built fluently and run by EventTable.execute, e.g. plays by artist and weekday:
+ * new HistoryQuery().groupBy(Dimension.ARTIST, Dimension.WEEKDAY).measure(Measure.PLAYS)
+ */
+public class HistoryQuery {
+    public enum Dimension {
+        SONG(false), ARTIST(false), ALBUM(false), FOLDER(false),
+        WEEKDAY(true), HOUR(true), MONTH(true), YEAR(true);
+        
+        private final boolean time;
+        
+        Dimension(boolean time) {
+            this.time = time;
+        }
+        
+        public boolean isTime() {
+            return time;
+        }
+    }
+    
+    public enum Measure {
+        LISTENS("listens"),
+        PLAYS("plays"),
+        SKIPS("skips"),
+        MINUTES("minutes"),
+        COMPLETION("completion");
+        
+        private final String label;
+        
+        Measure(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    public static final int MAX_DIMENSIONS = 2;
+    
+    private final List<Dimension> dimensions = new ArrayList<>();
+    private Measure measure = Measure.PLAYS;
+    private String artist;
+    private LocalDate from;
+    private LocalDate to;
+    
+    public HistoryQuery groupBy(Dimension... dimensions) {
+        if (this.dimensions.size() + dimensions.length > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("At most " + MAX_DIMENSIONS + " group-by dimensions");
+        }
+        Collections.addAll(this.dimensions, dimensions);
+        return this;
+    }
+    
+    public HistoryQuery measure(Measure measure) {
+        this.measure = measure;
+        return this;
+    }
+    
+    /**
+     * Only events of songs by this artist (exact name).
+     */
+    public HistoryQuery whereArtist(String artist) {
+        this.artist = artist;
+        return this;
+    }
+    
+    /**
+     * Only events on these local days, both included; null leaves that end open.
+     */
+    public HistoryQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+    
+    public List<Dimension> getDimensions() { return Collections.unmodifiableList(dimensions); }
+    public Measure getMeasure() { return measure; }
+    public String getArtist() { return artist; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+}
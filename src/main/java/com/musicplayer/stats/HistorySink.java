@@ -0,0 +1,15 @@
+package com.musicplayer.stats;
+
+import java.io.IOException;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Receives play events one at a time, as an export is written or read back
+ */
+public interface HistorySink {
+    /**
+     * @param source ID of the machine the event was recorded on
+     */
+    void event(String source, Song song, PlayEventType type, long timestampMillis, int seconds) throws IOException;
+}
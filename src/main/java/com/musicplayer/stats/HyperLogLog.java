@@ -0,0 +1,79 @@
+package com.musicplayer.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog: approximate number of distinct keys in fixed memory
+ * The first p bits of a key's hash pick a register, which keeps the longest run
+ * of leading zeros seen in the remaining bits. With m = 2^p registers the
+ * standard error is about 1.04 / sqrt(m). Sketches merge by taking the larger
+ * register.
+ */
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+    
+    public HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+    
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit caps the run if every remaining bit is zero
+        long rest = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+    
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small cardinalities: linear counting is more accurate
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+    
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("HyperLogLog precisions differ");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+    
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+    
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+    
+    public void read(DataInputStream in) throws IOException {
+        if (in.readByte() != precision) {
+            throw new IOException("HyperLogLog precision changed");
+        }
+        in.readFully(registers);
+    }
+}
@@ -0,0 +1,326 @@
+package com.musicplayer.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Fixed-memory listening statistics built from probabilistic sketches
+ * Play counts per song come from a Count-Min Sketch, distinct songs and artists
+ * (overall and per day) from HyperLogLogs, and the most played and trending songs
+ * from Space-Saving summaries. Memory stays the same however many songs are
+ * played, and every structure merges, so several listeners' sketches can be
+ * combined. Totals of plays and seconds are exact.
+ */
+public class ListeningSketches {
+    public static final int DAYS = 30;
+    public static final int TRENDING_DAYS = 7;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CMS_WIDTH = 1 << 14;
+    private static final int CMS_DEPTH = 5;
+    private static final int HLL_PRECISION = 14;
+    private static final int DAY_HLL_PRECISION = 10;
+    private static final int TOP_SONGS = 1000;
+    private static final int TOP_ARTISTS = 200;
+    private static final int DAY_SONGS = 200;
+    
+    private static final SpaceSaving.KeyCodec<Song> SONG_CODEC = new SpaceSaving.KeyCodec<Song>() {
+        @Override
+        public void write(DataOutputStream out, Song song) throws IOException {
+            out.writeUTF(song.getTitle());
+            out.writeUTF(song.getArtist());
+            out.writeUTF(song.getAlbum() == null ? "" : song.getAlbum());
+            out.writeInt(song.getDuration());
+            out.writeUTF(song.getFilePath() == null ? "" : song.getFilePath());
+        }
+        
+        @Override
+        public Song read(DataInputStream in) throws IOException {
+            return new Song(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF());
+        }
+    };
+    
+    private static final SpaceSaving.KeyCodec<String> STRING_CODEC = new SpaceSaving.KeyCodec<String>() {
+        @Override
+        public void write(DataOutputStream out, String key) throws IOException {
+            out.writeUTF(key);
+        }
+        
+        @Override
+        public String read(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+    };
+    
+    /**
+     * One local day, kept in a ring of DAYS.
+     */
+    private static final class Day {
+        long epochDay = Long.MIN_VALUE;
+        final HyperLogLog songs = new HyperLogLog(DAY_HLL_PRECISION);
+        final HyperLogLog artists = new HyperLogLog(DAY_HLL_PRECISION);
+        final SpaceSaving<Song> topSongs = new SpaceSaving<>(DAY_SONGS);
+        
+        void reset(long day) {
+            epochDay = day;
+            songs.clear();
+            artists.clear();
+            topSongs.clear();
+        }
+    }
+    
+    private final CountMinSketch songPlays;
+    private final HyperLogLog uniqueSongs;
+    private final HyperLogLog uniqueArtists;
+    private final SpaceSaving<Song> topSongs;
+    private final SpaceSaving<String> topArtists;
+    private final Day[] days;
+    private long totalPlays;
+    private long totalSeconds;
+    
+    public ListeningSketches() {
+        this.songPlays = new CountMinSketch(CMS_WIDTH, CMS_DEPTH);
+        this.uniqueSongs = new HyperLogLog(HLL_PRECISION);
+        this.uniqueArtists = new HyperLogLog(HLL_PRECISION);
+        this.topSongs = new SpaceSaving<>(TOP_SONGS);
+        this.topArtists = new SpaceSaving<>(TOP_ARTISTS);
+        this.days = new Day[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            days[i] = new Day();
+        }
+    }
+    
+    /**
+     * @param epochDay local day of the event
+     * @param plays    1 for a counted play, 0 for time listened without one
+     */
+    public void record(Song song, long epochDay, int plays, long seconds) {
+        totalSeconds += seconds;
+        if (plays == 0) return;
+        
+        totalPlays += plays;
+        long songHash = hash(song);
+        long artistHash = hash(song.getArtist());
+        songPlays.add(songHash, plays);
+        uniqueSongs.add(songHash);
+        uniqueArtists.add(artistHash);
+        topSongs.offer(song, plays);
+        topArtists.offer(song.getArtist(), plays);
+        
+        Day day = dayFor(epochDay, true);
+        if (day != null) {
+            day.songs.add(songHash);
+            day.artists.add(artistHash);
+            day.topSongs.offer(song, plays);
+        }
+    }
+    
+    /**
+     * Seeds the all-time sketches from exact per-song totals.
+     */
+    public void seed(Song song, int plays) {
+        if (plays <= 0) return;
+        
+        totalPlays += plays;
+        long songHash = hash(song);
+        songPlays.add(songHash, plays);
+        uniqueSongs.add(songHash);
+        uniqueArtists.add(hash(song.getArtist()));
+        topSongs.offer(song, plays);
+        topArtists.offer(song.getArtist(), plays);
+    }
+    
+    public void addSeconds(long seconds) {
+        totalSeconds += seconds;
+    }
+    
+    private Day dayFor(long epochDay, boolean create) {
+        Day day = days[(int) Math.floorMod(epochDay, (long) DAYS)];
+        if (day.epochDay == epochDay) return day;
+        if (!create || day.epochDay > epochDay) return null;
+        day.reset(epochDay);
+        return day;
+    }
+    
+    /**
+     * @return upper-bound estimate of the song's plays
+     */
+    public long estimatePlays(Song song) {
+        return songPlays.estimate(hash(song));
+    }
+    
+    public List<Song> getTopSongs(int limit) {
+        return topSongs.top(limit);
+    }
+    
+    public long getTopSongCount(Song song) {
+        return topSongs.getCount(song);
+    }
+    
+    public long getTopSongError(Song song) {
+        return topSongs.getError(song);
+    }
+    
+    public List<String> getTopArtists(int limit) {
+        return topArtists.top(limit);
+    }
+    
+    public long getTopArtistCount(String artist) {
+        return topArtists.getCount(artist);
+    }
+    
+    /**
+     * Most played songs over the last TRENDING_DAYS days, merged from the daily summaries.
+     */
+    public SpaceSaving<Song> trending(long today) {
+        SpaceSaving<Song> merged = new SpaceSaving<>(DAY_SONGS);
+        for (long epochDay = today - TRENDING_DAYS + 1; epochDay <= today; epochDay++) {
+            Day day = dayFor(epochDay, false);
+            if (day != null) {
+                merged.merge(day.topSongs);
+            }
+        }
+        return merged;
+    }
+    
+    public List<Song> getTopSongsOn(long epochDay, int limit) {
+        Day day = dayFor(epochDay, false);
+        return day != null ? day.topSongs.top(limit) : Collections.emptyList();
+    }
+    
+    public long estimateUniqueSongs() {
+        return uniqueSongs.estimate();
+    }
+    
+    public long estimateUniqueArtists() {
+        return uniqueArtists.estimate();
+    }
+    
+    public long estimateUniqueSongsOn(long epochDay) {
+        Day day = dayFor(epochDay, false);
+        return day != null ? day.songs.estimate() : 0;
+    }
+    
+    public long estimateUniqueArtistsOn(long epochDay) {
+        Day day = dayFor(epochDay, false);
+        return day != null ? day.artists.estimate() : 0;
+    }
+    
+    /**
+     * Adds another listener's sketches to these.
+     */
+    public void merge(ListeningSketches other) {
+        songPlays.merge(other.songPlays);
+        uniqueSongs.merge(other.uniqueSongs);
+        uniqueArtists.merge(other.uniqueArtists);
+        topSongs.merge(other.topSongs);
+        topArtists.merge(other.topArtists);
+        for (Day theirs : other.days) {
+            if (theirs.epochDay == Long.MIN_VALUE) continue;
+            Day ours = dayFor(theirs.epochDay, true);
+            if (ours != null) {
+                ours.songs.merge(theirs.songs);
+                ours.artists.merge(theirs.artists);
+                ours.topSongs.merge(theirs.topSongs);
+            }
+        }
+        totalPlays += other.totalPlays;
+        totalSeconds += other.totalSeconds;
+    }
+    
+    // Error bounds
+    public long getPlayCountError() { return songPlays.getErrorBound(); }
+    public double getPlayCountConfidence() { return songPlays.getConfidence(); }
+    public double getUniqueError() { return uniqueSongs.getStandardError(); }
+    public double getDailyUniqueError() { return days[0].songs.getStandardError(); }
+    public long getTopSongsErrorBound() { return topSongs.getErrorBound(); }
+    
+    public long getTotalPlays() { return totalPlays; }
+    public long getTotalSeconds() { return totalSeconds; }
+    
+    public void clear() {
+        songPlays.clear();
+        uniqueSongs.clear();
+        uniqueArtists.clear();
+        topSongs.clear();
+        topArtists.clear();
+        for (Day day : days) {
+            day.reset(Long.MIN_VALUE);
+        }
+        totalPlays = 0;
+        totalSeconds = 0;
+    }
+    
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(totalPlays);
+        out.writeLong(totalSeconds);
+        songPlays.write(out);
+        uniqueSongs.write(out);
+        uniqueArtists.write(out);
+        topSongs.write(out, SONG_CODEC);
+        topArtists.write(out, STRING_CODEC);
+        for (Day day : days) {
+            out.writeLong(day.epochDay);
+            if (day.epochDay == Long.MIN_VALUE) continue;
+            day.songs.write(out);
+            day.artists.write(out);
+            day.topSongs.write(out, SONG_CODEC);
+        }
+    }
+    
+    public void read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown sketch format");
+        }
+        totalPlays = in.readLong();
+        totalSeconds = in.readLong();
+        songPlays.read(in);
+        uniqueSongs.read(in);
+        uniqueArtists.read(in);
+        topSongs.read(in, SONG_CODEC);
+        topArtists.read(in, STRING_CODEC);
+        for (Day day : days) {
+            day.reset(in.readLong());
+            if (day.epochDay == Long.MIN_VALUE) continue;
+            day.songs.read(in);
+            day.artists.read(in);
+            day.topSongs.read(in, SONG_CODEC);
+        }
+    }
+    
+    /**
+     * Same identity as Song.equals: title and artist.
+     */
+    private static long hash(Song song) {
+        return mix(fnv(fnv(0xcbf29ce484222325L, song.getTitle()) ^ 0x1F, song.getArtist()));
+    }
+    
+    private static long hash(String key) {
+        return mix(fnv(0xcbf29ce484222325L, key));
+    }
+    
+    private static long fnv(long h, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+    
+    /**
+     * SplitMix64 finalizer; FNV alone leaves the high bits, which HyperLogLog
+     * uses to pick a register, poorly mixed.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,236 @@
+package com.musicplayer.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Plays and seconds listened per minute, hour, day and month of local time
+ * Each resolution is a ring of primitive counters covering a fixed span, and every
+ * event is added to all four, so coarse queries never sum fine buckets. Buckets are
+ * numbered from the local epoch: hour 0 starts at local midnight on 1970-01-01,
+ * which makes the hour of day simply bucket % 24.
+ */
+public class ListeningTimeSeries {
+    public enum Resolution {
+        MINUTE(7 * 24 * 60),     // one week
+        HOUR(400 * 24),          // over a year
+        DAY(20 * 366),           // twenty years
+        MONTH(100 * 12);         // a lifetime
+        
+        private final int slots;
+        
+        Resolution(int slots) {
+            this.slots = slots;
+        }
+        
+        public int getSlots() {
+            return slots;
+        }
+    }
+    
+    private static final int FORMAT_VERSION = 1;
+    
+    /**
+     * One resolution: slot = bucket mod size, tagged with the bucket it holds.
+     */
+    private static final class Ring {
+        final long[] buckets;
+        final int[] plays;
+        final long[] seconds;
+        
+        Ring(int size) {
+            buckets = new long[size];
+            plays = new int[size];
+            seconds = new long[size];
+            Arrays.fill(buckets, Long.MIN_VALUE);
+        }
+        
+        void add(long bucket, int playDelta, long secondDelta) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            if (buckets[slot] != bucket) {
+                // Older than the ring covers; the coarser rings still count it
+                if (buckets[slot] > bucket) return;
+                buckets[slot] = bucket;
+                plays[slot] = 0;
+                seconds[slot] = 0;
+            }
+            plays[slot] += playDelta;
+            seconds[slot] += secondDelta;
+        }
+        
+        int plays(long bucket) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            return buckets[slot] == bucket ? plays[slot] : 0;
+        }
+        
+        long seconds(long bucket) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            return buckets[slot] == bucket ? seconds[slot] : 0;
+        }
+        
+        void clear() {
+            Arrays.fill(buckets, Long.MIN_VALUE);
+            Arrays.fill(plays, 0);
+            Arrays.fill(seconds, 0);
+        }
+    }
+    
+    private final ZoneRules zone;
+    private final Ring[] rings;
+    // Month lookups go through LocalDate; consecutive events are usually on the same day
+    private long cachedDay = Long.MIN_VALUE;
+    private long cachedMonth;
+    
+    public ListeningTimeSeries() {
+        this(ZoneId.systemDefault());
+    }
+    
+    public ListeningTimeSeries(ZoneId zone) {
+        this.zone = zone.getRules();
+        Resolution[] resolutions = Resolution.values();
+        this.rings = new Ring[resolutions.length];
+        for (Resolution resolution : resolutions) {
+            rings[resolution.ordinal()] = new Ring(resolution.getSlots());
+        }
+    }
+    
+    /**
+     * @param plays   counted plays (0 for a skip or a short partial play)
+     * @param seconds time listened
+     */
+    public void record(long epochMillis, int plays, long seconds) {
+        long minute = Math.floorDiv(localSeconds(epochMillis), 60);
+        long hour = Math.floorDiv(minute, 60);
+        long day = Math.floorDiv(hour, 24);
+        rings[Resolution.MINUTE.ordinal()].add(minute, plays, seconds);
+        rings[Resolution.HOUR.ordinal()].add(hour, plays, seconds);
+        rings[Resolution.DAY.ordinal()].add(day, plays, seconds);
+        rings[Resolution.MONTH.ordinal()].add(monthOfDay(day), plays, seconds);
+    }
+    
+    /**
+     * @return the bucket containing the instant, at the given resolution
+     */
+    public long bucketOf(Resolution resolution, long epochMillis) {
+        long minute = Math.floorDiv(localSeconds(epochMillis), 60);
+        switch (resolution) {
+            case MINUTE:
+                return minute;
+            case HOUR:
+                return Math.floorDiv(minute, 60);
+            case DAY:
+                return Math.floorDiv(minute, 60 * 24);
+            default:
+                return monthOfDay(Math.floorDiv(minute, 60 * 24));
+        }
+    }
+    
+    public int getPlays(Resolution resolution, long bucket) {
+        return rings[resolution.ordinal()].plays(bucket);
+    }
+    
+    public long getSeconds(Resolution resolution, long bucket) {
+        return rings[resolution.ordinal()].seconds(bucket);
+    }
+    
+    /**
+     * Plays in buckets [from, to), read from one ring in O(to - from).
+     */
+    public long sumPlays(Resolution resolution, long from, long to) {
+        Ring ring = rings[resolution.ordinal()];
+        long total = 0;
+        for (long bucket = Math.max(from, to - ring.buckets.length); bucket < to; bucket++) {
+            total += ring.plays(bucket);
+        }
+        return total;
+    }
+    
+    /**
+     * Plays per hour of day (0-23) over the last days, ending with the current hour.
+     */
+    public long[] playsByHourOfDay(long nowMillis, int days) {
+        Ring ring = rings[Resolution.HOUR.ordinal()];
+        long now = bucketOf(Resolution.HOUR, nowMillis);
+        long from = Math.max(now + 1 - (long) days * 24, now + 1 - ring.buckets.length);
+        long[] byHour = new long[24];
+        for (long hour = from; hour <= now; hour++) {
+            byHour[(int) Math.floorMod(hour, 24L)] += ring.plays(hour);
+        }
+        return byHour;
+    }
+    
+    private long localSeconds(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        return instant.getEpochSecond() + zone.getOffset(instant).getTotalSeconds();
+    }
+    
+    private long monthOfDay(long day) {
+        if (day != cachedDay) {
+            cachedMonth = monthBucket(LocalDate.ofEpochDay(day));
+            cachedDay = day;
+        }
+        return cachedMonth;
+    }
+    
+    /**
+     * Months are numbered from January 1970.
+     */
+    public static long monthBucket(LocalDate date) {
+        return (date.getYear() - 1970) * 12L + date.getMonthValue() - 1;
+    }
+    
+    /**
+     * Adds plays to one day (and its month) directly, for data kept only per day.
+     */
+    public void recordDay(LocalDate date, int plays, long seconds) {
+        rings[Resolution.DAY.ordinal()].add(date.toEpochDay(), plays, seconds);
+        rings[Resolution.MONTH.ordinal()].add(monthBucket(date), plays, seconds);
+    }
+    
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(rings.length);
+        for (Ring ring : rings) {
+            int used = 0;
+            for (long bucket : ring.buckets) {
+                if (bucket != Long.MIN_VALUE) used++;
+            }
+            out.writeInt(used);
+            for (int slot = 0; slot < ring.buckets.length; slot++) {
+                if (ring.buckets[slot] == Long.MIN_VALUE) continue;
+                out.writeLong(ring.buckets[slot]);
+                out.writeInt(ring.plays[slot]);
+                out.writeLong(ring.seconds[slot]);
+            }
+        }
+    }
+    
+    public void read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown time-series format");
+        }
+        int count = in.readInt();
+        if (count != rings.length) {
+            throw new IOException("Unexpected time-series resolutions: " + count);
+        }
+        for (Ring ring : rings) {
+            int used = in.readInt();
+            for (int i = 0; i < used; i++) {
+                ring.add(in.readLong(), in.readInt(), in.readLong());
+            }
+        }
+    }
+    
+    public void clear() {
+        for (Ring ring : rings) {
+            ring.clear();
+        }
+        cachedDay = Long.MIN_VALUE;
+    }
+}
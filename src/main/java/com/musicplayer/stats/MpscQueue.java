@@ -0,0 +1,72 @@
+package com.musicplayer.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer
+ * Producers claim a slot with one CAS on the tail and then fill it; the consumer
+ * treats an unfilled slot as the end of the queue. A slot is reused only after the
+ * consumer has emptied it and moved its published head past it.
+ */
+public final class MpscQueue<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail;
+    private volatile long head;
+    
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+    }
+    
+    /**
+     * @return the item's sequence number (0, 1, 2, ...), or -1 if the queue is full
+     */
+    public long offer(E item) {
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head > mask) return -1;
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                // A volatile store, so a consumer that then goes to sleep is seen to
+                slots.set((int) claimed & mask, item);
+                return claimed;
+            }
+        }
+    }
+    
+    /**
+     * Consumer only.
+     *
+     * @return the oldest item, or null if there is none (or it is still being written)
+     */
+    public E poll() {
+        long current = head;
+        int slot = (int) current & mask;
+        E item = slots.get(slot);
+        if (item == null) return null;
+        slots.lazySet(slot, null);
+        head = current + 1;
+        return item;
+    }
+    
+    /**
+     * @return sequence number the next offer will get; everything below has been claimed
+     */
+    public long getTail() {
+        return tail.get();
+    }
+    
+    public boolean isEmpty() {
+        return slots.get((int) head & mask) == null;
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,29 @@
+package com.musicplayer.stats;
+
+/**
+ * What happened to a song, as stored in the play-event log
+ * Each listen is logged once, when it ends, stamped with the time it started; so
+ * there is no separate start event. Code 1 is reserved for one.
+ */
+public enum PlayEventType {
+    COMPLETED(2),
+    PARTIAL(3),
+    SKIPPED(4);
+    
+    private final int code;
+    
+    PlayEventType(int code) {
+        this.code = code;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    public static PlayEventType fromCode(int code) {
+        for (PlayEventType type : values()) {
+            if (type.code == code) return type;
+        }
+        throw new IllegalArgumentException("Unknown play event type: " + code);
+    }
+}
@@ -0,0 +1,75 @@
+package com.musicplayer.stats;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Random;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Times HistoryQuery over a synthetic history of many millions of events
+ * Events spread over three years of listening, with the same skewed song
+ * popularity as RankingBenchmark.
+ */
+public class QueryBenchmark {
+    private static final int SONGS = 100_000;
+    private static final long HISTORY_MILLIS = 3L * 365 * 24 * 3600 * 1000;
+    
+    private final EventTable table;
+    private final int events;
+    private final long buildNanos;
+    
+    public QueryBenchmark(int events) {
+        this.events = events;
+        this.table = new EventTable(ZoneId.systemDefault());
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < SONGS; i++) {
+            table.addSong(i, new Song("Song " + i, "Artist " + (i % 5000), "Album " + (i / 12), 180 + i % 240,
+                                      "/music/folder" + (i % 300) + "/" + i + ".mp3"));
+        }
+        Random random = new Random(1234);
+        PlayEventType[] types = PlayEventType.values();
+        long end = System.currentTimeMillis();
+        for (int i = 0; i < events; i++) {
+            double u = random.nextDouble();
+            // Events arrive in time order, as they do in the log
+            long timestamp = end - HISTORY_MILLIS + HISTORY_MILLIS / events * i;
+            table.add((int) (u * u * SONGS), types[random.nextInt(types.length)], timestamp,
+                      random.nextInt(400));
+        }
+        this.buildNanos = System.nanoTime() - start;
+    }
+    
+    public void run(int queries) {
+        System.out.printf("\n[BENCH] === History queries, %,d events ===\n", events);
+        System.out.printf("  %-32s %8.0f ns/event\n", "load into columns", (double) buildNanos / events);
+        
+        time("plays by artist x weekday", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.ARTIST, HistoryQuery.Dimension.WEEKDAY));
+        time("completion by album", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.ALBUM).measure(HistoryQuery.Measure.COMPLETION));
+        time("plays per folder", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.FOLDER));
+        time("minutes by month", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.MONTH).measure(HistoryQuery.Measure.MINUTES));
+        time("skips by song, last 30 days", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.SONG).measure(HistoryQuery.Measure.SKIPS)
+                .between(LocalDate.now().minusDays(29), null));
+        time("one artist by hour", queries, new HistoryQuery()
+                .groupBy(HistoryQuery.Dimension.HOUR).whereArtist("Artist 7"));
+    }
+    
+    private void time(String label, int queries, HistoryQuery query) {
+        QueryResult result = null;
+        long best = Long.MAX_VALUE;
+        // Best of several runs, after a warm-up run
+        for (int pass = 0; pass <= queries; pass++) {
+            long start = System.nanoTime();
+            result = table.execute(query);
+            long elapsed = System.nanoTime() - start;
+            if (pass > 0) best = Math.min(best, elapsed);
+        }
+        System.out.printf("  %-32s %8.1f ms  (%,d rows)\n", label, best / 1e6, result.getRows().size());
+    }
+}
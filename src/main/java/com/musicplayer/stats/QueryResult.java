@@ -0,0 +1,49 @@
+package com.musicplayer.stats;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows produced by a HistoryQuery, in display order
+ */
+public class QueryResult {
+    public static final class Row {
+        private final String[] keys;
+        private final double value;
+        private final long events;
+        // Index of the group, in the order of its keys
+        final long group;
+        
+        Row(String[] keys, double value, long events, long group) {
+            this.keys = keys;
+            this.value = value;
+            this.events = events;
+            this.group = group;
+        }
+        
+        public String[] getKeys() { return keys.clone(); }
+        public double getValue() { return value; }
+        
+        /**
+         * @return events that went into this row
+         */
+        public long getEvents() { return events; }
+    }
+    
+    private final HistoryQuery query;
+    private final List<Row> rows;
+    private final long scanned;
+    private final long elapsedNanos;
+    
+    QueryResult(HistoryQuery query, List<Row> rows, long scanned, long elapsedNanos) {
+        this.query = query;
+        this.rows = rows;
+        this.scanned = scanned;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public HistoryQuery getQuery() { return query; }
+    public List<Row> getRows() { return Collections.unmodifiableList(rows); }
+    public long getScanned() { return scanned; }
+    public double getElapsedMillis() { return elapsedNanos / 1_000_000.0; }
+}
@@ -0,0 +1,121 @@
+package com.musicplayer.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keys kept in descending order of a score that changes over time
+ * A changed score re-positions one node in a balanced tree (O(log n)), and the top
+ * k are the first k nodes (O(k)), so rankings are never sorted from scratch.
+ * Equal scores keep the order in which keys were first seen.
+ */
+public class Ranking<K> implements Iterable<K> {
+    private static final class Node<K> {
+        final K key;
+        final long sequence;
+        long score;
+        
+        Node(K key, long sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+    
+    private final Map<K, Node<K>> nodes;
+    private final TreeSet<Node<K>> sorted;
+    private long sequence;
+    
+    public Ranking() {
+        this.nodes = new HashMap<>();
+        this.sorted = new TreeSet<>((a, b) -> {
+            if (a.score != b.score) return a.score > b.score ? -1 : 1;
+            return Long.compare(a.sequence, b.sequence);
+        });
+    }
+    
+    /**
+     * Adds delta to the key's score, starting from 0 for a new key.
+     */
+    public void add(K key, long delta) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            set(key, delta);
+            return;
+        }
+        // The tree orders by score, so the node must leave it while the score changes
+        sorted.remove(node);
+        node.score += delta;
+        sorted.add(node);
+    }
+    
+    public void set(K key, long score) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key, sequence++);
+            nodes.put(key, node);
+        } else {
+            sorted.remove(node);
+        }
+        node.score = score;
+        sorted.add(node);
+    }
+    
+    /**
+     * @return up to limit keys, highest score first
+     */
+    public List<K> top(int limit) {
+        List<K> result = new ArrayList<>(Math.max(0, Math.min(limit, nodes.size())));
+        Iterator<Node<K>> it = sorted.iterator();
+        while (result.size() < limit && it.hasNext()) {
+            result.add(it.next().key);
+        }
+        return result;
+    }
+    
+    /**
+     * Iterates keys from the highest score down.
+     */
+    @Override
+    public Iterator<K> iterator() {
+        Iterator<Node<K>> it = sorted.iterator();
+        return new Iterator<K>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            
+            @Override
+            public K next() {
+                return it.next().key;
+            }
+        };
+    }
+    
+    public long getScore(K key) {
+        Node<K> node = nodes.get(key);
+        return node != null ? node.score : 0;
+    }
+    
+    public int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * Drops the lowest-scoring keys until at most limit remain.
+     */
+    public void trimTo(int limit) {
+        while (nodes.size() > limit) {
+            nodes.remove(sorted.pollLast().key);
+        }
+    }
+    
+    public void clear() {
+        nodes.clear();
+        sorted.clear();
+        sequence = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.musicplayer.stats;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import com.musicplayer.model.Song;
+
+/**
+ * Compares maintained rankings with sorting the play-count map on every query
+ * Plays follow a skewed distribution over the song catalogue, as real listening
+ * does: a few songs get most of the plays, most songs get one or two.
+ */
+public class RankingBenchmark {
+    private static final int[] LIMITS = {1, 10, 100};
+    
+    private final Song[] songs;
+    private final int[] plays;
+    
+    public RankingBenchmark(int songCount, int playCount) {
+        this.songs = new Song[songCount];
+        for (int i = 0; i < songCount; i++) {
+            songs[i] = new Song("Song " + i, "Artist " + (i % 5000), "Album " + (i / 12), 180 + i % 240,
+                                "/music/" + i + ".mp3");
+        }
+        Random random = new Random(1234);
+        this.plays = new int[playCount];
+        for (int i = 0; i < playCount; i++) {
+            // Squaring a uniform value favours low indices
+            double u = random.nextDouble();
+            plays[i] = (int) (u * u * songCount);
+        }
+    }
+    
+    public void run(int queries) {
+        System.out.printf("\n[BENCH] === Top-k rankings, %,d songs, %,d plays ===\n", songs.length, plays.length);
+        
+        // Every song is played at least once, so the map holds the whole catalogue
+        Map<Song, Integer> playCount = new HashMap<>();
+        long start = System.nanoTime();
+        for (Song song : songs) {
+            playCount.merge(song, 1, Integer::sum);
+        }
+        for (int index : plays) {
+            playCount.merge(songs[index], 1, Integer::sum);
+        }
+        long mapNanos = System.nanoTime() - start;
+        
+        Ranking<Song> ranking = new Ranking<>();
+        start = System.nanoTime();
+        for (Song song : songs) {
+            ranking.add(song, 1);
+        }
+        for (int index : plays) {
+            ranking.add(songs[index], 1);
+        }
+        long rankingNanos = System.nanoTime() - start;
+        
+        int updates = songs.length + plays.length;
+        // MusicStatistics keeps its maps, so maintaining rankings adds the second cost to the first
+        System.out.printf("  %-18s %8.0f ns/play\n", "count map update", (double) mapNanos / updates);
+        System.out.printf("  %-18s %8.0f ns/play\n", "ranking update", (double) rankingNanos / updates);
+        
+        for (int limit : LIMITS) {
+            List<Song> sorted = null;
+            List<Song> maintained = null;
+            long sortNanos = Long.MAX_VALUE;
+            long topNanos = Long.MAX_VALUE;
+            // Best of several runs, after a warm-up run of each
+            for (int pass = 0; pass <= queries; pass++) {
+                start = System.nanoTime();
+                sorted = sortedTop(playCount, limit);
+                long elapsed = System.nanoTime() - start;
+                if (pass > 0) sortNanos = Math.min(sortNanos, elapsed);
+                
+                start = System.nanoTime();
+                for (int repeat = 0; repeat < 1000; repeat++) {
+                    maintained = ranking.top(limit);
+                }
+                elapsed = (System.nanoTime() - start) / 1000;
+                if (pass > 0) topNanos = Math.min(topNanos, elapsed);
+            }
+            
+            boolean same = sameCounts(sorted, maintained, playCount);
+            System.out.printf("  top %-4d sort %10.3f ms | maintained %8.3f us  (%,.0fx)%s\n", limit,
+                             sortNanos / 1e6, topNanos / 1e3, (double) sortNanos / Math.max(1, topNanos),
+                             same ? "" : "  X results differ");
+        }
+    }
+    
+    /**
+     * What MusicStatistics.getTopSongs did before rankings were maintained.
+     */
+    private static List<Song> sortedTop(Map<Song, Integer> playCount, int limit) {
+        return playCount.entrySet().stream()
+                .sorted(Map.Entry.<Song, Integer>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Ties may be broken differently, so results are compared by count.
+     */
+    private static boolean sameCounts(List<Song> a, List<Song> b, Map<Song, Integer> playCount) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!playCount.get(a.get(i)).equals(playCount.get(b.get(i)))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.musicplayer.stats;
+
+/**
+ * Listening totals kept up to date as events arrive, so overviews never rescan
+ * Diversity is the Shannon entropy of plays over songs. It is kept as the running
+ * sum of c·ln c over every song's play count c: a song's next play changes that by
+ * (c+1)·ln(c+1) − c·ln c, and N plays in total have entropy ln N − sum / N.
+ */
+public class RunningTotals {
+    private long plays;
+    private long seconds;
+    // Sum of c·ln c over the play count c of every song
+    private double countLogSum;
+    private long sessions;
+    private long sessionMinutes;
+    private long sessionSongs;
+    
+    /**
+     * @param previousPlays the song's play count before this play
+     */
+    public void addPlay(long previousPlays) {
+        plays++;
+        countLogSum += xLogX(previousPlays + 1) - xLogX(previousPlays);
+    }
+    
+    public void addSeconds(long seconds) {
+        this.seconds += seconds;
+    }
+    
+    public void addSession(long minutes, int songs) {
+        sessions++;
+        sessionMinutes += minutes;
+        sessionSongs += songs;
+    }
+    
+    /**
+     * Restores the totals from a snapshot, along with seedSong for every song.
+     */
+    public void seed(long plays, long seconds) {
+        this.plays = plays;
+        this.seconds = seconds;
+    }
+    
+    public void seedSong(long songPlays) {
+        countLogSum += xLogX(songPlays);
+    }
+    
+    private static double xLogX(long x) {
+        return x > 1 ? x * Math.log(x) : 0;
+    }
+    
+    /**
+     * @return entropy of plays over songs, in bits
+     */
+    public double getEntropyBits() {
+        if (plays == 0) return 0;
+        // Rounding in the running sum can leave a hair below zero
+        return Math.max(0, Math.log(plays) - countLogSum / plays) / Math.log(2);
+    }
+    
+    /**
+     * @return entropy relative to the most possible over this many songs: 0 when
+     *         one song gets every play, 1 when all are played equally
+     */
+    public double getDiversity(long uniqueSongs) {
+        if (uniqueSongs < 2) return 0;
+        return Math.min(1, getEntropyBits() / (Math.log(uniqueSongs) / Math.log(2)));
+    }
+    
+    /**
+     * @return how many songs, played equally often, would spread plays as evenly
+     */
+    public double getEffectiveSongs() {
+        return Math.pow(2, getEntropyBits());
+    }
+    
+    public long getPlays() { return plays; }
+    public long getSeconds() { return seconds; }
+    public long getSessions() { return sessions; }
+    
+    public double getAverageSessionMinutes() {
+        return sessions == 0 ? 0 : (double) sessionMinutes / sessions;
+    }
+    
+    public double getAverageSessionSongs() {
+        return sessions == 0 ? 0 : (double) sessionSongs / sessions;
+    }
+    
+    public void clear() {
+        plays = 0;
+        seconds = 0;
+        countLogSum = 0;
+        sessions = 0;
+        sessionMinutes = 0;
+        sessionSongs = 0;
+    }
+}
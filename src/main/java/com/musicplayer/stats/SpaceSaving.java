@@ -0,0 +1,189 @@
+package com.musicplayer.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving: the most frequent keys of a stream, tracked in k counters
+ * A key without a counter takes over the smallest one and inherits its count as
+ * possible error. Every key seen more than total / k times is guaranteed to hold
+ * a counter, and no count is too high by more than its recorded error.
+ */
+public class SpaceSaving<K> {
+    /**
+     * Writes and reads keys for persistence.
+     */
+    public interface KeyCodec<K> {
+        void write(DataOutputStream out, K key) throws IOException;
+        
+        K read(DataInputStream in) throws IOException;
+    }
+    
+    private static final class Counter<K> {
+        final K key;
+        final long sequence;
+        long count;
+        long error;
+        
+        Counter(K key, long sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+    
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    // Ascending, so first() is the counter to evict
+    private final TreeSet<Counter<K>> byCount;
+    private long total;
+    private long sequence;
+    
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.byCount = new TreeSet<>((a, b) -> {
+            if (a.count != b.count) return a.count < b.count ? -1 : 1;
+            return Long.compare(a.sequence, b.sequence);
+        });
+    }
+    
+    public void offer(K key, long weight) {
+        total += weight;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+            byCount.add(counter);
+            return;
+        }
+        
+        long inherited = 0;
+        if (counters.size() >= capacity) {
+            Counter<K> evicted = byCount.pollFirst();
+            counters.remove(evicted.key);
+            inherited = evicted.count;
+        }
+        counter = new Counter<>(key, sequence++);
+        counter.count = inherited + weight;
+        counter.error = inherited;
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+    
+    /**
+     * @return up to limit keys, most frequent first
+     */
+    public List<K> top(int limit) {
+        List<K> result = new ArrayList<>(Math.min(limit, counters.size()));
+        Iterator<Counter<K>> it = byCount.descendingIterator();
+        while (result.size() < limit && it.hasNext()) {
+            result.add(it.next().key);
+        }
+        return result;
+    }
+    
+    /**
+     * @return estimated count (an upper bound), or 0 if the key holds no counter
+     */
+    public long getCount(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter != null ? counter.count : 0;
+    }
+    
+    /**
+     * @return how much of getCount(key) may be inherited from evicted keys
+     */
+    public long getError(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter != null ? counter.error : 0;
+    }
+    
+    /**
+     * Combines two summaries: a key missing from one side is assumed to have up to
+     * that side's smallest count, as it could have been evicted there.
+     */
+    public void merge(SpaceSaving<K> other) {
+        long ownFloor = counters.size() >= capacity ? byCount.first().count : 0;
+        long otherFloor = other.counters.size() >= other.capacity ? other.byCount.first().count : 0;
+        
+        Map<K, long[]> merged = new HashMap<>();
+        for (Counter<K> counter : counters.values()) {
+            Counter<K> match = other.counters.get(counter.key);
+            merged.put(counter.key, match != null
+                ? new long[] {counter.count + match.count, counter.error + match.error}
+                : new long[] {counter.count + otherFloor, counter.error + otherFloor});
+        }
+        for (Counter<K> counter : other.counters.values()) {
+            if (!counters.containsKey(counter.key)) {
+                merged.put(counter.key, new long[] {counter.count + ownFloor, counter.error + ownFloor});
+            }
+        }
+        
+        long mergedTotal = total + other.total;
+        counters.clear();
+        byCount.clear();
+        List<Map.Entry<K, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (int i = 0; i < entries.size() && i < capacity; i++) {
+            Counter<K> counter = new Counter<>(entries.get(i).getKey(), sequence++);
+            counter.count = entries.get(i).getValue()[0];
+            counter.error = entries.get(i).getValue()[1];
+            counters.put(counter.key, counter);
+            byCount.add(counter);
+        }
+        total = mergedTotal;
+    }
+    
+    /**
+     * @return no key left out of the summary occurs more often than this
+     */
+    public long getErrorBound() {
+        return total / capacity;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    public int size() {
+        return counters.size();
+    }
+    
+    public void clear() {
+        counters.clear();
+        byCount.clear();
+        total = 0;
+    }
+    
+    public void write(DataOutputStream out, KeyCodec<K> codec) throws IOException {
+        out.writeLong(total);
+        out.writeInt(counters.size());
+        for (Counter<K> counter : byCount) {
+            codec.write(out, counter.key);
+            out.writeLong(counter.count);
+            out.writeLong(counter.error);
+        }
+    }
+    
+    public void read(DataInputStream in, KeyCodec<K> codec) throws IOException {
+        clear();
+        total = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Counter<K> counter = new Counter<>(codec.read(in), sequence++);
+            counter.count = in.readLong();
+            counter.error = in.readLong();
+            if (counters.size() < capacity && !counters.containsKey(counter.key)) {
+                counters.put(counter.key, counter);
+                byCount.add(counter);
+            }
+        }
+    }
+}
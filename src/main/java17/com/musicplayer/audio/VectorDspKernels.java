@@ -0,0 +1,168 @@
+package com.musicplayer.audio;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * jdk.incubator.vector versions of the DSP kernels (Java 17+, multi-release jar)
+ * Only created by DspKernels.get(), after a self-test against the scalar code.
+ * On JDK 17, C2 doesn't intrinsify float-to-int casts or two-vector shuffles,
+ * so the PCM kernels avoid both: stereo pairs are packed/unpacked as 32-bit
+ * lanes with shifts, and float/int conversion uses the 1.5 * 2^23 bias trick.
+ * scale(), multiply() and the recursive biquad cascade keep the inherited scalar
+ * code, which C2 already auto-vectorizes (or which can't be vectorized in time);
+ * see the --bench-dsp kernel table.
+ */
+final class VectorDspKernels extends DspKernels {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = FLOATS.length();
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LANES * Integer.SIZE));
+    // One vector of 16-bit samples per float vector (mono), or two per int lane (stereo)
+    private static final VectorSpecies<Short> HALF_SHORTS =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(LANES * Short.SIZE));
+    private static final VectorSpecies<Short> FULL_SHORTS =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(LANES * Integer.SIZE));
+    private static final VectorSpecies<Byte> HALF_BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(LANES * Short.SIZE));
+    private static final VectorSpecies<Byte> FULL_BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(LANES * Integer.SIZE));
+    
+    private static final int MAGIC_BITS = Float.floatToRawIntBits(ROUNDING_MAGIC);
+    private static final float TO_PCM = 32767.0f;
+    private static final float FROM_PCM = 1.0f / 32768.0f;
+    
+    VectorDspKernels() {
+    }
+    
+    @Override
+    public void mix(float[] dst, int dstOffset, float[] src, int srcOffset, int count, float gain) {
+        int i = 0;
+        int bound = FLOATS.loopBound(count);
+        for (; i < bound; i += LANES) {
+            // mul + add rather than fma: identical rounding to the scalar kernel,
+            // and no slow software fallback on CPUs without FMA
+            FloatVector s = FloatVector.fromArray(FLOATS, src, srcOffset + i).mul(gain);
+            s.add(FloatVector.fromArray(FLOATS, dst, dstOffset + i)).intoArray(dst, dstOffset + i);
+        }
+        super.mix(dst, dstOffset + i, src, srcOffset + i, count - i, gain);
+    }
+    
+    @Override
+    public void interleavePcm16(PcmBlock block, int offset, int frames, int channels, byte[] out, int outOffset) {
+        if (channels > 2) {
+            super.interleavePcm16(block, offset, frames, channels, out, outOffset);
+            return;
+        }
+        
+        int i = 0;
+        int pos = outOffset;
+        int bound = FLOATS.loopBound(frames);
+        if (channels == 1) {
+            float[] mono = block.getChannel(0);
+            for (; i < bound; i += LANES, pos += LANES * 2) {
+                IntVector pcm = quantize(FloatVector.fromArray(FLOATS, mono, offset + i));
+                ((ShortVector) pcm.convertShape(VectorOperators.I2S, HALF_SHORTS, 0))
+                        .reinterpretAsBytes().intoArray(out, pos);
+            }
+        } else {
+            float[] left = block.getChannel(0);
+            float[] right = block.getChannel(Math.min(1, block.getChannels() - 1));
+            for (; i < bound; i += LANES, pos += LANES * 4) {
+                IntVector l = quantize(FloatVector.fromArray(FLOATS, left, offset + i));
+                IntVector r = quantize(FloatVector.fromArray(FLOATS, right, offset + i));
+                // One 32-bit lane = L in the low half, R in the high half: an LE stereo frame
+                IntVector frame = l.and(0xFFFF).or(r.lanewise(VectorOperators.LSHL, 16));
+                frame.reinterpretAsBytes().intoArray(out, pos);
+            }
+        }
+        super.interleavePcm16(block, offset + i, frames - i, channels, out, pos);
+    }
+    
+    /**
+     * Clamped, rounded PCM value in the low 16 bits of each lane.
+     */
+    private static IntVector quantize(FloatVector samples) {
+        FloatVector y = samples.mul(TO_PCM).max(-32768.0f).min(32767.0f);
+        return y.add(ROUNDING_MAGIC).reinterpretAsInts();
+    }
+    
+    /**
+     * Exact int-to-float for values that fit in 16 bits, without a conversion op.
+     */
+    private static FloatVector toFloat(IntVector values) {
+        return values.add(MAGIC_BITS).reinterpretAsFloats().sub(ROUNDING_MAGIC).mul(FROM_PCM);
+    }
+    
+    @Override
+    public void deinterleavePcm16(byte[] in, int inOffset, int channels, int frames, PcmBlock block, int offset) {
+        if (channels > 2) {
+            super.deinterleavePcm16(in, inOffset, channels, frames, block, offset);
+            return;
+        }
+        
+        int i = 0;
+        int pos = inOffset;
+        int bound = FLOATS.loopBound(frames);
+        if (channels == 1) {
+            float[] out = block.getChannel(0);
+            for (; i < bound; i += LANES, pos += LANES * 2) {
+                ShortVector pcm = ByteVector.fromArray(HALF_BYTES, in, pos).reinterpretAsShorts();
+                ((FloatVector) pcm.convertShape(VectorOperators.S2F, FLOATS, 0)).mul(FROM_PCM).intoArray(out, offset + i);
+            }
+        } else {
+            float[] left = block.getChannel(0);
+            float[] right = block.getChannel(1);
+            for (; i < bound; i += LANES, pos += LANES * 4) {
+                splitStereo(ByteVector.fromArray(FULL_BYTES, in, pos).reinterpretAsInts(), left, right, offset + i);
+            }
+        }
+        super.deinterleavePcm16(in, pos, channels, frames - i, block, offset + i);
+    }
+    
+    @Override
+    public void deinterleavePcm16(short[] in, int inOffset, int channels, int frames, PcmBlock block, int offset) {
+        if (channels > 2) {
+            super.deinterleavePcm16(in, inOffset, channels, frames, block, offset);
+            return;
+        }
+        
+        int i = 0;
+        int pos = inOffset;
+        int bound = FLOATS.loopBound(frames);
+        if (channels == 1) {
+            float[] out = block.getChannel(0);
+            for (; i < bound; i += LANES, pos += LANES) {
+                ShortVector pcm = ShortVector.fromArray(HALF_SHORTS, in, pos);
+                ((FloatVector) pcm.convertShape(VectorOperators.S2F, FLOATS, 0)).mul(FROM_PCM).intoArray(out, offset + i);
+            }
+        } else {
+            float[] left = block.getChannel(0);
+            float[] right = block.getChannel(1);
+            for (; i < bound; i += LANES, pos += LANES * 2) {
+                splitStereo(ShortVector.fromArray(FULL_SHORTS, in, pos).reinterpretAsInts(), left, right, offset + i);
+            }
+        }
+        super.deinterleavePcm16(in, pos, channels, frames - i, block, offset + i);
+    }
+    
+    /**
+     * Each lane holds one stereo frame (L low, R high); sign-extend the halves.
+     */
+    private static void splitStereo(IntVector frames, float[] left, float[] right, int offset) {
+        IntVector l = frames.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16);
+        IntVector r = frames.lanewise(VectorOperators.ASHR, 16);
+        toFloat(l).intoArray(left, offset);
+        toFloat(r).intoArray(right, offset);
+    }
+    
+    @Override
+    public String getName() {
+        return "vector (" + LANES + " x float)";
+    }
+}
@@ -0,0 +1,136 @@
+package com.musicplayer.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.musicplayer.model.Song;
+
+public class OfflineRendererTest {
+    private static final int RATE = 44100;
+    private static final int FRAMES = 12345;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void rendersEveryFrameToTheNullOutput() throws Exception {
+        Song track = song(sineWav("a.wav", RATE, FRAMES));
+        NullAudioOutput output = new NullAudioOutput();
+        
+        RenderReport report = new OfflineRenderer(new PlaybackPipeline(), output).render(Arrays.asList(track, track));
+        
+        assertEquals(2, report.getTracksRendered());
+        assertEquals(2L * FRAMES, report.getFramesRendered());
+        assertEquals(2L * FRAMES, output.getFramesWritten());
+        assertEquals(2.0 * FRAMES / RATE, report.getAudioSeconds(), 1e-9);
+        assertTrue(report.getSkippedTracks().isEmpty());
+        assertEquals("null", report.getOutputName());
+    }
+    
+    @Test
+    public void reportsARowForEveryProcessor() throws Exception {
+        Song track = song(sineWav("e.wav", RATE, FRAMES));
+        PlaybackPipeline pipeline = new PlaybackPipeline();
+        pipeline.addProcessor(new LoudnessNormalizer());
+        pipeline.addProcessor(new GainStage());
+        
+        RenderReport report = new OfflineRenderer(pipeline, new NullAudioOutput()).render(Collections.singletonList(track));
+        
+        List<StageStats> stages = report.getStages();
+        assertEquals(Arrays.asList("decode", "loudness", "gain", "output"),
+                     stages.stream().map(StageStats::getName).collect(Collectors.toList()));
+        int blocks = (FRAMES + OfflineRenderer.DEFAULT_BLOCK_FRAMES - 1) / OfflineRenderer.DEFAULT_BLOCK_FRAMES;
+        assertEquals(blocks, stages.get(1).getInvocations());
+        assertEquals(blocks, stages.get(2).getInvocations());
+    }
+    
+    @Test
+    public void skipsUnreadableTracksAndRendersTheRest() throws Exception {
+        Song missing = new Song("Missing", "Nobody", "", 1, new File(folder.getRoot(), "missing.wav").getPath());
+        Song track = song(sineWav("b.wav", RATE, FRAMES));
+        
+        RenderReport report = new OfflineRenderer(new PlaybackPipeline(), new NullAudioOutput())
+                .render(Arrays.asList(missing, track));
+        
+        assertEquals(1, report.getTracksRendered());
+        assertEquals(FRAMES, report.getFramesRendered());
+        assertEquals(1, report.getSkippedTracks().size());
+    }
+    
+    @Test
+    public void writesTheTrackUnchangedThroughAnEmptyPipeline() throws Exception {
+        File source = sineWav("c.wav", RATE, FRAMES);
+        File target = new File(folder.getRoot(), "out.wav");
+        
+        new OfflineRenderer(new PlaybackPipeline(), new WavFileOutput(target)).render(Collections.singletonList(song(source)));
+        
+        short[] expected = readPcm16(source);
+        short[] actual = readPcm16(target);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("sample " + i, expected[i], actual[i], 1);
+        }
+    }
+    
+    @Test
+    public void resamplesToAForcedOutputRate() throws Exception {
+        Song track = song(sineWav("d.wav", RATE, FRAMES));
+        OfflineRenderer renderer = new OfflineRenderer(new PlaybackPipeline(), new NullAudioOutput());
+        renderer.setOutputFormat(48000, 2);
+        
+        RenderReport report = renderer.render(Collections.singletonList(track));
+        
+        assertEquals(FRAMES * 48000.0 / RATE, report.getFramesRendered(), 2);
+    }
+    
+    private Song song(File file) {
+        return new Song(file.getName(), "Test", "", 1, file.getPath());
+    }
+    
+    /**
+     * Writes a 16-bit stereo WAV of a 440 Hz sine, at half scale.
+     */
+    private File sineWav(String name, int rate, int frames) throws IOException {
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            short value = (short) Math.round(16000 * Math.sin(2 * Math.PI * 440 * i / rate));
+            for (int ch = 0; ch < 2; ch++) {
+                pcm[i * 4 + ch * 2] = (byte) value;
+                pcm[i * 4 + ch * 2 + 1] = (byte) (value >> 8);
+            }
+        }
+        File file = new File(folder.getRoot(), name);
+        AudioFormat format = new AudioFormat(rate, 16, 2, true, false);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, frames),
+                          AudioFileFormat.Type.WAVE, file);
+        return file;
+    }
+    
+    private static short[] readPcm16(File file) throws Exception {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+            byte[] bytes = in.readAllBytes();
+            short[] samples = new short[bytes.length / 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((bytes[2 * i] & 0xFF) | bytes[2 * i + 1] << 8);
+            }
+            return samples;
+        }
+    }
+}
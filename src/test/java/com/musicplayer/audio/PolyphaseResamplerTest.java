@@ -0,0 +1,90 @@
+package com.musicplayer.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PolyphaseResamplerTest {
+    private static final int FRAMES = 44100;
+    
+    @Test
+    public void outputLengthFollowsTheRateRatio() {
+        int[][] conversions = {{44100, 48000}, {48000, 44100}, {22050, 48000}, {96000, 44100}, {44100, 44100}};
+        for (int[] rates : conversions) {
+            float[] output = resample(sine(rates[0], 1000, FRAMES), rates[0], rates[1], FRAMES);
+            double expected = (double) FRAMES * rates[1] / rates[0];
+            assertEquals(rates[0] + " -> " + rates[1], expected, output.length, 2);
+        }
+    }
+    
+    @Test
+    public void keepsFrequencyAndAmplitudeOfASine() {
+        float[] output = resample(sine(44100, 1000, FRAMES), 44100, 48000, FRAMES);
+        float[] expected = sine(48000, 1000, output.length);
+        
+        // Away from the edges, where the filter sees zeros
+        for (int i = 100; i < output.length - 100; i++) {
+            assertEquals("frame " + i, expected[i], output[i], 0.01);
+        }
+    }
+    
+    @Test
+    public void passesDirectCurrentAtUnityGain() {
+        float[] input = new float[FRAMES];
+        Arrays.fill(input, 0.5f);
+        float[] output = resample(input, 44100, 48000, FRAMES);
+        
+        for (int i = 100; i < output.length - 100; i++) {
+            assertEquals("frame " + i, 0.5, output[i], 1e-3);
+        }
+    }
+    
+    @Test
+    public void blockSizeDoesNotChangeTheOutput() {
+        float[] input = sine(44100, 3000, FRAMES);
+        
+        float[] whole = resample(input, 44100, 48000, FRAMES);
+        float[] blocks = resample(input, 44100, 48000, 333);
+        
+        assertArrayEquals(whole, blocks, 0.0f);
+    }
+    
+    private static float[] sine(int rate, double frequency, int frames) {
+        float[] samples = new float[frames];
+        for (int i = 0; i < frames; i++) {
+            samples[i] = (float) (0.8 * Math.sin(2 * Math.PI * frequency * i / rate));
+        }
+        return samples;
+    }
+    
+    /**
+     * Streams the mono input through a resampler in blocks of the given size.
+     */
+    private static float[] resample(float[] input, int inputRate, int outputRate, int blockFrames) {
+        PolyphaseResampler resampler = new PolyphaseResampler(inputRate, outputRate, 1);
+        float[][] block = new float[1][];
+        float[] result = new float[0];
+        
+        for (int offset = 0; offset < input.length; offset += blockFrames) {
+            block[0] = Arrays.copyOfRange(input, offset, Math.min(input.length, offset + blockFrames));
+            resampler.write(block, 0, block[0].length);
+            result = drain(resampler, result);
+        }
+        resampler.flush();
+        return drain(resampler, result);
+    }
+    
+    private static float[] drain(PolyphaseResampler resampler, float[] result) {
+        float[][] out = new float[1][4096];
+        int frames;
+        while ((frames = resampler.read(out, 0, out[0].length)) > 0) {
+            int produced = result.length;
+            result = Arrays.copyOf(result, produced + frames);
+            System.arraycopy(out[0], 0, result, produced, frames);
+        }
+        return result;
+    }
+}
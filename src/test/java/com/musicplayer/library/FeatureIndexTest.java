@@ -0,0 +1,154 @@
+package com.musicplayer.library;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.musicplayer.model.Song;
+import com.musicplayer.service.MusicLibrary;
+
+public class FeatureIndexTest {
+    private static final int SONGS = 20_000;
+    private static final int REMOVALS = 500;
+    
+    // Keywords, near misses and filler, in mixed case
+    private static final String[] WORDS = {
+        "Rock", "roc", "DANCE", "party", "Energy", "chill", "relaxing", "Ambient", "ambien", "Blue",
+        "lonely", "Tears", "sunshine", "LOVE", "joyful", "hip", "Rap", "metal", "punk", "Jazz",
+        "classical", "piano", "guitar", "soft", "slow", "fast", "beat", "the", "night", "song",
+        "river", "city", "dream", "light", "echo", "mix", "live", "remix", "band", "orchestra"
+    };
+    private static final String[] PATH_PARTS = {
+        "Music", "80s", "90", "Retro", "2000", "00", "2010", "201", "Modern", "classic", "Classics",
+        "19", "7", "1", "2", "rock", "misc", "albums", "new", "old"
+    };
+    
+    @Test
+    public void matchesTheContainsFiltersAcrossAddsAndRemovals() {
+        Random random = new Random(2024);
+        List<Song> expected = new ArrayList<>();
+        FeatureIndex index = new FeatureIndex();
+        MusicLibrary library = new MusicLibrary();
+        for (int i = 0; i < SONGS; i++) {
+            Song song = randomSong(random, i);
+            expected.add(song);
+            index.add(song);
+            library.addSong(song);
+        }
+        
+        for (int r = 0; r < REMOVALS; r++) {
+            int position = random.nextInt(expected.size());
+            Song removed = expected.remove(position);
+            index.remove(position);
+            assertTrue(library.removeSong(removed));
+            if (r % 100 == 0) {
+                assertMatches(expected, index, library, random);
+            }
+        }
+        assertMatches(expected, index, library, random);
+    }
+    
+    @Test
+    public void sampleReturnsDistinctQualifyingSongs() {
+        Random random = new Random(99);
+        FeatureIndex index = new FeatureIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.add(randomSong(random, i));
+        }
+        
+        for (SongFeature feature : SongFeature.values()) {
+            for (boolean having : new boolean[] {true, false}) {
+                int qualifying = having ? index.count(feature) : index.size() - index.count(feature);
+                // Few, about half and all of the qualifying songs, across both strategies
+                for (int count : new int[] {1, 10, qualifying / 2, qualifying / 2 + 1, qualifying, qualifying + 5}) {
+                    int[] picked = index.sample(feature, having, count, random);
+                    
+                    assertEquals(feature + " " + count, Math.max(0, Math.min(count, qualifying)), picked.length);
+                    Set<Integer> seen = new HashSet<>();
+                    for (int position : picked) {
+                        assertEquals(having, index.has(position, feature));
+                        assertTrue("repeated " + position, seen.add(position));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void assertMatches(List<Song> songs, FeatureIndex index, MusicLibrary library, Random random) {
+        assertEquals(songs.size(), index.size());
+        assertEquals(songs, library.getAllSongs());
+        SongFeature[] features = SongFeature.values();
+        for (SongFeature feature : features) {
+            List<Song> matching = new ArrayList<>();
+            BitSet positions = new BitSet();
+            for (int i = 0; i < songs.size(); i++) {
+                if (hasByContains(songs.get(i), feature)) {
+                    matching.add(songs.get(i));
+                    positions.set(i);
+                }
+                assertEquals(hasByContains(songs.get(i), feature), index.has(i, feature));
+            }
+            
+            assertEquals(feature.name(), positions, index.matching(feature));
+            assertEquals(feature.name(), matching, library.getSongsWith(feature));
+            assertEquals(feature.name(), matching.size(), library.countSongsWith(feature));
+            assertEquals(feature.name(), matching.subList(0, Math.min(25, matching.size())),
+                         library.getSongsWith(feature, 25));
+            assertArrayEquals(positions.stream().limit(25).toArray(), index.first(feature, 25));
+        }
+        
+        // Intersections, as used for combined filters
+        for (int pair = 0; pair < 10; pair++) {
+            SongFeature first = features[random.nextInt(features.length)];
+            SongFeature second = features[random.nextInt(features.length)];
+            List<Song> matching = new ArrayList<>();
+            for (Song song : songs) {
+                if (hasByContains(song, first) && hasByContains(song, second)) {
+                    matching.add(song);
+                }
+            }
+            assertEquals(first + " and " + second, matching, library.getSongsWith(first, second));
+        }
+    }
+    
+    /**
+     * The filters the smart playlists used before the index.
+     */
+    private static boolean hasByContains(Song song, SongFeature feature) {
+        String searchText = feature.getField() == SongFeature.Field.TEXT
+                ? (song.getTitle() + " " + song.getArtist() + " " + song.getAlbum()).toLowerCase()
+                : song.getFilePath().toLowerCase();
+        return feature.getKeywords().stream().anyMatch(searchText::contains);
+    }
+    
+    private static Song randomSong(Random random, int number) {
+        // The number keeps songs distinct; no text keyword has digits
+        String title = words(random, 1 + random.nextInt(3), " ") + " " + number;
+        String artist = words(random, 1 + random.nextInt(2), " ");
+        String album = random.nextInt(4) == 0 ? "" : words(random, 1 + random.nextInt(3), " ");
+        StringBuilder path = new StringBuilder("/");
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            path.append(PATH_PARTS[random.nextInt(PATH_PARTS.length)]).append('/');
+        }
+        path.append(words(random, 2, "_")).append(".mp3");
+        return new Song(title, artist, album, 60 + random.nextInt(300), path.toString());
+    }
+    
+    private static String words(Random random, int count, String separator) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(separator);
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.musicplayer.library;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KeywordAutomatonTest {
+    @Test
+    public void matchesLikeContainsForEveryKeyword() {
+        Map<String, Long> keywords = new LinkedHashMap<>();
+        String[] words = {"rock", "roc", "ock", "ambient", "bient", "90", "2000", "00", "201", "a", "abab", "bab"};
+        for (int i = 0; i < words.length; i++) {
+            keywords.put(words[i], 1L << i);
+        }
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        
+        // Texts built from keyword fragments, so overlaps and near misses are common
+        String[] pieces = {"ro", "ck", "R", "OCK", "amb", "IENT", "9", "0", "20", "1", "ab", "b", " ", "-", "é", "x"};
+        Random random = new Random(42);
+        for (int trial = 0; trial < 20_000; trial++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertEquals(text.toString(), expected(keywords, text.toString()), automaton.match(text));
+        }
+    }
+    
+    @Test
+    public void combinesTheMasksOfSharedKeywords() {
+        Map<String, Long> keywords = new LinkedHashMap<>();
+        keywords.put("rock", 0b011L);
+        keywords.put("dance", 0b100L);
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        
+        assertEquals(0b111L, automaton.match("Dance Rock Classics"));
+        assertEquals(0b011L, automaton.match("/music/ROCK/track.mp3"));
+        assertEquals(0L, automaton.match("jazz"));
+        assertEquals(0L, automaton.match(null));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUpperCaseKeywords() {
+        Map<String, Long> keywords = new LinkedHashMap<>();
+        keywords.put("Rock", 1L);
+        new KeywordAutomaton(keywords);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyKeywords() {
+        Map<String, Long> keywords = new LinkedHashMap<>();
+        keywords.put("", 1L);
+        new KeywordAutomaton(keywords);
+    }
+    
+    private static long expected(Map<String, Long> keywords, String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        long mask = 0;
+        for (Map.Entry<String, Long> entry : keywords.entrySet()) {
+            if (lower.contains(entry.getKey())) mask |= entry.getValue();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,111 @@
+package com.musicplayer.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SamplingTest {
+    @Test
+    public void sampleIndexesAreDistinctAndInRange() {
+        Random random = new Random(7);
+        int[][] cases = {{0, 5}, {1, 1}, {10, 10}, {10, 25}, {1000, 0}, {1000, 999}, {2_000_000, 500}};
+        for (int[] c : cases) {
+            int n = c[0];
+            int k = c[1];
+            int[] picked = Sampling.sampleIndexes(n, k, random);
+            
+            assertEquals(Math.min(n, k), picked.length);
+            assertDistinctInRange(picked, n);
+        }
+    }
+    
+    @Test
+    public void everyIndexIsEquallyLikely() {
+        Random random = new Random(11);
+        int n = 20;
+        int[] hits = new int[n];
+        int trials = 50_000;
+        for (int t = 0; t < trials; t++) {
+            for (int index : Sampling.sampleIndexes(n, 5, random)) {
+                hits[index]++;
+            }
+        }
+        double expected = trials * 5.0 / n;
+        for (int index = 0; index < n; index++) {
+            assertEquals("index " + index, expected, hits[index], expected * 0.05);
+        }
+    }
+    
+    @Test
+    public void reservoirKeepsDistinctOfferedValues() {
+        Random random = new Random(3);
+        Sampling.Reservoir reservoir = new Sampling.Reservoir(50, random);
+        for (int value = 0; value < 10_000; value++) {
+            reservoir.offer(value * 2);
+        }
+        int[] result = reservoir.result();
+        
+        assertEquals(50, result.length);
+        Set<Integer> seen = new HashSet<>();
+        for (int value : result) {
+            assertTrue(value % 2 == 0 && value < 20_000);
+            assertTrue("repeated " + value, seen.add(value));
+        }
+    }
+    
+    @Test
+    public void reservoirReturnsEverythingWhenOfferedLessThanItsCapacity() {
+        Sampling.Reservoir reservoir = new Sampling.Reservoir(10, new Random(5));
+        for (int value = 0; value < 4; value++) {
+            reservoir.offer(value);
+        }
+        int[] result = reservoir.result();
+        
+        assertEquals(4, result.length);
+        assertDistinctInRange(result, 4);
+    }
+    
+    @Test
+    public void reservoirSamplesUniformly() {
+        Random random = new Random(13);
+        int[] hits = new int[30];
+        int trials = 30_000;
+        for (int t = 0; t < trials; t++) {
+            Sampling.Reservoir reservoir = new Sampling.Reservoir(3, random);
+            for (int value = 0; value < hits.length; value++) {
+                reservoir.offer(value);
+            }
+            for (int value : reservoir.result()) {
+                hits[value]++;
+            }
+        }
+        double expected = trials * 3.0 / hits.length;
+        for (int value = 0; value < hits.length; value++) {
+            assertEquals("value " + value, expected, hits[value], expected * 0.07);
+        }
+    }
+    
+    @Test
+    public void shuffleKeepsEveryValue() {
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        Sampling.shuffle(values, new Random(17));
+        
+        assertDistinctInRange(values, values.length);
+    }
+    
+    private static void assertDistinctInRange(int[] values, int bound) {
+        Set<Integer> seen = new HashSet<>();
+        for (int value : values) {
+            assertTrue(value + " out of range", value >= 0 && value < bound);
+            assertTrue("repeated " + value, seen.add(value));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.musicplayer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.musicplayer.model.Song;
+
+public class MusicStatisticsConcurrencyTest {
+    private static final int PRODUCERS = 4;
+    private static final int LISTENS_PER_PRODUCER = 50_000;
+    private static final int SONGS = 16;
+    private static final int LENGTH_SECONDS = 180;
+    
+    @Test
+    public void countsEveryListenFromConcurrentProducers() throws Exception {
+        MusicStatistics stats = new MusicStatistics(null, false);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < SONGS; i++) {
+            songs.add(new Song("Song " + i, "Artist " + (i % 4), "Album", LENGTH_SECONDS, "/music/" + i + ".mp3"));
+        }
+        
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    int ownPlays = 0;
+                    for (int i = 0; i < LISTENS_PER_PRODUCER; i++) {
+                        Song song = songs.get(i % SONGS);
+                        if (isSkip(i)) {
+                            stats.recordListen(song, System.currentTimeMillis(), 1000, LENGTH_SECONDS * 1000L, false);
+                        } else {
+                            stats.recordListen(song, System.currentTimeMillis(), LENGTH_SECONDS * 1000L,
+                                               LENGTH_SECONDS * 1000L, true);
+                            ownPlays++;
+                        }
+                        // A reader sees at least its own thread's earlier events
+                        if (i % 5000 == 0) {
+                            assertTrue(stats.getTotalPlays() >= ownPlays);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "producer-" + p));
+        }
+        
+        Thread reader = new Thread(() -> {
+            try {
+                start.await();
+                int lastTotal = 0;
+                int lastCount = 0;
+                while (producing.get()) {
+                    int total = stats.getTotalPlays();
+                    int count = stats.getPlayCount(songs.get(0));
+                    assertTrue("total went from " + lastTotal + " to " + total, total >= lastTotal);
+                    assertTrue("count went from " + lastCount + " to " + count, count >= lastCount);
+                    assertTrue(stats.getTopSongs(5).size() <= 5);
+                    lastTotal = total;
+                    lastCount = count;
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "reader");
+        
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        reader.start();
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        producing.set(false);
+        reader.join();
+        
+        assertNull(failure.get());
+        int plays = 0;
+        int skips = 0;
+        for (int i = 0; i < LISTENS_PER_PRODUCER; i++) {
+            if (isSkip(i)) skips++;
+            else plays++;
+        }
+        int playsPerSong = PRODUCERS * plays / SONGS;
+        int skipsPerSong = PRODUCERS * skips / SONGS;
+        for (Song song : songs) {
+            assertEquals(song.getTitle(), playsPerSong, stats.getPlayCount(song));
+            assertEquals(song.getTitle(), skipsPerSong, stats.getSkipCount(song));
+            assertEquals(song.getTitle(), (long) playsPerSong * LENGTH_SECONDS + skipsPerSong,
+                         stats.getTotalPlayTime(song));
+        }
+        assertEquals(PRODUCERS * plays, stats.getTotalPlays());
+        assertEquals(SONGS, stats.getTotalSongsPlayed());
+        stats.close();
+    }
+    
+    /**
+     * Every tenth round of songs is skipped after a second, so each song gets the
+     * same number of skips.
+     */
+    private static boolean isSkip(int listen) {
+        return (listen / SONGS) % 10 == 0;
+    }
+}
@@ -0,0 +1,199 @@
+package com.musicplayer.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void replaysEveryRecordAfterARestart() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        Recorder first = new Recorder();
+        assertEquals(0, log.open(first));
+        append(log, 0, 100);
+        log.close();
+        
+        Recorder replay = new Recorder();
+        assertEquals(100, new EventLog(dir).open(replay));
+        assertEquals(names(0, 100), replay.records);
+    }
+    
+    @Test
+    public void cutsOffATornTailAndAppendsAfterTheLastIntactRecord() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        log.open(new Recorder());
+        append(log, 0, 10);
+        log.close();
+        
+        // A crash in the middle of a write: a length prefix and part of its payload
+        File segment = onlySegment(dir);
+        long intact = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[] {0, 0, 0, 40, 'p', 'a', 'r'});
+        }
+        
+        log = new EventLog(dir);
+        Recorder replay = new Recorder();
+        assertEquals(10, log.open(replay));
+        assertEquals(names(0, 10), replay.records);
+        assertEquals(intact, segment.length());
+        
+        append(log, 10, 15);
+        log.close();
+        Recorder after = new Recorder();
+        assertEquals(15, new EventLog(dir).open(after));
+        assertEquals(names(0, 15), after.records);
+    }
+    
+    @Test
+    public void skipsARecordWithABadChecksum() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        log.open(new Recorder());
+        append(log, 0, 5);
+        log.close();
+        
+        // Flip a payload byte of the last record
+        File segment = onlySegment(dir);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(segment.length() - 5);
+            int value = file.read();
+            file.seek(segment.length() - 5);
+            file.write(value ^ 0xFF);
+        }
+        
+        Recorder replay = new Recorder();
+        assertEquals(4, new EventLog(dir).open(replay));
+        assertEquals(names(0, 4), replay.records);
+    }
+    
+    @Test
+    public void startsFromTheSnapshotAndArchivesTheSegmentsItCovers() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        log.open(new Recorder());
+        append(log, 0, 50);
+        log.snapshot(out -> out.writeInt(50));
+        append(log, 50, 60);
+        assertEquals(10, log.getLiveRecords());
+        log.close();
+        
+        assertEquals(1, segments(new File(dir, "archive")).length);
+        Recorder replay = new Recorder();
+        assertEquals(10, new EventLog(dir).open(replay));
+        assertEquals(Integer.valueOf(50), replay.snapshot);
+        assertEquals(names(50, 60), replay.records);
+        
+        // The full history still includes the archived records
+        Recorder history = new Recorder();
+        EventLog reopened = new EventLog(dir);
+        reopened.open(new Recorder());
+        assertEquals(60, reopened.replayHistory(history));
+        reopened.close();
+        assertNull(history.snapshot);
+        assertEquals(names(0, 60), history.records);
+    }
+    
+    @Test
+    public void archivesACoveredSegmentLeftBehindByACrash() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        log.open(new Recorder());
+        append(log, 0, 20);
+        log.snapshot(out -> out.writeInt(20));
+        append(log, 20, 25);
+        log.close();
+        
+        // Crash after the snapshot was written, before its segment was archived
+        File archived = segments(new File(dir, "archive"))[0];
+        Files.move(archived.toPath(), new File(dir, archived.getName()).toPath());
+        
+        Recorder replay = new Recorder();
+        assertEquals(5, new EventLog(dir).open(replay));
+        assertEquals(Integer.valueOf(20), replay.snapshot);
+        assertEquals(names(20, 25), replay.records);
+        assertTrue(new File(new File(dir, "archive"), archived.getName()).isFile());
+    }
+    
+    @Test
+    public void rebuildsFromTheArchiveWhenTheSnapshotIsDamaged() throws Exception {
+        File dir = folder.newFolder("stats");
+        EventLog log = new EventLog(dir);
+        log.open(new Recorder());
+        append(log, 0, 30);
+        log.snapshot(out -> out.writeInt(30));
+        append(log, 30, 35);
+        log.close();
+        
+        File snapshot = new File(dir, "snapshot.bin");
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.seek(file.length() - 6);
+            file.write(0x55);
+        }
+        
+        Recorder replay = new Recorder();
+        new EventLog(dir).open(replay);
+        assertNull(replay.snapshot);
+        assertEquals(names(0, 35), replay.records);
+    }
+    
+    private static void append(EventLog log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            log.append(("event " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        log.flush();
+    }
+    
+    private static List<String> names(int from, int to) {
+        List<String> names = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            names.add("event " + i);
+        }
+        return names;
+    }
+    
+    private static File onlySegment(File dir) {
+        File[] segments = segments(dir);
+        assertEquals(1, segments.length);
+        return segments[0];
+    }
+    
+    private static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("events-") && name.endsWith(".log"));
+        return files == null ? new File[0] : files;
+    }
+    
+    private static class Recorder implements EventLog.Replay {
+        final List<String> records = new ArrayList<>();
+        Integer snapshot;
+        
+        @Override
+        public void snapshot(DataInputStream in) throws IOException {
+            snapshot = in.readInt();
+        }
+        
+        @Override
+        public void record(byte[] payload) {
+            records.add(new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+}